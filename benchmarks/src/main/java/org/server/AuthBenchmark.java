@@ -0,0 +1,123 @@
+package org.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logins por segundo con varios hilos autenticando a la vez (como la ola de reconexiones
+ * después de un despliegue):
+ *   unpooled: una conexión nueva por login, como hacía el servidor antes
+ *   pooled:   JdbcAuthBackend con pool y statements reutilizados
+ *   cached:   lo mismo con el cache de credenciales delante
+ *
+ * Por defecto usa H2 embebido en modo MySQL. Para medir contra el MySQL de docker-compose:
+ *   -p url=jdbc:mysql://localhost:3307/chatdb -p user=chatuser -p password=chatpass
+ * (los usuarios bench0..bench999 se crean si no existen).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthBenchmark {
+    private static final int USERS = 1000;
+
+    @Param({"unpooled", "pooled", "cached"})
+    public String mode;
+
+    @Param({"jdbc:h2:mem:auth;MODE=MySQL;DB_CLOSE_DELAY=-1"})
+    public String url;
+
+    @Param({"chatuser"})
+    public String user;
+
+    @Param({"chatpass"})
+    public String password;
+
+    private DbConfig config;
+    private AuthBackend backend;
+
+    @Setup
+    public void setup() throws SQLException {
+        createUsers();
+
+        config = new DbConfig(url, user, password, 8, 2000, "cached".equals(mode) ? 5000 : 0);
+        if (!"unpooled".equals(mode)) {
+            backend = AuthBackend.fromConfig(config);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (backend != null) {
+            backend.close();
+        }
+    }
+
+    private void createUsers() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
+                    "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                    "username VARCHAR(50) UNIQUE NOT NULL, " +
+                    "password VARCHAR(255) NOT NULL)");
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO users (username, password) SELECT ?, ? FROM DUAL " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM users WHERE username = ?)")) {
+                for (int i = 0; i < USERS; i++) {
+                    insert.setString(1, "bench" + i);
+                    insert.setString(2, "bench" + i);
+                    insert.setString(3, "bench" + i);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean login() {
+        String username = "bench" + ThreadLocalRandom.current().nextInt(USERS);
+        if (backend == null) {
+            return unpooledLogin(username, username);
+        }
+        return backend.authenticate(username, username);
+    }
+
+    // El login tal como estaba en GameWebSocketServer.authenticateUser
+    private boolean unpooledLogin(String username, String password) {
+        try (Connection conn = DriverManager.getConnection(config.url, config.user, config.password);
+             PreparedStatement stmt = conn.prepareStatement("SELECT password FROM users WHERE username = ?")) {
+            stmt.setString(1, username);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getString("password").equals(password);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,194 @@
+package org.server;
+
+import org.shared.Log;
+
+import java.io.File;
+
+/**
+ * Sala de prueba para los benchmarks. El escenario es "mapa:jugadores":
+ *   facil, practica  los niveles de maps/ (se buscan en -Dmaps.dir, por defecto ../maps)
+ *   generado         un nivel sintético que crece con los jugadores, con columnas, elevadores y llave
+ *
+ * Los jugadores aparecen sobre piso firme, lejos de pozos y de la meta, y caminan de ida y
+ * vuelta sin alejarse más de un tile: la sala no termina en gameOver ni en gameWin
+ * mientras se mide.
+ */
+final class BenchmarkRoom {
+    private static final int SIZE_TILE = GameWebSocketServer.SIZE_TILE;
+
+    // Cada cuántos ticks los jugadores cambian de dirección y saltan
+    private static final int TURN_TICKS = 8;
+    private static final int JUMP_TICKS = 60;
+    // Cada cuántos ticks todo vuelve a la posición inicial, para que el estado no derive
+    private static final int RESET_TICKS = 600;
+
+    static {
+        // Cargar niveles loguea plataformas y llave en INFO; en un benchmark solo ensucia la salida
+        Log.get("GameRoom").setLevel(Log.Level.WARN);
+        Log.get("Llave").setLevel(Log.Level.WARN);
+    }
+
+    final GameRoom room;
+    final Player[] players;
+    private final float[] spawns;
+    private int tick;
+
+    private BenchmarkRoom(GameRoom room, float[] spawns) {
+        this.room = room;
+        this.players = room.playerSlots;
+        this.spawns = spawns;
+    }
+
+    static BenchmarkRoom create(String scenario) {
+        int separator = scenario.indexOf(':');
+        String map = separator < 0 ? scenario : scenario.substring(0, separator);
+        int playerCount = separator < 0 ? 2 : Integer.parseInt(scenario.substring(separator + 1));
+        boolean generated = map.equals("generado");
+
+        GameRoom room;
+        if (generated) {
+            int[][] world = generateWorld(playerCount);
+            room = new GameRoom(map, map, playerCount, world, world);
+        } else {
+            String mapsDir = System.getProperty("maps.dir", "../maps");
+            RoomConfig config = GameRoom.loadRoomConfig(new File(mapsDir, map + ".json").getPath());
+            if (config == null) {
+                throw new IllegalArgumentException("No se encontró el mapa " + map + " en " + mapsDir);
+            }
+            room = new GameRoom(map, config.getRoomName(), playerCount, config.getWorld(),
+                    config.getWaitingRoom(), new TileProperties(config.getTiles()));
+        }
+
+        room.loadGameWorld();
+        room.initializePlatforms();
+        room.initializeKey();
+        for (int i = 0; i < playerCount; i++) {
+            room.addPlayer(new Player("jugador" + i, "jugador" + i));
+        }
+        room.runCommands(); // los jugadores entran a la simulación
+
+        BenchmarkRoom benchmarkRoom = new BenchmarkRoom(room, spawnPositions(room.tiles, playerCount, generated));
+        benchmarkRoom.reset();
+        return benchmarkRoom;
+    }
+
+    /**
+     * Jugadores y plataformas vuelven a su posición inicial
+     */
+    void reset() {
+        for (int i = 0; i < players.length; i++) {
+            Player player = players[i];
+            player.x = spawns[i * 2];
+            player.y = spawns[i * 2 + 1];
+            player.velocityY = 0;
+            player.isOnGround = false;
+            player.moveDirection = i % 2 == 0 ? 1 : -1;
+        }
+        room.initializePlatforms(); // como restartGame
+    }
+
+    /**
+     * Input del siguiente tick: cambiar de dirección, saltar (igual que handleJump) y cada
+     * RESET_TICKS volver al inicio
+     */
+    void nextInput() {
+        tick++;
+        if (tick % RESET_TICKS == 0) {
+            reset();
+            return;
+        }
+        for (int i = 0; i < players.length; i++) {
+            Player player = players[i];
+            if (tick % TURN_TICKS == 0) {
+                player.moveDirection = -player.moveDirection;
+            }
+            if ((tick + i) % JUMP_TICKS == 0 && player.isOnGround && player.playersOnTopCount == 0) {
+                player.velocityY = -10f; // JUMP_FORCE
+                player.isOnGround = false;
+            }
+        }
+    }
+
+    /**
+     * Simula ticks para que los jugadores aterricen y se crucen; falla si la sala dejó de
+     * actualizarse (alguien cayó del mapa o llegó a la meta)
+     */
+    void settle(GameWebSocketServer server, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            nextInput();
+            if (!server.simulate(room)) {
+                throw new IllegalStateException("La sala " + room.id + " dejó de actualizarse: escenario inválido");
+            }
+        }
+    }
+
+    /**
+     * Nivel de 20 filas: piso doble y, cada 12 tiles, una columna y un elevador de 5 tiles
+     * (31, lo mueve un jugador) con su destino 5 tiles arriba. Llave al centro, meta al final.
+     */
+    static int[][] generateWorld(int players) {
+        int rows = 20;
+        int columns = Math.max(60, players * 3 + 24);
+        int[][] world = new int[rows][columns];
+
+        for (int x = 0; x < columns; x++) {
+            world[rows - 1][x] = 3;
+            world[rows - 2][x] = 3;
+        }
+        for (int x = 12; x + 12 < columns; x += 12) {
+            world[rows - 3][x] = 4;
+            for (int dx = 3; dx < 8; dx++) {
+                world[rows - 3][x + dx] = 31;
+                world[rows - 8][x + dx] = 30;
+            }
+        }
+        world[rows - 5][columns / 2] = 50;
+        world[rows - 3][columns - 2] = 12;
+        world[rows - 3][columns - 1] = 12;
+        return world;
+    }
+
+    /**
+     * Posiciones (x, y) de aparición: columnas con la misma superficie a cada lado y sin meta
+     * cerca. En el nivel generado los elevadores cuentan como superficie; en los reales se
+     * evitan. Primero se deja una columna libre entre jugadores; si no alcanzan se ocupan
+     * las libres y, por último, se apilan.
+     */
+    private static float[] spawnPositions(TileGrid tiles, int players, boolean onPlatforms) {
+        int ground = TileProperties.SOLID | (onPlatforms ? TileProperties.PLATFORM_ORIGIN : 0);
+        int[] surface = new int[tiles.width];
+        for (int x = 0; x < tiles.width; x++) {
+            surface[x] = -1;
+            for (int y = 2; y < tiles.height; y++) {
+                if (tiles.is(x, y, ground) && !tiles.is(x, y - 1, ground) && !tiles.is(x, y - 2, ground)) {
+                    surface[x] = y;
+                    break;
+                }
+            }
+        }
+
+        int avoid = TileProperties.WINNER | (onPlatforms ? 0 : TileProperties.PLATFORM_ORIGIN);
+        int[] safe = new int[tiles.width];
+        int safeCount = 0;
+        for (int x = 1; x < tiles.width - 1; x++) {
+            boolean flat = surface[x] >= 0 && surface[x - 1] == surface[x] && surface[x + 1] == surface[x];
+            if (flat && !tiles.anyIn(x - 2, surface[x] - 4, x + 2, surface[x], avoid)) {
+                safe[safeCount++] = x;
+            }
+        }
+        if (safeCount == 0) {
+            throw new IllegalStateException("El mapa no tiene piso firme para los jugadores");
+        }
+
+        float[] spawns = new float[players * 2];
+        int half = (safeCount + 1) / 2;
+        for (int i = 0; i < players; i++) {
+            int slot = i % safeCount;
+            int column = safe[slot < half ? slot * 2 : (slot - half) * 2 + 1];
+            int stack = i / safeCount;
+            spawns[i * 2] = column * SIZE_TILE + 8;
+            spawns[i * 2 + 1] = surface[column] * SIZE_TILE - 48 * (stack + 1);
+        }
+        return spawns;
+    }
+}
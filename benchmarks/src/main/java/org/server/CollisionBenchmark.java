@@ -0,0 +1,71 @@
+package org.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Los helpers de colisión de GameWebSocketServer, llamados una vez por jugador con las
+ * posiciones congeladas a mitad de partida (jugadores apoyados, apilados y contra columnas).
+ * tiles: contra la grilla del mapa; entities: contra otros jugadores y plataformas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollisionBenchmark {
+
+    @Param({"facil:4", "practica:4", "generado:32", "generado:100"})
+    public String scenario;
+
+    private GameWebSocketServer server;
+    private GameRoom room;
+    private Player[] players;
+
+    @Setup
+    public void setup() {
+        server = new GameWebSocketServer(0);
+        BenchmarkRoom benchmarkRoom = BenchmarkRoom.create(scenario);
+        benchmarkRoom.settle(server, 1000);
+        room = benchmarkRoom.room;
+        players = benchmarkRoom.players;
+        room.indexPlayers();
+        room.indexPlatforms();
+    }
+
+    @Benchmark
+    public int tiles() {
+        TileGrid tiles = room.tiles;
+        int hits = 0;
+        for (Player player : players) {
+            if (server.checkCollisionHorizontal(player, tiles)) hits++;
+            if (server.checkCollisionDown(player, tiles, room)) hits++;
+            if (server.checkCollisionUp(player, tiles)) hits++;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int entities() {
+        int hits = 0;
+        for (Player player : players) {
+            if (server.checkPlayerCollisionHorizontal(player, room) != null) hits++;
+            if (server.checkPlayerCollisionDown(player, room) != null) hits++;
+            if (server.checkPlatformCollisionHorizontal(player, room) != null) hits++;
+            if (server.checkPlatformCollisionDown(player, room) != null) hits++;
+        }
+        return hits;
+    }
+}
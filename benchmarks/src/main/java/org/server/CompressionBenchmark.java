@@ -0,0 +1,156 @@
+package org.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shared.WebSocketCompression;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Costo y ahorro de permessage-deflate por mensaje: roomJoined (con el mapa completo) y una
+ * secuencia de gameUpdate reales (keyframe y delta, JSON y binario) de ticks consecutivos.
+ *
+ * Comprime igual que PerMessageDeflateExtension: deflate crudo con SYNC_FLUSH, sin los 4
+ * bytes finales, y sin comprimir lo que no llega al umbral. "contexto" conserva el diccionario
+ * entre mensajes (context takeover); "sinContexto" empieza de cero en cada uno. Los bytes por
+ * mensaje de cada modo se imprimen en el setup; el tiempo medido es la CPU de comprimir.
+ *
+ * Ejecutar desde benchmarks/ (los mapas se leen de ../maps).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+    // Ticks consecutivos de la secuencia de gameUpdate
+    private static final int SEQUENCE = 64;
+
+    @Param({"facil:4", "generado:32"})
+    public String scenario;
+
+    @Param({"roomJoined", "keyframeJson", "deltaJson", "deltaBinary"})
+    public String message;
+
+    @Param({"off", "contexto", "sinContexto"})
+    public String compression;
+
+    private final GameUpdateEncoder encoder = new GameUpdateEncoder();
+    private byte[][] payloads;
+    private Deflater deflater;
+    private byte[] output;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        GameWebSocketServer server = new GameWebSocketServer(0);
+        BenchmarkRoom benchmarkRoom = BenchmarkRoom.create(scenario);
+        benchmarkRoom.settle(server, 600);
+        GameRoom room = benchmarkRoom.room;
+
+        payloads = new byte[SEQUENCE][];
+        RoomSnapshot previous = room.captureSnapshot();
+        for (int i = 0; i < SEQUENCE; i++) {
+            benchmarkRoom.nextInput();
+            server.simulate(room);
+            RoomSnapshot current = room.captureSnapshot();
+            payloads[i] = encode(server, room, current, previous);
+            previous = current;
+        }
+
+        int maxLength = 0;
+        for (byte[] payload : payloads) {
+            maxLength = Math.max(maxLength, payload.length);
+        }
+        output = new byte[maxLength + 64];
+        deflater = compression.equals("off") ? null : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        System.out.println();
+        System.out.println("[bytes/mensaje] " + scenario + " " + message +
+                " sin comprimir=" + averageBytes(null, false) +
+                " contexto=" + averageBytes(new Deflater(Deflater.DEFAULT_COMPRESSION, true), true) +
+                " sinContexto=" + averageBytes(new Deflater(Deflater.DEFAULT_COMPRESSION, true), false));
+    }
+
+    private byte[] encode(GameWebSocketServer server, GameRoom room, RoomSnapshot current, RoomSnapshot previous) {
+        switch (message) {
+            case "roomJoined":
+                // Mismo contenido que envía handleJoinRoom
+                return utf8(server.createMessage("roomJoined", Map.of(
+                        "roomId", room.id,
+                        "roomName", room.name,
+                        "players", room.getPlayersData(),
+                        "world", room.world.rows(),
+                        "solidTiles", room.world.properties.idsWith(TileProperties.SOLID)
+                )));
+            case "keyframeJson":
+                encoder.keyframe(current, null, true);
+                return utf8(encoder.json());
+            case "deltaJson":
+                encoder.delta(current, previous, null, null);
+                return utf8(encoder.json());
+            case "deltaBinary":
+                encoder.delta(current, previous, null, null);
+                ByteBuffer buffer = encoder.binary();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            default:
+                throw new IllegalArgumentException("Mensaje desconocido: " + message);
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long averageBytes(Deflater deflater, boolean contextTakeover) {
+        long total = 0;
+        for (byte[] payload : payloads) {
+            total += compress(deflater, contextTakeover, payload);
+        }
+        if (deflater != null) {
+            deflater.end();
+        }
+        return total / payloads.length;
+    }
+
+    // Bytes del payload en el frame, como los deja PerMessageDeflateExtension
+    private int compress(Deflater deflater, boolean contextTakeover, byte[] payload) {
+        if (deflater == null || payload.length < WebSocketCompression.DEFAULT_THRESHOLD) {
+            return payload.length;
+        }
+        deflater.setInput(payload);
+        int total = 0;
+        int written;
+        do {
+            written = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+            total += written;
+        } while (written == output.length);
+        if (!contextTakeover) {
+            deflater.reset();
+        }
+        return total - 4; // el 00 00 ff ff del SYNC_FLUSH no viaja
+    }
+
+    @Benchmark
+    public int compressMessage() {
+        byte[] payload = payloads[next];
+        next = (next + 1) % SEQUENCE;
+        return compress(deflater, compression.equals("contexto"), payload);
+    }
+}
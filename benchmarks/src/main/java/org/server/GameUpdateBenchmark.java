@@ -0,0 +1,112 @@
+package org.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Los gameUpdate que arma sendGameUpdate en cada tick, escritos con GameUpdateEncoder:
+ *   serialize: el gameUpdate completo de los clientes clásicos, de un estado ya capturado
+ *   captureAndSerialize: snapshot de la sala + gameUpdate completo en JSON
+ *   write*: keyframe y delta en el buffer reutilizado del encoder, sin la copia que se envía
+ *   deltaBinary: delta en binario con su copia, como sale para cada grupo de clientes
+ *
+ * Chequeo de memoria: con -prof gc, gc.alloc.rate.norm de los write* tiene que dar ~0 B/op
+ * (codificar no crea objetos). El resto crea solo el mensaje que se envía: el String en JSON
+ * y el ByteBuffer en binario.
+ *   java -jar target/benchmarks.jar GameUpdateBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameUpdateBenchmark {
+
+    // Ticks de simulación entre el baseline y el snapshot del delta
+    private static final int DELTA_TICKS = 3;
+
+    @Param({"facil:2", "facil:4", "practica:4", "generado:32", "generado:100"})
+    public String scenario;
+
+    private GameRoom room;
+    private RoomSnapshot base;
+    private RoomSnapshot current;
+    private final GameUpdateEncoder encoder = new GameUpdateEncoder();
+
+    @Setup
+    public void setup() {
+        GameWebSocketServer server = new GameWebSocketServer(0);
+        BenchmarkRoom benchmarkRoom = BenchmarkRoom.create(scenario);
+        benchmarkRoom.settle(server, 1000);
+        room = benchmarkRoom.room;
+
+        // Copias propias: captureSnapshot reutiliza el historial de la sala
+        base = new RoomSnapshot();
+        base.capture(0, room);
+        benchmarkRoom.settle(server, DELTA_TICKS);
+        current = new RoomSnapshot();
+        current.capture(DELTA_TICKS, room);
+
+        encoder.keyframe(current, null, false);
+        int full = encoder.writeJson(0);
+        encoder.delta(current, base, null, null);
+        System.out.println("\n[" + scenario + "] gameUpdate completo: " + full + " caracteres"
+                + " | delta de " + DELTA_TICKS + " ticks: " + encoder.writeJson(0) + " caracteres, "
+                + encoder.writeBinary() + " bytes");
+    }
+
+    @Benchmark
+    public String serialize() {
+        encoder.keyframe(current, null, false);
+        return encoder.json();
+    }
+
+    @Benchmark
+    public String captureAndSerialize() {
+        encoder.keyframe(room.captureSnapshot(), null, false);
+        return encoder.json();
+    }
+
+    @Benchmark
+    public int writeKeyframeJson() {
+        encoder.keyframe(current, null, true);
+        return encoder.writeJson(0);
+    }
+
+    @Benchmark
+    public int writeKeyframeBinary() {
+        encoder.keyframe(current, null, true);
+        return encoder.writeBinary();
+    }
+
+    @Benchmark
+    public int writeDeltaJson() {
+        encoder.delta(current, base, null, null);
+        return encoder.writeJson(0);
+    }
+
+    @Benchmark
+    public int writeDeltaBinary() {
+        encoder.delta(current, base, null, null);
+        return encoder.writeBinary();
+    }
+
+    @Benchmark
+    public ByteBuffer deltaBinary() {
+        encoder.delta(current, base, null, null);
+        return encoder.binary();
+    }
+}
@@ -0,0 +1,62 @@
+package org.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lógica de sala fuera de la física de jugadores:
+ *   initializePlatforms / initializeKey: escaneo del mapa al empezar o reiniciar una partida
+ *   platformLogic: conteo de jugadores sobre cada plataforma y decisión de moverla, por tick
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoomLogicBenchmark {
+
+    @Param({"facil:4", "practica:4", "generado:32", "generado:100"})
+    public String scenario;
+
+    private GameRoom room;
+
+    @Setup
+    public void setup() {
+        GameWebSocketServer server = new GameWebSocketServer(0);
+        BenchmarkRoom benchmarkRoom = BenchmarkRoom.create(scenario);
+        benchmarkRoom.settle(server, 1000);
+        room = benchmarkRoom.room;
+        room.indexPlayers();
+        room.indexPlatforms();
+    }
+
+    @Benchmark
+    public Platform[] initializePlatforms() {
+        room.initializePlatforms();
+        return room.platformSlots;
+    }
+
+    @Benchmark
+    public Key initializeKey() {
+        room.initializeKey();
+        return room.key;
+    }
+
+    @Benchmark
+    public Platform[] platformLogic() {
+        room.updatePlatformLogic();
+        return room.platformSlots;
+    }
+}
@@ -0,0 +1,54 @@
+package org.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Física de un tick (lo que hace updateGame antes de enviar) sobre los niveles reales y
+ * sobre niveles generados con más jugadores y plataformas. Los jugadores caminan, saltan y
+ * se cruzan; ver BenchmarkRoom.
+ *
+ * Las plataformas avanzan con el SimClock de la sala (un paso fijo por simulate), así que en
+ * los niveles generados se mueven y arrastran jugadores igual que a 60 Hz aunque el benchmark
+ * simule mucho más rápido que el tiempo real.
+ *
+ * Ejecutar desde benchmarks/ (los mapas se leen de ../maps).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulationBenchmark {
+
+    @Param({"facil:2", "facil:4", "practica:4", "generado:32", "generado:100"})
+    public String scenario;
+
+    private GameWebSocketServer server;
+    private BenchmarkRoom room;
+
+    @Setup
+    public void setup() {
+        server = new GameWebSocketServer(0);
+        room = BenchmarkRoom.create(scenario);
+        room.settle(server, 1200);
+    }
+
+    @Benchmark
+    public boolean simulateTick() {
+        room.nextInput();
+        return server.simulate(room.room);
+    }
+}
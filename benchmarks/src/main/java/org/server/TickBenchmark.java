@@ -0,0 +1,75 @@
+package org.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de simular un tick según la cantidad de jugadores en la sala. Los jugadores caminan
+ * de ida y vuelta sobre un piso plano, chocando con sus vecinos, así que el tiempo lo dominan
+ * las colisiones entre entidades. Debe crecer de forma lineal con la cantidad de jugadores.
+ *
+ * Ejecutar desde benchmarks/: sin carpeta maps el servidor no crea salas ni hilos de tick.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickBenchmark {
+
+    @Param({"2", "8", "32", "64", "100"})
+    public int players;
+
+    private GameWebSocketServer server;
+    private GameRoom room;
+    private Player[] slots;
+    private int tick;
+
+    @Setup
+    public void setup() {
+        server = new GameWebSocketServer(0);
+
+        // Piso sólido a lo ancho, dos tiles de espacio por jugador
+        int columns = Math.max(40, players * 2 + 10);
+        int[][] world = new int[15][columns];
+        for (int x = 0; x < columns; x++) {
+            world[14][x] = 3;
+        }
+
+        room = new GameRoom("bench", "bench", 1, world, world);
+        room.loadGameWorld();
+        room.initializePlatforms();
+        for (int i = 0; i < players; i++) {
+            Player player = new Player("jugador" + i, "jugador" + i);
+            player.x = 20 + i * 2 * GameWebSocketServer.SIZE_TILE;
+            player.y = 13 * GameWebSocketServer.SIZE_TILE - player.height;
+            player.moveDirection = i % 2 == 0 ? 1 : -1;
+            room.addPlayer(player);
+        }
+        room.runCommands(); // los jugadores entran a la simulación
+        slots = room.playerSlots;
+    }
+
+    @Benchmark
+    public boolean simulateTick() {
+        // Cambiar de dirección cada 40 ticks para que se crucen con sus vecinos
+        if (++tick % 40 == 0) {
+            for (Player player : slots) {
+                player.moveDirection = -player.moveDirection;
+            }
+        }
+        return server.simulate(room);
+    }
+}
@@ -0,0 +1,161 @@
+package org.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shared.BinaryProtocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara JSON contra el protocolo binario para un gameUpdate completo (keyframe),
+ * un gameUpdate delta y el input "move". Los bytes por tick se imprimen en el setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireProtocolBenchmark {
+
+    @Param({"2", "8", "32"})
+    public int players;
+
+    private final Gson gson = new Gson();
+
+    private final GameUpdateEncoder encoder = new GameUpdateEncoder();
+    private RoomSnapshot base;
+    private RoomSnapshot current;
+    private String keyframeJson;
+    private String deltaJson;
+    private ByteBuffer keyframeBinary;
+    private ByteBuffer deltaBinary;
+    private ByteBuffer moveBinary;
+
+    @Setup
+    public void setup() {
+        int[][] world = new int[20][50];
+        GameRoom room = new GameRoom("bench", "bench", players, world, world);
+        for (int i = 0; i < players; i++) {
+            Player player = new Player(UUID.randomUUID().toString(), "jugador" + i);
+            player.x = 20 + i * 40;
+            room.addPlayer(player);
+        }
+        room.runCommands(); // los jugadores entran a la simulación
+        Platform platform = new Platform("platform_10_5", 240, 480, 32);
+        room.platforms.put(platform.id, platform);
+        room.platformSlots = new Platform[] { platform };
+        room.key = new Key(600, 300);
+
+        base = room.captureSnapshot();
+
+        // Tick típico: uno de cada cuatro jugadores se mueve, la llave flota
+        int index = 0;
+        for (Player player : room.players.values()) {
+            if (index++ % 4 == 0) {
+                player.x += 4.5f;
+                player.direction = "right";
+            }
+        }
+        room.key.floatOffset = 1.5f;
+        current = room.captureSnapshot();
+
+        keyframeJson = encodeKeyframeJson();
+        deltaJson = encodeDeltaJson();
+        keyframeBinary = encodeKeyframeBinary();
+        deltaBinary = encodeDeltaBinary();
+        moveBinary = BinaryProtocol.encodeMove("left");
+
+        System.out.println();
+        System.out.println("[bytes/tick] jugadores=" + players +
+                " keyframe json=" + keyframeJson.getBytes(StandardCharsets.UTF_8).length +
+                " binario=" + keyframeBinary.remaining() +
+                " | delta json=" + deltaJson.getBytes(StandardCharsets.UTF_8).length +
+                " binario=" + deltaBinary.remaining() +
+                " | move json=" + encodeJson("move", Map.of("direction", "left")).length() +
+                " binario=" + moveBinary.remaining());
+    }
+
+    // Mismo sobre que GameWebSocketServer.createMessage (el de los mensajes que no son gameUpdate)
+    private String encodeJson(String type, Map<String, ?> data) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", type);
+        message.put("data", data);
+        message.put("timestamp", System.currentTimeMillis());
+        return gson.toJson(message);
+    }
+
+    @Benchmark
+    public String encodeKeyframeJson() {
+        encoder.keyframe(current, null, true);
+        return encoder.json();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeKeyframeBinary() {
+        encoder.keyframe(current, null, true);
+        return encoder.binary();
+    }
+
+    @Benchmark
+    public String encodeDeltaJson() {
+        encoder.delta(current, base, null, null);
+        return encoder.json();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeDeltaBinary() {
+        encoder.delta(current, base, null, null);
+        return encoder.binary();
+    }
+
+    @Benchmark
+    public JsonObject decodeKeyframeJson() {
+        return JsonParser.parseString(keyframeJson).getAsJsonObject();
+    }
+
+    @Benchmark
+    public JsonObject decodeKeyframeBinary() {
+        return BinaryProtocol.decodeServerMessage(keyframeBinary.duplicate());
+    }
+
+    @Benchmark
+    public JsonObject decodeDeltaJson() {
+        return JsonParser.parseString(deltaJson).getAsJsonObject();
+    }
+
+    @Benchmark
+    public JsonObject decodeDeltaBinary() {
+        return BinaryProtocol.decodeServerMessage(deltaBinary.duplicate());
+    }
+
+    @Benchmark
+    public String decodeMoveJson() {
+        JsonObject json = JsonParser.parseString("{\"type\":\"move\",\"data\":{\"direction\":\"left\"}}").getAsJsonObject();
+        return json.getAsJsonObject("data").get("direction").getAsString();
+    }
+
+    @Benchmark
+    public String decodeMoveBinary() {
+        ByteBuffer move = moveBinary.duplicate();
+        move.get();
+        return BinaryProtocol.readDirection(move);
+    }
+}
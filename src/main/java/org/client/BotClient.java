@@ -0,0 +1,188 @@
+package org.client;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cliente sin GUI para LoadGenerator: se autentica, entra a una sala y manda move/jump a la
+ * tasa configurada. Mide el intervalo entre gameUpdates y cuánto tarda en verse reflejado
+ * un move (eco): desde que se envía hasta el primer estado en que el jugador propio se movió
+ * en esa dirección.
+ */
+class BotClient extends GameWebSocketClient {
+    private static final String[] MOVE_PATTERN = {"right", "stop", "left", "stop"};
+    private static final long ECHO_TIMEOUT_NANOS = 1_000_000_000L;
+
+    private final String botName;
+    private final int botIndex;
+    private final LoadGenerator.Config config;
+    private final LoadGenerator.Stats stats;
+
+    private final long moveIntervalNanos;
+    private final long jumpIntervalNanos;
+    private long nextMoveAt;
+    private long nextJumpAt;
+    private int movePatternIndex;
+
+    private volatile boolean opened = false;
+    private volatile boolean inRoom = false;
+    private long lastUpdateAt = 0;
+
+    // Último x propio conocido (lo escribe el hilo de WebSocket, lo lee el de inputs)
+    private volatile float ownX = Float.NaN;
+
+    // Move esperando eco: dirección (-1/1), cuándo se envió y desde qué x
+    private int pendingDirection = 0;
+    private long pendingSentAt;
+    private float pendingFromX;
+
+    BotClient(URI serverUri, int botIndex, LoadGenerator.Config config, LoadGenerator.Stats stats) {
+        super(serverUri, config.compression);
+        this.botIndex = botIndex;
+        this.botName = config.usernamePrefix + botIndex;
+        this.config = config;
+        this.stats = stats;
+        this.moveIntervalNanos = config.moveRate > 0 ? (long) (1_000_000_000L / config.moveRate) : 0;
+        this.jumpIntervalNanos = config.jumpRate > 0 ? (long) (1_000_000_000L / config.jumpRate) : 0;
+
+        // Fase aleatoria para que los bots no manden todos en el mismo instante
+        long now = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.nextMoveAt = now + (moveIntervalNanos > 0 ? random.nextLong(moveIntervalNanos) : 0);
+        this.nextJumpAt = now + (jumpIntervalNanos > 0 ? random.nextLong(jumpIntervalNanos) : 0);
+
+        // Sin ping periódico: evita un hilo más por conexión
+        setConnectionLostTimeout(0);
+    }
+
+    @Override
+    public void onOpen(ServerHandshake handshakedata) {
+        super.onOpen(handshakedata);
+        opened = true;
+        stats.connected.increment();
+        authenticate(botName, config.password, config.deltaSnapshots, config.binary, config.areaOfInterest);
+    }
+
+    @Override
+    public void onMessage(String message) {
+        stats.bytes.add(message.length());
+        super.onMessage(message);
+    }
+
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        stats.bytes.add(bytes.remaining());
+        super.onMessage(bytes);
+    }
+
+    @Override
+    public void onClose(int code, String reason, boolean remote) {
+        super.onClose(code, reason, remote);
+        if (inRoom) {
+            inRoom = false;
+            stats.inRoom.decrement();
+        }
+        if (opened) {
+            stats.disconnected.increment();
+        } else {
+            stats.errors.increment(); // no pudo conectarse
+        }
+    }
+
+    @Override
+    protected void onServerMessage(String type, JsonObject data) {
+        stats.messages.increment();
+        switch (type) {
+            case "authSuccess":
+                stats.authOk.increment();
+                joinRoom(pickRoom(data));
+                break;
+            case "authFailed":
+                stats.authFailed.increment();
+                close();
+                break;
+            case "roomJoined":
+                if (!inRoom) {
+                    inRoom = true;
+                    stats.inRoom.increment();
+                }
+                break;
+            case "gameUpdate":
+                onGameUpdate();
+                break;
+            case "error":
+                stats.errors.increment();
+                break;
+        }
+    }
+
+    private String pickRoom(JsonObject authData) {
+        if (config.room != null) {
+            return config.room;
+        }
+        // Repartir los bots entre las salas que anunció el servidor
+        JsonArray rooms = authData.getAsJsonArray("rooms");
+        return rooms.get(botIndex % rooms.size()).getAsJsonObject().get("id").getAsString();
+    }
+
+    private void onGameUpdate() {
+        long now = System.nanoTime();
+        stats.gameUpdates.increment();
+        if (lastUpdateAt != 0) {
+            stats.recordInterval(now - lastUpdateAt);
+        }
+        lastUpdateAt = now;
+
+        PlayerData own = getPlayers().get(getUserId());
+        if (own == null) return;
+        ownX = own.x;
+
+        synchronized (this) {
+            if (pendingDirection == 0) return;
+            if ((own.x - pendingFromX) * pendingDirection > 0) {
+                stats.recordEcho(now - pendingSentAt);
+                pendingDirection = 0;
+            } else if (now - pendingSentAt > ECHO_TIMEOUT_NANOS) {
+                // Bloqueado por una pared u otro jugador: no cuenta como latencia
+                stats.echoTimeouts.increment();
+                pendingDirection = 0;
+            }
+        }
+    }
+
+    /**
+     * Envía los inputs que correspondan a este instante. Lo llama el hilo de inputs de LoadGenerator.
+     */
+    void tick(long now) {
+        if (!inRoom || !isOpen()) return;
+
+        if (moveIntervalNanos > 0 && now >= nextMoveAt) {
+            nextMoveAt = Math.max(nextMoveAt + moveIntervalNanos, now); // sin ráfagas si se atrasó
+            String direction = MOVE_PATTERN[movePatternIndex++ % MOVE_PATTERN.length];
+            int sign = direction.equals("right") ? 1 : (direction.equals("left") ? -1 : 0);
+            float fromX = ownX;
+            if (sign != 0 && !Float.isNaN(fromX)) {
+                synchronized (this) {
+                    if (pendingDirection == 0) {
+                        pendingDirection = sign;
+                        pendingSentAt = System.nanoTime();
+                        pendingFromX = fromX;
+                    }
+                }
+            }
+            move(direction);
+            stats.inputs.increment();
+        }
+
+        if (jumpIntervalNanos > 0 && now >= nextJumpAt) {
+            nextJumpAt = Math.max(nextJumpAt + jumpIntervalNanos, now);
+            jump();
+            stats.inputs.increment();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.client;
+
+import org.shared.PlayerPhysics;
+
+/**
+ * Predicción del jugador local. Cada frame de input se simula acá en cuanto se presiona la
+ * tecla, con las mismas constantes que el servidor (PlayerPhysics), y se guarda hasta que el
+ * servidor confirma haberlo simulado (inputSeq en el snapshot).
+ *
+ * Al llegar un snapshot, el estado confirmado del jugador reemplaza al predicho y se vuelven
+ * a simular los frames que el servidor todavía no procesó (reconciliación). Si la predicción
+ * acertó, el jugador no se mueve; si no (otro jugador lo empujó, una plataforma se movió),
+ * se corrige sin esperar un viaje de ida y vuelta por cada tecla.
+ *
+ * Colisiona con los tiles sólidos del mapa y con las plataformas y jugadores del último
+ * snapshot; lo demás (llave, meta, caídas) lo decide solo el servidor.
+ */
+final class ClientPrediction {
+    private static final int CAPACITY = 128;
+
+    private int[][] world = new int[0][0];
+    private boolean[] solid = new boolean[0];
+
+    // Estado predicho del jugador local
+    private float x;
+    private float y;
+    private float velocityY;
+    private boolean onGround;
+    // Sin estado confirmado del servidor no hay desde dónde predecir
+    private boolean active = false;
+
+    // Frames no confirmados: del nextSeq - pendingCount al nextSeq - 1
+    private final int[] pending = new int[CAPACITY];
+    private int nextSeq = 1;
+    private int pendingCount = 0;
+
+    // Obstáculos del último snapshot como (x, y, ancho, alto) seguidos; en plataformas, además, si se mueve
+    private float[] players = new float[0];
+    private int playerCount = 0;
+    private float[] platforms = new float[0];
+    private boolean[] platformMoving = new boolean[0];
+    private int platformCount = 0;
+
+    synchronized void setWorld(int[][] world, int[] solidIds) {
+        this.world = world;
+        int max = 0;
+        for (int id : solidIds) {
+            max = Math.max(max, id);
+        }
+        boolean[] solid = new boolean[max + 1];
+        for (int id : solidIds) {
+            if (id >= 0) solid[id] = true;
+        }
+        this.solid = solid;
+    }
+
+    /**
+     * Al entrar a otra sala se descarta lo predicho. La secuencia sigue: el servidor
+     * saltea el hueco.
+     */
+    synchronized void reset() {
+        active = false;
+        pendingCount = 0;
+        playerCount = 0;
+        platformCount = 0;
+    }
+
+    /**
+     * Registra el input de un tick, lo simula y devuelve su secuencia
+     */
+    synchronized int record(int input) {
+        if (pendingCount == CAPACITY) {
+            pendingCount--; // el más viejo ya no se reenvía
+        }
+        pending[nextSeq % CAPACITY] = input;
+        pendingCount++;
+        if (active) {
+            step(input);
+        }
+        return nextSeq++;
+    }
+
+    /**
+     * Copia los frames no confirmados más nuevos (hasta out.length) y devuelve cuántos son.
+     * El último es el de secuencia lastSeq().
+     */
+    synchronized int unacknowledged(int[] out) {
+        int count = Math.min(pendingCount, out.length);
+        int firstSeq = nextSeq - count;
+        for (int i = 0; i < count; i++) {
+            out[i] = pending[(firstSeq + i) % CAPACITY];
+        }
+        return count;
+    }
+
+    synchronized int lastSeq() {
+        return nextSeq - 1;
+    }
+
+    /**
+     * Pone la posición predicha en el jugador local; false si todavía no hay predicción
+     */
+    synchronized boolean copyPosition(GameWebSocketClient.PlayerData player) {
+        if (!active) return false;
+        player.x = x;
+        player.y = y;
+        return true;
+    }
+
+    /**
+     * Obstáculos del último snapshot, con los que se predice (sin el jugador local)
+     */
+    synchronized void setObstacles(float[] players, int playerCount, float[] platforms, boolean[] platformMoving, int platformCount) {
+        this.players = players;
+        this.playerCount = playerCount;
+        this.platforms = platforms;
+        this.platformMoving = platformMoving;
+        this.platformCount = platformCount;
+    }
+
+    /**
+     * Parte del estado que confirmó el servidor después de simular el frame inputSeq y vuelve
+     * a simular los frames posteriores
+     */
+    synchronized void reconcile(float x, float y, float velocityY, boolean onGround, int inputSeq) {
+        this.x = x;
+        this.y = y;
+        this.velocityY = velocityY;
+        this.onGround = onGround;
+        this.active = true;
+
+        int firstPending = nextSeq - pendingCount;
+        if (inputSeq >= firstPending) {
+            pendingCount = Math.max(0, nextSeq - 1 - inputSeq);
+        }
+        for (int seq = nextSeq - pendingCount; seq < nextSeq; seq++) {
+            step(pending[seq % CAPACITY]);
+        }
+    }
+
+    // Un paso de la física del servidor (GameWebSocketServer.simulate) para un solo jugador
+    private void step(int input) {
+        float width = PlayerPhysics.PLAYER_WIDTH;
+        float height = PlayerPhysics.PLAYER_HEIGHT;
+        int mapWidth = world.length > 0 ? world[0].length : 0;
+
+        if ((input & PlayerPhysics.INPUT_JUMP) != 0 && onGround) {
+            velocityY = PlayerPhysics.JUMP_FORCE;
+            onGround = false;
+        }
+
+        // Horizontal
+        float oldX = x;
+        x += PlayerPhysics.moveDirection(input) * PlayerPhysics.MOVE_SPEED;
+        if (collidesHorizontal(width, height) || overlapsObstacle(width, height)) {
+            x = oldX;
+        }
+        x = Math.max(0, Math.min(mapWidth * PlayerPhysics.SIZE_TILE - width, x));
+
+        // Vertical
+        velocityY = Math.min(velocityY + PlayerPhysics.GRAVITY, PlayerPhysics.MAX_FALL_SPEED);
+        y += velocityY;
+
+        if (velocityY > 0) {
+            float bottom = y + height;
+            float landing = Float.NaN;
+            for (int i = 0; i < playerCount && Float.isNaN(landing); i++) {
+                float top = players[i * 4 + 1];
+                if (overlapsX(players, i, 2) && bottom >= top - 5 && bottom <= top + 15) {
+                    landing = top;
+                }
+            }
+            for (int i = 0; i < platformCount && Float.isNaN(landing); i++) {
+                float top = platforms[i * 4 + 1];
+                if (overlapsX(platforms, i, 2) && bottom >= top && bottom <= top + 20) {
+                    landing = top;
+                }
+            }
+            if (Float.isNaN(landing) && collidesDown(width, height)) {
+                landing = ((int) bottom / PlayerPhysics.SIZE_TILE) * PlayerPhysics.SIZE_TILE;
+            }
+
+            if (!Float.isNaN(landing)) {
+                y = landing - height;
+                velocityY = 0;
+                onGround = true;
+            } else {
+                onGround = false;
+            }
+        } else if (velocityY < 0 && collidesUp(width)) {
+            y = ((int) y / PlayerPhysics.SIZE_TILE + 1) * PlayerPhysics.SIZE_TILE;
+            velocityY = 0;
+            onGround = false;
+        } else {
+            onGround = false;
+        }
+    }
+
+    private boolean overlapsX(float[] boxes, int i, float inset) {
+        return x + inset < boxes[i * 4] + boxes[i * 4 + 2] &&
+                x + PlayerPhysics.PLAYER_WIDTH - inset > boxes[i * 4];
+    }
+
+    private boolean overlaps(float[] boxes, int i, float width, float height) {
+        return x < boxes[i * 4] + boxes[i * 4 + 2] && x + width > boxes[i * 4] &&
+                y < boxes[i * 4 + 1] + boxes[i * 4 + 3] && y + height > boxes[i * 4 + 1];
+    }
+
+    private boolean overlapsObstacle(float width, float height) {
+        for (int i = 0; i < playerCount; i++) {
+            if (overlaps(players, i, width, height)) return true;
+        }
+        for (int i = 0; i < platformCount; i++) {
+            if (!overlaps(platforms, i, width, height)) continue;
+            // Encima de una plataforma en movimiento se puede caminar
+            float bottom = y + height;
+            float top = platforms[i * 4 + 1];
+            if (!(platformMoving[i] && bottom >= top - 10 && bottom <= top + 20)) return true;
+        }
+        return false;
+    }
+
+    private boolean collidesHorizontal(float width, float height) {
+        int topTile = (int) (y / PlayerPhysics.SIZE_TILE);
+        int bottomTile = (int) ((y + height - 1) / PlayerPhysics.SIZE_TILE);
+        int leftTile = (int) (x / PlayerPhysics.SIZE_TILE);
+        int rightTile = (int) ((x + width - 1) / PlayerPhysics.SIZE_TILE);
+        for (int ty = topTile; ty <= bottomTile; ty++) {
+            if (isSolid(leftTile, ty) || isSolid(rightTile, ty)) return true;
+        }
+        return false;
+    }
+
+    private boolean collidesDown(float width, float height) {
+        int bottomTile = (int) (y + height) / PlayerPhysics.SIZE_TILE;
+        int leftTile = (int) (x + 1) / PlayerPhysics.SIZE_TILE;
+        int rightTile = (int) ((x + width - 2) / PlayerPhysics.SIZE_TILE);
+        for (int tx = leftTile; tx <= rightTile; tx++) {
+            if (isSolid(tx, bottomTile)) return true;
+        }
+        return false;
+    }
+
+    private boolean collidesUp(float width) {
+        if (y < 0) return true;
+        int topTile = (int) (y / PlayerPhysics.SIZE_TILE);
+        int leftTile = (int) (x / PlayerPhysics.SIZE_TILE);
+        int rightTile = (int) ((x + width - 1) / PlayerPhysics.SIZE_TILE);
+        for (int tx = leftTile; tx <= rightTile; tx++) {
+            if (isSolid(tx, topTile)) return true;
+        }
+        return false;
+    }
+
+    private boolean isSolid(int tx, int ty) {
+        if (ty < 0 || ty >= world.length || tx < 0 || tx >= world[ty].length) return false;
+        int id = world[ty][tx];
+        return id >= 0 && id < solid.length && solid[id];
+    }
+}
@@ -5,30 +5,87 @@ import org.java_websocket.handshake.ServerHandshake;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import org.shared.BinaryProtocol;
+import org.shared.Log;
+import org.shared.PlayerPhysics;
+import org.shared.WebSocketCompression;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class GameWebSocketClient extends WebSocketClient {
+    private static final Log LOG = Log.get("Cliente");
+    // Llega un gameUpdate por tick: DEBUG y muestreado
+    private static final Log MESSAGES = Log.get("Mensajes", 60);
 
     private final Gson gson = new Gson();
     private GameClientGUI gui;
     private String userId;
     private String username;
     private String currentRoom;
-    private Map<String, PlayerData> players = new HashMap<>();
+    private Map<String, PlayerData> players = new ConcurrentHashMap<>();
+    // true si el servidor aceptó el protocolo binario para los mensajes de tiempo real
+    private volatile boolean binaryProtocol = false;
+
+    // Estados reconstruidos por secuencia: el servidor manda deltas sobre el último que confirmamos
+    private static final int SNAPSHOT_HISTORY = 64;
+    private final Map<Integer, WorldState> snapshotHistory = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, WorldState> eldest) {
+            return size() > SNAPSHOT_HISTORY;
+        }
+    };
+    // Keyframe pedido y todavía no recibido (0 si no hay): mientras tanto los deltas sin
+    // baseline se descartan sin volver a pedirlo, salvo que pase KEYFRAME_RETRY_NANOS
+    private static final long KEYFRAME_RETRY_NANOS = 500_000_000L;
+    private long keyframeRequestedAt = 0;
+
+    // Estados recibidos para el render interpolado, y el mapa de la sala (roomJoined/startGame)
+    private final InterpolationBuffer renderBuffer = new InterpolationBuffer();
+    private volatile int[][] world;
+    private volatile int[] solidTiles;
+
+    // Inputs secuenciados y predicción del jugador local (solo si se llamó a startInputLoop)
+    private static final int INPUT_SEND_EVERY_TICKS = 3;
+    private final ClientPrediction prediction = new ClientPrediction();
+    private final int[] inputFrames = new int[PlayerPhysics.MAX_INPUT_FRAMES];
+    private ScheduledExecutorService inputLoop;
+    private volatile int heldInput = 0;
+    private volatile boolean jumpRequested = false;
+    private int ticksSinceSend = 0;
 
     public GameWebSocketClient(URI serverUri) {
-        super(serverUri);
+        this(serverUri, WebSocketCompression.fromEnv());
+    }
+
+    /**
+     * Ofrece permessage-deflate según compression; si el servidor no lo acepta, sin compresión
+     */
+    public GameWebSocketClient(URI serverUri, WebSocketCompression compression) {
+        super(serverUri, compression.clientDraft());
+    }
+
+    /**
+     * Dirección del servidor: SERVER_URL o ws://localhost:8887
+     */
+    public static String serverUrl() {
+        String url = System.getenv("SERVER_URL");
+        return url != null ? url : "ws://localhost:8887";
     }
 
     @Override
     public void onOpen(ServerHandshake handshakedata) {
-        System.out.println("Conectado al servidor");
+        LOG.info("Conectado al servidor");
         if (gui != null) {
             gui.updateStatus("Conectado al servidor", Color.GREEN);
         }
@@ -37,46 +94,77 @@ public class GameWebSocketClient extends WebSocketClient {
     @Override
     public void onMessage(String message) {
         try {
-            System.out.println("Mensaje del servidor: "+message);
-            JsonObject json = JsonParser.parseString(message).getAsJsonObject();
-            String type = json.get("type").getAsString();
-            JsonObject data = json.has("data") ? json.getAsJsonObject("data") : new JsonObject();
-
-            switch (type) {
-                case "authSuccess":
-                    handleAuthSuccess(data);
-                    break;
-                case "authFailed":
-                    handleAuthFailed(data);
-                    break;
-                case "roomJoined":
-                    handleRoomJoined(data);
-                    break;
-                case "playerJoined":
-                    handlePlayerJoined(data);
-                    break;
-                case "playerLeft":
-                    handlePlayerLeft(data);
-                    break;
-                case "gameUpdate":
-                    handleGameUpdate(data);
-                    break;
-                case "chat":
-                    handleChat(data);
-                    break;
-                case "error":
-                    handleError(data);
-                    break;
+            if (MESSAGES.isDebugEnabled()) {
+                MESSAGES.debug("Mensaje del servidor: " + message);
             }
+            handleMessage(JsonParser.parseString(message).getAsJsonObject());
         } catch (Exception e) {
-            System.err.println("Error procesando mensaje: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error procesando mensaje: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        try {
+            // Los frames binarios se decodifican a la misma estructura que el JSON
+            handleMessage(BinaryProtocol.decodeServerMessage(bytes));
+        } catch (Exception e) {
+            LOG.error("Error procesando mensaje binario: " + e.getMessage(), e);
+        }
+    }
+
+    private void handleMessage(JsonObject json) {
+        String type = json.get("type").getAsString();
+        JsonObject data = json.has("data") ? json.getAsJsonObject("data") : new JsonObject();
+
+        switch (type) {
+            case "authSuccess":
+                handleAuthSuccess(data);
+                break;
+            case "authFailed":
+                handleAuthFailed(data);
+                break;
+            case "roomJoined":
+                handleRoomJoined(data);
+                break;
+            case "playerJoined":
+                handlePlayerJoined(data);
+                break;
+            case "playerLeft":
+                handlePlayerLeft(data);
+                break;
+            case "gameUpdate":
+                handleGameUpdate(data);
+                break;
+            case "startGame":
+            case "mapReloaded":
+                handleWorld(data);
+                break;
+            case "chat":
+                handleChat(data);
+                break;
+            case "error":
+                handleError(data);
+                break;
         }
+        onServerMessage(type, data);
+    }
+
+    /**
+     * Se llama después de procesar cada mensaje del servidor (ya aplicado sobre getPlayers()).
+     * Pensado para clientes sin GUI, como los bots de LoadGenerator.
+     */
+    protected void onServerMessage(String type, JsonObject data) {
     }
 
     @Override
     public void onClose(int code, String reason, boolean remote) {
-        System.out.println("Desconectado del servidor: " + reason);
+        LOG.info("Desconectado del servidor: " + reason);
+        synchronized (this) {
+            if (inputLoop != null) {
+                inputLoop.shutdownNow();
+            }
+        }
         if (gui != null) {
             gui.updateStatus("Desconectado: " + reason, Color.RED);
         }
@@ -84,15 +172,27 @@ public class GameWebSocketClient extends WebSocketClient {
 
     @Override
     public void onError(Exception ex) {
-        System.err.println("Error: " + ex.getMessage());
-        ex.printStackTrace();
+        LOG.error("Error: " + ex.getMessage(), ex);
     }
 
     // Métodos para enviar mensajes al servidor
     public void authenticate(String username, String password) {
-        Map<String, String> data = new HashMap<>();
+        authenticate(username, password, true, true);
+    }
+
+    public void authenticate(String username, String password, boolean deltaSnapshots, boolean binary) {
+        authenticate(username, password, deltaSnapshots, binary, false);
+    }
+
+    public void authenticate(String username, String password, boolean deltaSnapshots, boolean binary, boolean areaOfInterest) {
+        Map<String, Object> data = new HashMap<>();
         data.put("username", username);
         data.put("password", password);
+        data.put("deltaSnapshots", deltaSnapshots);
+        data.put("areaOfInterest", areaOfInterest);
+        if (binary) {
+            data.put("protocol", BinaryProtocol.NAME);
+        }
         sendMessage("auth", data);
     }
 
@@ -103,15 +203,91 @@ public class GameWebSocketClient extends WebSocketClient {
     }
 
     public void move(String direction) {
+        if (binaryProtocol) {
+            send(BinaryProtocol.encodeMove(direction));
+            return;
+        }
         Map<String, String> data = new HashMap<>();
         data.put("direction", direction);
         sendMessage("move", data);
     }
 
     public void jump() {
+        if (binaryProtocol) {
+            send(BinaryProtocol.encodeJump());
+            return;
+        }
         sendMessage("jump", new HashMap<>());
     }
 
+    /**
+     * Teclas de dirección presionadas; se toman en cada tick del loop de input
+     */
+    public void setHeldInput(boolean left, boolean right) {
+        heldInput = (left ? PlayerPhysics.INPUT_LEFT : 0) | (right ? PlayerPhysics.INPUT_RIGHT : 0);
+    }
+
+    /**
+     * Salta en el próximo tick del loop de input
+     */
+    public void requestJump() {
+        jumpRequested = true;
+    }
+
+    /**
+     * Empieza a mandar inputs secuenciados en lugar de move/jump: cada tick (a la frecuencia del
+     * servidor) se toma un frame de input, se predice el movimiento local y cada
+     * INPUT_SEND_EVERY_TICKS se envían todos los frames que el servidor no confirmó.
+     */
+    public synchronized void startInputLoop() {
+        if (inputLoop != null) return;
+        inputLoop = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "input-loop");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMicros = 1_000_000L / PlayerPhysics.TICK_RATE;
+        inputLoop.scheduleAtFixedRate(this::inputTick, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    private void inputTick() {
+        try {
+            if (currentRoom == null || !isOpen()) return;
+
+            int input = heldInput;
+            if (jumpRequested) {
+                jumpRequested = false;
+                input |= PlayerPhysics.INPUT_JUMP;
+            }
+            prediction.record(input);
+            PlayerData self = players.get(userId);
+            if (self != null) {
+                prediction.copyPosition(self);
+            }
+
+            if (++ticksSinceSend >= INPUT_SEND_EVERY_TICKS) {
+                ticksSinceSend = 0;
+                sendInputs();
+            }
+        } catch (Exception e) {
+            LOG.error("Error en el loop de input: " + e.getMessage(), e);
+        }
+    }
+
+    private void sendInputs() {
+        int lastSeq = prediction.lastSeq();
+        int count = prediction.unacknowledged(inputFrames);
+        if (count == 0) return;
+        if (binaryProtocol) {
+            send(BinaryProtocol.encodeInput(lastSeq, inputFrames, count));
+            return;
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("seq", lastSeq);
+        data.put("inputs", Arrays.copyOf(inputFrames, count));
+        sendMessage("input", data);
+    }
+
     public void sendChat(String message) {
         Map<String, String> data = new HashMap<>();
         data.put("message", message);
@@ -131,6 +307,7 @@ public class GameWebSocketClient extends WebSocketClient {
     private void handleAuthSuccess(JsonObject data) {
         this.userId = data.get("userId").getAsString();
         this.username = data.get("username").getAsString();
+        this.binaryProtocol = data.has("protocol") && BinaryProtocol.NAME.equals(data.get("protocol").getAsString());
 
         List<RoomInfo> rooms = new ArrayList<>();
         data.getAsJsonArray("rooms").forEach(room -> {
@@ -159,6 +336,11 @@ public class GameWebSocketClient extends WebSocketClient {
         String roomName = data.get("roomName").getAsString();
 
         players.clear();
+        snapshotHistory.clear();
+        keyframeRequestedAt = 0;
+        renderBuffer.clear();
+        prediction.reset();
+        handleWorld(data);
         data.getAsJsonArray("players").forEach(p -> {
             JsonObject playerObj = p.getAsJsonObject();
             PlayerData player = new PlayerData(
@@ -205,9 +387,28 @@ public class GameWebSocketClient extends WebSocketClient {
         }
     }
 
+    /**
+     * Mapa de la sala (roomJoined y startGame), para la predicción
+     */
+    private void handleWorld(JsonObject data) {
+        if (!data.has("world") || !data.has("solidTiles")) return;
+        int[][] world = gson.fromJson(data.get("world"), int[][].class);
+        int[] solidTiles = gson.fromJson(data.get("solidTiles"), int[].class);
+        prediction.setWorld(world, solidTiles);
+        this.solidTiles = solidTiles;
+        this.world = world;
+    }
+
     private void handleGameUpdate(JsonObject data) {
+        if (data.has("seq")) {
+            handleSnapshot(data);
+            return;
+        }
+
+        List<JsonObject> playerObjs = new ArrayList<>();
         data.getAsJsonArray("players").forEach(p -> {
             JsonObject playerObj = p.getAsJsonObject();
+            playerObjs.add(playerObj);
             String id = playerObj.get("id").getAsString();
             PlayerData player = players.get(id);
             if (player != null) {
@@ -215,12 +416,146 @@ public class GameWebSocketClient extends WebSocketClient {
                 player.y = playerObj.get("y").getAsFloat();
             }
         });
+        List<JsonObject> platformObjs = new ArrayList<>();
+        if (data.has("platforms")) {
+            data.getAsJsonArray("platforms").forEach(p -> platformObjs.add(p.getAsJsonObject()));
+        }
+        reconcile(playerObjs, platformObjs);
+        renderBuffer.push(playerObjs, platformObjs);
+    }
 
-        if (gui != null) {
-            gui.repaintGame();
+    /**
+     * Aplica un keyframe o un delta sobre el baseline indicado por el servidor y confirma la secuencia
+     */
+    private void handleSnapshot(JsonObject data) {
+        int seq = data.get("seq").getAsInt();
+
+        WorldState state;
+        if (data.has("keyframe")) {
+            state = new WorldState();
+            keyframeRequestedAt = 0;
+        } else {
+            WorldState base = snapshotHistory.get(data.get("base").getAsInt());
+            if (base == null) {
+                // Perdimos el baseline: pedir un estado completo (una vez, no por cada delta)
+                long now = System.nanoTime();
+                if (keyframeRequestedAt == 0 || now - keyframeRequestedAt >= KEYFRAME_RETRY_NANOS) {
+                    keyframeRequestedAt = now;
+                    sendMessage("requestKeyframe", null);
+                }
+                return;
+            }
+            state = base.copy();
+        }
+
+        applyEntityDelta(state.players, data, "players", "removedPlayers");
+        applyEntityDelta(state.platforms, data, "platforms", "removedPlatforms");
+        if (data.has("keyRemoved")) {
+            state.key = null;
+        }
+        if (data.has("key")) {
+            if (state.key == null) {
+                state.key = new JsonObject();
+            }
+            mergeFields(state.key, data.getAsJsonObject("key"));
+        }
+        if (data.has("requiresKey")) {
+            state.requiresKey = data.get("requiresKey").getAsBoolean();
+        }
+        if (data.has("doorOpen")) {
+            state.doorOpen = data.get("doorOpen").getAsBoolean();
+        }
+
+        snapshotHistory.put(seq, state);
+        if (binaryProtocol) {
+            send(BinaryProtocol.encodeSnapshotAck(seq));
+        } else {
+            sendMessage("snapshotAck", Map.of("seq", seq));
+        }
+
+        state.players.forEach((id, playerObj) -> {
+            PlayerData player = players.get(id);
+            if (player != null) {
+                player.x = playerObj.get("x").getAsFloat();
+                player.y = playerObj.get("y").getAsFloat();
+            }
+        });
+        reconcile(state.players.values(), state.platforms.values());
+        // Con área de interés, los jugadores fuera del área no están en el estado y no se dibujan
+        renderBuffer.push(state.players.values(), state.platforms.values());
+    }
+
+    /**
+     * Corrige la predicción con el estado confirmado del jugador local y toma el resto de los
+     * jugadores y las plataformas como obstáculos
+     */
+    private void reconcile(Collection<JsonObject> playerObjs, Collection<JsonObject> platformObjs) {
+        if (inputLoop == null) return;
+
+        JsonObject self = null;
+        float[] others = new float[playerObjs.size() * 4];
+        int otherCount = 0;
+        for (JsonObject playerObj : playerObjs) {
+            if (playerObj.get("id").getAsString().equals(userId)) {
+                self = playerObj;
+            } else if (!playerObj.has("isVisible") || playerObj.get("isVisible").getAsBoolean()) {
+                others[otherCount * 4] = playerObj.get("x").getAsFloat();
+                others[otherCount * 4 + 1] = playerObj.get("y").getAsFloat();
+                others[otherCount * 4 + 2] = PlayerPhysics.PLAYER_WIDTH;
+                others[otherCount * 4 + 3] = PlayerPhysics.PLAYER_HEIGHT;
+                otherCount++;
+            }
+        }
+        float[] platforms = new float[platformObjs.size() * 4];
+        boolean[] platformMoving = new boolean[platformObjs.size()];
+        int platformCount = 0;
+        for (JsonObject platformObj : platformObjs) {
+            platforms[platformCount * 4] = platformObj.get("x").getAsFloat();
+            platforms[platformCount * 4 + 1] = platformObj.get("y").getAsFloat();
+            platforms[platformCount * 4 + 2] = platformObj.get("width").getAsFloat();
+            platforms[platformCount * 4 + 3] = platformObj.get("height").getAsFloat();
+            platformMoving[platformCount] = platformObj.has("isMoving") && platformObj.get("isMoving").getAsBoolean();
+            platformCount++;
+        }
+        prediction.setObstacles(others, otherCount, platforms, platformMoving, platformCount);
+
+        if (self == null || !self.has("inputSeq")) return;
+        prediction.reconcile(
+                self.get("x").getAsFloat(),
+                self.get("y").getAsFloat(),
+                self.has("velocityY") ? self.get("velocityY").getAsFloat() : 0,
+                self.has("isOnGround") && self.get("isOnGround").getAsBoolean(),
+                self.get("inputSeq").getAsInt()
+        );
+        PlayerData player = players.get(userId);
+        if (player != null) {
+            prediction.copyPosition(player);
         }
     }
 
+    private static void applyEntityDelta(Map<String, JsonObject> entities, JsonObject data, String field, String removedField) {
+        if (data.has(removedField)) {
+            data.getAsJsonArray(removedField).forEach(id -> entities.remove(id.getAsString()));
+        }
+        if (data.has(field)) {
+            data.getAsJsonArray(field).forEach(e -> {
+                JsonObject changes = e.getAsJsonObject();
+                JsonObject entity = entities.computeIfAbsent(changes.get("id").getAsString(), id -> new JsonObject());
+                mergeFields(entity, changes);
+            });
+        }
+    }
+
+    private static void mergeFields(JsonObject target, JsonObject changes) {
+        changes.entrySet().forEach(field -> {
+            if (field.getKey().equals("cleared")) {
+                field.getValue().getAsJsonArray().forEach(name -> target.remove(name.getAsString()));
+            } else {
+                target.add(field.getKey(), field.getValue());
+            }
+        });
+    }
+
     private void handleChat(JsonObject data) {
         String playerUsername = data.get("username").getAsString();
         String message = data.get("message").getAsString();
@@ -264,6 +599,25 @@ public class GameWebSocketClient extends WebSocketClient {
         }
     }
 
+    // Estado completo de la sala en una secuencia, tal como lo reconstruye el cliente
+    static class WorldState {
+        Map<String, JsonObject> players = new LinkedHashMap<>();
+        Map<String, JsonObject> platforms = new LinkedHashMap<>();
+        JsonObject key;
+        boolean requiresKey;
+        boolean doorOpen;
+
+        WorldState copy() {
+            WorldState copy = new WorldState();
+            players.forEach((id, obj) -> copy.players.put(id, obj.deepCopy()));
+            platforms.forEach((id, obj) -> copy.platforms.put(id, obj.deepCopy()));
+            copy.key = key != null ? key.deepCopy() : null;
+            copy.requiresKey = requiresKey;
+            copy.doorOpen = doorOpen;
+            return copy;
+        }
+    }
+
     static class RoomInfo {
         String id;
         String name;
@@ -300,6 +654,8 @@ public class GameWebSocketClient extends WebSocketClient {
         private JTextField chatInput;
         private JButton sendChatButton;
         private JLabel roomLabel;
+        private static final int RENDER_FPS = 60;
+        private javax.swing.Timer renderTimer;
 
         public GameClientGUI() {
             setTitle("Juego 2D Multijugador");
@@ -378,7 +734,7 @@ public class GameWebSocketClient extends WebSocketClient {
                 updateStatus("Conectando...", Color.YELLOW);
                 loginButton.setEnabled(false);
 
-                URI serverUri = new URI("ws://localhost:8887");
+                URI serverUri = new URI(serverUrl());
                 client = new GameWebSocketClient(serverUri);
                 client.setGUI(this);
                 client.connect();
@@ -389,14 +745,14 @@ public class GameWebSocketClient extends WebSocketClient {
                         Thread.sleep(1000);
                         client.authenticate(username, password);
                     } catch (InterruptedException ex) {
-                        ex.printStackTrace();
+                        LOG.warn("Autenticación interrumpida", ex);
                     }
                 }).start();
 
             } catch (Exception ex) {
                 updateStatus("Error de conexión: " + ex.getMessage(), Color.RED);
                 loginButton.setEnabled(true);
-                ex.printStackTrace();
+                LOG.error("Error de conexión", ex);
             }
         }
 
@@ -500,7 +856,9 @@ public class GameWebSocketClient extends WebSocketClient {
             sendChatButton.addActionListener(e -> sendChatMessage());
             chatInput.addActionListener(e -> sendChatMessage());
 
-            // Controles del teclado
+            // Controles del teclado: el loop de input los toma en cada tick y predice el movimiento
+            client.startInputLoop();
+            startRenderLoop();
             gameCanvas.addKeyListener(new KeyAdapter() {
                 private boolean leftPressed = false;
                 private boolean rightPressed = false;
@@ -510,24 +868,19 @@ public class GameWebSocketClient extends WebSocketClient {
                     switch (e.getKeyCode()) {
                         case KeyEvent.VK_LEFT:
                         case KeyEvent.VK_A:
-                            if (!leftPressed) {
-                                client.move("left");
-                                leftPressed = true;
-                            }
+                            leftPressed = true;
                             break;
                         case KeyEvent.VK_RIGHT:
                         case KeyEvent.VK_D:
-                            if (!rightPressed) {
-                                client.move("right");
-                                rightPressed = true;
-                            }
+                            rightPressed = true;
                             break;
                         case KeyEvent.VK_SPACE:
                         case KeyEvent.VK_UP:
                         case KeyEvent.VK_W:
-                            client.jump();
+                            client.requestJump();
                             break;
                     }
+                    client.setHeldInput(leftPressed, rightPressed);
                 }
 
                 @Override
@@ -536,14 +889,13 @@ public class GameWebSocketClient extends WebSocketClient {
                         case KeyEvent.VK_LEFT:
                         case KeyEvent.VK_A:
                             leftPressed = false;
-                            client.move("stop");
                             break;
                         case KeyEvent.VK_RIGHT:
                         case KeyEvent.VK_D:
                             rightPressed = false;
-                            client.move("stop");
                             break;
                     }
+                    client.setHeldInput(leftPressed, rightPressed);
                 }
             });
         }
@@ -570,21 +922,42 @@ public class GameWebSocketClient extends WebSocketClient {
             });
         }
 
-        public void repaintGame() {
-            if (gameCanvas != null) {
-                gameCanvas.repaint();
+        /**
+         * Redibuja a RENDER_FPS, sin importar cuándo lleguen los mensajes del servidor
+         */
+        private void startRenderLoop() {
+            if (renderTimer != null) {
+                renderTimer.stop();
             }
+            renderTimer = new javax.swing.Timer(1000 / RENDER_FPS, e -> gameCanvas.repaint());
+            renderTimer.start();
         }
     }
 
     // Canvas para dibujar el juego
     static class GameCanvas extends JPanel {
+        private static final Color SKY = new Color(135, 206, 235);
+        private static final Color TILE = new Color(139, 69, 19);
+        private static final Color TILE_EDGE = new Color(101, 50, 14);
+        private static final Color PLATFORM = new Color(120, 120, 120);
+        private static final Color LOCAL_PLAYER = new Color(76, 175, 80); // Verde
+        private static final Color REMOTE_PLAYER = new Color(244, 67, 54); // Rojo
+        private static final Font NAME_FONT = new Font("Arial", Font.BOLD, 12);
+        private static final Font HELP_FONT = new Font("Arial", Font.BOLD, 14);
+        private static final int SIZE_TILE = PlayerPhysics.SIZE_TILE;
+
         private GameWebSocketClient client;
-        private static final int PLAYER_SIZE = 30;
+
+        // Capa de tiles estática: se dibuja una vez por mapa y después solo se copia
+        private BufferedImage tileLayer;
+        private int[][] tileLayerWorld;
+
+        // Posición predicha del jugador local (solo la usa el hilo de Swing)
+        private final PlayerData localPlayer = new PlayerData("", "", 0, 0);
 
         public GameCanvas(GameWebSocketClient client) {
             this.client = client;
-            setBackground(new Color(135, 206, 235)); // Cielo azul
+            setBackground(SKY);
             setFocusable(true);
             setPreferredSize(new Dimension(800, 600));
         }
@@ -593,38 +966,98 @@ public class GameWebSocketClient extends WebSocketClient {
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
             Graphics2D g2d = (Graphics2D) g;
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-            // Dibujar suelo
-            g2d.setColor(new Color(139, 69, 19));
-            g2d.fillRect(0, 500, getWidth(), getHeight() - 500);
-
-            // Dibujar jugadores
-            Map<String, PlayerData> players = client.getPlayers();
+            // Los demás se dibujan un poco en el pasado, interpolados; el jugador local, donde lo predice
+            InterpolationBuffer.Frame frame = client.renderBuffer.sample(
+                    System.nanoTime() - InterpolationBuffer.DELAY_MS * 1_000_000L);
             String myUserId = client.getUserId();
-
-            for (PlayerData player : players.values()) {
-                // Color diferente para el jugador local
-                if (player.id.equals(myUserId)) {
-                    g2d.setColor(new Color(76, 175, 80)); // Verde
-                } else {
-                    g2d.setColor(new Color(244, 67, 54)); // Rojo
+            boolean predicted = client.prediction.copyPosition(localPlayer);
+            if (!predicted) {
+                for (int i = 0; i < frame.playerCount; i++) {
+                    if (frame.playerIds[i].equals(myUserId)) {
+                        localPlayer.x = frame.playerX[i];
+                        localPlayer.y = frame.playerY[i];
+                    }
                 }
+            }
+
+            int[][] world = client.world;
+            BufferedImage tiles = tileLayer(world, client.solidTiles);
 
-                // Dibujar jugador como rectángulo
-                g2d.fillRect((int)player.x, (int)player.y, PLAYER_SIZE, PLAYER_SIZE);
+            // Cámara centrada en el jugador local, sin salirse del mapa
+            int worldWidth = tiles != null ? tiles.getWidth() : getWidth();
+            int worldHeight = tiles != null ? tiles.getHeight() : getHeight();
+            int cameraX = clamp((int) localPlayer.x + (int) PlayerPhysics.PLAYER_WIDTH / 2 - getWidth() / 2, worldWidth - getWidth());
+            int cameraY = clamp((int) localPlayer.y + (int) PlayerPhysics.PLAYER_HEIGHT / 2 - getHeight() / 2, worldHeight - getHeight());
+
+            g2d.translate(-cameraX, -cameraY);
+            if (tiles != null) {
+                g2d.drawImage(tiles, 0, 0, null);
+            }
+
+            g2d.setColor(PLATFORM);
+            for (int i = 0; i < frame.platformCount; i++) {
+                g2d.fillRect((int) frame.platformX[i], (int) frame.platformY[i],
+                        (int) frame.platformWidth[i], (int) frame.platformHeight[i]);
+            }
+
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setFont(NAME_FONT);
+            for (int i = 0; i < frame.playerCount; i++) {
+                boolean local = frame.playerIds[i].equals(myUserId);
+                float x = local ? localPlayer.x : frame.playerX[i];
+                float y = local ? localPlayer.y : frame.playerY[i];
+
+                // Color diferente para el jugador local
+                g2d.setColor(local ? LOCAL_PLAYER : REMOTE_PLAYER);
+                g2d.fillRect((int) x, (int) y, (int) PlayerPhysics.PLAYER_WIDTH, (int) PlayerPhysics.PLAYER_HEIGHT);
 
                 // Dibujar nombre
                 g2d.setColor(Color.BLACK);
-                g2d.setFont(new Font("Arial", Font.BOLD, 12));
-                g2d.drawString(player.username, (int)player.x, (int)player.y - 5);
+                g2d.drawString(frame.usernames[i], (int) x, (int) y - 5);
             }
+            g2d.translate(cameraX, cameraY);
 
             // Instrucciones
             g2d.setColor(Color.WHITE);
-            g2d.setFont(new Font("Arial", Font.BOLD, 14));
+            g2d.setFont(HELP_FONT);
             g2d.drawString("Controles: Flechas o A/D para mover, ESPACIO o W para saltar", 10, 20);
         }
+
+        /**
+         * Imagen con los tiles sólidos del mapa; se vuelve a armar solo si cambió el mapa
+         */
+        private BufferedImage tileLayer(int[][] world, int[] solidTiles) {
+            if (world == null || solidTiles == null || world.length == 0) return null;
+            if (world == tileLayerWorld) return tileLayer;
+
+            boolean[] solid = new boolean[Arrays.stream(solidTiles).max().orElse(0) + 1];
+            for (int id : solidTiles) {
+                if (id >= 0) solid[id] = true;
+            }
+            BufferedImage image = getGraphicsConfiguration().createCompatibleImage(
+                    world[0].length * SIZE_TILE, world.length * SIZE_TILE, Transparency.BITMASK);
+            Graphics2D g = image.createGraphics();
+            for (int y = 0; y < world.length; y++) {
+                for (int x = 0; x < world[y].length; x++) {
+                    int id = world[y][x];
+                    if (id < 0 || id >= solid.length || !solid[id]) continue;
+                    g.setColor(TILE);
+                    g.fillRect(x * SIZE_TILE, y * SIZE_TILE, SIZE_TILE, SIZE_TILE);
+                    g.setColor(TILE_EDGE);
+                    g.drawRect(x * SIZE_TILE, y * SIZE_TILE, SIZE_TILE - 1, SIZE_TILE - 1);
+                }
+            }
+            g.dispose();
+
+            tileLayer = image;
+            tileLayerWorld = world;
+            return image;
+        }
+
+        private static int clamp(int value, int max) {
+            return Math.max(0, Math.min(value, Math.max(0, max)));
+        }
     }
 
     // Main
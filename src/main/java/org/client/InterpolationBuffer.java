@@ -0,0 +1,179 @@
+package org.client;
+
+import com.google.gson.JsonObject;
+
+import java.util.Collection;
+
+/**
+ * Estados recibidos del servidor con la hora de llegada, para dibujar la sala un poco en el
+ * pasado (DELAY_MS) interpolando entre los dos que rodean ese instante. Así el render va a su
+ * propia frecuencia y un paquete que llega tarde o antes de tiempo no se nota: el retraso
+ * tiene margen para varios snapshots.
+ *
+ * El hilo del WebSocket agrega estados (push) y el de Swing los consulta (sample). Un Frame
+ * guardado no cambia después de push, así que dibujar no comparte nada con el hilo de red; el
+ * interpolado se escribe en un Frame propio del hilo de Swing, que vale hasta el próximo sample.
+ */
+final class InterpolationBuffer {
+    static final long DELAY_MS = 100;
+    private static final int CAPACITY = 32;
+
+    /**
+     * Posiciones de jugadores y plataformas en un instante
+     */
+    static final class Frame {
+        long time;
+        int playerCount;
+        String[] playerIds;
+        String[] usernames;
+        float[] playerX;
+        float[] playerY;
+        int platformCount;
+        String[] platformIds;
+        float[] platformX;
+        float[] platformY;
+        float[] platformWidth;
+        float[] platformHeight;
+
+        private Frame(long time, int playerCount, int platformCount) {
+            this.time = time;
+            resize(playerCount, platformCount);
+        }
+
+        // Los arreglos solo se reemplazan si no alcanzan (ver el Frame interpolado)
+        private void resize(int playerCount, int platformCount) {
+            this.playerCount = playerCount;
+            if (playerIds == null || playerIds.length < playerCount) {
+                playerIds = new String[playerCount];
+                usernames = new String[playerCount];
+                playerX = new float[playerCount];
+                playerY = new float[playerCount];
+            }
+            this.platformCount = platformCount;
+            if (platformIds == null || platformIds.length < platformCount) {
+                platformIds = new String[platformCount];
+                platformX = new float[platformCount];
+                platformY = new float[platformCount];
+                platformWidth = new float[platformCount];
+                platformHeight = new float[platformCount];
+            }
+        }
+    }
+
+    static final Frame EMPTY = new Frame(0, 0, 0);
+
+    private final Frame[] frames = new Frame[CAPACITY];
+    private int newest = -1;
+    private int count = 0;
+
+    // Resultado de interpolate; solo lo usa el hilo de Swing
+    private final Frame interpolated = new Frame(0, 0, 0);
+
+    /**
+     * Guarda el estado de un gameUpdate (jugadores visibles y plataformas) con la hora actual
+     */
+    void push(Collection<JsonObject> players, Collection<JsonObject> platforms) {
+        int visible = 0;
+        for (JsonObject player : players) {
+            if (isVisible(player)) visible++;
+        }
+        Frame frame = new Frame(System.nanoTime(), visible, platforms.size());
+        int i = 0;
+        for (JsonObject player : players) {
+            if (!isVisible(player)) continue;
+            frame.playerIds[i] = player.get("id").getAsString();
+            frame.usernames[i] = player.has("username") ? player.get("username").getAsString() : "";
+            frame.playerX[i] = player.get("x").getAsFloat();
+            frame.playerY[i] = player.get("y").getAsFloat();
+            i++;
+        }
+        i = 0;
+        for (JsonObject platform : platforms) {
+            frame.platformIds[i] = platform.get("id").getAsString();
+            frame.platformX[i] = platform.get("x").getAsFloat();
+            frame.platformY[i] = platform.get("y").getAsFloat();
+            frame.platformWidth[i] = platform.get("width").getAsFloat();
+            frame.platformHeight[i] = platform.get("height").getAsFloat();
+            i++;
+        }
+
+        synchronized (this) {
+            newest = (newest + 1) % CAPACITY;
+            frames[newest] = frame;
+            count = Math.min(count + 1, CAPACITY);
+        }
+    }
+
+    /**
+     * Al cambiar de sala los estados anteriores no sirven
+     */
+    synchronized void clear() {
+        count = 0;
+    }
+
+    /**
+     * Estado a dibujar en renderNanos (System.nanoTime() - DELAY_MS): interpolado entre los
+     * dos estados que lo rodean, o el más cercano si no hay uno de cada lado. Solo desde el
+     * hilo de Swing: el Frame devuelto vale hasta la próxima llamada.
+     */
+    Frame sample(long renderNanos) {
+        Frame before = null;
+        Frame after = null;
+        synchronized (this) {
+            for (int k = 0; k < count; k++) {
+                Frame frame = frames[Math.floorMod(newest - k, CAPACITY)];
+                if (frame.time <= renderNanos) {
+                    before = frame;
+                    break;
+                }
+                after = frame;
+            }
+        }
+        if (before == null) return after != null ? after : EMPTY;
+        if (after == null || after == before || after.time <= before.time) return before;
+
+        float alpha = (float) (renderNanos - before.time) / (after.time - before.time);
+        if (alpha <= 0) return before;
+        if (alpha >= 1) return after;
+        return interpolate(before, after, alpha);
+    }
+
+    // Posiciones de after, acercadas desde before; lo que no estaba en before aparece directo
+    private Frame interpolate(Frame before, Frame after, float alpha) {
+        Frame frame = interpolated;
+        frame.time = after.time;
+        frame.resize(after.playerCount, after.platformCount);
+        for (int i = 0; i < after.playerCount; i++) {
+            frame.playerIds[i] = after.playerIds[i];
+            frame.usernames[i] = after.usernames[i];
+            int b = indexOf(before.playerIds, before.playerCount, after.playerIds[i], i);
+            frame.playerX[i] = b < 0 ? after.playerX[i] : lerp(before.playerX[b], after.playerX[i], alpha);
+            frame.playerY[i] = b < 0 ? after.playerY[i] : lerp(before.playerY[b], after.playerY[i], alpha);
+        }
+        for (int i = 0; i < after.platformCount; i++) {
+            frame.platformIds[i] = after.platformIds[i];
+            frame.platformWidth[i] = after.platformWidth[i];
+            frame.platformHeight[i] = after.platformHeight[i];
+            int b = indexOf(before.platformIds, before.platformCount, after.platformIds[i], i);
+            frame.platformX[i] = b < 0 ? after.platformX[i] : lerp(before.platformX[b], after.platformX[i], alpha);
+            frame.platformY[i] = b < 0 ? after.platformY[i] : lerp(before.platformY[b], after.platformY[i], alpha);
+        }
+        return frame;
+    }
+
+    private static float lerp(float from, float to, float alpha) {
+        return from + (to - from) * alpha;
+    }
+
+    private static int indexOf(String[] ids, int count, String id, int hint) {
+        if (hint < count && ids[hint].equals(id)) return hint;
+        for (int i = 0; i < count; i++) {
+            if (ids[i].equals(id)) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isVisible(JsonObject player) {
+        return !player.has("isVisible") || player.get("isVisible").getAsBoolean();
+    }
+}
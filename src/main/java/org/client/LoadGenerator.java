@@ -0,0 +1,222 @@
+package org.client;
+
+import org.shared.Histogram;
+import org.shared.Log;
+import org.shared.WebSocketCompression;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generador de carga sin GUI: abre BOTS conexiones que se autentican, entran a una sala y
+ * mandan move/jump. Cada 5 segundos reporta tasa de mensajes del servidor, intervalo y jitter
+ * entre gameUpdates y latencia de eco de los moves.
+ *
+ * Configuración por entorno:
+ *   SERVER_URL           servidor (por defecto ws://localhost:8887)
+ *   BOTS                 cantidad de bots (100)
+ *   BOT_RAMP_PER_SEC     conexiones nuevas por segundo (50)
+ *   BOT_ROOM             sala a la que entran todos; si falta, se reparten entre las salas
+ *   BOT_MOVE_RATE        moves por segundo por bot (4)
+ *   BOT_JUMP_RATE        saltos por segundo por bot (0.5)
+ *   BOT_PROTOCOL         binary o json (binary)
+ *   BOT_DELTA            true para pedir gameUpdates delta (true)
+ *   BOT_AOI              true para pedir área de interés (false; requiere BOT_DELTA)
+ *   BOT_DURATION_SEC     duración de la prueba, 0 sin límite (60)
+ *   BOT_USER_PREFIX / BOT_PASSWORD  credenciales (bot0, bot1, ... / "bot")
+ *
+ * Para probar sin base de datos, levantar el servidor con AUTH_BACKEND=memory.
+ * Cada bot usa los hilos de lectura y escritura de Java-WebSocket: para miles de bots conviene
+ * repartirlos entre varios procesos o máquinas.
+ */
+public class LoadGenerator {
+    private static final Log LOG = Log.get("Carga");
+    private static final long REPORT_INTERVAL_SECONDS = 5;
+    private static final long INPUT_PERIOD_MILLIS = 10;
+    // El servidor simula y envía a 60 Hz
+    private static final long EXPECTED_UPDATE_INTERVAL_MICROS = 1_000_000 / 60;
+
+    static class Config {
+        String serverUrl = GameWebSocketClient.serverUrl();
+        int bots = intEnv("BOTS", 100);
+        double rampPerSecond = doubleEnv("BOT_RAMP_PER_SEC", 50);
+        String room = System.getenv("BOT_ROOM");
+        double moveRate = doubleEnv("BOT_MOVE_RATE", 4);
+        double jumpRate = doubleEnv("BOT_JUMP_RATE", 0.5);
+        boolean binary = !"json".equalsIgnoreCase(System.getenv("BOT_PROTOCOL"));
+        boolean deltaSnapshots = !"false".equalsIgnoreCase(System.getenv("BOT_DELTA"));
+        boolean areaOfInterest = "true".equalsIgnoreCase(System.getenv("BOT_AOI"));
+        WebSocketCompression compression = WebSocketCompression.fromEnv();
+        long durationSeconds = intEnv("BOT_DURATION_SEC", 60);
+        String usernamePrefix = env("BOT_USER_PREFIX", "bot");
+        String password = env("BOT_PASSWORD", "bot");
+    }
+
+    /**
+     * Métricas compartidas por todos los bots. Los histogramas de ventana se reinician en cada
+     * reporte; los totales se imprimen al final.
+     */
+    static class Stats {
+        final LongAdder connected = new LongAdder();
+        final LongAdder disconnected = new LongAdder();
+        final LongAdder inRoom = new LongAdder();
+        final LongAdder authOk = new LongAdder();
+        final LongAdder authFailed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder messages = new LongAdder();
+        final LongAdder gameUpdates = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder inputs = new LongAdder();
+        final LongAdder echoTimeouts = new LongAdder();
+
+        // En microsegundos
+        final Histogram updateInterval = new Histogram();
+        final Histogram jitter = new Histogram();
+        final Histogram echoLatency = new Histogram();
+        final Histogram totalJitter = new Histogram();
+        final Histogram totalEchoLatency = new Histogram();
+
+        void recordInterval(long intervalNanos) {
+            long micros = intervalNanos / 1000;
+            long deviation = Math.abs(micros - EXPECTED_UPDATE_INTERVAL_MICROS);
+            updateInterval.record(micros);
+            jitter.record(deviation);
+            totalJitter.record(deviation);
+        }
+
+        void recordEcho(long latencyNanos) {
+            echoLatency.record(latencyNanos / 1000);
+            totalEchoLatency.record(latencyNanos / 1000);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Cada bot loguearía su conexión: solo advertencias y errores
+        Log.get("Cliente").setLevel(Log.Level.WARN);
+
+        Config config = new Config();
+        Stats stats = new Stats();
+        URI serverUri = new URI(config.serverUrl);
+        List<BotClient> bots = new CopyOnWriteArrayList<>();
+
+        LOG.info("Lanzando " + config.bots + " bot(s) contra " + config.serverUrl +
+                " (" + (config.binary ? "binario" : "json") + (config.deltaSnapshots ? ", delta" : "") +
+                (config.areaOfInterest ? ", área de interés" : "") + ", " + config.compression +
+                ", " + config.moveRate + " move/s, " + config.jumpRate + " jump/s)");
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "load-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Un solo hilo recorre todos los bots y envía los inputs que les toquen
+        scheduler.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            for (BotClient bot : bots) {
+                try {
+                    bot.tick(now);
+                } catch (Exception e) {
+                    stats.errors.increment();
+                }
+            }
+        }, INPUT_PERIOD_MILLIS, INPUT_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+
+        long startedAt = System.nanoTime();
+        long[] lastReport = {startedAt, 0, 0, 0, 0};
+        scheduler.scheduleAtFixedRate(() -> report(config, stats, lastReport),
+                REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        // Rampa de conexiones
+        long rampDelayNanos = (long) (1_000_000_000L / Math.max(0.1, config.rampPerSecond));
+        for (int i = 0; i < config.bots; i++) {
+            BotClient bot = new BotClient(serverUri, i, config, stats);
+            bots.add(bot);
+            bot.connect();
+            TimeUnit.NANOSECONDS.sleep(rampDelayNanos);
+        }
+
+        if (config.durationSeconds > 0) {
+            long remaining = TimeUnit.SECONDS.toNanos(config.durationSeconds) - (System.nanoTime() - startedAt);
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, remaining));
+        } else {
+            Thread.currentThread().join();
+        }
+
+        scheduler.shutdownNow();
+        for (BotClient bot : bots) {
+            bot.close();
+        }
+        summary(config, stats, System.nanoTime() - startedAt);
+        Log.flush();
+        System.exit(0);
+    }
+
+    private static void report(Config config, Stats stats, long[] last) {
+        long now = System.nanoTime();
+        double seconds = (now - last[0]) / 1_000_000_000.0;
+        long messages = stats.messages.sum();
+        long updates = stats.gameUpdates.sum();
+        long bytes = stats.bytes.sum();
+        long inputs = stats.inputs.sum();
+
+        LOG.info(String.format(
+                "bots %d/%d conectados, %d en sala | %.0f msg/s (%.0f gameUpdate/s), %.1f KB/s, %.0f input/s" +
+                        " | intervalo p50 %.1f ms p99 %.1f ms | jitter p50 %.1f ms p99 %.1f ms máx %.1f ms" +
+                        " | eco p50 %.1f ms p99 %.1f ms, sin eco %d | auth fallidos %d, errores %d",
+                stats.connected.sum() - stats.disconnected.sum(), config.bots, stats.inRoom.sum(),
+                (messages - last[1]) / seconds, (updates - last[2]) / seconds,
+                (bytes - last[3]) / seconds / 1024, (inputs - last[4]) / seconds,
+                millis(stats.updateInterval.percentile(0.5)), millis(stats.updateInterval.percentile(0.99)),
+                millis(stats.jitter.percentile(0.5)), millis(stats.jitter.percentile(0.99)), millis(stats.jitter.max()),
+                millis(stats.echoLatency.percentile(0.5)), millis(stats.echoLatency.percentile(0.99)),
+                stats.echoTimeouts.sum(), stats.authFailed.sum(), stats.errors.sum()));
+
+        stats.updateInterval.reset();
+        stats.jitter.reset();
+        stats.echoLatency.reset();
+        last[0] = now;
+        last[1] = messages;
+        last[2] = updates;
+        last[3] = bytes;
+        last[4] = inputs;
+    }
+
+    private static void summary(Config config, Stats stats, long elapsedNanos) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        LOG.info(String.format(
+                "Resumen: %d bot(s), %.0f s, auth ok %d / fallidos %d, %d mensajes (%.0f/s), %.1f MB recibidos" +
+                        " | jitter p50 %.1f ms p99 %.1f ms p99.9 %.1f ms máx %.1f ms" +
+                        " | eco p50 %.1f ms p99 %.1f ms máx %.1f ms, sin eco %d",
+                config.bots, seconds, stats.authOk.sum(), stats.authFailed.sum(),
+                stats.messages.sum(), stats.messages.sum() / seconds, stats.bytes.sum() / 1024.0 / 1024.0,
+                millis(stats.totalJitter.percentile(0.5)), millis(stats.totalJitter.percentile(0.99)),
+                millis(stats.totalJitter.percentile(0.999)), millis(stats.totalJitter.max()),
+                millis(stats.totalEchoLatency.percentile(0.5)), millis(stats.totalEchoLatency.percentile(0.99)),
+                millis(stats.totalEchoLatency.max()), stats.echoTimeouts.sum()));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static double doubleEnv(String name, double defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+}
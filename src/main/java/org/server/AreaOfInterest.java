@@ -0,0 +1,150 @@
+package org.server;
+
+import java.util.BitSet;
+
+/**
+ * Área de interés de un cliente: solo recibe las entidades cercanas a su jugador. Es opcional
+ * y se negocia en el auth ("areaOfInterest"), junto con deltaSnapshots.
+ *
+ * El área es un rectángulo del tamaño del viewport (AOI_VIEW_WIDTH x AOI_VIEW_HEIGHT, en
+ * píxeles) centrado en el jugador. Para entrar, una entidad tiene que estar a menos de
+ * ENTER_MARGIN del borde, y sale recién al alejarse más de LEAVE_MARGIN (histéresis), así
+ * una entidad en el borde no entra y sale en cada tick.
+ *
+ * Entrar y salir usan el formato de los deltas: una entidad que entra al área llega completa,
+ * como si fuera nueva, y una que sale va en removedPlayers/removedPlatforms (o keyRemoved).
+ * El estado del cliente es siempre lo que ve. El propio jugador siempre está en el área.
+ *
+ * Guarda qué veía el cliente en cada snapshot enviado, con el mismo tamaño que el historial
+ * de la sala, para calcular deltas contra su baseline. Solo lo usa el hilo de tick de la sala;
+ * al cambiar de sala el cliente recibe uno nuevo.
+ */
+final class AreaOfInterest {
+    static final float VIEW_WIDTH = floatEnv("AOI_VIEW_WIDTH", 1280);
+    static final float VIEW_HEIGHT = floatEnv("AOI_VIEW_HEIGHT", 720);
+    static final float ENTER_MARGIN = 2 * GameWebSocketServer.SIZE_TILE;
+    static final float LEAVE_MARGIN = 4 * GameWebSocketServer.SIZE_TILE;
+
+    /**
+     * Entidades que el cliente veía en un snapshot, por índice dentro de ese snapshot
+     */
+    static final class View {
+        int seq;
+        final BitSet players = new BitSet();
+        final BitSet platforms = new BitSet();
+        boolean key;
+        // Ve todas las entidades: puede compartir el mensaje de los clientes sin área de interés
+        boolean all;
+
+        boolean player(int index) {
+            return all || players.get(index);
+        }
+
+        boolean platform(int index) {
+            return all || platforms.get(index);
+        }
+
+        boolean key() {
+            return all || key;
+        }
+    }
+
+    private final View[] history = new View[GameRoom.SNAPSHOT_HISTORY];
+    private int lastSeq;
+    private boolean hasLast = false;
+
+    /**
+     * Calcula qué ve el cliente en el snapshot recién capturado y lo guarda en el historial
+     */
+    View update(GameRoom room, RoomSnapshot snapshot, String viewerId) {
+        int slot = Math.floorMod(snapshot.seq, history.length);
+        View view = history[slot];
+        if (view == null) {
+            view = new View();
+            history[slot] = view;
+        }
+        view.seq = snapshot.seq;
+        view.players.clear();
+        view.platforms.clear();
+        view.key = false;
+        view.all = false;
+
+        // Lo que veía en el envío anterior decide con qué margen se evalúa cada entidad
+        View previous = hasLast ? viewAt(lastSeq) : null;
+        RoomSnapshot previousSnapshot = previous != null ? room.getSnapshot(previous.seq) : null;
+        if (previousSnapshot == null) {
+            previous = null;
+        }
+        lastSeq = snapshot.seq;
+        hasLast = true;
+
+        int viewer = RoomSnapshot.indexOf(snapshot.playerIds, snapshot.playerCount, viewerId, 0);
+        if (viewer < 0) {
+            // Sin jugador propio no hay dónde centrar el área
+            view.all = true;
+            return view;
+        }
+        float centerX = snapshot.playerX[viewer];
+        float centerY = snapshot.playerY[viewer];
+        int visible = 0;
+
+        for (int i = 0; i < snapshot.playerCount; i++) {
+            boolean inside = i == viewer;
+            if (!inside) {
+                boolean was = previous != null && wasVisible(previous.players, previousSnapshot.playerIds,
+                        previousSnapshot.playerCount, snapshot.playerIds[i], i);
+                inside = overlaps(centerX, centerY, snapshot.playerX[i], snapshot.playerY[i], 0, 0,
+                        was ? LEAVE_MARGIN : ENTER_MARGIN);
+            }
+            if (inside) {
+                view.players.set(i);
+                visible++;
+            }
+        }
+
+        for (int i = 0; i < snapshot.platformCount; i++) {
+            boolean was = previous != null && wasVisible(previous.platforms, previousSnapshot.platformIds,
+                    previousSnapshot.platformCount, snapshot.platformIds[i], i);
+            if (overlaps(centerX, centerY, snapshot.platformX[i], snapshot.platformY[i],
+                    snapshot.platformWidth[i], snapshot.platformHeight[i], was ? LEAVE_MARGIN : ENTER_MARGIN)) {
+                view.platforms.set(i);
+                visible++;
+            }
+        }
+
+        if (snapshot.hasKey) {
+            boolean was = previous != null && previous.key && previousSnapshot.hasKey;
+            view.key = viewerId.equals(snapshot.keyCarrier) || overlaps(centerX, centerY, snapshot.keyX, snapshot.keyY,
+                    Key.WIDTH, Key.HEIGHT, was ? LEAVE_MARGIN : ENTER_MARGIN);
+        }
+
+        view.all = visible == snapshot.playerCount + snapshot.platformCount && (view.key || !snapshot.hasKey);
+        return view;
+    }
+
+    /**
+     * Lo que veía el cliente en ese snapshot, o null si ya no está en el historial
+     */
+    View viewAt(int seq) {
+        View view = history[Math.floorMod(seq, history.length)];
+        return view != null && view.seq == seq ? view : null;
+    }
+
+    private static boolean wasVisible(BitSet visible, String[] ids, int count, String id, int hint) {
+        int index = RoomSnapshot.indexOf(ids, count, id, hint);
+        return index >= 0 && visible.get(index);
+    }
+
+    // El rectángulo (x, y, width, height) toca el viewport centrado en (centerX, centerY) más el margen
+    private static boolean overlaps(float centerX, float centerY, float x, float y, float width, float height, float margin) {
+        float halfWidth = VIEW_WIDTH / 2 + margin;
+        float halfHeight = VIEW_HEIGHT / 2 + margin;
+        return x + width >= centerX - halfWidth && x <= centerX + halfWidth &&
+                y + height >= centerY - halfHeight && y <= centerY + halfHeight;
+    }
+
+    private static float floatEnv(String name, float defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? Float.parseFloat(value) : defaultValue;
+    }
+}
@@ -0,0 +1,40 @@
+package org.server;
+
+import org.shared.Log;
+
+/**
+ * Verifica credenciales de usuario. Las implementaciones deben poder usarse desde varios hilos.
+ */
+public interface AuthBackend {
+
+    boolean authenticate(String username, String password);
+
+    /**
+     * Libera conexiones u otros recursos del backend
+     */
+    default void close() {
+    }
+
+    /**
+     * Backend según AUTH_BACKEND: "memory" acepta a cualquiera (pruebas de carga); por defecto
+     * la base de datos de DbConfig.fromEnv()
+     */
+    static AuthBackend fromEnv() {
+        if ("memory".equalsIgnoreCase(System.getenv("AUTH_BACKEND"))) {
+            Log.get("Auth").warn("AUTH_BACKEND=memory: se acepta cualquier usuario, no usar en producción");
+            return new MemoryAuthBackend();
+        }
+        return fromConfig(DbConfig.fromEnv());
+    }
+
+    /**
+     * Backend configurado desde el entorno: JDBC con pool y, si AUTH_CACHE_TTL_MS > 0, con cache
+     */
+    static AuthBackend fromConfig(DbConfig config) {
+        AuthBackend backend = new JdbcAuthBackend(new ConnectionPool(config));
+        if (config.cacheTtlMillis > 0) {
+            backend = new CachedAuthBackend(backend, config.cacheTtlMillis);
+        }
+        return backend;
+    }
+}
@@ -0,0 +1,198 @@
+package org.server;
+
+import org.java_websocket.WebSocket;
+import org.shared.Histogram;
+import org.shared.Log;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Ejecuta las autenticaciones en un pool propio para que la consulta a la base de datos no
+ * bloquee los hilos de WebSocket (que atienden move/jump de otras conexiones).
+ *
+ * Cada conexión tiene a lo sumo un auth pendiente; mientras tanto el servidor rechaza sus
+ * demás mensajes. Si la cola está llena el auth se rechaza en vez de esperar.
+ * Java 17 no tiene hilos virtuales, así que el pool es fijo y del tamaño del pool de conexiones.
+ */
+public class AuthPipeline {
+    private static final Log LOG = Log.get("Auth");
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AuthBackend backend;
+    private final ThreadPoolExecutor executor;
+
+    // Conexiones con auth en curso y cuándo entró a la cola (System.nanoTime)
+    private final Map<WebSocket, Long> pending = new ConcurrentHashMap<>();
+
+    // Métricas acumuladas
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Histogram latencyMicros = new Histogram();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    // Ventana del reporte periódico
+    private final AtomicLong windowCompleted = new AtomicLong();
+    private final AtomicLong windowLatencyNanos = new AtomicLong();
+    private final AtomicLong windowMaxLatencyNanos = new AtomicLong();
+    private final AtomicLong lastReport = new AtomicLong(System.nanoTime());
+
+    public AuthPipeline(AuthBackend backend, int workerCount, int queueCapacity) {
+        this.backend = backend;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workerCount, workerCount,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "auth-worker-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Hilos por defecto: AUTH_WORKERS, o uno por conexión del pool (DB_POOL_SIZE)
+     */
+    public static int defaultWorkerCount() {
+        String workersEnv = System.getenv("AUTH_WORKERS");
+        if (workersEnv == null) {
+            workersEnv = System.getenv("DB_POOL_SIZE");
+        }
+        return workersEnv != null ? Math.max(1, Integer.parseInt(workersEnv)) : 8;
+    }
+
+    /**
+     * Auths que pueden esperar en cola: AUTH_QUEUE_CAPACITY o 1024
+     */
+    public static int defaultQueueCapacity() {
+        String capacityEnv = System.getenv("AUTH_QUEUE_CAPACITY");
+        return capacityEnv != null ? Math.max(1, Integer.parseInt(capacityEnv)) : 1024;
+    }
+
+    /**
+     * Encola la verificación de credenciales. onResult corre en un hilo del pool, después de
+     * sacar la conexión de pendientes, y no corre si la conexión se cerró mientras tanto.
+     * Devuelve false si la conexión ya tenía un auth en curso o la cola está llena.
+     */
+    public boolean submit(WebSocket conn, String username, String password, Consumer<Boolean> onResult) {
+        Long enqueuedAt = System.nanoTime();
+        if (pending.putIfAbsent(conn, enqueuedAt) != null) {
+            return false;
+        }
+
+        try {
+            executor.execute(() -> {
+                boolean valid = false;
+                try {
+                    valid = backend.authenticate(username, password);
+                } catch (Exception e) {
+                    LOG.error("Error autenticando a " + username + ": " + e.getMessage(), e);
+                }
+                recordLatency(System.nanoTime() - enqueuedAt);
+                if (!valid) {
+                    failed.incrementAndGet();
+                }
+
+                // Si la conexión se cerró (cancel) ya no hay a quién responder
+                if (pending.remove(conn, enqueuedAt)) {
+                    onResult.accept(valid);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(conn, enqueuedAt);
+            rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    public boolean isPending(WebSocket conn) {
+        return pending.containsKey(conn);
+    }
+
+    /**
+     * La conexión se cerró: su auth en curso termina sin respuesta
+     */
+    public void cancel(WebSocket conn) {
+        pending.remove(conn);
+    }
+
+    /**
+     * Auths encolados o en ejecución
+     */
+    public int queueDepth() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    public long completedCount() {
+        return completed.get();
+    }
+
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Auths completados con credenciales inválidas (o error del backend)
+     */
+    public long failedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Latencia de cada auth, desde que entró a la cola hasta tener el resultado, en microsegundos
+     */
+    public Histogram latencyHistogram() {
+        return latencyMicros;
+    }
+
+    public double averageLatencyMillis() {
+        long count = completed.get();
+        return count == 0 ? 0 : totalLatencyNanos.get() / (double) count / 1_000_000.0;
+    }
+
+    public double maxLatencyMillis() {
+        return maxLatencyNanos.get() / 1_000_000.0;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        pending.clear();
+    }
+
+    private void recordLatency(long latencyNanos) {
+        completed.incrementAndGet();
+        latencyMicros.record(latencyNanos / 1000);
+        totalLatencyNanos.addAndGet(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+
+        windowCompleted.incrementAndGet();
+        windowLatencyNanos.addAndGet(latencyNanos);
+        windowMaxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+
+        // Reporte como mucho cada 10 segundos, solo si hubo auths
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        if (now - last >= REPORT_INTERVAL_NANOS && lastReport.compareAndSet(last, now)) {
+            long count = windowCompleted.getAndSet(0);
+            long latency = windowLatencyNanos.getAndSet(0);
+            long max = windowMaxLatencyNanos.getAndSet(0);
+            LOG.info(String.format("%d auth(s) en %ds, latencia media %.1f ms, máx %.1f ms, en cola %d, rechazados %d",
+                    count, TimeUnit.NANOSECONDS.toSeconds(now - last),
+                    latency / (double) Math.max(1, count) / 1_000_000.0, max / 1_000_000.0,
+                    queueDepth(), rejected.get()));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache en memoria de credenciales válidas con vida corta, delante de otro backend.
+ * Sirve para la ola de reconexiones después de un despliegue: el mismo usuario no vuelve
+ * a ir a la base de datos mientras su entrada no venza.
+ *
+ * Solo se cachean los logins correctos y se guarda un hash de la contraseña, no la contraseña.
+ * Si la contraseña no coincide con la del cache se consulta al backend, y si también la
+ * rechaza la entrada se invalida.
+ */
+public class CachedAuthBackend implements AuthBackend {
+    private final AuthBackend delegate;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        final byte[] passwordHash;
+        final long expiresAt;
+
+        Entry(byte[] passwordHash, long expiresAt) {
+            this.passwordHash = passwordHash;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public CachedAuthBackend(AuthBackend delegate, long ttlMillis) {
+        this.delegate = delegate;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public boolean authenticate(String username, String password) {
+        byte[] passwordHash = hash(password);
+        long now = System.currentTimeMillis();
+
+        Entry entry = entries.get(username);
+        if (entry != null && entry.expiresAt > now && MessageDigest.isEqual(entry.passwordHash, passwordHash)) {
+            return true;
+        }
+
+        boolean valid = delegate.authenticate(username, password);
+        if (valid) {
+            entries.put(username, new Entry(passwordHash, now + ttlMillis));
+        } else {
+            invalidate(username);
+        }
+
+        // Limpieza barata de entradas vencidas para que el mapa no crezca sin límite
+        if (entries.size() > 1024) {
+            entries.values().removeIf(e -> e.expiresAt <= now);
+        }
+        return valid;
+    }
+
+    /**
+     * Olvida la credencial de un usuario (por ejemplo, si cambió su contraseña)
+     */
+    public void invalidate(String username) {
+        entries.remove(username);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    @Override
+    public void close() {
+        invalidateAll();
+        delegate.close();
+    }
+
+    private static byte[] hash(String password) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.server;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+
+/**
+ * Frecuencia de snapshots de un cliente, relativa a la de su sala: recibe uno de cada
+ * divisor. Antes de cada envío se mira su conexión: si quedan datos sin escribir en el socket
+ * y la cola de salida pasa de BACKLOG_FRAMES, el divisor se duplica (hasta MAX_DIVISOR), así
+ * un cliente lento baja de 60 a 30, 15... snapshots por segundo en vez de acumular latencia.
+ * Tras RECOVER_CHECKS envíos seguidos con la cola vacía vuelve a subir un escalón.
+ *
+ * Saltearse snapshots no rompe los deltas: cada uno se calcula contra el último que el cliente
+ * confirmó. Solo lo usa el hilo de tick de la sala.
+ */
+final class ClientSendRate {
+    static final int MAX_DIVISOR = 8;
+    static final int BACKLOG_FRAMES = 4;
+    static final int RECOVER_CHECKS = 20;
+
+    private int divisor = 1;
+    private int skipped = 0;
+    private int drainedChecks = 0;
+
+    /**
+     * Se llama una vez por snapshot de la sala; true si a este cliente le toca recibirlo
+     */
+    boolean shouldSend(WebSocket connection) {
+        if (++skipped < divisor) return false;
+        skipped = 0;
+
+        int queued = queuedFrames(connection);
+        if (queued > BACKLOG_FRAMES) {
+            drainedChecks = 0;
+            if (divisor < MAX_DIVISOR) {
+                divisor *= 2;
+                return false; // este también se saltea: que la cola se vacíe
+            }
+        } else if (queued == 0 && divisor > 1 && ++drainedChecks >= RECOVER_CHECKS) {
+            divisor /= 2;
+            drainedChecks = 0;
+        }
+        return true;
+    }
+
+    /**
+     * 1 si recibe todos los snapshots de la sala, 2 si uno de cada dos, etc.
+     */
+    int divisor() {
+        return divisor;
+    }
+
+    // Frames encolados y todavía no escritos en el socket
+    private static int queuedFrames(WebSocket connection) {
+        if (!connection.hasBufferedData()) return 0;
+        if (connection instanceof WebSocketImpl) {
+            return ((WebSocketImpl) connection).outQueue.size();
+        }
+        return 1;
+    }
+}
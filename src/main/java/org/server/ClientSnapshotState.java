@@ -0,0 +1,56 @@
+package org.server;
+
+/**
+ * Baseline de snapshots de un cliente que pidió actualizaciones delta.
+ * Guarda el último snapshot que el cliente confirmó (snapshotAck) y decide si
+ * la próxima actualización puede ser un delta o debe ser un keyframe completo.
+ * Los acks llegan como comandos de la sala, así que solo lo usa el hilo de tick. Al cambiar
+ * de sala el cliente recibe uno nuevo: los números de secuencia anteriores ya no sirven.
+ */
+public class ClientSnapshotState {
+    // Cada cuántos ticks se manda un keyframe aunque el cliente esté al día (recuperación)
+    static final int KEYFRAME_INTERVAL = 120;
+
+    private int ackedSeq = -1;
+    private boolean forceKeyframe = true;
+    private int lastKeyframeSeq = -1;
+
+    /**
+     * Elige contra qué snapshot se codifica la próxima actualización de este cliente:
+     * su último snapshot confirmado, o null si toca un keyframe completo.
+     * Solo la llama el hilo de tick de la sala.
+     */
+    RoomSnapshot selectBase(GameRoom room, RoomSnapshot current) {
+        RoomSnapshot base = room.getSnapshot(ackedSeq);
+        boolean keyframeDue = current.seq - lastKeyframeSeq >= KEYFRAME_INTERVAL;
+
+        if (base == null || forceKeyframe || keyframeDue) {
+            if (base == null) {
+                // El ack no corresponde a esta sala (o es muy viejo): aceptar el próximo que llegue
+                ackedSeq = -1;
+            }
+            forceKeyframe = false;
+            lastKeyframeSeq = current.seq;
+            return null;
+        }
+        return base;
+    }
+
+    /**
+     * El cliente confirmó que aplicó el snapshot seq. Los acks viejos o fuera de orden se ignoran.
+     * La comparación por diferencia tolera el desborde del contador.
+     */
+    void acknowledge(int seq) {
+        if (ackedSeq == -1 || seq - ackedSeq > 0) {
+            ackedSeq = seq;
+        }
+    }
+
+    /**
+     * El cliente perdió su baseline (por ejemplo, recibió un delta de un snapshot que no tiene)
+     */
+    void requestKeyframe() {
+        ackedSeq = -1;
+        forceKeyframe = true;
+    }
+}
@@ -0,0 +1,205 @@
+package org.server;
+
+import org.shared.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Formato binario compilado de un mapa de maps/. Leer el JSON con Gson arma un int[][] fila
+ * por fila y después hay que empaquetarlo; el archivo compilado ya tiene los ids como short
+ * (como los guarda TileMap) y se lee con un MappedByteBuffer, sin parsear texto.
+ *
+ * Los compilados van en maps/compiled/id.pmap. Se generan al cargar un mapa cuyo compilado no
+ * existe o es más viejo que el JSON (ver loadOrCompile), o de antemano con main().
+ *
+ * Formato (big endian):
+ *   int MAGIC, int VERSION
+ *   int largo + bytes UTF-8 del nombre de la sala
+ *   int users-to-start, int snapshot-rate (0 = por defecto)
+ *   5 listas de ids de tile (sólidos, meta, origen y destino de plataforma, llave):
+ *       int cantidad (-1 si el JSON no la define) + ints
+ *   mundo: int ancho, int alto, ancho * alto shorts
+ *   sala de espera: igual
+ */
+final class CompiledMap {
+    private static final Log LOG = Log.get("Mapas");
+
+    static final int MAGIC = 0x50504D50; // "PPMP"
+    static final int VERSION = 1;
+    static final String DIRECTORY = "compiled";
+    static final String EXTENSION = ".pmap";
+
+    private CompiledMap() {
+    }
+
+    /**
+     * Template del mapa desde su compilado, compilándolo antes si hace falta. Si el compilado
+     * no se puede escribir o leer, se usa el JSON directamente. Devuelve null si el mapa no se
+     * pudo leer.
+     */
+    static MapTemplate loadOrCompile(File jsonFile) {
+        String id = jsonFile.getName().replace(".json", "");
+        Path compiled = compiledPath(jsonFile);
+        try {
+            if (!Files.exists(compiled) || Files.getLastModifiedTime(compiled).compareTo(Files.getLastModifiedTime(jsonFile.toPath())) < 0) {
+                RoomConfig config = GameRoom.loadRoomConfig(jsonFile.getAbsolutePath());
+                if (config == null) return null;
+                compile(config, compiled);
+                LOG.info("Compilado " + jsonFile.getName() + " en " + compiled);
+            }
+            return load(compiled, id);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("No se pudo usar el compilado de " + jsonFile.getName() + ", se lee el JSON", e);
+            RoomConfig config = GameRoom.loadRoomConfig(jsonFile.getAbsolutePath());
+            return config != null ? MapTemplate.fromConfig(id, config) : null;
+        }
+    }
+
+    static Path compiledPath(File jsonFile) {
+        String id = jsonFile.getName().replace(".json", "");
+        return jsonFile.toPath().resolveSibling(DIRECTORY).resolve(id + EXTENSION);
+    }
+
+    /**
+     * Escribe el compilado en un temporal y lo mueve a target, así quien lo lea mientras tanto
+     * nunca ve un archivo a medias
+     */
+    static void compile(RoomConfig config, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            byte[] name = (config.getRoomName() != null ? config.getRoomName() : "").getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+            out.writeInt(config.getUsersToStart());
+            out.writeInt(config.getSnapshotRate());
+
+            RoomConfig.Tiles tiles = config.getTiles();
+            writeIds(out, tiles != null ? tiles.solid : null);
+            writeIds(out, tiles != null ? tiles.winner : null);
+            writeIds(out, tiles != null ? tiles.platformOrigin : null);
+            writeIds(out, tiles != null ? tiles.platformDestination : null);
+            writeIds(out, tiles != null ? tiles.key : null);
+
+            writeWorld(out, config.getWorld());
+            writeWorld(out, config.getWaitingRoom());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lee un compilado mapeándolo en memoria
+     */
+    static MapTemplate load(Path file, String id) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException(file + " no es un mapa compilado");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException(file + " tiene la versión " + version + ", se esperaba " + VERSION);
+        }
+        byte[] name = new byte[buffer.getInt()];
+        buffer.get(name);
+        int usersToStart = buffer.getInt();
+        int snapshotRate = buffer.getInt();
+
+        RoomConfig.Tiles tiles = new RoomConfig.Tiles();
+        tiles.solid = readIds(buffer);
+        tiles.winner = readIds(buffer);
+        tiles.platformOrigin = readIds(buffer);
+        tiles.platformDestination = readIds(buffer);
+        tiles.key = readIds(buffer);
+        TileProperties properties = new TileProperties(tiles);
+
+        MapTemplate template = new MapTemplate(id, new String(name, StandardCharsets.UTF_8), usersToStart,
+                readWorld(buffer, properties), readWorld(buffer, properties));
+        template.snapshotRate = snapshotRate;
+        return template;
+    }
+
+    private static void writeIds(DataOutputStream out, int[] ids) throws IOException {
+        if (ids == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+
+    private static int[] readIds(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0) return null;
+        int[] ids = new int[count];
+        buffer.asIntBuffer().get(ids);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return ids;
+    }
+
+    private static void writeWorld(DataOutputStream out, int[][] world) throws IOException {
+        int height = world.length;
+        int width = height > 0 ? world[0].length : 0;
+        out.writeInt(width);
+        out.writeInt(height);
+        for (int[] row : world) {
+            for (int x = 0; x < width; x++) {
+                int id = x < row.length ? row[x] : 0;
+                if (id < 0 || id > Short.MAX_VALUE) {
+                    throw new IllegalArgumentException("Id de tile fuera de rango: " + id);
+                }
+                out.writeShort(id);
+            }
+        }
+    }
+
+    private static TileMap readWorld(ByteBuffer buffer, TileProperties properties) {
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        short[] ids = new short[width * height];
+        buffer.asShortBuffer().get(ids);
+        buffer.position(buffer.position() + ids.length * Short.BYTES);
+        return new TileMap(width, height, ids, properties);
+    }
+
+    /**
+     * Compila de antemano todos los JSON de un directorio (por defecto maps/)
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "maps");
+        File[] maps = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (maps == null) {
+            LOG.error("No existe el directorio " + directory);
+            return;
+        }
+        for (File map : maps) {
+            RoomConfig config = GameRoom.loadRoomConfig(map.getAbsolutePath());
+            if (config == null) continue;
+            Path target = compiledPath(map);
+            compile(config, target);
+            LOG.info(map.getName() + " -> " + target);
+        }
+    }
+}
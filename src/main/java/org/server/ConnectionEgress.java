@@ -0,0 +1,182 @@
+package org.server;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.Framedata;
+import org.shared.WebSocketCompression;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Política de salida de una conexión (va como attachment del WebSocket). Los mensajes
+ * confiables (chat, startGame, gameWin, playerLeft...) se encolan siempre, en orden. Los
+ * snapshots de estado (gameUpdate) no: si el socket todavía tiene datos sin escribir, el
+ * snapshot queda pendiente acá y uno más nuevo lo reemplaza (gana el último). Así un cliente
+ * con mala conexión recibe el estado más reciente apenas se vacía su socket, en vez de una
+ * fila de estados viejos que además ocupa memoria del servidor.
+ *
+ * Un snapshot pendiente sale antes que el siguiente mensaje confiable, para respetar el orden
+ * en que se generaron. Todo envío a la conexión pasa por el lock de este objeto, así un
+ * snapshot del tick no puede meterse entre ese flush y el mensaje confiable. Si lo encolado en
+ * el WebSocket pasa de MAX_QUEUED_BYTES durante más de OVERFLOW_GRACE_MS, la conexión se da por
+ * perdida (ver checkOverflow).
+ *
+ * Los snapshots los ofrece el hilo de tick; los mensajes confiables, cualquier hilo.
+ */
+final class ConnectionEgress {
+    static final long MAX_QUEUED_BYTES = longEnv("EGRESS_MAX_QUEUED_BYTES", 1024 * 1024);
+    static final long OVERFLOW_GRACE_MS = longEnv("EGRESS_OVERFLOW_GRACE_MS", 5000);
+
+    private final WebSocket connection;
+    private final ServerMetrics metrics;
+
+    // Último snapshot sin enviar: String (JSON) o ByteBuffer (binario)
+    private Object pendingSnapshot;
+
+    // Desde cuándo (System.nanoTime) lo encolado supera MAX_QUEUED_BYTES; 0 si no lo supera
+    private long overflowSince = 0;
+
+    ConnectionEgress(WebSocket connection, ServerMetrics metrics) {
+        this.connection = connection;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Mensaje ya codificado para una o varias conexiones: String (JSON) o ByteBuffer (binario).
+     * Los frames se arman una sola vez por draft y se reutilizan para cada destinatario sin
+     * compresión; las conexiones con permessage-deflate arman los suyos (ver send). Lo usa solo
+     * el hilo que envía.
+     */
+    static final class Outgoing {
+        final Object payload;
+        final int bytes;
+        private Map<Draft, List<Framedata>> frames;
+
+        Outgoing(String text) {
+            this.payload = text;
+            this.bytes = ServerMetrics.utf8Length(text);
+        }
+
+        Outgoing(ByteBuffer binary) {
+            this.payload = binary;
+            this.bytes = binary.remaining();
+        }
+
+        List<Framedata> framesFor(Draft draft) {
+            if (frames == null) {
+                frames = new HashMap<>();
+            }
+            return frames.computeIfAbsent(draft, d -> payload instanceof ByteBuffer ?
+                    d.createFrames((ByteBuffer) payload, false) : d.createFrames((String) payload, false));
+        }
+    }
+
+    /**
+     * Política de la conexión, o null si no tiene (conexiones de prueba o ya descartadas)
+     */
+    static ConnectionEgress of(WebSocket connection) {
+        return connection.getAttachment();
+    }
+
+    /**
+     * Envía un snapshot si el socket está libre y devuelve true; si no, queda pendiente
+     * reemplazando al anterior y devuelve false
+     */
+    synchronized boolean sendSnapshot(Outgoing snapshot) {
+        if (pendingSnapshot != null) {
+            metrics.snapshotsCoalesced.increment(); // nunca se va a enviar
+        }
+        if (!connection.hasBufferedData()) {
+            pendingSnapshot = null;
+            send(connection, snapshot);
+            return true;
+        }
+        Object payload = snapshot.payload;
+        pendingSnapshot = payload instanceof ByteBuffer ? ((ByteBuffer) payload).duplicate() : payload;
+        return false;
+    }
+
+    /**
+     * Envía un mensaje confiable, precedido por el snapshot pendiente si hay. Devuelve los bytes
+     * de ese snapshot, 0 si no había.
+     */
+    synchronized int sendReliable(Outgoing message) {
+        int flushed = flushPending();
+        send(connection, message);
+        return flushed;
+    }
+
+    /**
+     * Envía el snapshot pendiente si el socket ya se vació. Devuelve los bytes enviados, 0 si
+     * no envió nada.
+     */
+    synchronized int flush() {
+        return connection.hasBufferedData() ? 0 : flushPending();
+    }
+
+    private int flushPending() {
+        Object snapshot = pendingSnapshot;
+        if (snapshot == null || !connection.isOpen()) {
+            return 0;
+        }
+        pendingSnapshot = null;
+        Outgoing message = snapshot instanceof ByteBuffer ? new Outgoing((ByteBuffer) snapshot) : new Outgoing((String) snapshot);
+        send(connection, message);
+        return message.bytes;
+    }
+
+    /**
+     * Envía con los frames compartidos del mensaje. Si la conexión negoció permessage-deflate,
+     * con frames propios: la extensión comprime el frame en el lugar y con el contexto de esa
+     * conexión, y un frame compartido les llegaría ya comprimido (y con otro diccionario) al
+     * resto. Una conexión que se cerró mientras tanto se ignora, como en WebSocketServer.broadcast.
+     */
+    static void send(WebSocket connection, Outgoing message) {
+        try {
+            if (!WebSocketCompression.isNegotiated(connection)) {
+                connection.sendFrame(message.framesFor(connection.getDraft()));
+            } else if (message.payload instanceof ByteBuffer) {
+                connection.send(((ByteBuffer) message.payload).duplicate());
+            } else {
+                connection.send((String) message.payload);
+            }
+        } catch (WebsocketNotConnectedException e) {
+            // Se desconectó: onClose la saca de la sala
+        }
+    }
+
+    /**
+     * True si la conexión lleva más de OVERFLOW_GRACE_MS con más de MAX_QUEUED_BYTES sin
+     * escribir. Lo llama el tick de la sala.
+     */
+    synchronized boolean checkOverflow(long nowNanos) {
+        if (queuedBytes() <= MAX_QUEUED_BYTES) {
+            overflowSince = 0;
+            return false;
+        }
+        if (overflowSince == 0) {
+            overflowSince = nowNanos;
+        }
+        return nowNanos - overflowSince > OVERFLOW_GRACE_MS * 1_000_000;
+    }
+
+    // Bytes de frames encolados en el WebSocket y todavía no escritos en el socket
+    private long queuedBytes() {
+        if (!connection.hasBufferedData() || !(connection instanceof WebSocketImpl)) return 0;
+        long bytes = 0;
+        for (ByteBuffer frame : ((WebSocketImpl) connection).outQueue) {
+            bytes += frame.remaining();
+        }
+        return bytes;
+    }
+
+    private static long longEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+}
@@ -0,0 +1,138 @@
+package org.server;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool acotado de conexiones JDBC. Las conexiones se abren a demanda hasta poolSize y
+ * se reutilizan; cada una guarda sus PreparedStatement para no volver a prepararlos.
+ * Si todas están ocupadas, acquire espera hasta acquireTimeoutMillis.
+ *
+ * Cada conexión en uso tiene un permiso de slots. Devolverla o descartarla libera el permiso,
+ * así quien espera despierta tanto si vuelve una conexión al pool como si se libera un lugar
+ * para abrir otra.
+ */
+public class ConnectionPool {
+    // Una conexión que estuvo quieta más que esto se valida antes de usarla
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 30_000;
+
+    private final DbConfig config;
+    private final BlockingQueue<PooledConnection> idle;
+    // Conexiones que todavía se pueden entregar: poolSize menos las que están en uso
+    private final Semaphore slots;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(DbConfig config) {
+        this.config = config;
+        this.idle = new ArrayBlockingQueue<>(config.poolSize);
+        this.slots = new Semaphore(config.poolSize);
+    }
+
+    /**
+     * Conexión con sus statements preparados. Solo la usa un hilo a la vez (el que la tomó del pool).
+     */
+    public static class PooledConnection {
+        final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        void closeQuietly() {
+            try {
+                connection.close(); // Cierra también sus statements
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Pool de conexiones cerrado");
+        }
+
+        try {
+            if (!slots.tryAcquire(config.acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("No hay conexiones libres después de " + config.acquireTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión", e);
+        }
+        if (closed) {
+            slots.release();
+            throw new SQLException("Pool de conexiones cerrado");
+        }
+
+        // Con el permiso hay una conexión libre en el pool o lugar para abrir una nueva
+        PooledConnection pooled = idle.poll();
+        if (pooled == null) {
+            try {
+                return new PooledConnection(DriverManager.getConnection(config.url, config.user, config.password));
+            } catch (SQLException e) {
+                slots.release();
+                throw e;
+            }
+        }
+
+        if (System.currentTimeMillis() - pooled.lastUsed > VALIDATE_AFTER_IDLE_MILLIS && !isValid(pooled)) {
+            discard(pooled);
+            return acquire();
+        }
+        return pooled;
+    }
+
+    public void release(PooledConnection pooled) {
+        pooled.lastUsed = System.currentTimeMillis();
+        if (closed || !idle.offer(pooled)) {
+            discard(pooled);
+            return;
+        }
+        slots.release();
+    }
+
+    /**
+     * Cierra una conexión rota y libera su lugar en el pool: quien espera puede abrir otra
+     */
+    public void discard(PooledConnection pooled) {
+        pooled.closeQuietly();
+        slots.release();
+    }
+
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            pooled.closeQuietly(); // Las libres no tienen permiso tomado
+        }
+        // Despertar a quien espera: ve el pool cerrado y falla en vez de esperar el timeout
+        slots.release(config.poolSize);
+    }
+
+    private static boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.connection.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
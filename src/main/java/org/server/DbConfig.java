@@ -0,0 +1,52 @@
+package org.server;
+
+/**
+ * Configuración de la base de datos y de la autenticación. Se resuelve una sola vez al
+ * arrancar el servidor, no en cada login.
+ */
+public class DbConfig {
+    final String url;
+    final String user;
+    final String password;
+
+    // Conexiones abiertas como máximo y cuánto esperar una libre antes de rechazar el login
+    final int poolSize;
+    final long acquireTimeoutMillis;
+
+    // Vida de una credencial válida en memoria; 0 desactiva el cache
+    final long cacheTtlMillis;
+
+    public DbConfig(String url, String user, String password, int poolSize, long acquireTimeoutMillis, long cacheTtlMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.poolSize = poolSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    public static DbConfig fromEnv() {
+        String dbHost = env("DB_HOST", "localhost");
+        String dbPort = env("DB_PORT", "3306");
+        String dbName = env("DB_NAME", "chatdb");
+        String dbUser = env("DB_USER", "chatuser");
+        String dbPassword = env("DB_PASSWORD", "chatpass");
+
+        String url = "jdbc:mysql://" + dbHost + ":" + dbPort + "/" + dbName +
+                "?useSSL=false&allowPublicKeyRetrieval=true&cachePrepStmts=true&useServerPrepStmts=true";
+
+        return new DbConfig(
+                url,
+                dbUser,
+                dbPassword,
+                Integer.parseInt(env("DB_POOL_SIZE", "8")),
+                Long.parseLong(env("DB_POOL_TIMEOUT_MS", "2000")),
+                Long.parseLong(env("AUTH_CACHE_TTL_MS", "0"))
+        );
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -1,67 +1,215 @@
 package org.server;
 
 import com.google.gson.Gson;
+import org.java_websocket.WebSocket;
+import org.shared.Log;
+
 import java.io.FileReader;
 import java.io.Reader;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class GameRoom {
+    private static final Log LOG = Log.get("GameRoom");
+    private static final Log KEY_LOG = Log.get("Llave");
+    private static final Log PLATFORM_LOG = Log.get("Plataforma");
+    // Estado de cada plataforma en cada tick: solo en DEBUG y muestreado
+    private static final Log PLATFORM_TICK_LOG = Log.get("PlataformaTick", 60);
     public boolean canUpdate = true;
     public String id;
     public String name;
-    public int[][] world;
-    public int[][] gameWorld;
-    public int[][] waitingRoom;
-    public int[][] originalGameWorld; // Para resetear plataformas
+    String templateId; // Mapa del que se creó esta instancia (ver Matchmaker)
+    // Mapas inmutables, compartidos con las demás instancias del mismo template. Nivel y sala de
+    // espera solo cambian si el template se recarga (ver reloadTemplate).
+    public volatile TileMap world;
+    public volatile TileMap gameWorld;
+    public volatile TileMap waitingRoom;
+
+    // Propiedades de tiles del mapa y su grilla precalculada para el mundo actual y el nivel
+    volatile TileProperties tileProperties;
+    volatile TileGrid tiles;
+    volatile TileGrid gameTiles;
+
+    // Template recargado durante una partida; se aplica al volver a la sala de espera
+    private MapTemplate pendingTemplate;
     public Map<String, Player> players = new ConcurrentHashMap<>();
     public Map<String, Platform> platforms = new ConcurrentHashMap<>(); // Plataformas móviles como entidades
 
+    // Copias densas de jugadores y plataformas (copy-on-write al entrar/salir o al iniciar el nivel).
+    // El tick las recorre por índice, sin iteradores ni búsquedas por id.
+    volatile Player[] playerSlots = new Player[0];
+    volatile Platform[] platformSlots = new Platform[0];
+
+    // Posición X de cada jugador al inicio del tick, por índice. Solo la usa el hilo de tick.
+    float[] previousX = new float[8];
+
+    // Fase amplia de colisiones entre entidades. Se reconstruyen en puntos fijos del tick; entre
+    // reconstrucciones una entidad se mueve a lo sumo una caída máxima (15 px) más el ajuste al
+    // aterrizar, y las comprobaciones exactas tienen tolerancias de hasta 20 px. SPATIAL_MARGIN
+    // se suma a cada consulta para cubrir ambas cosas.
+    static final float SPATIAL_MARGIN = GameWebSocketServer.SIZE_TILE / 2f;
+    final SpatialHash<Player> playerIndex = new SpatialHash<>(GameWebSocketServer.SIZE_TILE);
+    final SpatialHash<Platform> platformIndex = new SpatialHash<>(GameWebSocketServer.SIZE_TILE);
+    // Con qué plataformas y mapa se armó platformIndex, y si alguna se movió desde entonces
+    private Platform[] indexedPlatforms;
+    private TileGrid indexedGrid;
+    boolean platformsMoved = false;
+
+    // Con qué posiciones de jugadores se contó por última vez quién está sobre cada plataforma
+    // (por índice de playerSlots), y si alguna plataforma se movió desde entonces
+    private Player[] countedPlayers;
+    private Platform[] countedPlatforms;
+    private float[] countedX = new float[0];
+    private float[] countedY = new float[0];
+    private boolean[] countedVisible = new boolean[0];
+    private boolean platformsMovedSinceCount = false;
+    // Plazo más cercano (espera o fin de movimiento) entre todas las plataformas
+    private long nextPlatformEvent = Long.MAX_VALUE;
+
     public Key key = null; // Llave del nivel (puede ser null si no hay)
     public boolean doorOpen = false; // Estado de la puerta (true = abierta)
 
     public int completedPlayers = 0;
 
-    public int needUsers;
+    // Cupo para arrancar; lo lee el Matchmaker y cambia con un template recargado
+    public volatile int needUsers;
+
+    // Destinatarios de los mensajes de la sala, actualizados al entrar y salir
+    volatile RoomMembers members = RoomMembers.EMPTY;
+
+    // Comandos de otros hilos que modifican la simulación; los ejecuta el hilo de tick (ver RoomCommandQueue)
+    final RoomCommandQueue commands = new RoomCommandQueue();
+
+    // Partida en curso de la instancia. Cambia cuando vuelve a la sala de espera o se libera:
+    // los eventos con demora de la partida anterior ya no corren (ver GameWebSocketServer.scheduleInRoom)
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // Reloj de simulación: el tiempo de plataformas y llave avanza un paso fijo por tick
+    final SimClock clock = new SimClock(GameWebSocketServer.GAME_TICK_RATE);
+
+    // Ticks, duración y tráfico de la sala (ver ServerMetrics)
+    final RoomMetrics metrics = new RoomMetrics();
+
+    // Historial de snapshots enviados, usado como baseline de los deltas de cada cliente
+    static final int SNAPSHOT_HISTORY = 64;
+    private final RoomSnapshot[] snapshotHistory = new RoomSnapshot[SNAPSHOT_HISTORY];
+    private int snapshotSeq = 0;
+
+    // Codificación de los gameUpdate y listas de destinatarios de sendGameUpdate, reutilizadas
+    // entre snapshots. Solo las usa el hilo de tick de la sala.
+    final GameUpdateEncoder updateEncoder = new GameUpdateEncoder();
+    final List<User> pendingUpdates = new ArrayList<>();
+    final List<RoomSnapshot> pendingBases = new ArrayList<>();
+    final List<WebSocket> jsonTargets = new ArrayList<>();
+    final List<WebSocket> binaryTargets = new ArrayList<>();
+
+    // Frecuencia de envío de snapshots, independiente de la simulación: uno cada snapshotInterval
+    // pasos. Por defecto SNAPSHOT_RATE, o la del tick si no está definida; cada mapa puede fijar la suya.
+    static final int DEFAULT_SNAPSHOT_RATE = defaultSnapshotRate();
+    volatile int snapshotRate;
+    private volatile int snapshotInterval;
+    private long nextSnapshotTick = 0;
 
     GameRoom(String id, String name, int needUsers, int[][] world, int[][] waitingRoom) {
+        this(id, name, needUsers, world, waitingRoom, TileProperties.DEFAULT);
+    }
+
+    GameRoom(String id, String name, int needUsers, int[][] world, int[][] waitingRoom, TileProperties tileProperties) {
+        this(id, name, needUsers, new TileMap(world, tileProperties), new TileMap(waitingRoom, tileProperties));
+    }
+
+    GameRoom(String id, String name, int needUsers, TileMap gameWorld, TileMap waitingRoom) {
         this.id = id;
         this.name = name;
-        this.world = waitingRoom;
-        this.gameWorld = deepCopyWorld(world);
-        this.originalGameWorld = deepCopyWorld(world);
+        this.tileProperties = gameWorld.properties;
+        this.gameWorld = gameWorld;
+        this.gameTiles = gameWorld.grid;
         this.waitingRoom = waitingRoom;
         this.needUsers = needUsers;
+        setSnapshotRate(DEFAULT_SNAPSHOT_RATE);
+        setWorld(waitingRoom);
         // Las plataformas se inicializarán cuando el juego comience realmente
     }
 
+    /**
+     * Cambia el mapa activo de la sala (y con él su grilla de propiedades)
+     */
+    public void setWorld(TileMap world) {
+        this.tiles = world.grid;
+        this.world = world;
+    }
+
+    /**
+     * El template de la sala se recargó (ver MapWatcher). En la sala de espera se aplica ya;
+     * con una partida en curso queda pendiente hasta applyPendingTemplate. Devuelve true si se
+     * aplicó. Solo desde el hilo de tick.
+     */
+    boolean reloadTemplate(MapTemplate template) {
+        if (world != waitingRoom) {
+            pendingTemplate = template;
+            return false;
+        }
+        applyTemplate(template);
+        return true;
+    }
+
+    /**
+     * Al volver a la sala de espera, toma el template recargado durante la partida, si lo hay
+     */
+    void applyPendingTemplate() {
+        if (pendingTemplate != null) {
+            applyTemplate(pendingTemplate);
+            pendingTemplate = null;
+        }
+    }
+
+    private void applyTemplate(MapTemplate template) {
+        this.name = template.name;
+        this.tileProperties = template.world.properties;
+        this.gameWorld = template.world;
+        this.gameTiles = template.world.grid;
+        this.waitingRoom = template.waitingRoom;
+        this.needUsers = template.usersToStart;
+        setSnapshotRate(template.snapshotRate > 0 ? template.snapshotRate : DEFAULT_SNAPSHOT_RATE);
+        setWorld(waitingRoom);
+    }
+
+    /**
+     * Nivel para una partida nueva. El mapa es inmutable, así que no hace falta copiarlo.
+     */
+    public void loadGameWorld() {
+        setWorld(gameWorld);
+    }
+
     public void initializeKey() {
         // Escanear el mapa para encontrar la llave (tile 50)
-        for (int y = 0; y < gameWorld.length; y++) {
-            for (int x = 0; x < gameWorld[y].length; x++) {
-                if (gameWorld[y][x] == 50) { // Tile de llave
+        for (int y = 0; y < gameWorld.height; y++) {
+            for (int x = 0; x < gameWorld.width; x++) {
+                if (gameTiles.is(x, y, TileProperties.KEY)) { // Tile de llave
                     this.key = new Key(x * GameWebSocketServer.SIZE_TILE, y * GameWebSocketServer.SIZE_TILE);
-                    System.out.println("[Llave] Encontrada en X=" + (x * GameWebSocketServer.SIZE_TILE) + ", Y=" + (y * GameWebSocketServer.SIZE_TILE));
+                    KEY_LOG.info("Encontrada en X=" + (x * GameWebSocketServer.SIZE_TILE) + ", Y=" + (y * GameWebSocketServer.SIZE_TILE));
                     return; // Solo una llave por nivel
                 }
             }
         }
-        System.out.println("[Llave] No se encontró llave en este nivel");
+        KEY_LOG.info("No se encontró llave en este nivel");
     }
 
     public void initializePlatforms() {
+        platforms.clear();
+
         // Escanear el mapa para encontrar plataformas (grupos continuos de tiles 31-39)
-        boolean[][] visited = new boolean[gameWorld.length][gameWorld[0].length];
+        boolean[][] visited = new boolean[gameWorld.height][gameWorld.width];
         
-        for (int y = 0; y < gameWorld.length; y++) {
-            for (int x = 0; x < gameWorld[y].length; x++) {
-                int tileType = gameWorld[y][x];
+        for (int y = 0; y < gameWorld.height; y++) {
+            for (int x = 0; x < gameWorld.width; x++) {
+                int tileType = gameWorld.get(x, y);
                 
-                if (!visited[y][x] && GameWebSocketServer.MOVING_PLATFORM_ORIGINS.contains(tileType)) {
+                if (!visited[y][x] && gameTiles.is(x, y, TileProperties.PLATFORM_ORIGIN)) {
                     // Encontrar los límites de esta plataforma
                     int minX = x;
                     int maxX = x;
@@ -69,21 +217,21 @@ public class GameRoom {
                     int maxY = y;
                     
                     // Expandir hacia la derecha
-                    while (maxX + 1 < gameWorld[y].length && 
-                           GameWebSocketServer.MOVING_PLATFORM_ORIGINS.contains(gameWorld[y][maxX + 1])) {
+                    while (maxX + 1 < gameWorld.width && 
+                           gameTiles.is(maxX + 1, y, TileProperties.PLATFORM_ORIGIN)) {
                         maxX++;
                     }
                     
                     // Expandir hacia abajo (solo si es la misma fila de plataforma)
-                    while (maxY + 1 < gameWorld.length && 
-                           GameWebSocketServer.MOVING_PLATFORM_ORIGINS.contains(gameWorld[maxY + 1][x])) {
+                    while (maxY + 1 < gameWorld.height && 
+                           gameTiles.is(x, maxY + 1, TileProperties.PLATFORM_ORIGIN)) {
                         maxY++;
                     }
                     
                     // Marcar como visitados
                     for (int py = minY; py <= maxY; py++) {
                         for (int px = minX; px <= maxX; px++) {
-                            if (GameWebSocketServer.MOVING_PLATFORM_ORIGINS.contains(gameWorld[py][px])) {
+                            if (gameTiles.is(px, py, TileProperties.PLATFORM_ORIGIN)) {
                                 visited[py][px] = true;
                             }
                         }
@@ -99,29 +247,85 @@ public class GameRoom {
                     Platform platform = new Platform(platformId, platformX, platformY, tileType);
                     platform.width = platformWidth;
                     platform.height = platformHeight;
+                    findRoute(platform);
                     platforms.put(platformId, platform);
                     
-                    System.out.println("[GameRoom] Plataforma detectada: " + platformId + " en (" + minX + "," + minY + ") tamaño: " + platformWidth + "x" + platformHeight);
+                    LOG.debug("Plataforma detectada: " + platformId + " en (" + minX + "," + minY + ") tamaño: " + platformWidth + "x" + platformHeight);
                 }
             }
         }
-        System.out.println("[GameRoom] Inicializadas " + platforms.size() + " plataforma(s)");
+        platformSlots = platforms.values().toArray(new Platform[0]);
+        LOG.info("Inicializadas " + platforms.size() + " plataforma(s)");
     }
 
-    private static int[][] deepCopyWorld(int[][] world) {
-        int[][] copy = new int[world.length][];
-        for (int i = 0; i < world.length; i++) {
-            copy[i] = world[i].clone();
-        }
-        return copy;
+    /**
+     * Ejecuta tick a tick lo que otros hilos quieren cambiar en la sala (inputs, eventos con
+     * demora, altas y bajas de jugadores). Se puede llamar desde cualquier hilo.
+     */
+    void submit(Runnable command) {
+        commands.offer(command);
+    }
+
+    int generation() {
+        return generation.get();
+    }
+
+    /**
+     * Da por terminada la partida actual: lo que se haya programado para ella se descarta
+     */
+    int nextGeneration() {
+        return generation.incrementAndGet();
     }
 
+    /**
+     * La instancia se liberó: descarta los comandos pendientes y rechaza los que lleguen después
+     */
+    void close() {
+        nextGeneration();
+        commands.close();
+    }
+
+    /**
+     * Corre los comandos pendientes; solo desde el hilo de tick (o antes de que la sala arranque)
+     */
+    int runCommands() {
+        return commands.drain();
+    }
+
+    /**
+     * El jugador entra a la simulación en el próximo tick; el cupo de la sala lo lleva el
+     * Matchmaker
+     */
     void addPlayer(Player player) {
-        players.put(player.id, player);
+        submit(() -> {
+            players.put(player.id, player);
+            refreshPlayerSlots();
+        });
     }
 
     void removePlayer(String playerId) {
-        players.remove(playerId);
+        submit(() -> {
+            players.remove(playerId);
+            refreshPlayerSlots();
+        });
+    }
+
+    private void refreshPlayerSlots() {
+        playerSlots = players.values().toArray(new Player[0]);
+    }
+
+    synchronized void addMember(User user) {
+        members = members.with(user);
+    }
+
+    /**
+     * Devuelve false si el usuario no era miembro de la sala
+     */
+    synchronized boolean removeMember(String userId) {
+        RoomMembers updated = members.without(userId);
+        if (updated == members) return false;
+        members = updated;
+        return true;
     }
 
     Player getPlayer(String playerId) {
@@ -151,28 +355,116 @@ public class GameRoom {
         return key.toMap();
     }
 
+    /**
+     * Snapshots por segundo (20, 30, 60...). Se redondea a un número entero de pasos de
+     * simulación entre envíos, y no supera la frecuencia del tick.
+     */
+    void setSnapshotRate(int rate) {
+        int tickRate = clock.tickRate;
+        int interval = Math.max(1, Math.round((float) tickRate / Math.max(1, rate)));
+        this.snapshotInterval = interval;
+        this.snapshotRate = tickRate / interval;
+    }
+
+    /**
+     * True si en el paso actual del reloj toca enviar un snapshot. Solo desde el hilo de tick.
+     */
+    boolean snapshotDue() {
+        long tick = clock.tick();
+        if (tick < nextSnapshotTick) return false;
+        nextSnapshotTick = tick + snapshotInterval;
+        return true;
+    }
+
+    private static int defaultSnapshotRate() {
+        String rateEnv = System.getenv("SNAPSHOT_RATE");
+        if (rateEnv != null) {
+            return Math.max(1, Integer.parseInt(rateEnv));
+        }
+        return GameWebSocketServer.GAME_TICK_RATE;
+    }
+
+    /**
+     * Captura el estado actual de la sala en el historial, reutilizando el snapshot más viejo
+     */
+    RoomSnapshot captureSnapshot() {
+        int seq = ++snapshotSeq;
+        int index = Math.floorMod(seq, SNAPSHOT_HISTORY);
+        RoomSnapshot snapshot = snapshotHistory[index];
+        if (snapshot == null) {
+            snapshot = new RoomSnapshot();
+            snapshotHistory[index] = snapshot;
+        }
+        snapshot.capture(seq, this);
+        return snapshot;
+    }
+
+    /**
+     * Snapshot con esa secuencia si todavía está en el historial, o null
+     */
+    RoomSnapshot getSnapshot(int seq) {
+        RoomSnapshot snapshot = snapshotHistory[Math.floorMod(seq, SNAPSHOT_HISTORY)];
+        return snapshot != null && snapshot.seq == seq ? snapshot : null;
+    }
+
+    /**
+     * Reconstruye el índice espacial de jugadores con sus posiciones actuales
+     */
+    void indexPlayers() {
+        Player[] slots = playerSlots;
+        TileGrid grid = tiles;
+        playerIndex.clear(grid.width, grid.height);
+        for (Player player : slots) {
+            playerIndex.insert(player, player.x, player.y, player.width, player.height);
+        }
+    }
+
+    /**
+     * Reconstruye el índice espacial de plataformas con sus posiciones actuales, solo si alguna
+     * se movió o cambiaron las plataformas o el mapa desde la última vez
+     */
+    void indexPlatforms() {
+        Platform[] slots = platformSlots;
+        TileGrid grid = tiles;
+        if (!platformsMoved && slots == indexedPlatforms && grid == indexedGrid) return;
+        platformsMoved = false;
+        indexedPlatforms = slots;
+        indexedGrid = grid;
+        platformIndex.clear(grid.width, grid.height);
+        for (Platform platform : slots) {
+            platformIndex.insert(platform, platform.x, platform.y, platform.width, platform.height);
+        }
+    }
+
     /**
      * Cuenta recursivamente a los jugadores que están encima de un jugador dado
      */
-    private void countPlayersOnTop(Player basePlayer, Platform platform, Map<String, Integer> platformPlayerCount) {
-        // Buscar jugadores que están encima de este jugador
-        for (Player other : players.values()) {
-            if (other.id.equals(basePlayer.id) || !other.isVisible) continue;
+    private void countPlayersOnTop(Player basePlayer, Platform platform) {
+        // Buscar jugadores que están encima de este jugador (solo los cercanos según el índice)
+        int start = playerIndex.queryAround(basePlayer.x, basePlayer.y, basePlayer.width, basePlayer.height, SPATIAL_MARGIN);
+        int end = playerIndex.end();
+        try {
+            for (int i = start; i < end; i++) {
+                Player other = playerIndex.get(i);
+                if (other == basePlayer || !other.isVisible) continue;
             
-            // Verificar si el otro jugador está encima de este (rango amplio)
-            float otherBottomY = other.y + other.height;
-            float baseTopY = basePlayer.y;
+                // Verificar si el otro jugador está encima de este (rango amplio)
+                float otherBottomY = other.y + other.height;
+                float baseTopY = basePlayer.y;
             
-            boolean isOnTopOfBase = other.x + other.width > basePlayer.x &&
-                other.x < basePlayer.x + basePlayer.width &&
-                otherBottomY >= baseTopY - 10 &&
-                otherBottomY <= baseTopY + 20;
+                boolean isOnTopOfBase = other.x + other.width > basePlayer.x &&
+                    other.x < basePlayer.x + basePlayer.width &&
+                    otherBottomY >= baseTopY - 10 &&
+                    otherBottomY <= baseTopY + 20;
             
-            if (isOnTopOfBase) {
-                platformPlayerCount.put(platform.id, platformPlayerCount.get(platform.id) + 1);
-                // Recursivamente contar jugadores encima de este jugador
-                countPlayersOnTop(other, platform, platformPlayerCount);
+                if (isOnTopOfBase) {
+                    platform.playersOnPlatform++;
+                    // Recursivamente contar jugadores encima de este jugador
+                    countPlayersOnTop(other, platform);
+                }
             }
+        } finally {
+            playerIndex.release(start);
         }
     }
 
@@ -181,55 +473,47 @@ public class GameRoom {
      * DEBE ser llamado ANTES de la física del jugador
      */
     void updatePlatformPositions() {
+        Player[] playerSlots = this.playerSlots;
+        Platform[] platformSlots = this.platformSlots;
+        long now = clock.millis();
+
         // Actualizar posiciones de plataformas en movimiento
-        for (Platform platform : platforms.values()) {
-            platform.updatePosition();
-            
-            // Cuando la plataforma termina de moverse de vuelta a origen, marcar isAtOrigin
-            if (!platform.isMoving && Math.abs(platform.y - platform.originalY) < 0.1f) {
-                platform.isAtOrigin = true;
-            }
+        boolean anyMoved = false;
+        for (Platform platform : platformSlots) {
+            anyMoved |= platform.updatePosition(now);
         }
+        if (!anyMoved) return; // Nada que reindexar ni jugadores que arrastrar
+
+        platformsMoved = true;
+        platformsMovedSinceCount = true;
+        indexPlatforms();
 
         // Mover jugadores CON las plataformas
-        for (Player player : players.values()) {
+        for (Player player : playerSlots) {
             if (!player.isVisible) continue;
 
-            for (Platform platform : platforms.values()) {
-                float playerBottomY = player.y + player.height;
+            int start = platformIndex.queryAround(player.x, player.y, player.width, player.height, SPATIAL_MARGIN);
+            int end = platformIndex.end();
+            try {
+                for (int i = start; i < end; i++) {
+                    Platform platform = platformIndex.get(i);
+                    float playerBottomY = player.y + player.height;
                 
-                // Rango más amplio para detectar jugadores sobre la plataforma
-                boolean isOnPlatform = player.x + player.width > platform.x &&
-                    player.x < platform.x + platform.width &&
-                    playerBottomY >= platform.y - 10 &&
-                    playerBottomY <= platform.y + 20 &&
-                    platform.isMoving;
+                    // Rango más amplio para detectar jugadores sobre la plataforma
+                    boolean isOnPlatform = player.x + player.width > platform.x &&
+                        player.x < platform.x + platform.width &&
+                        playerBottomY >= platform.y - 10 &&
+                        playerBottomY <= platform.y + 20 &&
+                        platform.deltaY != 0;
                 
-                if (isOnPlatform) {
-                    // El jugador se mueve junto con el delta de la plataforma
-                    // Calcular cuánto se movió la plataforma este frame
-                    long elapsed = System.currentTimeMillis() - platform.startMoveTime;
-                    long previousElapsed = elapsed - (1000 / 60); // Un frame anterior (60 FPS)
-                    
-                    float previousProgress = Math.max(0, Math.min(1.0f, previousElapsed / (float) Platform.MOVE_DURATION));
-                    float currentProgress = Math.min(1.0f, elapsed / (float) Platform.MOVE_DURATION);
-                    
-                    // Easing para ambos frames
-                    float previousEased = previousProgress < 0.5f ? 
-                        4 * previousProgress * previousProgress * previousProgress : 
-                        1 - (float)Math.pow(-2 * previousProgress + 2, 3) / 2;
-                    float currentEased = currentProgress < 0.5f ? 
-                        4 * currentProgress * currentProgress * currentProgress : 
-                        1 - (float)Math.pow(-2 * currentProgress + 2, 3) / 2;
-                    
-                    float startY = platform.y;
-                    float previousPlatformY = startY + (platform.destY - startY) * previousEased;
-                    float currentPlatformY = startY + (platform.destY - startY) * currentEased;
-                    
-                    float platformDelta = currentPlatformY - previousPlatformY;
-                    player.y += platformDelta;
-                    break; // Un jugador solo se mueve con una plataforma
+                    if (isOnPlatform) {
+                        // El jugador se mueve exactamente lo que se movió la plataforma en este tick
+                        player.y += platform.deltaY;
+                        break; // Un jugador solo se mueve con una plataforma
+                    }
                 }
+            } finally {
+                platformIndex.release(start);
             }
         }
     }
@@ -237,128 +521,153 @@ public class GameRoom {
     /**
      * Actualiza la lógica de detección y movimiento de plataformas
      * DEBE ser llamado DESPUÉS de la física del jugador
+     *
+     * La ocupación sale de las posiciones: se vuelve a contar en cada tick en que se movió algún
+     * jugador o plataforma (recorriendo a los jugadores, no a las plataformas). Si nada se movió
+     * el conteo anterior sigue valiendo y solo se evalúan las plataformas con un plazo vencido.
      */
     void updatePlatformLogic() {
-        // Detectar qué jugadores están en cada plataforma
-        Map<String, Integer> platformPlayerCount = new HashMap<>();
-        for (Platform platform : platforms.values()) {
-            platformPlayerCount.put(platform.id, 0);
+        Player[] playerSlots = this.playerSlots;
+        Platform[] platformSlots = this.platformSlots;
+        long now = clock.millis();
+
+        if (!occupancyChanged(playerSlots, platformSlots)) {
+            if (now >= nextPlatformEvent) {
+                evaluatePlatforms(platformSlots, now);
+            }
+            return;
         }
 
-        for (Player player : players.values()) {
+        // Detectar qué jugadores están en cada plataforma (el conteo vive en la propia plataforma)
+        for (Platform platform : platformSlots) {
+            platform.playersOnPlatform = 0;
+        }
+
+        for (Player player : playerSlots) {
             if (!player.isVisible) continue;
 
             // Verificar en qué plataforma está el jugador (sin importar si está en el suelo)
-            for (Platform platform : platforms.values()) {
-                float playerBottomY = player.y + player.height;
+            int start = platformIndex.queryAround(player.x, player.y, player.width, player.height, SPATIAL_MARGIN);
+            int end = platformIndex.end();
+            try {
+                for (int i = start; i < end; i++) {
+                    Platform platform = platformIndex.get(i);
+                    float playerBottomY = player.y + player.height;
                 
-                // Verificar si el jugador está dentro del rango de la plataforma (rango amplio)
-                boolean isNearPlatform = player.x + player.width > platform.x &&
-                    player.x < platform.x + platform.width &&
-                    playerBottomY >= platform.y - 10 &&
-                    playerBottomY <= platform.y + 20;
+                    // Verificar si el jugador está dentro del rango de la plataforma (rango amplio)
+                    boolean isNearPlatform = player.x + player.width > platform.x &&
+                        player.x < platform.x + platform.width &&
+                        playerBottomY >= platform.y - 10 &&
+                        playerBottomY <= platform.y + 20;
                 
-                if (isNearPlatform) {
-                    platformPlayerCount.put(platform.id, platformPlayerCount.get(platform.id) + 1);
+                    if (isNearPlatform) {
+                        platform.playersOnPlatform++;
                     
-                    // Contar también a los jugadores que están ENCIMA de este jugador
-                    countPlayersOnTop(player, platform, platformPlayerCount);
-                    break; // Un jugador solo puede estar en una plataforma
+                        // Contar también a los jugadores que están ENCIMA de este jugador
+                        countPlayersOnTop(player, platform);
+                        break; // Un jugador solo puede estar en una plataforma
+                    }
                 }
+            } finally {
+                platformIndex.release(start);
             }
         }
 
-        // Actualizar plataformas basadas en el número de jugadores
-        for (Platform platform : platforms.values()) {
-            int playersOnPlatform = platformPlayerCount.get(platform.id);
-            platform.playersOnPlatform = playersOnPlatform;
+        evaluatePlatforms(platformSlots, now);
+    }
+
+    /**
+     * True si desde el último conteo cambiaron los jugadores o las plataformas, o se movió alguno;
+     * deja registradas las posiciones actuales
+     */
+    private boolean occupancyChanged(Player[] players, Platform[] platforms) {
+        boolean changed = platformsMovedSinceCount || players != countedPlayers || platforms != countedPlatforms;
+        platformsMovedSinceCount = false;
+        countedPlayers = players;
+        countedPlatforms = platforms;
+        if (countedX.length < players.length) {
+            countedX = new float[players.length * 2];
+            countedY = new float[players.length * 2];
+            countedVisible = new boolean[players.length * 2];
+        }
+        for (int i = 0; i < players.length; i++) {
+            Player player = players[i];
+            if (player.x != countedX[i] || player.y != countedY[i] || player.isVisible != countedVisible[i]) {
+                changed = true;
+                countedX[i] = player.x;
+                countedY[i] = player.y;
+                countedVisible[i] = player.isVisible;
+            }
+        }
+        return changed;
+    }
+
+    // Máquina de estados de cada plataforma (ver Platform)
+    private void evaluatePlatforms(Platform[] platformSlots, long now) {
+        long nextEvent = Long.MAX_VALUE;
+        for (Platform platform : platformSlots) {
+            int playersOnPlatform = platform.playersOnPlatform;
+
+            if (PLATFORM_TICK_LOG.isDebugEnabled()) {
+                PLATFORM_TICK_LOG.debug(platform.id + " Jugadores: " + playersOnPlatform + "/" + platform.requiredPlayers + ", estado: " + platform.state);
+            }
+
+            // Solo se evalúa si cambió quién está arriba o venció su plazo (espera o fin de movimiento)
+            if (platform.needsUpdate(playersOnPlatform, now)) {
+                platform.update(playersOnPlatform, now);
+            }
+            nextEvent = Math.min(nextEvent, platform.nextEventTime);
+        }
+        nextPlatformEvent = nextEvent;
+    }
+
+    /**
+     * Busca una vez, al armar el nivel, el destino de la plataforma: el primer tile de destino
+     * en sus columnas hacia ARRIBA y, si no hay, hacia ABAJO
+     */
+    private void findRoute(Platform platform) {
+        int platformTileY = (int)(platform.y / GameWebSocketServer.SIZE_TILE);
+        int platformTileX = (int)(platform.x / GameWebSocketServer.SIZE_TILE);
+        int platformTileWidth = (int)(platform.width / GameWebSocketServer.SIZE_TILE);
 
-            //System.out.println("[Plataforma " + platform.id + "] Jugadores: " + playersOnPlatform + "/" + platform.requiredPlayers + ", moving: " + platform.isMoving);
+        if (PLATFORM_LOG.isDebugEnabled()) {
+            PLATFORM_LOG.debug("Buscando destino desde Y=" + platformTileY + ", X=" + platformTileX + "-" + (platformTileX + platformTileWidth));
+        }
 
-            // Si NO hay suficientes jugadores Y la plataforma NO está en movimiento, resetear
-            if (playersOnPlatform < platform.requiredPlayers && !platform.isMoving) {
-                if (platform.y != platform.originalY) {
-                    //System.out.println("[Plataforma] " + platform.id + " reseteando a posición original");
-                    platform.resetToOriginal();
+        // Buscar destino ARRIBA
+        for (int checkY = platformTileY - 1; checkY >= 0; checkY--) {
+            if (hasDestinationInRange(checkY, platformTileX, platformTileWidth)) {
+                platform.setRoute(-1, checkY * GameWebSocketServer.SIZE_TILE);
+                if (PLATFORM_LOG.isDebugEnabled()) {
+                    PLATFORM_LOG.debug("Destino encontrado ARRIBA en Y=" + checkY);
                 }
-                platform.detectedPlayersTime = 0;
-                continue;
+                return;
             }
+        }
 
-            // Si está parada Y hay suficientes jugadores Y está en su posición original
-            if (!platform.isMoving && playersOnPlatform >= platform.requiredPlayers && platform.isAtOrigin) {
-                // Inicializar el contador de detección si es la primera vez
-                if (platform.detectedPlayersTime == 0) {
-                    platform.detectedPlayersTime = System.currentTimeMillis();
+        // Buscar destino ABAJO si no lo encontró arriba
+        for (int checkY = platformTileY + 1; checkY < gameWorld.height; checkY++) {
+            if (hasDestinationInRange(checkY, platformTileX, platformTileWidth)) {
+                platform.setRoute(1, checkY * GameWebSocketServer.SIZE_TILE);
+                if (PLATFORM_LOG.isDebugEnabled()) {
+                    PLATFORM_LOG.debug("Destino encontrado ABAJO en Y=" + checkY);
                 }
+                return;
+            }
+        }
 
-                // Esperar el delay antes de iniciar movimiento
-                long detectionElapsed = System.currentTimeMillis() - platform.detectedPlayersTime;
-                if (detectionElapsed >= Platform.PLAYER_DETECTION_DELAY) {
-                    // Encontrar dirección hacia tile 30 (destino)
-                    int platformTileY = (int)(platform.y / GameWebSocketServer.SIZE_TILE);
-                    int platformTileX = (int)(platform.x / GameWebSocketServer.SIZE_TILE);
-                    int platformTileWidth = (int)(platform.width / GameWebSocketServer.SIZE_TILE);
-                    
-                    int direction = 0;
-                    float destY = platform.y;
-                    boolean foundDest = false;
-
-                    //System.out.println("[Plataforma] Buscando destino desde Y=" + platformTileY + ", X=" + platformTileX + "-" + (platformTileX + platformTileWidth));
-
-                    // Buscar destino ARRIBA
-                    for (int checkY = platformTileY - 1; checkY >= 0 && !foundDest; checkY--) {
-                        boolean hasDestInRange = false;
-                        for (int checkX = platformTileX; checkX < platformTileX + platformTileWidth; checkX++) {
-                            if (checkX >= 0 && checkX < gameWorld[checkY].length) {
-                                if (gameWorld[checkY][checkX] == GameWebSocketServer.PLATFORM_DESTINATION) {
-                                    hasDestInRange = true;
-                                    break;
-                                }
-                            }
-                        }
-                        if (hasDestInRange) {
-                            direction = -1;
-                            destY = checkY * GameWebSocketServer.SIZE_TILE;
-                            foundDest = true;
-                            //System.out.println("[Plataforma] Destino encontrado ARRIBA en Y=" + checkY);
-                        }
-                    }
-                    
-                    // Buscar destino ABAJO si no lo encontró arriba
-                    if (!foundDest) {
-                        for (int checkY = platformTileY + 1; checkY < gameWorld.length && !foundDest; checkY++) {
-                            boolean hasDestInRange = false;
-                            for (int checkX = platformTileX; checkX < platformTileX + platformTileWidth; checkX++) {
-                                if (checkX >= 0 && checkX < gameWorld[checkY].length) {
-                                    if (gameWorld[checkY][checkX] == GameWebSocketServer.PLATFORM_DESTINATION) {
-                                        hasDestInRange = true;
-                                        break;
-                                    }
-                                }
-                            }
-                            if (hasDestInRange) {
-                                direction = 1;
-                                destY = checkY * GameWebSocketServer.SIZE_TILE;
-                                foundDest = true;
-                                //System.out.println("[Plataforma] Destino encontrado ABAJO en Y=" + checkY);
-                            }
-                        }
-                    }
+        if (PLATFORM_LOG.isDebugEnabled()) {
+            PLATFORM_LOG.debug("NO se encontró destino para " + platform.id);
+        }
+    }
 
-                    if (direction != 0) {
-                        //System.out.println("[Plataforma] " + platform.id + " ¡¡MOVIMIENTO!! hacia Y=" + destY);
-                        platform.startMovement(direction, destY);
-                        platform.detectedPlayersTime = 0; // Reset para siguiente movimiento
-                    } else {
-                        //System.out.println("[Plataforma] NO se encontró destino para " + platform.id);
-                    }
-                }
-            } else if (playersOnPlatform < platform.requiredPlayers) {
-                // Jugador se fue mientras se esperaba el delay
-                platform.detectedPlayersTime = 0;
+    private boolean hasDestinationInRange(int checkY, int platformTileX, int platformTileWidth) {
+        for (int checkX = platformTileX; checkX < platformTileX + platformTileWidth; checkX++) {
+            if (checkX >= 0 && checkX < gameWorld.width && gameTiles.is(checkX, checkY, TileProperties.PLATFORM_DESTINATION)) {
+                return true;
             }
         }
+        return false;
     }
 
     public static RoomConfig loadRoomConfig(String path) {
@@ -366,7 +675,7 @@ public class GameRoom {
             Gson gson = new Gson();
             return gson.fromJson(reader, RoomConfig.class);
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("No se pudo leer la configuración de sala " + path, e);
             return null;
         }
     }
@@ -0,0 +1,497 @@
+package org.server;
+
+import org.shared.BinaryProtocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Escribe los gameUpdate directo desde los arreglos de RoomSnapshot, sin mapas intermedios.
+ * Primero se elige el mensaje (keyframe o delta), que decide qué entidades y campos van, y
+ * después se escribe en cada formato que haga falta. El JSON y el binario se escriben en un
+ * StringBuilder y un buffer que se reutilizan. Lo único que se crea por mensaje es la copia
+ * final que se envía.
+ *
+ * El JSON tiene los mismos campos que producía createMessage con los mapas de Player,
+ * Platform y Key. Hay uno por sala y solo lo usa su hilo de tick.
+ */
+final class GameUpdateEncoder {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final BinaryProtocol.Writer binary = new BinaryProtocol.Writer();
+    private final StringBuilder json = new StringBuilder(1024);
+
+    private RoomSnapshot snapshot;
+    // Baseline del delta, o null si es un keyframe
+    private RoomSnapshot base;
+    // false: el gameUpdate completo de los clientes clásicos, sin seq
+    private boolean sequenced;
+
+    // Campos que van de cada entidad del snapshot (0: no va) y cuántas van
+    private int[] players = new int[8];
+    private int[] platforms = new int[4];
+    private int playerCount;
+    private int platformCount;
+
+    // Índices en el baseline de las entidades que ya no están (o que el cliente dejó de ver)
+    private int[] removedPlayers = new int[8];
+    private int[] removedPlatforms = new int[4];
+    private int removedPlayerCount;
+    private int removedPlatformCount;
+
+    private int key;
+    private boolean keyIncluded;
+    private boolean keyRemoved;
+    private boolean includeRequiresKey;
+    private boolean includeDoorOpen;
+
+    /**
+     * Prepara un keyframe con las entidades que el cliente ve (view null: todas). Sin
+     * secuencia es el gameUpdate completo de los clientes clásicos.
+     */
+    void keyframe(RoomSnapshot snapshot, AreaOfInterest.View view, boolean sequenced) {
+        begin(snapshot, null, sequenced);
+
+        for (int i = 0; i < snapshot.playerCount; i++) {
+            if (view == null || view.player(i)) {
+                players[i] = RoomSnapshot.PLAYER_ALL;
+                playerCount++;
+            }
+        }
+        for (int i = 0; i < snapshot.platformCount; i++) {
+            if (view == null || view.platform(i)) {
+                platforms[i] = RoomSnapshot.PLATFORM_ALL;
+                platformCount++;
+            }
+        }
+
+        keyIncluded = snapshot.hasKey && (view == null || view.key());
+        key = keyIncluded ? snapshot.keyChanges(null) : 0;
+        includeRequiresKey = true;
+        includeDoorOpen = true;
+    }
+
+    /**
+     * Prepara el delta entre lo que el cliente veía en el baseline (baseView) y lo que ve
+     * ahora (view). Solo van las entidades y campos que cambiaron. Las entidades nuevas, o
+     * que entran a su área, van completas; las que salen se listan como removidas. Con ambas
+     * vistas null es el delta de siempre.
+     */
+    void delta(RoomSnapshot snapshot, RoomSnapshot base, AreaOfInterest.View baseView, AreaOfInterest.View view) {
+        begin(snapshot, base, true);
+
+        for (int i = 0; i < snapshot.playerCount; i++) {
+            if (view != null && !view.player(i)) continue;
+            int b = RoomSnapshot.indexOf(base.playerIds, base.playerCount, snapshot.playerIds[i], i);
+            if (b >= 0 && baseView != null && !baseView.player(b)) {
+                b = -1; // entra al área: va completo
+            }
+            players[i] = snapshot.playerChanges(base, b, i);
+            if (players[i] != 0) {
+                playerCount++;
+            }
+        }
+        for (int b = 0; b < base.playerCount; b++) {
+            if (baseView != null && !baseView.player(b)) continue;
+            int i = RoomSnapshot.indexOf(snapshot.playerIds, snapshot.playerCount, base.playerIds[b], b);
+            if (i < 0 || (view != null && !view.player(i))) {
+                removedPlayers[removedPlayerCount++] = b;
+            }
+        }
+
+        for (int i = 0; i < snapshot.platformCount; i++) {
+            if (view != null && !view.platform(i)) continue;
+            int b = RoomSnapshot.indexOf(base.platformIds, base.platformCount, snapshot.platformIds[i], i);
+            if (b >= 0 && baseView != null && !baseView.platform(b)) {
+                b = -1;
+            }
+            platforms[i] = snapshot.platformChanges(base, b, i);
+            if (platforms[i] != 0) {
+                platformCount++;
+            }
+        }
+        for (int b = 0; b < base.platformCount; b++) {
+            if (baseView != null && !baseView.platform(b)) continue;
+            int i = RoomSnapshot.indexOf(snapshot.platformIds, snapshot.platformCount, base.platformIds[b], b);
+            if (i < 0 || (view != null && !view.platform(i))) {
+                removedPlatforms[removedPlatformCount++] = b;
+            }
+        }
+
+        boolean keyVisible = snapshot.hasKey && (view == null || view.key());
+        boolean baseKeyVisible = base.hasKey && (baseView == null || baseView.key());
+        if (keyVisible) {
+            key = snapshot.keyChanges(baseKeyVisible ? base : null);
+            keyIncluded = key != 0;
+        } else {
+            keyRemoved = baseKeyVisible;
+        }
+
+        includeRequiresKey = snapshot.requiresKey != base.requiresKey;
+        includeDoorOpen = snapshot.doorOpen != base.doorOpen;
+    }
+
+    private void begin(RoomSnapshot snapshot, RoomSnapshot base, boolean sequenced) {
+        this.snapshot = snapshot;
+        this.base = base;
+        this.sequenced = sequenced;
+
+        if (players.length < snapshot.playerCount) {
+            players = new int[Math.max(snapshot.playerCount, players.length * 2)];
+        }
+        if (platforms.length < snapshot.platformCount) {
+            platforms = new int[Math.max(snapshot.platformCount, platforms.length * 2)];
+        }
+        if (base != null && removedPlayers.length < base.playerCount) {
+            removedPlayers = new int[Math.max(base.playerCount, removedPlayers.length * 2)];
+        }
+        if (base != null && removedPlatforms.length < base.platformCount) {
+            removedPlatforms = new int[Math.max(base.platformCount, removedPlatforms.length * 2)];
+        }
+        for (int i = 0; i < snapshot.playerCount; i++) {
+            players[i] = 0;
+        }
+        for (int i = 0; i < snapshot.platformCount; i++) {
+            platforms[i] = 0;
+        }
+        playerCount = 0;
+        platformCount = 0;
+        removedPlayerCount = 0;
+        removedPlatformCount = 0;
+        key = 0;
+        keyIncluded = false;
+        keyRemoved = false;
+    }
+
+    /**
+     * El mensaje preparado en binario, en un buffer propio listo para enviar
+     */
+    ByteBuffer binary() {
+        writeBinary();
+        return binary.copy();
+    }
+
+    /**
+     * El mensaje preparado en JSON, con el mismo sobre que createMessage
+     */
+    String json() {
+        writeJson(System.currentTimeMillis());
+        return json.toString();
+    }
+
+    /**
+     * Escribe el mensaje preparado en el buffer reutilizado y devuelve cuántos bytes ocupa
+     */
+    int writeBinary() {
+        BinaryProtocol.Writer out = binary;
+        out.reset();
+
+        int flags = 0;
+        if (sequenced) {
+            flags |= BinaryProtocol.HAS_SEQ;
+            if (base == null) flags |= BinaryProtocol.KEYFRAME;
+        }
+        if (includeRequiresKey) {
+            flags |= BinaryProtocol.HAS_REQUIRES_KEY;
+            if (snapshot.requiresKey) flags |= BinaryProtocol.REQUIRES_KEY;
+        }
+        if (includeDoorOpen) {
+            flags |= BinaryProtocol.HAS_DOOR_OPEN;
+            if (snapshot.doorOpen) flags |= BinaryProtocol.DOOR_OPEN;
+        }
+        if (keyRemoved) flags |= BinaryProtocol.KEY_REMOVED;
+        if (keyIncluded) flags |= BinaryProtocol.HAS_KEY;
+        BinaryProtocol.writeGameUpdateHeader(out, flags, snapshot.seq, base != null ? base.seq : 0);
+
+        out.writeVarInt(playerCount);
+        for (int i = 0; i < snapshot.playerCount; i++) {
+            if (players[i] != 0) {
+                out.writeId(snapshot.playerIds[i]);
+                writePlayerFields(out, i, playerFields(i));
+            }
+        }
+        out.writeVarInt(removedPlayerCount);
+        for (int r = 0; r < removedPlayerCount; r++) {
+            out.writeId(base.playerIds[removedPlayers[r]]);
+        }
+
+        out.writeVarInt(platformCount);
+        for (int i = 0; i < snapshot.platformCount; i++) {
+            if (platforms[i] != 0) {
+                out.writeId(snapshot.platformIds[i]);
+                writePlatformFields(out, i, platforms[i]);
+            }
+        }
+        out.writeVarInt(removedPlatformCount);
+        for (int r = 0; r < removedPlatformCount; r++) {
+            out.writeId(base.platformIds[removedPlatforms[r]]);
+        }
+
+        if (keyIncluded) {
+            writeKeyFields(out, keyFields(), keyCleared());
+        }
+        return out.position();
+    }
+
+    private void writePlayerFields(BinaryProtocol.Writer out, int i, int fields) {
+        RoomSnapshot s = snapshot;
+        out.writeVarInt(fields);
+        out.writeVarInt(0);
+        if ((fields & BinaryProtocol.PLAYER_USERNAME) != 0) out.writeString(s.usernames[i]);
+        if ((fields & BinaryProtocol.PLAYER_DIRECTION) != 0) out.writeDirection(s.directions[i]);
+        if ((fields & BinaryProtocol.PLAYER_X) != 0) out.writeFloat(s.playerX[i]);
+        if ((fields & BinaryProtocol.PLAYER_Y) != 0) out.writeFloat(s.playerY[i]);
+        if ((fields & BinaryProtocol.PLAYER_VISIBLE) != 0) out.writeBoolean(s.playerVisible[i]);
+        if ((fields & BinaryProtocol.PLAYER_HAS_KEY) != 0) out.writeBoolean(s.playerHasKey[i]);
+        if ((fields & BinaryProtocol.PLAYER_VELOCITY_Y) != 0) out.writeFloat(s.playerVelocityY[i]);
+        if ((fields & BinaryProtocol.PLAYER_ON_GROUND) != 0) out.writeBoolean(s.playerOnGround[i]);
+        if ((fields & BinaryProtocol.PLAYER_INPUT_SEQ) != 0) out.writeInt(s.playerInputSeq[i]);
+    }
+
+    private void writePlatformFields(BinaryProtocol.Writer out, int i, int fields) {
+        RoomSnapshot s = snapshot;
+        out.writeVarInt(fields);
+        out.writeVarInt(0);
+        if ((fields & BinaryProtocol.PLATFORM_X) != 0) out.writeFloat(s.platformX[i]);
+        if ((fields & BinaryProtocol.PLATFORM_Y) != 0) out.writeFloat(s.platformY[i]);
+        if ((fields & BinaryProtocol.PLATFORM_WIDTH) != 0) out.writeFloat(s.platformWidth[i]);
+        if ((fields & BinaryProtocol.PLATFORM_HEIGHT) != 0) out.writeFloat(s.platformHeight[i]);
+        if ((fields & BinaryProtocol.PLATFORM_TYPE) != 0) out.writeInt(s.platformType[i]);
+        if ((fields & BinaryProtocol.PLATFORM_DIRECTION) != 0) out.writeInt(s.platformDirection[i]);
+        if ((fields & BinaryProtocol.PLATFORM_MOVING) != 0) out.writeBoolean(s.platformMoving[i]);
+        if ((fields & BinaryProtocol.PLATFORM_ON_TOP) != 0) out.writeInt(s.platformOnTop[i]);
+        if ((fields & BinaryProtocol.PLATFORM_REQUIRED) != 0) out.writeInt(s.platformRequired[i]);
+        if ((fields & BinaryProtocol.PLATFORM_NEEDED) != 0) out.writeInt(s.playersNeeded(i));
+    }
+
+    private void writeKeyFields(BinaryProtocol.Writer out, int fields, int cleared) {
+        RoomSnapshot s = snapshot;
+        out.writeVarInt(fields);
+        out.writeVarInt(cleared);
+        if ((fields & BinaryProtocol.KEY_X) != 0) out.writeFloat(s.keyX);
+        if ((fields & BinaryProtocol.KEY_Y) != 0) out.writeFloat(s.keyY);
+        if ((fields & BinaryProtocol.KEY_COLLECTED) != 0) out.writeBoolean(s.keyCollected);
+        if ((fields & BinaryProtocol.KEY_CARRIER) != 0) out.writeId(s.keyCarrier);
+        if ((fields & BinaryProtocol.KEY_FLOAT_OFFSET) != 0) out.writeFloat(s.keyFloatOffset);
+        if ((fields & BinaryProtocol.KEY_OPENING_DOOR) != 0) out.writeBoolean(s.keyOpeningDoor);
+    }
+
+    // Los textos en null no se escriben (como Gson con los mapas)
+    private int playerFields(int i) {
+        int fields = players[i];
+        if (snapshot.usernames[i] == null) fields &= ~BinaryProtocol.PLAYER_USERNAME;
+        if (snapshot.directions[i] == null) fields &= ~BinaryProtocol.PLAYER_DIRECTION;
+        return fields;
+    }
+
+    private int keyFields() {
+        return snapshot.keyCarrier != null ? key : key & ~BinaryProtocol.KEY_CARRIER;
+    }
+
+    // El portador que pasa a null se lista como borrado, porque Gson omite los null
+    private int keyCleared() {
+        return snapshot.keyCarrier != null ? 0 : key & BinaryProtocol.KEY_CARRIER;
+    }
+
+    /**
+     * Escribe el mensaje preparado en el StringBuilder reutilizado y devuelve su largo
+     */
+    int writeJson(long timestamp) {
+        StringBuilder out = json;
+        out.setLength(0);
+        out.append("{\"type\":\"gameUpdate\",\"data\":{");
+
+        if (sequenced) {
+            name("seq").append(snapshot.seq);
+            if (base == null) {
+                name("keyframe").append(true);
+            } else {
+                name("base").append(base.seq);
+            }
+        }
+
+        if (base == null || playerCount > 0) {
+            name("players").append('[');
+            for (int i = 0; i < snapshot.playerCount; i++) {
+                if (players[i] != 0) {
+                    writePlayerJson(i, playerFields(i));
+                }
+            }
+            out.append(']');
+        }
+        if (removedPlayerCount > 0) {
+            name("removedPlayers").append('[');
+            for (int r = 0; r < removedPlayerCount; r++) {
+                separator();
+                string(base.playerIds[removedPlayers[r]]);
+            }
+            out.append(']');
+        }
+
+        if (base == null || platformCount > 0) {
+            name("platforms").append('[');
+            for (int i = 0; i < snapshot.platformCount; i++) {
+                if (platforms[i] != 0) {
+                    writePlatformJson(i, platforms[i]);
+                }
+            }
+            out.append(']');
+        }
+        if (removedPlatformCount > 0) {
+            name("removedPlatforms").append('[');
+            for (int r = 0; r < removedPlatformCount; r++) {
+                separator();
+                string(base.platformIds[removedPlatforms[r]]);
+            }
+            out.append(']');
+        }
+
+        if (keyIncluded) {
+            name("key");
+            writeKeyJson(keyFields(), keyCleared());
+        }
+        if (keyRemoved) {
+            name("keyRemoved").append(true);
+        }
+        if (includeRequiresKey) {
+            name("requiresKey").append(snapshot.requiresKey);
+        }
+        if (includeDoorOpen) {
+            name("doorOpen").append(snapshot.doorOpen);
+        }
+
+        out.append("},\"timestamp\":").append(timestamp).append('}');
+        return out.length();
+    }
+
+    private void writePlayerJson(int i, int fields) {
+        RoomSnapshot s = snapshot;
+        separator();
+        json.append('{');
+        name("id");
+        string(s.playerIds[i]);
+        if ((fields & BinaryProtocol.PLAYER_USERNAME) != 0) {
+            name("username");
+            string(s.usernames[i]);
+        }
+        if ((fields & BinaryProtocol.PLAYER_DIRECTION) != 0) {
+            name("direction");
+            string(s.directions[i]);
+        }
+        if ((fields & BinaryProtocol.PLAYER_X) != 0) name("x").append(s.playerX[i]);
+        if ((fields & BinaryProtocol.PLAYER_Y) != 0) name("y").append(s.playerY[i]);
+        if ((fields & BinaryProtocol.PLAYER_VISIBLE) != 0) name("isVisible").append(s.playerVisible[i]);
+        if ((fields & BinaryProtocol.PLAYER_HAS_KEY) != 0) name("hasKey").append(s.playerHasKey[i]);
+        if ((fields & BinaryProtocol.PLAYER_VELOCITY_Y) != 0) name("velocityY").append(s.playerVelocityY[i]);
+        if ((fields & BinaryProtocol.PLAYER_ON_GROUND) != 0) name("isOnGround").append(s.playerOnGround[i]);
+        if ((fields & BinaryProtocol.PLAYER_INPUT_SEQ) != 0) name("inputSeq").append(s.playerInputSeq[i]);
+        json.append('}');
+    }
+
+    private void writePlatformJson(int i, int fields) {
+        RoomSnapshot s = snapshot;
+        separator();
+        json.append('{');
+        name("id");
+        string(s.platformIds[i]);
+        if ((fields & BinaryProtocol.PLATFORM_X) != 0) name("x").append(s.platformX[i]);
+        if ((fields & BinaryProtocol.PLATFORM_Y) != 0) name("y").append(s.platformY[i]);
+        if ((fields & BinaryProtocol.PLATFORM_WIDTH) != 0) name("width").append(s.platformWidth[i]);
+        if ((fields & BinaryProtocol.PLATFORM_HEIGHT) != 0) name("height").append(s.platformHeight[i]);
+        if ((fields & BinaryProtocol.PLATFORM_TYPE) != 0) name("type").append(s.platformType[i]);
+        if ((fields & BinaryProtocol.PLATFORM_DIRECTION) != 0) name("direction").append(s.platformDirection[i]);
+        if ((fields & BinaryProtocol.PLATFORM_MOVING) != 0) name("isMoving").append(s.platformMoving[i]);
+        if ((fields & BinaryProtocol.PLATFORM_ON_TOP) != 0) name("playersOnPlatform").append(s.platformOnTop[i]);
+        if ((fields & BinaryProtocol.PLATFORM_REQUIRED) != 0) name("requiredPlayers").append(s.platformRequired[i]);
+        if ((fields & BinaryProtocol.PLATFORM_NEEDED) != 0) name("playersNeeded").append(s.playersNeeded(i));
+        json.append('}');
+    }
+
+    private void writeKeyJson(int fields, int cleared) {
+        RoomSnapshot s = snapshot;
+        json.append('{');
+        if ((fields & BinaryProtocol.KEY_X) != 0) name("x").append(s.keyX);
+        if ((fields & BinaryProtocol.KEY_Y) != 0) name("y").append(s.keyY);
+        if ((fields & BinaryProtocol.KEY_COLLECTED) != 0) name("isCollected").append(s.keyCollected);
+        if ((fields & BinaryProtocol.KEY_CARRIER) != 0) {
+            name("carriedByPlayerId");
+            string(s.keyCarrier);
+        }
+        if ((fields & BinaryProtocol.KEY_FLOAT_OFFSET) != 0) name("floatOffset").append(s.keyFloatOffset);
+        if ((fields & BinaryProtocol.KEY_OPENING_DOOR) != 0) name("isOpeningDoor").append(s.keyOpeningDoor);
+        if (cleared != 0) {
+            name("cleared").append("[\"carriedByPlayerId\"]");
+        }
+        json.append('}');
+    }
+
+    // Coma antes de cada campo o elemento salvo el primero de su objeto o lista
+    private void separator() {
+        char last = json.charAt(json.length() - 1);
+        if (last != '{' && last != '[') {
+            json.append(',');
+        }
+    }
+
+    private StringBuilder name(String name) {
+        separator();
+        return json.append('"').append(name).append("\":");
+    }
+
+    /**
+     * Texto entre comillas con los mismos escapes que Gson por defecto (incluidos los de HTML)
+     */
+    private void string(String value) {
+        StringBuilder out = json;
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                case '<':
+                case '>':
+                case '&':
+                case '=':
+                case '\'':
+                case '\u2028':
+                case '\u2029':
+                    unicodeEscape(c);
+                    break;
+                default:
+                    if (c < 0x20) {
+                        unicodeEscape(c);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private void unicodeEscape(char c) {
+        json.append("\\u")
+                .append(HEX[(c >> 12) & 0xF])
+                .append(HEX[(c >> 8) & 0xF])
+                .append(HEX[(c >> 4) & 0xF])
+                .append(HEX[c & 0xF]);
+    }
+}
@@ -1,98 +1,174 @@
 package org.server;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
+import org.shared.BinaryProtocol;
+import org.shared.Log;
+import org.shared.PlayerPhysics;
+import org.shared.WebSocketCompression;
 
 import java.io.File;
 import java.net.InetSocketAddress;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class GameWebSocketServer extends WebSocketServer {
+    private static final Log LOG = Log.get("Servidor");
+    // Un mensaje por input del cliente: DEBUG y muestreado
+    private static final Log MESSAGES = Log.get("Mensajes", 50);
+    private static final Log JUMPS = Log.get("Salto", 10);
+    private static final Log GOAL = Log.get("Meta");
+    private static final Log KEY = Log.get("Llave");
+    private static final Log DOOR = Log.get("Puerta");
+
+    static final String MAPS_DIR = "maps";
 
     private final Gson gson = new Gson();
     private final Map<String, User> users = new ConcurrentHashMap<>();
+    // Instancias vivas por id; las crea y libera el Matchmaker
     private final Map<String, GameRoom> rooms = new ConcurrentHashMap<>();
+    private final Matchmaker matchmaker;
+    private final ServerConfig config;
+    // Recarga en caliente de maps/; null si está deshabilitada (MAP_HOT_RELOAD=false) o no se pudo
+    private final MapWatcher mapWatcher;
     private final Map<WebSocket, String> connectionToUserId = new ConcurrentHashMap<>();
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private TickScheduler tickScheduler;
+    private final AuthPipeline authPipeline;
+    private final ServerMetrics metrics = new ServerMetrics();
+    // Token del mensaje admin "stats"; sin él, el mensaje está deshabilitado
+    private final String adminToken = System.getenv("ADMIN_TOKEN");
 
-    private static final float GRAVITY = 0.5f;
-    private static final float JUMP_FORCE = -10f;
+    // Compartidas con la predicción del cliente (PlayerPhysics)
+    private static final float GRAVITY = PlayerPhysics.GRAVITY;
+    private static final float JUMP_FORCE = PlayerPhysics.JUMP_FORCE;
+    private static final float MAX_FALL_SPEED = PlayerPhysics.MAX_FALL_SPEED;
 
-    private static final float MOVE_SPEED = 4.5f;
-    private static final int GAME_TICK_RATE = 60; // 60 FPS
+    private static final float MOVE_SPEED = PlayerPhysics.MOVE_SPEED;
+    static final int GAME_TICK_RATE = PlayerPhysics.TICK_RATE; // 60 FPS
 
-    private static final int ORIGINAL_SIZE_TILE = 16;
-    private static final int SCALE = 3;
-    public static final int SIZE_TILE = ORIGINAL_SIZE_TILE * SCALE; // 48 pixels
+    public static final int SIZE_TILE = PlayerPhysics.SIZE_TILE; // 48 pixels (tiles de 16 escalados x3)
 
-    public static final Set<Integer> SOLID_TILES = Set.of(3, 4, 5); // Solo tiles sólidos. 30 y 40 son marcadores (no sólidos), 31-39 son entidades
+    // Los ids de tile sólidos, de meta, de plataforma y de llave están en TileProperties (o en el JSON del mapa)
 
-    public static final Set<Integer> WINNER_TILES = Set.of(12,13,14);
+    public GameWebSocketServer(int port) {
+        this(port, AuthBackend.fromEnv());
+    }
 
-    public static final Set<Integer> MOVING_PLATFORM_ORIGINS = Set.of(31, 32, 33, 34, 35, 36, 37, 38, 39);
+    public GameWebSocketServer(int port, AuthBackend authBackend) {
+        this(port, authBackend, WebSocketCompression.fromEnv());
+    }
 
-    public static final int PLATFORM_DESTINATION = 30;
+    /**
+     * Con permessage-deflate si compression lo habilita; los clientes que no lo negocian se
+     * conectan igual, sin compresión
+     */
+    public GameWebSocketServer(int port, AuthBackend authBackend, WebSocketCompression compression) {
+        this(port, authBackend, compression, ServerConfig.fromEnv());
+    }
 
-    public GameWebSocketServer(int port) {
-        super(new InetSocketAddress(port));
-        initializeRooms();
+    GameWebSocketServer(int port, AuthBackend authBackend, WebSocketCompression compression, ServerConfig config) {
+        super(new InetSocketAddress(port), Collections.singletonList(compression.serverDraft()));
+        LOG.info("Compresión de mensajes: " + compression);
+        this.config = config;
+        this.authPipeline = new AuthPipeline(authBackend, AuthPipeline.defaultWorkerCount(), AuthPipeline.defaultQueueCapacity());
+        this.matchmaker = new Matchmaker(loadMapTemplates(), this::openInstance, this::closeInstance, this::startGame);
+        this.mapWatcher = config.mapHotReload ? MapWatcher.start(config.mapsDir, this::reloadTemplate) : null;
         startGameLoop();
     }
 
-    private void initializeRooms() {
-        File levelsDir = new File("maps");
+    /**
+     * Un template por cada JSON de maps/, cargados en paralelo (cada uno desde su compilado, ver
+     * CompiledMap); las salas se instancian a demanda al entrar jugadores
+     */
+    private List<MapTemplate> loadMapTemplates() {
+        File levelsDir = config.mapsDir.toFile();
         String[] salas = levelsDir.list((dir, name) -> name.endsWith(".json"));
-        if (salas == null) return;
-
-        for (String sala : salas) {
-            File mapFile = new File(levelsDir, sala);
-            RoomConfig config = GameRoom.loadRoomConfig(mapFile.getAbsolutePath());
-            String roomId = sala.replace(".json", "");
-            rooms.put(roomId, new GameRoom(
-                    roomId,
-                    config.getRoomName(),   // ← ahora le pones el nombre del txt
-                    config.getUsersToStart(),
-                    config.getWorld(),        // ← y su matriz del mapa
-                    config.getWaitingRoom()
-            ));
+        if (salas == null) return new ArrayList<>();
+
+        Arrays.sort(salas);
+        return Arrays.stream(salas)
+                .parallel()
+                .map(sala -> MapTemplate.load(new File(levelsDir, sala)))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Un mapa cambió en disco: las instancias nuevas usan el template nuevo y las que están en
+     * sala de espera lo toman en su próximo tick; las partidas en curso, al terminar
+     */
+    private void reloadTemplate(MapTemplate template) {
+        for (GameRoom room : matchmaker.replaceTemplate(template)) {
+            room.submit(() -> {
+                if (!room.reloadTemplate(template)) return;
+                resetPlayers(room, 200);
+                broadcastToRoom(room.id, createMessage("mapReloaded", Map.of(
+                        "roomName", room.name,
+                        "world", room.world.rows(),
+                        "solidTiles", room.world.properties.idsWith(TileProperties.SOLID))));
+            });
         }
     }
 
+    private void openInstance(GameRoom room) {
+        rooms.put(room.id, room);
+        tickScheduler.register(room);
+    }
+
+    private void closeInstance(GameRoom room) {
+        tickScheduler.unregister(room);
+        room.close();
+        rooms.remove(room.id);
+    }
+
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
-        System.out.println("Nueva conexión: " + conn.getRemoteSocketAddress());
+        metrics.connectionsOpened.increment();
+        conn.setAttachment(new ConnectionEgress(conn, metrics));
+        LOG.info("Nueva conexión: " + conn.getRemoteSocketAddress());
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        authPipeline.cancel(conn);
         this.handleLeaveRoom(conn);
         connectionToUserId.remove(conn);
-        System.out.println("Conexión cerrada: " + conn.getRemoteSocketAddress());
+        metrics.connectionsClosed.increment();
+        LOG.info("Conexión cerrada: " + conn.getRemoteSocketAddress());
     }
 
     @Override
     public void onMessage(WebSocket conn, String message) {
+        long start = System.nanoTime();
         try {
-
-            System.out.println("Mensaje recibido: " + message);
+            if (MESSAGES.isDebugEnabled()) {
+                MESSAGES.debug("Mensaje recibido: " + message);
+            }
             JsonObject json = JsonParser.parseString(message).getAsJsonObject();
             String type = json.get("type").getAsString();
 
             JsonObject data = json.getAsJsonObject("data");
 
+            // Mientras se verifica su auth, la conexión no puede hacer nada más
+            if (authPipeline.isPending(conn)) {
+                sendError(conn, "Autenticación en curso");
+                return;
+            }
+
             switch (type) {
                 case "auth":
                     handleAuth(conn, data);
@@ -109,15 +185,70 @@ public class GameWebSocketServer extends WebSocketServer {
                 case "jump":
                     handleJump(conn);
                     break;
+                case "input":
+                    handleInput(conn, data);
+                    break;
                 case "chat":
                     handleChat(conn, data);
                     break;
+                case "snapshotAck":
+                    handleSnapshotAck(conn, data);
+                    break;
+                case "requestKeyframe":
+                    handleRequestKeyframe(conn);
+                    break;
+                case "stats":
+                    handleStats(conn, data);
+                    break;
                 default:
                     sendError(conn, "Tipo de mensaje desconocido");
             }
         } catch (Exception e) {
             sendError(conn, "Error procesando mensaje: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error procesando mensaje de " + conn.getRemoteSocketAddress(), e);
+        } finally {
+            metrics.recordMessageIn(ServerMetrics.utf8Length(message), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Mensajes binarios de tiempo real (solo clientes que negociaron el protocolo binario)
+     */
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        long start = System.nanoTime();
+        int bytes = message.remaining();
+        try {
+            if (authPipeline.isPending(conn)) {
+                sendError(conn, "Autenticación en curso");
+                return;
+            }
+
+            byte type = message.get();
+            switch (type) {
+                case BinaryProtocol.MOVE:
+                    applyMove(conn, BinaryProtocol.readDirection(message));
+                    break;
+                case BinaryProtocol.JUMP:
+                    handleJump(conn);
+                    break;
+                case BinaryProtocol.INPUT: {
+                    int lastSeq = BinaryProtocol.readVarInt(message);
+                    int[] inputs = BinaryProtocol.readInputs(message);
+                    applyInput(conn, lastSeq, inputs, inputs.length);
+                    break;
+                }
+                case BinaryProtocol.SNAPSHOT_ACK:
+                    applySnapshotAck(conn, BinaryProtocol.readVarInt(message));
+                    break;
+                default:
+                    sendError(conn, "Tipo de mensaje binario desconocido");
+            }
+        } catch (Exception e) {
+            sendError(conn, "Error procesando mensaje: " + e.getMessage());
+            LOG.error("Error procesando mensaje de " + conn.getRemoteSocketAddress(), e);
+        } finally {
+            metrics.recordMessageIn(bytes, System.nanoTime() - start);
         }
     }
 
@@ -127,83 +258,107 @@ public class GameWebSocketServer extends WebSocketServer {
             sendError(conn, "No autenticado");
             return;
         }
-        User user = users.get(userId);
-        GameRoom oldRoom = rooms.get(user.currentRoom);
-        if (oldRoom != null) {
-            oldRoom.removePlayer(userId);
-            broadcastToRoom(user.currentRoom, createMessage("playerLeft", Map.of(
-                    "userId", userId,
-                    "username", user.username
-            )));
+        leaveCurrentRoom(users.get(userId));
+    }
 
-            oldRoom.completedPlayers = 0;
+    /**
+     * Saca al usuario de su sala y avisa al resto. Si la instancia quedó vacía el Matchmaker
+     * la libera; si quedó incompleta vuelve a la sala de espera.
+     */
+    private void leaveCurrentRoom(User user) {
+        if (user == null || user.currentRoom == null) return;
+
+        GameRoom oldRoom = rooms.get(user.currentRoom);
+        user.currentRoom = null;
+        if (oldRoom == null || matchmaker.leave(oldRoom, user.id)) return;
 
-            if(oldRoom.players.isEmpty())
-                oldRoom.world = oldRoom.waitingRoom;
+        broadcastToRoom(oldRoom.id, null, "playerLeft", Map.of(
+                "userId", user.id,
+                "username", user.username
+        ));
 
-            if(!oldRoom.players.isEmpty() && oldRoom.players.size() < oldRoom.needUsers)
+        // Corre después del comando que lo saca de la simulación: players ya no lo incluye
+        oldRoom.submit(() -> {
+            oldRoom.completedPlayers = 0;
+            if (oldRoom.players.size() < oldRoom.needUsers)
                 this.backToWaitingRoom(oldRoom);
-        }
+        });
     }
 
     @Override
     public void onError(WebSocket conn, Exception ex) {
-        System.err.println("Error: " + ex.getMessage());
-        ex.printStackTrace();
+        LOG.error("Error: " + ex.getMessage(), ex);
     }
 
     @Override
     public void onStart() {
-        System.out.println("Servidor WebSocket iniciado en puerto " + getPort());
-        System.out.println("Esperando conexiones...");
+        LOG.info("Servidor WebSocket iniciado en puerto " + getPort());
+        LOG.info("Esperando conexiones...");
+        MetricsHttpServer.start(config.metricsHost, config.metricsPort,
+                () -> metrics.toPrometheus(getConnections().size(), rooms.values(), authPipeline));
     }
 
+    /**
+     * La verificación de credenciales corre en el AuthPipeline; la respuesta se envía
+     * desde allí cuando termina (completeAuth).
+     */
     private void handleAuth(WebSocket conn, JsonObject data) {
         String username = data.get("username").getAsString();
         String password = data.get("password").getAsString();
 
-        // Autenticación simple (en producción usar hash y base de datos)
-        if (authenticateUser(username, password)) {
+        boolean queued = authPipeline.submit(conn, username, password, valid -> completeAuth(conn, data, username, valid));
+        if (!queued) {
+            sendToClient(conn, createMessage("authFailed", Map.of("reason", "Servidor ocupado, intenta de nuevo")));
+        }
+    }
+
+    /**
+     * Registra al usuario y responde el auth. Corre en un hilo del AuthPipeline.
+     */
+    private void completeAuth(WebSocket conn, JsonObject data, String username, boolean valid) {
+        if (valid) {
             String userId = UUID.randomUUID().toString();
             User user = new User(userId, username, conn);
+
+            // El cliente puede pedir actualizaciones delta; si no, recibe el gameUpdate completo
+            boolean deltaSnapshots = data.has("deltaSnapshots") && data.get("deltaSnapshots").getAsBoolean();
+            if (deltaSnapshots) {
+                user.snapshots = new ClientSnapshotState();
+            }
+
+            // Área de interés opcional: solo las entidades cercanas (requiere deltas para entrar y salir)
+            if (deltaSnapshots && data.has("areaOfInterest") && data.get("areaOfInterest").getAsBoolean()) {
+                user.interest = new AreaOfInterest();
+            }
+
+            // Protocolo binario opcional para gameUpdate, move, jump y playerJoined/playerLeft
+            user.binaryProtocol = data.has("protocol") && BinaryProtocol.NAME.equals(data.get("protocol").getAsString());
+
             users.put(userId, user);
             connectionToUserId.put(conn, userId);
 
+            // Si la conexión se cerró mientras se registraba, onClose pudo no ver al usuario
+            if (!conn.isOpen()) {
+                connectionToUserId.remove(conn);
+                users.remove(userId);
+                return;
+            }
+
             Map<String, Object> response = new HashMap<>();
             response.put("userId", userId);
             response.put("username", username);
             response.put("rooms", getRoomsList());
+            response.put("deltaSnapshots", deltaSnapshots);
+            response.put("areaOfInterest", user.interest != null);
+            response.put("protocol", user.binaryProtocol ? BinaryProtocol.NAME : "json");
 
             sendToClient(conn, createMessage("authSuccess", response));
-            System.out.println("Usuario autenticado: " + username);
+            LOG.info("Usuario autenticado: " + username);
         } else {
             sendToClient(conn, createMessage("authFailed", Map.of("reason", "Credenciales inválidas")));
         }
     }
 
-    private boolean authenticateUser(String username, String password) {
-        String dbHost = System.getenv("DB_HOST") != null ? System.getenv("DB_HOST") : "localhost";
-        String dbPort = System.getenv("DB_PORT") != null ? System.getenv("DB_PORT") : "3306";
-        String dbName = System.getenv("DB_NAME") != null ? System.getenv("DB_NAME") : "chatdb";
-        String dbUser = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "chatuser";
-        String dbPassword = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "chatpass";
-
-        String url = "jdbc:mysql://" + dbHost + ":" + dbPort + "/" + dbName + "?useSSL=false&allowPublicKeyRetrieval=true";
-
-        try (Connection conn = DriverManager.getConnection(url, dbUser, dbPassword);
-             PreparedStatement stmt = conn.prepareStatement("SELECT password FROM users WHERE username = ?")) {
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                String storedPassword = rs.getString("password");
-                return storedPassword.equals(password); // En producción, usar hash como bcrypt
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return false;
-    }
-
     private void handleJoinRoom(WebSocket conn, JsonObject data) {
         String userId = connectionToUserId.get(conn);
         if (userId == null) {
@@ -212,48 +367,50 @@ public class GameWebSocketServer extends WebSocketServer {
         }
 
         User user = users.get(userId);
-        String roomId = data.get("roomId").getAsString();
-        GameRoom room = rooms.get(roomId);
+        // El cliente elige un mapa; el Matchmaker decide en qué instancia de ese mapa juega
+        String mapId = data.get("roomId").getAsString();
 
-        if (room == null) {
+        if (!matchmaker.hasTemplate(mapId)) {
             sendError(conn, "Sala no encontrada");
             return;
         }
 
         // Salir de la sala anterior si existe
-        if (user.currentRoom != null) {
-            GameRoom oldRoom = rooms.get(user.currentRoom);
-            if (oldRoom != null) {
-                oldRoom.removePlayer(userId);
-                broadcastToRoom(user.currentRoom, createMessage("playerLeft", Map.of(
-                        "userId", userId,
-                        "username", user.username
-                )));
-            }
-        }
+        leaveCurrentRoom(user);
 
-        // Unirse a la nueva sala
-        user.currentRoom = roomId;
+        // Unirse a una instancia del mapa (si la completa, la partida arranca). El baseline de
+        // snapshots y el área de interés empiezan de cero: objetos nuevos, porque el tick de la
+        // sala anterior todavía puede estar usando los viejos
+        if (user.snapshots != null) {
+            user.snapshots = new ClientSnapshotState();
+        }
+        if (user.interest != null) {
+            user.interest = new AreaOfInterest();
+        }
+        user.sendRate = new ClientSendRate();
         Player player = new Player(userId, user.username);
-        room.addPlayer(player);
-
-        // Enviar estado actual de la sala al jugador
-        sendToClient(conn, createMessage("roomJoined", Map.of(
-                "roomId", roomId,
-                "roomName", room.name,
-                "players", room.getPlayersData(),
-                "world" , room.world
-        )));
+        GameRoom room = matchmaker.join(mapId, user, player);
+        String roomId = room.id;
+        user.currentRoom = roomId;
 
-        // Notificar a otros jugadores
-        broadcastToRoomExcept(roomId, userId, createMessage("playerJoined", Map.of(
-                "userId", userId,
-                "username", user.username,
-                "player", player.toMap()
-        )));
+        // El estado de la sala se lee en su tick, ya con el jugador adentro
+        room.submit(() -> {
+            // Enviar estado actual de la sala al jugador
+            sendToClient(conn, createMessage("roomJoined", Map.of(
+                    "roomId", roomId,
+                    "roomName", room.name,
+                    "players", room.getPlayersData(),
+                    "world" , room.world.rows(),
+                    "solidTiles", room.world.properties.idsWith(TileProperties.SOLID)
+            )));
 
-        if(room.players.size() >= room.needUsers)
-            this.startGame(room);
+            // Notificar a otros jugadores
+            broadcastToRoom(roomId, userId, "playerJoined", Map.of(
+                    "userId", userId,
+                    "username", user.username,
+                    "player", player.toMap()
+            ));
+        });
     }
 
     private void resetPlayers(GameRoom room, int offsetX) {
@@ -265,27 +422,42 @@ public class GameWebSocketServer extends WebSocketServer {
         }
     }
 
+    /**
+     * Los eventos con demora no tocan la sala desde el scheduler: se encolan y corren en su tick.
+     * Son de la partida en curso: si mientras tanto la sala volvió a la sala de espera o se
+     * liberó, se descartan.
+     */
+    private void scheduleInRoom(GameRoom room, Runnable event, long delay, TimeUnit unit) {
+        int generation = room.generation();
+        scheduler.schedule(() -> room.submit(() -> {
+            if (room.generation() == generation) {
+                event.run();
+            }
+        }), delay, unit);
+    }
+
     private void backToWaitingRoom(GameRoom room) {
-        scheduler.schedule(() -> {
-            room.world = room.waitingRoom;
+        // El inicio o reinicio pendiente de la partida que se cortó ya no corre
+        room.nextGeneration();
+        scheduleInRoom(room, () -> {
+            room.applyPendingTemplate();
+            room.setWorld(room.waitingRoom);
             resetPlayers(room,200);
 
             broadcastToRoom(
                     room.id,
-                    createMessage("startGame", Map.of("world", room.world))
+                    createMessage("startGame", Map.of(
+                            "world", room.world.rows(),
+                            "solidTiles", room.world.properties.idsWith(TileProperties.SOLID)))
             );
         }, 3, TimeUnit.SECONDS);
     }
 
     private void startGame(GameRoom room) {
-        scheduler.schedule(() -> {
-            room.world = new int[room.gameWorld.length][];
-            for (int i = 0; i < room.gameWorld.length; i++) {
-                room.world[i] = room.gameWorld[i].clone();
-            }
+        scheduleInRoom(room, () -> {
+            room.loadGameWorld();
             
             // IMPORTANTE: Solo inicializar plataformas cuando el juego REALMENTE comienza
-            room.platforms.clear();
             room.initializePlatforms();
             room.initializeKey();
             
@@ -293,21 +465,19 @@ public class GameWebSocketServer extends WebSocketServer {
 
             broadcastToRoom(
                     room.id,
-                    createMessage("startGame", Map.of("world", room.world))
+                    createMessage("startGame", Map.of(
+                            "world", room.world.rows(),
+                            "solidTiles", room.world.properties.idsWith(TileProperties.SOLID)))
             );
         }, 3, TimeUnit.SECONDS);
     }
 
     private void restartGame(GameRoom room) {
-        scheduler.schedule(() -> {
+        scheduleInRoom(room, () -> {
             // Reiniciar el mapa al estado original
-            room.world = new int[room.gameWorld.length][];
-            for (int i = 0; i < room.gameWorld.length; i++) {
-                room.world[i] = room.gameWorld[i].clone();
-            }
+            room.loadGameWorld();
             
             // Reiniciar plataformas
-            room.platforms.clear();
             room.initializePlatforms();
             
             // Reiniciar llave
@@ -331,21 +501,17 @@ public class GameWebSocketServer extends WebSocketServer {
             );
             
             // Enviar actualización inmediata con las nuevas posiciones
-            Map<String, Object> updateData = new HashMap<>();
-            updateData.put("players", room.getPlayersData());
-            updateData.put("platforms", room.getPlatformsData());
-            updateData.put("requiresKey", room.key != null);
-            updateData.put("doorOpen", room.doorOpen);
-            if (room.getKeyData() != null) {
-                updateData.put("key", room.getKeyData());
-            }
-            broadcastToRoom(room.id, createMessage("gameUpdate", updateData));
+            sendGameUpdate(room);
             
             room.canUpdate = true;
         }, 3, TimeUnit.SECONDS);
     }
 
     private void handleMove(WebSocket conn, JsonObject data) {
+        applyMove(conn, data.get("direction").getAsString());
+    }
+
+    private void applyMove(WebSocket conn, String direction) {
         String userId = connectionToUserId.get(conn);
         if (userId == null) return;
 
@@ -353,13 +519,14 @@ public class GameWebSocketServer extends WebSocketServer {
         if (user.currentRoom == null) return;
 
         GameRoom room = rooms.get(user.currentRoom);
-        Player player = room.getPlayer(userId);
+        if (room == null) return; // la instancia se liberó
 
-        if (player != null) {
-            String direction = data.get("direction").getAsString();
+        room.submit(() -> {
+            Player player = room.getPlayer(userId);
+            if (player == null) return;
             player.direction = direction;
             player.moveDirection = direction.equals("left") ? -1 : (direction.equals("right") ? 1 : 0);
-        }
+        });
     }
 
     private void handleJump(WebSocket conn) {
@@ -370,27 +537,98 @@ public class GameWebSocketServer extends WebSocketServer {
         if (user.currentRoom == null) return;
 
         GameRoom room = rooms.get(user.currentRoom);
-        Player player = room.getPlayer(userId);
+        if (room == null) return; // la instancia se liberó
 
-        if (player != null) {
-            System.out.println("Intento de salto - Usuario: " + user.username +
+        room.submit(() -> {
+            Player player = room.getPlayer(userId);
+            if (player != null) {
+                jump(user, player);
+            }
+        });
+    }
+
+    private void jump(User user, Player player) {
+        if (JUMPS.isDebugEnabled()) {
+            JUMPS.debug("Intento de salto - Usuario: " + user.username +
                     ", isOnGround: " + player.isOnGround +
-                    ", playersOnTop: " + player.playersOnTop.size());
+                    ", playersOnTop: " + player.playersOnTopCount);
+        }
 
-            // Solo puede saltar si está en el suelo Y no tiene a nadie encima
-            if (player.isOnGround && player.playersOnTop.isEmpty()) {
-                player.velocityY = JUMP_FORCE;
-                player.isOnGround = false;
-                System.out.println("✓ Salto permitido para: " + user.username);
-            } else {
-                if (!player.isOnGround) {
-                    System.out.println("✗ Salto bloqueado: No está en el suelo");
-                }
-                if (!player.playersOnTop.isEmpty()) {
-                    System.out.println("✗ Salto bloqueado: Tiene " + player.playersOnTop.size() + " jugador(es) encima");
-                }
+        if (tryJump(player)) {
+            if (JUMPS.isDebugEnabled()) {
+                JUMPS.debug("✓ Salto permitido para: " + user.username);
+            }
+        } else if (JUMPS.isDebugEnabled()) {
+            if (!player.isOnGround) {
+                JUMPS.debug("✗ Salto bloqueado: No está en el suelo");
+            }
+            if (player.playersOnTopCount > 0) {
+                JUMPS.debug("✗ Salto bloqueado: Tiene " + player.playersOnTopCount + " jugador(es) encima");
+            }
+        }
+    }
+
+    /**
+     * Solo puede saltar si está en el suelo Y no tiene a nadie encima
+     */
+    private static boolean tryJump(Player player) {
+        if (!player.isOnGround || player.playersOnTopCount > 0) {
+            return false;
+        }
+        player.velocityY = JUMP_FORCE;
+        player.isOnGround = false;
+        return true;
+    }
+
+    /**
+     * Frames de input secuenciados: {"seq": último frame, "inputs": [bits del más viejo al más nuevo]}.
+     * No se aplican al llegar sino uno por paso de simulación; ver InputBuffer.
+     */
+    private void handleInput(WebSocket conn, JsonObject data) {
+        JsonArray frames = data.getAsJsonArray("inputs");
+        int[] inputs = new int[frames.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = frames.get(i).getAsInt();
+        }
+        applyInput(conn, data.get("seq").getAsInt(), inputs, inputs.length);
+    }
+
+    private void applyInput(WebSocket conn, int lastSeq, int[] inputs, int count) {
+        if (count > PlayerPhysics.MAX_INPUT_FRAMES) {
+            sendError(conn, "Demasiados frames de input");
+            return;
+        }
+        String userId = connectionToUserId.get(conn);
+        if (userId == null) return;
+
+        User user = users.get(userId);
+        if (user.currentRoom == null) return;
+
+        GameRoom room = rooms.get(user.currentRoom);
+        if (room == null) return; // la instancia se liberó
+
+        room.submit(() -> {
+            Player player = room.getPlayer(userId);
+            if (player != null) {
+                player.inputs.offer(lastSeq, inputs, count);
             }
+        });
+    }
+
+    /**
+     * Aplica el siguiente frame de input del jugador, si llegó. Sin frame nuevo mantiene la
+     * dirección anterior, como con move.
+     */
+    private static void applyNextInput(Player player) {
+        int input = player.inputs.poll();
+        if (input < 0) return;
+
+        player.moveDirection = PlayerPhysics.moveDirection(input);
+        player.direction = PlayerPhysics.directionName(player.moveDirection);
+        if ((input & PlayerPhysics.INPUT_JUMP) != 0) {
+            tryJump(player);
         }
+        player.inputSeq = player.inputs.lastApplied();
     }
 
     private void handleChat(WebSocket conn, JsonObject data) {
@@ -410,161 +648,376 @@ public class GameWebSocketServer extends WebSocketServer {
     }
 
     private void startGameLoop() {
-        Timer timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                updateGame();
+        // Cada sala tiene su propio tick a 60 Hz, repartidas entre un pool fijo de hilos
+        tickScheduler = new TickScheduler(GAME_TICK_RATE, TickScheduler.defaultWorkerCount(), this::updateGame);
+        for (GameRoom room : rooms.values()) {
+            tickScheduler.register(room);
+        }
+    }
+
+    /**
+     * Simula los pasos que correspondan al tiempo real transcurrido (más de uno si el tick
+     * llegó tarde) y, si ya pasó el intervalo de snapshots de la sala, envía el estado
+     * resultante a los jugadores. Siempre se ejecuta en el hilo del TickScheduler asignado a la sala.
+     */
+    private void updateGame(GameRoom room) {
+        long start = System.nanoTime();
+        // Lo que llegó de otros hilos desde el tick anterior; de acá en más la sala es solo de este hilo
+        room.runCommands();
+        drainEgress(room, start);
+        int steps = room.clock.stepsDue(start);
+        boolean updated = false;
+        for (int i = 0; i < steps; i++) {
+            updated |= simulate(room);
+        }
+        if (updated) {
+            // La simulación va a GAME_TICK_RATE; los snapshots, a la frecuencia de la sala
+            if (room.snapshotDue()) {
+                sendGameUpdate(room);
             }
-        }, 0, 1000 / GAME_TICK_RATE);
+            metrics.recordTick(room, System.nanoTime() - start);
+        }
     }
-    private void updateGame() {
-        for (GameRoom room : rooms.values()) {
-            if (room.players.isEmpty() || !room.canUpdate) continue;
 
-            // Primero, limpiar la lista de jugadores encima de cada uno
-            for (Player player : room.players.values()) {
-                if(!player.isVisible) continue;
-                player.playersOnTop.clear();
+    /**
+     * Avanza la simulación de la sala un paso fijo de su SimClock. Devuelve false si la sala
+     * no se actualizó.
+     */
+    boolean simulate(GameRoom room) {
+        // Copia estable de los jugadores para todo el tick: se recorre por índice, sin crear objetos
+        Player[] players = room.playerSlots;
+        if (players.length == 0 || !room.canUpdate) return false;
+
+        room.clock.step();
+
+        // Inputs secuenciados: un frame por jugador y por paso, antes de mover a nadie
+        for (Player player : players) {
+            applyNextInput(player);
+        }
+
+        if (room.previousX.length < players.length) {
+            room.previousX = new float[players.length * 2];
+        }
+        float[] previousX = room.previousX;
+
+        // Grilla de propiedades del mapa actual, leída una vez por tick
+        TileGrid tiles = room.tiles;
+
+        // Primero, limpiar la lista de jugadores encima de cada uno y
+        // guardar posiciones X anteriores para calcular delta de movimiento
+        for (int i = 0; i < players.length; i++) {
+            players[i].clearPlayersOnTop();
+            previousX[i] = players[i].x;
+        }
+
+        // Índices espaciales con las posiciones al inicio del tick
+        room.indexPlayers();
+        room.indexPlatforms();
+
+        for (Player player : players) {
+            if(!player.isVisible) continue;
+            // ========== MOVIMIENTO HORIZONTAL ==========
+            float oldX = player.x;
+            player.x += player.moveDirection * MOVE_SPEED;
+
+            // Verificar colisión horizontal con tiles
+            if (checkCollisionHorizontal(player, tiles)) {
+                player.x -= player.moveDirection * MOVE_SPEED; // Revertir
             }
 
-            // Guardar posiciones X anteriores para calcular delta de movimiento
-            Map<String, Float> previousX = new HashMap<>();
-            for (Player player : room.players.values()) {
-                if(!player.isVisible) continue;
-                previousX.put(player.id, player.x);
+            // Verificar colisión horizontal con otros jugadores
+            Player collidedPlayer = checkPlayerCollisionHorizontal(player, room);
+            if (collidedPlayer != null) {
+                player.x = oldX; // Revertir movimiento
             }
 
-            for (Player player : room.players.values()) {
-                if(!player.isVisible) continue;
-                // ========== MOVIMIENTO HORIZONTAL ==========
-                float oldX = player.x;
-                player.x += player.moveDirection * MOVE_SPEED;
-
-                // Verificar colisión horizontal con tiles
-                if (checkCollisionHorizontal(player, room.world)) {
-                    player.x -= player.moveDirection * MOVE_SPEED; // Revertir
-                }
+            // Verificar colisión horizontal con plataformas
+            Platform collidedPlatform = checkPlatformCollisionHorizontal(player, room);
+            if (collidedPlatform != null) {
+                player.x = oldX; // Revertir movimiento
+            }
 
-                // Verificar colisión horizontal con otros jugadores
-                Player collidedPlayer = checkPlayerCollisionHorizontal(player, room);
-                if (collidedPlayer != null) {
-                    player.x = oldX; // Revertir movimiento
-                }
+            // Limitar a los límites del mundo
+            player.x = Math.max(0, Math.min(tiles.width * SIZE_TILE - player.width, player.x));
+
+            // ========== MOVIMIENTO VERTICAL ==========
+            // Aplicar gravedad
+            player.velocityY += GRAVITY;
+
+            // Limitar velocidad máxima de caída
+            if (player.velocityY > MAX_FALL_SPEED) {
+                player.velocityY = MAX_FALL_SPEED;
+            }
+
+            player.y += player.velocityY;
+
+            // Verificar colisión hacia abajo (suelo)
+            if (player.velocityY > 0) {
+                boolean tileCollision = checkCollisionDown(player, tiles, room);
+                Player playerBelow = checkPlayerCollisionDown(player, room);
+                Platform platformBelow = checkPlatformCollisionDown(player, room);
+
+                if (tileCollision || playerBelow != null || platformBelow != null) {
+                    // Ajustar posición
+                    int bottomPixel = (int)(player.y + player.height);
+                    int tileY = bottomPixel / SIZE_TILE;
+
+                    if (playerBelow != null) {
+                        // Ajustar encima del otro jugador
+                        player.y = playerBelow.y - player.height;
+                        // Registrar que este jugador está encima del otro
+                        playerBelow.addPlayerOnTop(player);
+                    } else if (platformBelow != null) {
+                        // Ajustar encima de la plataforma
+                        player.y = platformBelow.y - player.height;
+                    } else {
+                        // Ajustar encima del tile
+                        player.y = (tileY * SIZE_TILE) - player.height;
+                    }
 
-                // Verificar colisión horizontal con plataformas
-                Platform collidedPlatform = checkPlatformCollisionHorizontal(player, room);
-                if (collidedPlatform != null) {
-                    player.x = oldX; // Revertir movimiento
+                    player.velocityY = 0;
+                    player.isOnGround = true;
+                } else {
+                    player.isOnGround = false;
                 }
+            }
+            // Verificar colisión hacia arriba (techo)
+            else if (player.velocityY < 0 && checkCollisionUp(player, tiles)) {
+                int topPixel = (int)player.y;
+                int tileY = (topPixel / SIZE_TILE) + 1;
+                player.y = tileY * SIZE_TILE;
+
+                player.velocityY = 0;
+                player.isOnGround = false;
+            }
+            else {
+                // No hay colisión, está en el aire
+                player.isOnGround = false;
+            }
+
+            // ========== VERIFICAR TILES DE VICTORIA ==========
+            checkWinnerTiles(player, room);
+        }
 
-                // Limitar a los límites del mundo
-                player.x = Math.max(0, Math.min(room.world[0].length * SIZE_TILE - player.width, player.x));
+        // DESPUÉS de actualizar todas las posiciones, mover jugadores encima
+        for (int i = 0; i < players.length; i++) {
+            Player player = players[i];
+            if (player.playersOnTopCount > 0) {
+                // Calcular cuánto se movió realmente este jugador (delta real, no intención)
+                float deltaX = player.x - previousX[i];
 
-                // ========== MOVIMIENTO VERTICAL ==========
-                // Aplicar gravedad
-                player.velocityY += GRAVITY;
+                // Este jugador tiene gente encima, moverlos
+                for (int j = 0; j < player.playersOnTopCount; j++) {
+                    Player playerOnTop = player.playersOnTop[j];
+                    // Mantener encima (ajustar Y si es necesario)
+                    playerOnTop.y = player.y - playerOnTop.height;
 
-                // Limitar velocidad máxima de caída
-                if (player.velocityY > 15) {
-                    player.velocityY = 15;
+                    // Arrastrar horizontalmente: usar el DELTA REAL de movimiento
+                    playerOnTop.x += deltaX;
+
+                    // Limitar para que no salga del mundo
+                    playerOnTop.x = Math.max(0, Math.min(tiles.width * SIZE_TILE - playerOnTop.width, playerOnTop.x));
                 }
+            }
+        }
 
-                player.y += player.velocityY;
-
-                // Verificar colisión hacia abajo (suelo)
-                if (player.velocityY > 0) {
-                    boolean tileCollision = checkCollisionDown(player, room.world, room);
-                    Player playerBelow = checkPlayerCollisionDown(player, room);
-                    Platform platformBelow = checkPlatformCollisionDown(player, room);
-
-                    if (tileCollision || playerBelow != null || platformBelow != null) {
-                        // Ajustar posición
-                        int bottomPixel = (int)(player.y + player.height);
-                        int tileY = bottomPixel / SIZE_TILE;
-
-                        if (playerBelow != null) {
-                            // Ajustar encima del otro jugador
-                            player.y = playerBelow.y - player.height;
-                            // Registrar que este jugador está encima del otro
-                            playerBelow.playersOnTop.add(player.id);
-                        } else if (platformBelow != null) {
-                            // Ajustar encima de la plataforma
-                            player.y = platformBelow.y - player.height;
-                        } else {
-                            // Ajustar encima del tile
-                            player.y = (tileY * SIZE_TILE) - player.height;
-                        }
 
-                        player.velocityY = 0;
-                        player.isOnGround = true;
-                    } else {
-                        player.isOnGround = false;
+        // Los jugadores ya se movieron y arrastraron: actualizar el índice antes de las plataformas
+        room.indexPlayers();
+
+        // DESPUÉS de resolver colisiones: Actualizar posiciones de plataformas y mover jugadores con ellas
+        room.updatePlatformPositions();
+
+        room.updatePlatformLogic();
+
+        // ========== MANEJAR SISTEMA DE LLAVES ==========
+        handleKeySystem(room);
+        return true;
+    }
+
+    /**
+     * Envía el estado de la sala: los clientes con deltas reciben solo lo que cambió desde
+     * su último snapshot confirmado; el resto recibe el gameUpdate completo de siempre. Los
+     * clientes con la conexión atrasada se saltean algunos snapshots (ver ClientSendRate).
+     * Cada mensaje se escribe directo desde el snapshot (ver GameUpdateEncoder) y las listas
+     * de destinatarios son de la sala, así que en estado estable solo se crean los mensajes.
+     */
+    private void sendGameUpdate(GameRoom room) {
+        RoomSnapshot snapshot = room.captureSnapshot();
+        RoomMembers members = room.members;
+        GameUpdateEncoder encoder = room.updateEncoder;
+        room.metrics.snapshots.increment();
+
+        // Clientes clásicos: el mismo gameUpdate completo para todos, codificado una vez por formato
+        if (!members.fullUsers.isEmpty()) {
+            List<WebSocket> jsonTargets = members.fullJsonConnections;
+            List<WebSocket> binaryTargets = members.fullBinaryConnections;
+            List<User> fullUsers = members.fullUsers;
+            for (int i = 0; i < fullUsers.size(); i++) {
+                User user = fullUsers.get(i);
+                boolean send = shouldSendSnapshot(room, user);
+                if (!send && jsonTargets == members.fullJsonConnections) {
+                    // Solo si alguno se saltea este snapshot se arman listas propias, con los anteriores
+                    jsonTargets = room.jsonTargets;
+                    binaryTargets = room.binaryTargets;
+                    jsonTargets.clear();
+                    binaryTargets.clear();
+                    for (int j = 0; j < i; j++) {
+                        User previous = fullUsers.get(j);
+                        (previous.binaryProtocol ? binaryTargets : jsonTargets).add(previous.connection);
                     }
+                } else if (send && jsonTargets != members.fullJsonConnections) {
+                    (user.binaryProtocol ? binaryTargets : jsonTargets).add(user.connection);
                 }
-                // Verificar colisión hacia arriba (techo)
-                else if (player.velocityY < 0 && checkCollisionUp(player, room.world)) {
-                    int topPixel = (int)player.y;
-                    int tileY = (topPixel / SIZE_TILE) + 1;
-                    player.y = tileY * SIZE_TILE;
+            }
 
-                    player.velocityY = 0;
-                    player.isOnGround = false;
+            if (!jsonTargets.isEmpty() || !binaryTargets.isEmpty()) {
+                encoder.keyframe(snapshot, null, false);
+                sendGameUpdate(room, encoder, jsonTargets, binaryTargets);
+            }
+        }
+
+        // Clientes con deltas: los que comparten baseline reciben exactamente el mismo mensaje
+        if (!members.deltaUsers.isEmpty()) {
+            List<User> pending = room.pendingUpdates;
+            List<RoomSnapshot> bases = room.pendingBases;
+            pending.clear();
+            bases.clear();
+            List<User> deltaUsers = members.deltaUsers;
+            for (int i = 0; i < deltaUsers.size(); i++) {
+                User user = deltaUsers.get(i);
+                if (!shouldSendSnapshot(room, user)) {
+                    continue;
                 }
-                else {
-                    // No hay colisión, está en el aire
-                    player.isOnGround = false;
+                RoomSnapshot base = user.snapshots.selectBase(room, snapshot);
+                if (user.interest != null && sendInterestUpdate(room, user, snapshot, base)) {
+                    continue;
                 }
-
-                // ========== VERIFICAR TILES DE VICTORIA ==========
-                checkWinnerTiles(player, room);
+                pending.add(user);
+                bases.add(base);
             }
 
-            // DESPUÉS de actualizar todas las posiciones, mover jugadores encima
-            for (Player player : room.players.values()) {
-                if (!player.playersOnTop.isEmpty()) {
-                    // Calcular cuánto se movió realmente este jugador (delta real, no intención)
-                    float deltaX = player.x - previousX.get(player.id);
-                    
-                    // Este jugador tiene gente encima, moverlos
-                    for (String playerOnTopId : player.playersOnTop) {
-                        Player playerOnTop = room.getPlayer(playerOnTopId);
-                        if (playerOnTop != null) {
-                            // Mantener encima (ajustar Y si es necesario)
-                            playerOnTop.y = player.y - playerOnTop.height;
-
-                            // Arrastrar horizontalmente: usar el DELTA REAL de movimiento
-                            playerOnTop.x += deltaX;
-
-                            // Limitar para que no salga del mundo
-                            playerOnTop.x = Math.max(0, Math.min(room.world[0].length * SIZE_TILE - playerOnTop.width, playerOnTop.x));
-                        }
+            // Un mensaje por baseline distinto, para todos los que lo comparten
+            for (int i = 0; i < pending.size(); i++) {
+                if (pending.get(i) == null) continue; // ya salió con su grupo
+                RoomSnapshot base = bases.get(i);
+                List<WebSocket> jsonTargets = room.jsonTargets;
+                List<WebSocket> binaryTargets = room.binaryTargets;
+                jsonTargets.clear();
+                binaryTargets.clear();
+                for (int j = i; j < pending.size(); j++) {
+                    User user = pending.get(j);
+                    if (user != null && bases.get(j) == base) {
+                        (user.binaryProtocol ? binaryTargets : jsonTargets).add(user.connection);
+                        pending.set(j, null);
                     }
                 }
+
+                if (base == null) {
+                    encoder.keyframe(snapshot, null, true);
+                } else {
+                    encoder.delta(snapshot, base, null, null);
+                }
+                sendGameUpdate(room, encoder, jsonTargets, binaryTargets);
             }
+        }
+    }
 
+    // Escribe el gameUpdate ya preparado en los formatos que hagan falta y lo envía
+    private void sendGameUpdate(GameRoom room, GameUpdateEncoder encoder,
+                                List<WebSocket> jsonTargets, List<WebSocket> binaryTargets) {
+        if (!jsonTargets.isEmpty()) {
+            sendSnapshot(room, encoder.json(), jsonTargets);
+        }
+        if (!binaryTargets.isEmpty()) {
+            sendSnapshot(room, encoder.binary(), binaryTargets);
+        }
+    }
 
-            // DESPUÉS de resolver colisiones: Actualizar posiciones de plataformas y mover jugadores con ellas
-            room.updatePlatformPositions();
+    // Una vez por cliente y por snapshot: decide si le toca y cuenta los que se saltean
+    private static boolean shouldSendSnapshot(GameRoom room, User user) {
+        if (user.sendRate.shouldSend(user.connection)) {
+            return true;
+        }
+        room.metrics.snapshotsSkipped.increment();
+        return false;
+    }
 
-            room.updatePlatformLogic();
+    /**
+     * Envía a un cliente con área de interés solo lo que ve. Devuelve false si ve toda la sala
+     * (ahora y en su baseline): entonces comparte el mensaje de los demás clientes delta.
+     */
+    private boolean sendInterestUpdate(GameRoom room, User user, RoomSnapshot snapshot, RoomSnapshot base) {
+        AreaOfInterest.View view = user.interest.update(room, snapshot, user.id);
+        AreaOfInterest.View baseView = base != null ? user.interest.viewAt(base.seq) : null;
+        boolean baselineUnknown = base != null && baseView == null;
+        if (baselineUnknown) {
+            base = null; // no sabemos qué veía en ese baseline: keyframe
+        } else if (view.all && (base == null || baseView.all)) {
+            return false;
+        }
 
-            // ========== MANEJAR SISTEMA DE LLAVES ==========
-            handleKeySystem(room);
+        GameUpdateEncoder encoder = room.updateEncoder;
+        if (base == null) {
+            encoder.keyframe(snapshot, view, true);
+        } else {
+            encoder.delta(snapshot, base, baseView, view);
+        }
+        List<WebSocket> jsonTargets = room.jsonTargets;
+        List<WebSocket> binaryTargets = room.binaryTargets;
+        jsonTargets.clear();
+        binaryTargets.clear();
+        (user.binaryProtocol ? binaryTargets : jsonTargets).add(user.connection);
+        sendGameUpdate(room, encoder, jsonTargets, binaryTargets);
+        return true;
+    }
 
-            // Enviar actualización a todos los jugadores en la sala
-            Map<String, Object> updateData = new HashMap<>();
-            updateData.put("players", room.getPlayersData());
-            updateData.put("platforms", room.getPlatformsData());
-            updateData.put("requiresKey", room.key != null);
-            updateData.put("doorOpen", room.doorOpen);
-            if (room.getKeyData() != null) {
-                updateData.put("key", room.getKeyData());
-            }
-            broadcastToRoom(room.id, createMessage("gameUpdate", updateData));
+    private void handleSnapshotAck(WebSocket conn, JsonObject data) {
+        applySnapshotAck(conn, data.get("seq").getAsInt());
+    }
+
+    private void applySnapshotAck(WebSocket conn, int seq) {
+        String userId = connectionToUserId.get(conn);
+        if (userId == null) return;
+
+        User user = users.get(userId);
+        ClientSnapshotState snapshots = user.snapshots;
+        GameRoom room = user.currentRoom != null ? rooms.get(user.currentRoom) : null;
+        if (snapshots != null && room != null) {
+            room.submit(() -> snapshots.acknowledge(seq));
         }
     }
 
+    private void handleRequestKeyframe(WebSocket conn) {
+        String userId = connectionToUserId.get(conn);
+        if (userId == null) return;
+
+        User user = users.get(userId);
+        ClientSnapshotState snapshots = user.snapshots;
+        GameRoom room = user.currentRoom != null ? rooms.get(user.currentRoom) : null;
+        if (snapshots != null && room != null) {
+            room.submit(snapshots::requestKeyframe);
+        }
+    }
+
+    /**
+     * Mensaje admin: devuelve las métricas del servidor si el token coincide con ADMIN_TOKEN
+     */
+    private void handleStats(WebSocket conn, JsonObject data) {
+        if (adminToken == null || adminToken.isEmpty()) {
+            sendError(conn, "Estadísticas deshabilitadas");
+            return;
+        }
+        String token = data != null && data.has("token") ? data.get("token").getAsString() : "";
+        // Comparación en tiempo constante para no filtrar el token por timing
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), adminToken.getBytes(StandardCharsets.UTF_8))) {
+            LOG.warn("Token de estadísticas inválido desde " + conn.getRemoteSocketAddress());
+            sendError(conn, "No autorizado");
+            return;
+        }
+        sendToClient(conn, createMessage("stats", metrics.toStats(getConnections().size(), rooms.values(), authPipeline)));
+    }
+
     /**
      Verifica si el jugador está atravesando tiles de victoria
      **/
@@ -583,16 +1036,17 @@ public class GameWebSocketServer extends WebSocketServer {
         int bottomTile = (int)((player.y + player.height - 1) / SIZE_TILE);
 
         // Verificar límites
-        if (leftTile < 0 || rightTile >= room.world[0].length ||
-                topTile < 0 || bottomTile >= room.world.length) {
+        TileGrid tiles = room.tiles;
+        if (leftTile < 0 || rightTile >= tiles.width ||
+                topTile < 0 || bottomTile >= tiles.height) {
             return;
         }
 
         // Verificar cada tile que ocupa el jugador
         for (int y = topTile; y <= bottomTile; y++) {
             for (int x = leftTile; x <= rightTile; x++) {
-                if (WINNER_TILES.contains(room.world[y][x])) {
-                    System.out.println("[META] ¡" + player.username + " tocó la meta! Tile: (" + x + "," + y + "), completedPlayers antes: " + room.completedPlayers);
+                if (tiles.is(x, y, TileProperties.WINNER)) {
+                    GOAL.info("¡" + player.username + " tocó la meta! Tile: (" + x + "," + y + "), completedPlayers antes: " + room.completedPlayers);
                     player.isVisible = false;
                     
                     // Si el jugador tiene la llave, hacerla desaparecer
@@ -600,13 +1054,13 @@ public class GameWebSocketServer extends WebSocketServer {
                         player.hasKey = false;
                         room.key.carriedByPlayerId = null;
                         room.key.isCollected = false;
-                        System.out.println("[Llave] Desaparecida - " + player.username + " llegó a la meta");
+                        KEY.info("Desaparecida - " + player.username + " llegó a la meta");
                     }
                     
                     room.completedPlayers++;
-                    System.out.println("[META] completedPlayers ahora: " + room.completedPlayers + ", total players: " + room.players.size());
+                    GOAL.info("completedPlayers ahora: " + room.completedPlayers + ", total players: " + room.players.size());
                     if (room.completedPlayers >= room.players.size()) {
-                        System.out.println("[META] ¡Todos los jugadores completaron! Enviando gameWin");
+                        GOAL.info("¡Todos los jugadores completaron! Enviando gameWin");
                         room.canUpdate = false; // Detener actualizaciones del juego
                         broadcastToRoom(room.id, createMessage("gameWin", Map.of()));
                         this.restartGame(room); // Reiniciar el juego después de ganar
@@ -624,10 +1078,11 @@ public class GameWebSocketServer extends WebSocketServer {
         if (room.key == null) return;
 
         // Verificar si la animación de apertura de puerta terminó y eliminar la llave
-        if (room.key.isOpeningDoor && System.currentTimeMillis() - room.key.doorOpenStartTime > 1000) {
-            System.out.println("[Llave] Llave desapareció después de abrir la puerta");
+        long now = room.clock.millis();
+        if (room.key.isOpeningDoor && now - room.key.doorOpenStartTime > 1000) {
+            KEY.info("Llave desapareció después de abrir la puerta");
             // Quitar hasKey de cualquier jugador que la tuviera
-            for (Player player : room.players.values()) {
+            for (Player player : room.playerSlots) {
                 player.hasKey = false;
             }
             room.key = null; // Eliminar la llave completamente
@@ -635,27 +1090,27 @@ public class GameWebSocketServer extends WebSocketServer {
         }
 
         // Actualizar animación flotante de la llave
-        room.key.updateFloatAnimation();
+        room.key.updateFloatAnimation(now);
 
         // Actualizar posición de la llave si está siendo llevada
         if (room.key.carriedByPlayerId != null) {
             Player carrier = room.getPlayer(room.key.carriedByPlayerId);
             if (carrier != null) {
-                room.key.updatePosition(carrier);
+                room.key.updatePosition(carrier, now);
                 
                 // Verificar si la llave está tocando la puerta
                 if (!room.doorOpen && room.key.checkDoorCollision(room)) {
                     room.doorOpen = true;
                     room.key.isOpeningDoor = true;
-                    room.key.doorOpenStartTime = System.currentTimeMillis();
-                    System.out.println("[Puerta] ¡Puerta abierta por " + carrier.username + "!");
+                    room.key.doorOpenStartTime = now;
+                    DOOR.info("¡Puerta abierta por " + carrier.username + "!");
                 }
             }
         }
 
         // Verificar si algún jugador toca la llave en el mapa (solo si no está abriendo puerta)
         if (!room.key.isOpeningDoor) {
-            for (Player player : room.players.values()) {
+            for (Player player : room.playerSlots) {
                 if (!player.isVisible) continue;
 
                 if (room.key.checkCollision(player)) {
@@ -663,39 +1118,44 @@ public class GameWebSocketServer extends WebSocketServer {
                     room.key.isCollected = true;
                     room.key.carriedByPlayerId = player.id;
                     player.hasKey = true;
-                    System.out.println("[Llave] " + player.username + " recogió la llave");
+                    KEY.info(player.username + " recogió la llave");
                     break;
                 }
             }
         }
 
         // Verificar si algún jugador roba la llave a otro (solo si no está abriendo puerta)
-        boolean theftOccurred = false;
-        if (!room.key.isOpeningDoor) {
-            for (Player stealer : room.players.values()) {
-                if (!stealer.isVisible || stealer.hasKey) continue;
-
-                for (Player carrier : room.players.values()) {
-                    if (!carrier.isVisible || carrier.id.equals(stealer.id) || !carrier.hasKey) continue;
-
-                    if (room.key.checkPlayerSteal(stealer, carrier)) {
-                        // Robo exitoso
-                        carrier.hasKey = false;
-                        stealer.hasKey = true;
+        if (!room.key.isOpeningDoor && room.key.carriedByPlayerId != null) {
+            // Solo el portador actual puede ser robado: buscar ladrones cerca de él, no en todos los pares
+            Player carrier = room.getPlayer(room.key.carriedByPlayerId);
+            if (carrier != null && carrier.isVisible && carrier.hasKey) {
+                SpatialHash<Player> index = room.playerIndex;
+                int start = index.queryAround(carrier.x, carrier.y, carrier.width, carrier.height, GameRoom.SPATIAL_MARGIN + 20);
+                int end = index.end();
+                try {
+                    for (int i = start; i < end; i++) {
+                        Player stealer = index.get(i);
+                        if (!stealer.isVisible || stealer.hasKey || stealer == carrier) continue;
+
+                        if (room.key.checkPlayerSteal(stealer, carrier)) {
+                            // Robo exitoso
+                            carrier.hasKey = false;
+                            stealer.hasKey = true;
                         
-                        // Iniciar movimiento suave hacia el nuevo portador
-                        room.key.targetX = stealer.x + (stealer.width - room.key.WIDTH) / 2;
-                        room.key.targetY = stealer.y - room.key.HEIGHT - 25 + room.key.floatOffset; // Subir más la llave
-                        room.key.isMovingToTarget = true;
-                        room.key.transferStartTime = System.currentTimeMillis();
+                            // Iniciar movimiento suave hacia el nuevo portador
+                            room.key.targetX = stealer.x + (stealer.width - room.key.WIDTH) / 2;
+                            room.key.targetY = stealer.y - room.key.HEIGHT - 25 + room.key.floatOffset; // Subir más la llave
+                            room.key.isMovingToTarget = true;
+                            room.key.transferStartTime = now;
                         
-                        room.key.carriedByPlayerId = stealer.id;
-                        System.out.println("[Llave] " + stealer.username + " le robó la llave a " + carrier.username);
-                        theftOccurred = true;
-                        break;
+                            room.key.carriedByPlayerId = stealer.id;
+                            KEY.info(stealer.username + " le robó la llave a " + carrier.username);
+                            break;
+                        }
                     }
+                } finally {
+                    index.release(start);
                 }
-                if (theftOccurred) break; // Salir del loop externo también
             }
         }
     }
@@ -703,73 +1163,97 @@ public class GameWebSocketServer extends WebSocketServer {
     /**
      * Verifica colisión horizontal con plataformas
      */
-    private Platform checkPlatformCollisionHorizontal(Player player, GameRoom room) {
-        for (Platform platform : room.platforms.values()) {
-            // Verificar si los bounding boxes se superponen
-            if (player.x < platform.x + platform.width &&
-                    player.x + player.width > platform.x &&
-                    player.y < platform.y + platform.height &&
-                    player.y + player.height > platform.y) {
+    Platform checkPlatformCollisionHorizontal(Player player, GameRoom room) {
+        SpatialHash<Platform> index = room.platformIndex;
+        int start = index.queryAround(player.x, player.y, player.width, player.height, GameRoom.SPATIAL_MARGIN);
+        int end = index.end();
+        try {
+            for (int i = start; i < end; i++) {
+                Platform platform = index.get(i);
+                // Verificar si los bounding boxes se superponen
+                if (player.x < platform.x + platform.width &&
+                        player.x + player.width > platform.x &&
+                        player.y < platform.y + platform.height &&
+                        player.y + player.height > platform.y) {
                 
-                // Si el jugador está encima de la plataforma (con margen) y la plataforma está en movimiento,
-                // permitir movimiento horizontal
-                float playerBottomY = player.y + player.height;
-                boolean isOnTopOfPlatform = playerBottomY >= platform.y - 10 && 
-                                          playerBottomY <= platform.y + 20 &&
-                                          platform.isMoving;
+                    // Si el jugador está encima de la plataforma (con margen) y la plataforma está en movimiento,
+                    // permitir movimiento horizontal
+                    float playerBottomY = player.y + player.height;
+                    boolean isOnTopOfPlatform = playerBottomY >= platform.y - 10 && 
+                                              playerBottomY <= platform.y + 20 &&
+                                              platform.isMoving;
                 
-                if (!isOnTopOfPlatform) {
-                    return platform; // Bloquear movimiento
+                    if (!isOnTopOfPlatform) {
+                        return platform; // Bloquear movimiento
+                    }
+                    // Si está encima y la plataforma se mueve, no bloquear
                 }
-                // Si está encima y la plataforma se mueve, no bloquear
             }
+            return null;
+        } finally {
+            index.release(start);
         }
-        return null;
     }
 
     /**
      * Verifica colisión horizontal con otros jugadores
      */
-    private Player checkPlayerCollisionHorizontal(Player player, GameRoom room) {
-        for (Player other : room.players.values()) {
-            if (other.id.equals(player.id) || !other.isVisible) continue;
-
-            // Verificar si los bounding boxes se superponen
-            if (player.x < other.x + other.width &&
-                    player.x + player.width > other.x &&
-                    player.y < other.y + other.height &&
-                    player.y + player.height > other.y) {
-                return other;
+    Player checkPlayerCollisionHorizontal(Player player, GameRoom room) {
+        SpatialHash<Player> index = room.playerIndex;
+        int start = index.queryAround(player.x, player.y, player.width, player.height, GameRoom.SPATIAL_MARGIN);
+        int end = index.end();
+        try {
+            for (int i = start; i < end; i++) {
+                Player other = index.get(i);
+                if (other == player || !other.isVisible) continue;
+
+                // Verificar si los bounding boxes se superponen
+                if (player.x < other.x + other.width &&
+                        player.x + player.width > other.x &&
+                        player.y < other.y + other.height &&
+                        player.y + player.height > other.y) {
+                    return other;
+                }
             }
+            return null;
+        } finally {
+            index.release(start);
         }
-        return null;
     }
 
     /**
      * Verifica colisión vertical con plataformas (cuando cae encima)
      * Detecta basado en la posición ACTUAL real de la plataforma
      */
-    private Platform checkPlatformCollisionDown(Player player, GameRoom room) {
+    Platform checkPlatformCollisionDown(Player player, GameRoom room) {
         Platform closestPlatform = null;
         float closestDistance = Float.MAX_VALUE;
-        
-        for (Platform platform : room.platforms.values()) {
-            float playerBottom = player.y + player.height;
-            float platformTop = platform.y;
-
-            // Verificar si hay superposición horizontal
-            boolean horizontalOverlap = player.x + 2 < platform.x + platform.width &&
-                    player.x + player.width - 2 > platform.x;
-
-            // Verificar si el jugador está cerca verticalmente
-            // Solo si viene desde arriba o está justo encima
-            if (horizontalOverlap && playerBottom >= platformTop && playerBottom <= platformTop + 20) {
-                float distance = Math.abs(playerBottom - platformTop);
-                if (distance < closestDistance) {
-                    closestDistance = distance;
-                    closestPlatform = platform;
+
+        SpatialHash<Platform> index = room.platformIndex;
+        int start = index.queryAround(player.x, player.y, player.width, player.height, GameRoom.SPATIAL_MARGIN);
+        int end = index.end();
+        try {
+            for (int i = start; i < end; i++) {
+                Platform platform = index.get(i);
+                float playerBottom = player.y + player.height;
+                float platformTop = platform.y;
+
+                // Verificar si hay superposición horizontal
+                boolean horizontalOverlap = player.x + 2 < platform.x + platform.width &&
+                        player.x + player.width - 2 > platform.x;
+
+                // Verificar si el jugador está cerca verticalmente
+                // Solo si viene desde arriba o está justo encima
+                if (horizontalOverlap && playerBottom >= platformTop && playerBottom <= platformTop + 20) {
+                    float distance = Math.abs(playerBottom - platformTop);
+                    if (distance < closestDistance) {
+                        closestDistance = distance;
+                        closestPlatform = platform;
+                    }
                 }
             }
+        } finally {
+            index.release(start);
         }
         return closestPlatform;
     }
@@ -777,47 +1261,54 @@ public class GameWebSocketServer extends WebSocketServer {
     /**
      * Verifica colisión vertical con otros jugadores (cuando cae encima)
      */
-    private Player checkPlayerCollisionDown(Player player, GameRoom room) {
-        for (Player other : room.players.values()) {
-            if (other.id.equals(player.id)) continue;
+    Player checkPlayerCollisionDown(Player player, GameRoom room) {
+        SpatialHash<Player> index = room.playerIndex;
+        int start = index.queryAround(player.x, player.y, player.width, player.height, GameRoom.SPATIAL_MARGIN);
+        int end = index.end();
+        try {
+            for (int i = start; i < end; i++) {
+                Player other = index.get(i);
+                if (other == player) continue;
 
-            // Verificar si está cayendo encima de otro jugador
-            float playerBottom = player.y + player.height;
-            float otherTop = other.y;
+                // Verificar si está cayendo encima de otro jugador
+                float playerBottom = player.y + player.height;
+                float otherTop = other.y;
 
-            // Verificar superposición horizontal (debe estar bien alineado)
-            boolean horizontalOverlap = player.x + 2 < other.x + other.width &&
-                    player.x + player.width - 2 > other.x;
+                // Verificar superposición horizontal (debe estar bien alineado)
+                boolean horizontalOverlap = player.x + 2 < other.x + other.width &&
+                        player.x + player.width - 2 > other.x;
 
-            // Verificar si está justo encima (margen más amplio para detectar mejor)
-            boolean verticalNear = playerBottom >= otherTop - 5 &&
-                    playerBottom <= otherTop + 15;
+                // Verificar si está justo encima (margen más amplio para detectar mejor)
+                boolean verticalNear = playerBottom >= otherTop - 5 &&
+                        playerBottom <= otherTop + 15;
 
-            if (horizontalOverlap && verticalNear && player.velocityY >= 0) {
-                return other;
+                if (horizontalOverlap && verticalNear && player.velocityY >= 0) {
+                    return other;
+                }
             }
+            return null;
+        } finally {
+            index.release(start);
         }
-        return null;
     }
 
-    private boolean checkCollisionHorizontal(Player player, int[][] world) {
+    boolean checkCollisionHorizontal(Player player, TileGrid tiles) {
         int topTile = (int)(player.y / SIZE_TILE);
         int bottomTile = (int)((player.y + player.height - 1) / SIZE_TILE);
         int leftTile = (int)(player.x / SIZE_TILE);
         int rightTile = (int)((player.x + player.width - 1) / SIZE_TILE);
 
         // Verificar límites
-        if (leftTile < 0 || rightTile >= world[0].length) {
+        if (leftTile < 0 || rightTile >= tiles.width) {
             return true;
         }
-        if (topTile < 0 || bottomTile >= world.length) {
+        if (topTile < 0 || bottomTile >= tiles.height) {
             return false;
         }
 
         // Verificar tiles en los bordes izquierdo y derecho del jugador
         for (int y = topTile; y <= bottomTile; y++) {
-            if (SOLID_TILES.contains(world[y][leftTile]) ||
-                    SOLID_TILES.contains(world[y][rightTile])) {
+            if (tiles.isSolid(leftTile, y) || tiles.isSolid(rightTile, y)) {
                 return true;
             }
         }
@@ -827,7 +1318,7 @@ public class GameWebSocketServer extends WebSocketServer {
     /**
      * Verifica colisión hacia abajo (con el suelo)
      */
-    private boolean checkCollisionDown(Player player, int[][] world, GameRoom room) {
+    boolean checkCollisionDown(Player player, TileGrid tiles, GameRoom room) {
         // Calcular el pixel exacto de la parte inferior del jugador
         int bottomPixel = (int)(player.y + player.height);
         int bottomTile = bottomPixel / SIZE_TILE;
@@ -836,7 +1327,7 @@ public class GameWebSocketServer extends WebSocketServer {
         int rightTile = (int)((player.x + player.width - 2) / SIZE_TILE); // -2 para evitar esquinas
 
         // Verificar límites
-        if (bottomTile >= world.length) {
+        if (bottomTile >= tiles.height) {
             player.velocityY = 0;
             player.isOnGround = false;
             room.canUpdate = false;
@@ -845,13 +1336,13 @@ public class GameWebSocketServer extends WebSocketServer {
             this.restartGame(room);
             return false; // No hay colisión porque lo relocalizamos
         }
-        if (leftTile < 0 || rightTile >= world[0].length) {
+        if (leftTile < 0 || rightTile >= tiles.width) {
             return false;
         }
 
         // Verificar tiles en la parte inferior del jugador
         for (int x = leftTile; x <= rightTile; x++) {
-            if (SOLID_TILES.contains(world[bottomTile][x])) {
+            if (tiles.isSolid(x, bottomTile)) {
                 return true;
             }
         }
@@ -862,7 +1353,7 @@ public class GameWebSocketServer extends WebSocketServer {
     /**
      * Verifica colisión hacia arriba (con el techo)
      */
-    private boolean checkCollisionUp(Player player, int[][] world) {
+    boolean checkCollisionUp(Player player, TileGrid tiles) {
         int topTile = (int)(player.y / SIZE_TILE);
         int leftTile = (int)(player.x / SIZE_TILE);
         int rightTile = (int)((player.x + player.width - 1) / SIZE_TILE);
@@ -871,13 +1362,13 @@ public class GameWebSocketServer extends WebSocketServer {
         if (topTile < 0) {
             return true;
         }
-        if (leftTile < 0 || rightTile >= world[0].length) {
+        if (leftTile < 0 || rightTile >= tiles.width) {
             return false;
         }
 
         // Verificar tiles en la parte superior del jugador
         for (int x = leftTile; x <= rightTile; x++) {
-            if (SOLID_TILES.contains(world[topTile][x])) {
+            if (tiles.isSolid(x, topTile)) {
                 return true;
             }
         }
@@ -885,55 +1376,156 @@ public class GameWebSocketServer extends WebSocketServer {
         return false;
     }
 
+    /**
+     * Mapas disponibles, con los jugadores sumados de todas sus instancias
+     */
     private List<Map<String, String>> getRoomsList() {
         List<Map<String, String>> roomsList = new ArrayList<>();
-        for (GameRoom room : rooms.values()) {
+        for (MapTemplate template : matchmaker.templates()) {
             roomsList.add(Map.of(
-                    "id", room.id,
-                    "name", room.name,
-                    "players", String.valueOf(room.players.size())
+                    "id", template.id,
+                    "name", template.name,
+                    "players", String.valueOf(matchmaker.playerCount(template.id))
             ));
         }
         return roomsList;
     }
 
+    /**
+     * Envía el mismo mensaje a toda la sala. Se codifica una sola vez y los frames se reutilizan
+     * para cada conexión sin compresión de la lista cacheada de la sala (ver ConnectionEgress.send).
+     */
     private void broadcastToRoom(String roomId, String message) {
         GameRoom room = rooms.get(roomId);
         if (room != null) {
-            for (String userId : room.players.keySet()) {
-                User user = users.get(userId);
-                if (user != null) {
-                    sendToClient(user.connection, message);
-                }
-            }
+            broadcastToRoom(room, message, room.members.connections);
         }
     }
 
     private void broadcastToRoomExcept(String roomId, String exceptUserId, String message) {
         GameRoom room = rooms.get(roomId);
         if (room != null) {
-            for (String userId : room.players.keySet()) {
-                if (!userId.equals(exceptUserId)) {
-                    User user = users.get(userId);
-                    if (user != null) {
-                        sendToClient(user.connection, message);
-                    }
-                }
+            broadcastToRoom(room, message, room.members.without(exceptUserId).connections);
+        }
+    }
+
+    /**
+     * Envía un mensaje que tiene forma binaria: cada destinatario lo recibe en el protocolo
+     * que negoció, y cada formato se codifica y se enmarca una sola vez.
+     */
+    private void broadcastToRoom(String roomId, String exceptUserId, String type, Map<String, ?> data) {
+        GameRoom room = rooms.get(roomId);
+        if (room == null) return;
+
+        RoomMembers members = exceptUserId != null ? room.members.without(exceptUserId) : room.members;
+        if (!members.jsonConnections.isEmpty()) {
+            broadcastToRoom(room, createMessage(type, data), members.jsonConnections);
+        }
+        if (!members.binaryConnections.isEmpty()) {
+            broadcastToRoom(room, BinaryProtocol.encodeServerMessage(type, data), members.binaryConnections);
+        }
+    }
+
+    private void broadcastToRoom(GameRoom room, String message, Collection<WebSocket> targets) {
+        sendReliable(room, new ConnectionEgress.Outgoing(message), targets);
+    }
+
+    private void broadcastToRoom(GameRoom room, ByteBuffer message, Collection<WebSocket> targets) {
+        sendReliable(room, new ConnectionEgress.Outgoing(message), targets);
+    }
+
+    // Todos los envíos a una sala pasan por acá para contar mensajes y bytes de salida. Son
+    // mensajes confiables: antes sale el snapshot que cada destinatario tenga pendiente.
+    private void sendReliable(GameRoom room, ConnectionEgress.Outgoing message, Collection<WebSocket> targets) {
+        for (WebSocket conn : targets) {
+            ConnectionEgress egress = ConnectionEgress.of(conn);
+            if (egress == null) {
+                ConnectionEgress.send(conn, message);
+                continue;
+            }
+            int flushed = egress.sendReliable(message);
+            if (flushed > 0) {
+                metrics.recordBroadcast(room, flushed, 1);
+            }
+        }
+        metrics.recordBroadcast(room, message.bytes, targets.size());
+    }
+
+    /**
+     * Envía un gameUpdate: a las conexiones con el socket libre, ya (se enmarca una sola vez);
+     * a las atrasadas les queda pendiente y reemplaza al que tuvieran (ver ConnectionEgress)
+     */
+    private void sendSnapshot(GameRoom room, String message, List<WebSocket> targets) {
+        sendSnapshot(room, new ConnectionEgress.Outgoing(message), targets);
+    }
+
+    private void sendSnapshot(GameRoom room, ByteBuffer message, List<WebSocket> targets) {
+        sendSnapshot(room, new ConnectionEgress.Outgoing(message), targets);
+    }
+
+    private void sendSnapshot(GameRoom room, ConnectionEgress.Outgoing message, List<WebSocket> targets) {
+        int sent = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            WebSocket conn = targets.get(i);
+            ConnectionEgress egress = ConnectionEgress.of(conn);
+            if (egress == null) {
+                ConnectionEgress.send(conn, message);
+                sent++;
+            } else if (egress.sendSnapshot(message)) {
+                sent++;
+            }
+        }
+        if (sent > 0) {
+            metrics.recordBroadcast(room, message.bytes, sent);
+        }
+    }
+
+    /**
+     * Al inicio de cada tick: envía los snapshots pendientes de las conexiones que ya se
+     * vaciaron y cierra las que llevan demasiado tiempo con demasiados bytes sin enviar
+     */
+    private void drainEgress(GameRoom room, long nowNanos) {
+        for (User user : room.members.users) {
+            WebSocket conn = user.connection;
+            ConnectionEgress egress = ConnectionEgress.of(conn);
+            if (egress == null || !conn.isOpen()) continue;
+
+            int flushed = egress.flush();
+            if (flushed > 0) {
+                metrics.recordBroadcast(room, flushed, 1);
+            }
+            if (egress.checkOverflow(nowNanos)) {
+                metrics.egressOverflows.increment();
+                LOG.warn("Cerrando la conexión de " + user.username + ": más de " +
+                        ConnectionEgress.MAX_QUEUED_BYTES + " bytes sin enviar por " +
+                        ConnectionEgress.OVERFLOW_GRACE_MS + " ms");
+                conn.close(CloseFrame.TRY_AGAIN_LATER, "Conexión demasiado lenta");
             }
         }
     }
 
     private void sendToClient(WebSocket conn, String message) {
-        if (conn.isOpen()) {
-            conn.send(message);
+        if (!conn.isOpen()) return;
+
+        ConnectionEgress.Outgoing outgoing = new ConnectionEgress.Outgoing(message);
+        ConnectionEgress egress = ConnectionEgress.of(conn);
+        int flushed = 0;
+        if (egress != null) {
+            flushed = egress.sendReliable(outgoing);
+        } else {
+            ConnectionEgress.send(conn, outgoing);
+        }
+        if (flushed > 0) {
+            metrics.recordOut(flushed, 1);
         }
+        metrics.recordOut(outgoing.bytes, 1);
     }
 
     private void sendError(WebSocket conn, String error) {
         sendToClient(conn, createMessage("error", Map.of("message", error)));
     }
 
-    private String createMessage(String type, Map<String, ?> data) {
+    String createMessage(String type, Map<String, ?> data) {
         Map<String, Object> message = new HashMap<>();
         message.put("type", type);
         message.put("data", data);
@@ -0,0 +1,77 @@
+package org.server;
+
+import org.shared.PlayerPhysics;
+
+/**
+ * Frames de input de un jugador que llegaron y todavía no se simularon. El cliente numera
+ * cada frame (un tick) y reenvía los que no le confirmamos, así que un frame puede llegar
+ * varias veces: solo se encolan los posteriores al último recibido. Si el cliente ya no
+ * tiene los que faltan (se reenvían como mucho MAX_INPUT_FRAMES), el hueco se salta.
+ *
+ * Los mensajes de input llegan como comandos de la sala (offer) y el tick consume un frame
+ * por paso (poll): solo lo usa el hilo de tick. Si el cliente se adelantó más de MAX_LAG
+ * frames (su reloj va más rápido, o llegó una ráfaga), los más viejos se descartan para no
+ * acumular latencia, pero sus saltos se conservan en el frame que se aplica.
+ */
+final class InputBuffer {
+    static final int CAPACITY = 64;
+    static final int MAX_LAG = 8;
+
+    private final int[] frames = new int[CAPACITY];
+    private final int[] seqs = new int[CAPACITY];
+    private int head = 0;
+    private int size = 0;
+
+    // Secuencia del último frame encolado y del último simulado
+    private int lastQueued = 0;
+    private int lastApplied = 0;
+
+    /**
+     * Encola los frames nuevos de un mensaje; lastSeq es la secuencia del último de inputs
+     */
+    void offer(int lastSeq, int[] inputs, int count) {
+        int firstSeq = lastSeq - count + 1;
+        if (firstSeq > lastQueued + 1) {
+            lastQueued = firstSeq - 1; // frames perdidos que el cliente ya no reenvía
+        }
+        for (int i = 0; i < count; i++) {
+            int seq = firstSeq + i;
+            if (seq <= lastQueued) continue; // ya lo teníamos
+            if (size == CAPACITY) {
+                dropOldest();
+            }
+            int tail = (head + size) % CAPACITY;
+            frames[tail] = inputs[i];
+            seqs[tail] = seq;
+            size++;
+            lastQueued = seq;
+        }
+    }
+
+    /**
+     * Siguiente frame a simular, o -1 si no llegó ninguno
+     */
+    int poll() {
+        if (size == 0) return -1;
+        int jump = 0;
+        while (size > MAX_LAG) {
+            jump |= dropOldest() & PlayerPhysics.INPUT_JUMP;
+        }
+        return dropOldest() | jump;
+    }
+
+    /**
+     * Secuencia del último frame simulado; se devuelve en los snapshots
+     */
+    int lastApplied() {
+        return lastApplied;
+    }
+
+    private int dropOldest() {
+        int input = frames[head];
+        lastApplied = seqs[head];
+        head = (head + 1) % CAPACITY;
+        size--;
+        return input;
+    }
+}
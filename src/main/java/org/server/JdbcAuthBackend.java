@@ -0,0 +1,56 @@
+package org.server;
+
+import org.shared.Log;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Autenticación contra la tabla users usando conexiones del pool
+ */
+public class JdbcAuthBackend implements AuthBackend {
+    private static final Log LOG = Log.get("Auth");
+    private static final String SELECT_PASSWORD = "SELECT password FROM users WHERE username = ?";
+
+    private final ConnectionPool pool;
+
+    public JdbcAuthBackend(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public boolean authenticate(String username, String password) {
+        ConnectionPool.PooledConnection pooled;
+        try {
+            pooled = pool.acquire();
+        } catch (SQLException e) {
+            LOG.error("No se pudo obtener una conexión del pool", e);
+            return false;
+        }
+
+        String storedPassword = null;
+        try {
+            PreparedStatement stmt = pooled.prepare(SELECT_PASSWORD);
+            stmt.setString(1, username);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    storedPassword = rs.getString("password");
+                }
+            }
+        } catch (SQLException e) {
+            // La conexión puede haber quedado inutilizable: no devolverla al pool
+            pool.discard(pooled);
+            LOG.error("Error consultando al usuario " + username, e);
+            return false;
+        }
+        pool.release(pooled);
+
+        return storedPassword != null && storedPassword.equals(password); // En producción, usar hash como bcrypt
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
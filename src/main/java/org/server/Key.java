@@ -55,11 +55,11 @@ public class Key {
     }
 
     // Actualizar posición cuando sigue a un jugador
-    public void updatePosition(Player carrier) {
+    public void updatePosition(Player carrier, long now) {
         if (carrier != null && carriedByPlayerId != null) {
             // Si está moviéndose a un objetivo, interpolar suavemente
             if (isMovingToTarget) {
-                long elapsed = System.currentTimeMillis() - transferStartTime;
+                long elapsed = now - transferStartTime;
                 float progress = Math.min(1.0f, elapsed / 200.0f); // 200ms de transición
                 
                 // Interpolación suave
@@ -87,9 +87,8 @@ public class Key {
         }
     }
     
-    // Actualizar animación flotante
-    public void updateFloatAnimation() {
-        long now = System.currentTimeMillis();
+    // Actualizar animación flotante (now es el tiempo de juego de la sala)
+    public void updateFloatAnimation(long now) {
         if (now - lastFloatUpdate > 50) { // Actualizar cada 50ms
             floatOffset = (float) Math.sin(now * 0.005) * 3; // Movimiento suave arriba/abajo
             lastFloatUpdate = now;
@@ -110,20 +109,14 @@ public class Key {
         int bottomTile = (int)((carrier.y + carrier.height - 1) / GameWebSocketServer.SIZE_TILE);
 
         // Verificar límites
-        if (leftTile < 0 || rightTile >= room.world[0].length ||
-                topTile < 0 || bottomTile >= room.world.length) {
+        TileGrid tiles = room.tiles;
+        if (leftTile < 0 || rightTile >= tiles.width ||
+                topTile < 0 || bottomTile >= tiles.height) {
             return false;
         }
 
         // Verificar si está tocando tiles de puerta
-        for (int y = topTile; y <= bottomTile; y++) {
-            for (int x = leftTile; x <= rightTile; x++) {
-                if (GameWebSocketServer.WINNER_TILES.contains(room.world[y][x])) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return tiles.anyIn(leftTile, topTile, rightTile, bottomTile, TileProperties.WINNER);
     }
 
     public Map<String, Object> toMap() {
@@ -0,0 +1,58 @@
+package org.server;
+
+import java.io.File;
+
+/**
+ * Un mapa de maps/ cargado una sola vez. Cada partida corre en su propia instancia
+ * (un GameRoom nuevo) creada a partir del template; ver Matchmaker. Todas las instancias
+ * comparten los mismos TileMap del nivel y de la sala de espera.
+ */
+final class MapTemplate {
+    final String id;
+    final String name;
+    final int usersToStart;
+    final TileMap world;
+    final TileMap waitingRoom;
+
+    // Snapshots por segundo de cada instancia; 0 usa el valor por defecto (ver GameRoom)
+    int snapshotRate = 0;
+
+    MapTemplate(String id, String name, int usersToStart, TileMap world, TileMap waitingRoom) {
+        this.id = id;
+        this.name = name;
+        this.usersToStart = usersToStart;
+        this.world = world;
+        this.waitingRoom = waitingRoom;
+    }
+
+    /**
+     * Lee el mapa desde su versión compilada (ver CompiledMap), que se genera desde el JSON si
+     * falta o quedó vieja; el id es el nombre del archivo sin extensión. Devuelve null si no se
+     * pudo leer.
+     */
+    static MapTemplate load(File mapFile) {
+        return CompiledMap.loadOrCompile(mapFile);
+    }
+
+    static MapTemplate fromConfig(String id, RoomConfig config) {
+        TileProperties tileProperties = new TileProperties(config.getTiles());
+        MapTemplate template = new MapTemplate(
+                id,
+                config.getRoomName(),
+                config.getUsersToStart(),
+                new TileMap(config.getWorld(), tileProperties),
+                new TileMap(config.getWaitingRoom(), tileProperties)
+        );
+        template.snapshotRate = config.getSnapshotRate();
+        return template;
+    }
+
+    GameRoom newInstance(String roomId) {
+        GameRoom room = new GameRoom(roomId, name, usersToStart, world, waitingRoom);
+        room.templateId = id;
+        if (snapshotRate > 0) {
+            room.setSnapshotRate(snapshotRate);
+        }
+        return room;
+    }
+}
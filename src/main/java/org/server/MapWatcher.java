@@ -0,0 +1,110 @@
+package org.server;
+
+import org.shared.Log;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Vigila maps/ y recarga los mapas cuyo JSON se crea o modifica, sin reiniciar el servidor:
+ * lo recompila (ver CompiledMap) y entrega el template nuevo al servidor, que lo aplica en las
+ * instancias que están en sala de espera.
+ *
+ * Un editor suele escribir un archivo en varias operaciones: los eventos se juntan hasta que
+ * pasan DEBOUNCE_MS sin cambios, y cada mapa se recarga una vez.
+ */
+final class MapWatcher implements Runnable {
+    private static final Log LOG = Log.get("Mapas");
+    static final long DEBOUNCE_MS = 300;
+
+    private final Path directory;
+    private final WatchService watchService;
+    private final Consumer<MapTemplate> onReload;
+
+    private MapWatcher(Path directory, WatchService watchService, Consumer<MapTemplate> onReload) {
+        this.directory = directory;
+        this.watchService = watchService;
+        this.onReload = onReload;
+    }
+
+    /**
+     * Empieza a vigilar el directorio en un hilo propio; null si no se puede (no existe, o el
+     * sistema de archivos no lo permite)
+     */
+    static MapWatcher start(Path directory, Consumer<MapTemplate> onReload) {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            MapWatcher watcher = new MapWatcher(directory, watchService, onReload);
+            Thread thread = new Thread(watcher, "map-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            LOG.info("Recarga de mapas activa en " + directory.toAbsolutePath());
+            return watcher;
+        } catch (IOException e) {
+            LOG.warn("No se pueden vigilar los mapas de " + directory + ": sin recarga en caliente", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Set<String> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                do {
+                    collect(key, changed);
+                } while ((key = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null);
+
+                for (String fileName : changed) {
+                    reload(fileName);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // El servidor se detiene
+        }
+    }
+
+    void shutdown() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOG.warn("Error cerrando el WatchService de mapas", e);
+        }
+    }
+
+    private static void collect(WatchKey key, Set<String> changed) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (context instanceof Path && context.toString().endsWith(".json")) {
+                changed.add(context.toString());
+            }
+        }
+        key.reset();
+    }
+
+    private void reload(String fileName) {
+        try {
+            MapTemplate template = MapTemplate.load(directory.resolve(fileName).toFile());
+            if (template == null) {
+                LOG.warn("No se pudo recargar " + fileName + ": se sigue usando la versión anterior");
+                return;
+            }
+            onReload.accept(template);
+            LOG.info("Mapa " + template.id + " recargado");
+        } catch (RuntimeException e) {
+            LOG.error("Error recargando " + fileName + ": se sigue usando la versión anterior", e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.server;
+
+import org.shared.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reparte a los jugadores que eligen un mapa entre instancias de ese mapa. Un jugador entra a
+ * la instancia abierta más llena (en sala de espera y con lugar hasta users-to-start); si no
+ * hay ninguna, se crea otra. Las instancias que quedan vacías se liberan.
+ *
+ * Entrar y salir están sincronizados: dos jugadores que entran a la vez no pueden pasarse del
+ * cupo de una instancia, ni caer en una que se está liberando. El cupo se cuenta acá, bajo el
+ * mismo lock: los jugadores de la sala (GameRoom.players) son del hilo de tick y cambian recién
+ * cuando corre el comando.
+ */
+final class Matchmaker {
+    private static final Log LOG = Log.get("Matchmaking");
+
+    private final Map<String, MapTemplate> templates = new LinkedHashMap<>();
+    private final Map<String, List<GameRoom>> instances = new HashMap<>();
+    private final Map<String, Integer> instanceCounters = new HashMap<>();
+    // Jugadores de cada instancia viva
+    private final Map<GameRoom, Integer> occupancy = new HashMap<>();
+
+    // Altas y bajas de instancias (registrar en el servidor y en el TickScheduler)
+    private final Consumer<GameRoom> onCreated;
+    private final Consumer<GameRoom> onReclaimed;
+    // Una instancia completó su cupo: arrancar la partida (se llama una vez por llenado)
+    private final Consumer<GameRoom> onFull;
+
+    Matchmaker(Collection<MapTemplate> templates, Consumer<GameRoom> onCreated, Consumer<GameRoom> onReclaimed,
+               Consumer<GameRoom> onFull) {
+        for (MapTemplate template : templates) {
+            this.templates.put(template.id, template);
+            this.instances.put(template.id, new ArrayList<>());
+        }
+        this.onCreated = onCreated;
+        this.onReclaimed = onReclaimed;
+        this.onFull = onFull;
+    }
+
+    // Copia: un mapa recargado puede agregar templates mientras se recorre
+    synchronized List<MapTemplate> templates() {
+        return new ArrayList<>(templates.values());
+    }
+
+    synchronized boolean hasTemplate(String templateId) {
+        return templates.containsKey(templateId);
+    }
+
+    /**
+     * Agrega al jugador a una instancia del mapa y la devuelve; null si el mapa no existe
+     */
+    synchronized GameRoom join(String templateId, User user, Player player) {
+        MapTemplate template = templates.get(templateId);
+        if (template == null) return null;
+
+        GameRoom room = null;
+        for (GameRoom candidate : instances.get(templateId)) {
+            if (isOpen(candidate) && (room == null || occupancy.get(candidate) > occupancy.get(room))) {
+                room = candidate;
+            }
+        }
+        if (room == null) {
+            int number = instanceCounters.merge(templateId, 1, Integer::sum);
+            room = template.newInstance(templateId + "-" + number);
+            instances.get(templateId).add(room);
+            occupancy.put(room, 0);
+            onCreated.accept(room);
+            LOG.info("Nueva instancia " + room.id + " (" + instances.get(templateId).size() + " de " + templateId + ")");
+        }
+
+        room.addPlayer(player);
+        room.addMember(user);
+        int count = occupancy.merge(room, 1, Integer::sum);
+        if (count == room.needUsers) {
+            onFull.accept(room);
+        }
+        return room;
+    }
+
+    /**
+     * Saca al jugador de la instancia; si quedó vacía la libera. Devuelve true si se liberó.
+     */
+    synchronized boolean leave(GameRoom room, String userId) {
+        if (!room.removeMember(userId)) return false;
+        room.removePlayer(userId);
+        Integer count = occupancy.computeIfPresent(room, (r, n) -> n - 1);
+        if (count == null || count > 0) return false;
+
+        List<GameRoom> templateInstances = instances.get(room.templateId);
+        if (templateInstances == null || !templateInstances.remove(room)) return false;
+        occupancy.remove(room);
+
+        onReclaimed.accept(room);
+        LOG.info("Instancia " + room.id + " liberada (" + templateInstances.size() + " de " + room.templateId + ")");
+        return true;
+    }
+
+    /**
+     * Reemplaza (o agrega) el template de un mapa recargado: las instancias nuevas salen del
+     * nuevo. Devuelve las instancias existentes, que deciden cuándo tomarlo (ver GameRoom.reloadTemplate).
+     */
+    synchronized List<GameRoom> replaceTemplate(MapTemplate template) {
+        templates.put(template.id, template);
+        return new ArrayList<>(instances.computeIfAbsent(template.id, id -> new ArrayList<>()));
+    }
+
+    /**
+     * Jugadores en todas las instancias del mapa
+     */
+    synchronized int playerCount(String templateId) {
+        int count = 0;
+        for (GameRoom room : instances.getOrDefault(templateId, List.of())) {
+            count += occupancy.get(room);
+        }
+        return count;
+    }
+
+    // Abierta: en sala de espera y con lugar. Una partida en curso o por empezar no recibe jugadores.
+    private boolean isOpen(GameRoom room) {
+        return room.world == room.waitingRoom && occupancy.get(room) < room.needUsers;
+    }
+}
@@ -0,0 +1,13 @@
+package org.server;
+
+/**
+ * Backend de prueba sin base de datos: acepta a cualquier usuario con contraseña no vacía.
+ * Solo para pruebas de carga y desarrollo local (AUTH_BACKEND=memory).
+ */
+public class MemoryAuthBackend implements AuthBackend {
+
+    @Override
+    public boolean authenticate(String username, String password) {
+        return username != null && !username.isEmpty() && password != null && !password.isEmpty();
+    }
+}
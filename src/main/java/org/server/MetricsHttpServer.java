@@ -0,0 +1,61 @@
+package org.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.shared.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Endpoint HTTP mínimo (el HttpServer del JDK) que sirve /metrics en formato Prometheus.
+ * Un solo hilo: un scrape cada algunos segundos no necesita más.
+ *
+ * METRICS_PORT elige el puerto (9464 por defecto, 0 lo desactiva) y METRICS_HOST la interfaz
+ * (127.0.0.1 por defecto; 0.0.0.0 para que Prometheus lo alcance desde otro contenedor); ver
+ * ServerConfig.
+ */
+final class MetricsHttpServer {
+    private static final Log LOG = Log.get("Métricas");
+
+    private MetricsHttpServer() {
+    }
+
+    /**
+     * Arranca el endpoint; si está desactivado (puerto 0) o no se pudo abrir el puerto, el
+     * servidor sigue sin él
+     */
+    static void start(String host, int port, Supplier<String> metrics) {
+        if (port <= 0) return;
+
+        try {
+            HttpServer http = HttpServer.create(new InetSocketAddress(host, port), 0);
+            http.createContext("/metrics", exchange -> {
+                try (exchange) {
+                    if (!"GET".equals(exchange.getRequestMethod())) {
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+                    byte[] body = metrics.get().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                }
+            });
+            http.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            http.start();
+            LOG.info("Métricas en http://" + host + ":" + port + "/metrics");
+        } catch (IOException e) {
+            LOG.error("No se pudo abrir el endpoint de métricas en " + host + ":" + port, e);
+        }
+    }
+}
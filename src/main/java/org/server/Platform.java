@@ -1,9 +1,28 @@
 package org.server;
 
+import org.shared.Log;
+
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Plataforma móvil como máquina de estados:
+ *   IDLE       en su origen; pasa a ARMING cuando tiene los jugadores que pide (y tiene destino)
+ *   ARMING     espera PLAYER_DETECTION_DELAY con los jugadores encima; si se bajan, vuelve a IDLE
+ *   MOVING     va hacia su destino, pase lo que pase arriba; al llegar, ARRIVED
+ *   ARRIVED    se queda en el destino mientras tenga los jugadores que pide; si no, RETURNING
+ *   RETURNING  vuelve al origen; al llegar, IDLE
+ *
+ * La ruta (destino y dirección) se calcula una vez al armar el nivel (ver GameRoom.initializePlatforms)
+ * y la curva de movimiento está tabulada por milisegundo. GameRoom solo llama a update cuando
+ * cambia la ocupación o vence nextEventTime; la ocupación sí se recuenta en cada tick en que se
+ * mueve algún jugador (ver GameRoom.updatePlatformLogic).
+ */
 public class Platform {
+    private static final Log LOG = Log.get("Plataforma");
+
+    enum State { IDLE, ARMING, MOVING, ARRIVED, RETURNING }
+
     public String id;
     public float x;
     public float y;
@@ -15,19 +34,40 @@ public class Platform {
     public int playersOnPlatform = 0;
     public float destY; // Y hacia donde se mueve
     public boolean isMoving = false;
-    public long startMoveTime = 0;
-    public long detectedPlayersTime = 0; // Cuándo se detectó que hay suficientes jugadores
-    
+    public long startMoveTime = 0; // Tiempo de juego (SimClock) en que empezó el movimiento
+    public float startY; // Y desde donde empezó el movimiento
+    public float deltaY = 0; // Cuánto se movió en el último tick (lo que arrastra a los jugadores)
+
     // Almacenar posiciones originales para resetear
     public float originalX;
     public float originalY;
-    
-    // Flag para saber si la plataforma está en su posición "activa" (origen)
-    public boolean isAtOrigin = true;
-    
+
+    State state = State.IDLE;
+
+    // Ruta precalculada: Y del destino y dirección hacia él (0 si el nivel no le marca destino)
+    float routeDestY;
+    int routeDirection = 0;
+
+    // Tiempo de juego en que vence la espera o termina el movimiento; Long.MAX_VALUE si no hay plazo
+    long nextEventTime = Long.MAX_VALUE;
+    // Jugadores arriba la última vez que se evaluó
+    int lastOccupancy = 0;
+
     public static final long MOVE_DURATION = 1500; // 1 segundo para mover 1 tile (más lento)
     public static final long PLAYER_DETECTION_DELAY = 50; // 0.5 segundos de delay antes de mover
 
+    // Curva ease-in-out cúbica para cada milisegundo del movimiento (el tiempo de juego es entero)
+    private static final float[] EASING = new float[(int) MOVE_DURATION + 1];
+
+    static {
+        for (int elapsed = 0; elapsed <= MOVE_DURATION; elapsed++) {
+            float progress = elapsed / (float) MOVE_DURATION;
+            EASING[elapsed] = progress < 0.5f ?
+                    4 * progress * progress * progress :
+                    1 - (float) Math.pow(-2 * progress + 2, 3) / 2;
+        }
+    }
+
     Platform(String id, float x, float y, int type) {
         this.id = id;
         this.x = x;
@@ -40,40 +80,105 @@ public class Platform {
         this.requiredPlayers = type - 30; // 31 requiere 1, 32 requiere 2, etc.
     }
 
-    public void startMovement(int direction, float destY) {
+    /**
+     * Fija la ruta calculada desde el mapa; direction 0 si no tiene destino
+     */
+    void setRoute(int direction, float destY) {
+        this.routeDirection = direction;
+        this.routeDestY = destY;
+    }
+
+    public void startMovement(int direction, float destY, long now) {
         this.direction = direction;
         this.destY = destY;
+        this.startY = this.y;
         this.isMoving = true;
-        this.startMoveTime = System.currentTimeMillis();
-        this.isAtOrigin = false;
+        this.startMoveTime = now;
+        this.nextEventTime = now + MOVE_DURATION;
     }
 
-    public void updatePosition() {
-        if (!isMoving) return;
-
-        long elapsed = System.currentTimeMillis() - startMoveTime;
-        float progress = Math.min(1.0f, elapsed / (float) MOVE_DURATION);
-
-        // Usar interpolación suave easing (ease-in-out cubic) para movimiento más natural
-        float easeProgress = progress < 0.5f ? 
-            4 * progress * progress * progress : 
-            1 - (float)Math.pow(-2 * progress + 2, 3) / 2;
-        
-        float startY = y;
-        y = startY + (destY - startY) * easeProgress;
+    /**
+     * Avanza el movimiento hasta el tiempo de juego now y deja en deltaY cuánto se movió.
+     * Devuelve true si se movió.
+     */
+    public boolean updatePosition(long now) {
+        if (!isMoving) {
+            deltaY = 0;
+            return false;
+        }
 
-        if (progress >= 1.0f) {
+        long elapsed = now - startMoveTime;
+        float previousY = y;
+        if (elapsed >= MOVE_DURATION) {
             y = destY;
             isMoving = false;
             direction = 0;
+            // Llegó: la evaluación de este mismo tick decide el estado siguiente
+            state = state == State.RETURNING ? State.IDLE : State.ARRIVED;
+            nextEventTime = now;
+        } else {
+            y = startY + (destY - startY) * EASING[(int) Math.max(0, elapsed)];
+        }
+        deltaY = y - previousY;
+        return deltaY != 0;
+    }
+
+    /**
+     * True si hay que evaluarla en este tick: cambió su ocupación o venció su plazo
+     */
+    boolean needsUpdate(int occupancy, long now) {
+        return occupancy != lastOccupancy || now >= nextEventTime;
+    }
+
+    /**
+     * Transiciones por ocupación y por plazos vencidos; ver la tabla de estados arriba
+     */
+    void update(int occupancy, long now) {
+        lastOccupancy = occupancy;
+        boolean enoughPlayers = occupancy >= requiredPlayers;
+
+        switch (state) {
+            case IDLE:
+                nextEventTime = Long.MAX_VALUE;
+                if (enoughPlayers && routeDirection != 0) {
+                    state = State.ARMING;
+                    nextEventTime = now + PLAYER_DETECTION_DELAY;
+                }
+                break;
+            case ARMING:
+                if (!enoughPlayers) {
+                    // Jugador se fue mientras se esperaba el delay
+                    state = State.IDLE;
+                    nextEventTime = Long.MAX_VALUE;
+                } else if (now >= nextEventTime) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(id + " ¡¡MOVIMIENTO!! hacia Y=" + routeDestY);
+                    }
+                    state = State.MOVING;
+                    startMovement(routeDirection, routeDestY, now);
+                }
+                break;
+            case ARRIVED:
+                nextEventTime = Long.MAX_VALUE;
+                if (!enoughPlayers) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(id + " reseteando a posición original");
+                    }
+                    state = State.RETURNING;
+                    resetToOriginal(now);
+                }
+                break;
+            case MOVING:
+            case RETURNING:
+                // Se mueven sin importar quién esté arriba; el plazo es el fin del movimiento
+                break;
         }
     }
 
-    public void resetToOriginal() {
+    public void resetToOriginal(long now) {
         // Usar startMovement para animar el regreso a la posición original
         // con la misma velocidad que el movimiento hacia el destino
-        this.startMovement(this.y < this.originalY ? -1 : 1, this.originalY);
-        this.isAtOrigin = false; // Mientras se mueve, no está en origen
+        this.startMovement(this.y < this.originalY ? -1 : 1, this.originalY, now);
     }
 
     public int getPlayersNeeded() {
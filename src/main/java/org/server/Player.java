@@ -1,9 +1,10 @@
 package org.server;
 
+import org.shared.PlayerPhysics;
+
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class Player {
     String id;
@@ -18,20 +19,39 @@ public class Player {
     boolean isVisible = true;
 
 
-    float width = 32;  // Ancho del jugador
-    float height = 48; // Alto del jugador
+    float width = PlayerPhysics.PLAYER_WIDTH;  // Ancho del jugador
+    float height = PlayerPhysics.PLAYER_HEIGHT; // Alto del jugador
 
-    // Lista de jugadores que están encima de este jugador
-    Set<String> playersOnTop = new HashSet<>();
+    // Jugadores que están encima de este jugador (se rellena en cada tick, sin crear objetos)
+    Player[] playersOnTop = new Player[4];
+    int playersOnTopCount = 0;
 
     // Sistema de llaves
     boolean hasKey = false;
 
+    // Frames de input pendientes y secuencia del último simulado (0 si usa move/jump sueltos)
+    final InputBuffer inputs = new InputBuffer();
+    int inputSeq = 0;
+
     Player(String id, String username) {
         this.id = id;
         this.username = username;
     }
 
+    void addPlayerOnTop(Player other) {
+        if (playersOnTopCount == playersOnTop.length) {
+            playersOnTop = Arrays.copyOf(playersOnTop, playersOnTop.length * 2);
+        }
+        playersOnTop[playersOnTopCount++] = other;
+    }
+
+    void clearPlayersOnTop() {
+        for (int i = 0; i < playersOnTopCount; i++) {
+            playersOnTop[i] = null;
+        }
+        playersOnTopCount = 0;
+    }
+
     Map<String, Object> toMap() {
         Map<String, Object> data = new HashMap<>();
         data.put("id", id);
@@ -41,6 +61,9 @@ public class Player {
         data.put("y", y);
         data.put("isVisible", isVisible);
         data.put("hasKey", hasKey);
+        data.put("velocityY", velocityY);
+        data.put("isOnGround", isOnGround);
+        data.put("inputSeq", inputSeq);
         return data;
     }
 }
@@ -0,0 +1,86 @@
+package org.server;
+
+import org.shared.Log;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cola de comandos de una sala: muchos hilos encolan (red, scheduler, matchmaking) y solo el
+ * hilo de tick de la sala los ejecuta, al principio de cada tick. Todo lo que modifica el
+ * estado de la simulación pasa por acá, así la simulación corre en un solo hilo y sin locks.
+ *
+ * Es una lista enlazada sin locks para un solo consumidor (al estilo de Vyukov): encolar es un
+ * getAndSet sobre la cola y un enlace; el consumidor avanza desde la cabeza sin sincronizar.
+ * Un comando encolado mientras se vacía la cola puede correr en ese mismo tick o en el siguiente.
+ *
+ * Cuando la sala se libera la cola se cierra: los comandos pendientes no corren y los nuevos se
+ * rechazan, así nada encolado para esa instancia se aplica después.
+ */
+final class RoomCommandQueue {
+    private static final Log LOG = Log.get("Comandos");
+
+    private static final class Node {
+        Runnable command;
+        volatile Node next;
+
+        Node(Runnable command) {
+            this.command = command;
+        }
+    }
+
+    // Último nodo encolado (productores) y nodo ya consumido que hace de cabeza (consumidor)
+    private final AtomicReference<Node> tail;
+    private Node head;
+    private volatile boolean closed = false;
+
+    RoomCommandQueue() {
+        Node stub = new Node(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Encola un comando. Se puede llamar desde cualquier hilo. Devuelve false si la cola está
+     * cerrada y el comando se descartó.
+     */
+    boolean offer(Runnable command) {
+        if (closed) {
+            LOG.debug("Comando descartado: la sala ya se liberó");
+            return false;
+        }
+        Node node = new Node(command);
+        Node previous = tail.getAndSet(node);
+        // Entre el getAndSet y este enlace el consumidor ve la cola cortada y sigue en el próximo tick
+        previous.next = node;
+        return true;
+    }
+
+    /**
+     * Cierra la cola. Se puede llamar desde cualquier hilo; si el tick está vaciándola, se
+     * detiene antes del próximo comando.
+     */
+    void close() {
+        closed = true;
+    }
+
+    /**
+     * Ejecuta los comandos encolados, en orden, y devuelve cuántos corrió. Solo lo llama el
+     * hilo de tick de la sala. Un comando que falla se registra y no frena a los demás.
+     */
+    int drain() {
+        int count = 0;
+        Node next;
+        while (!closed && (next = head.next) != null) {
+            Runnable command = next.command;
+            next.command = null;
+            head = next;
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                LOG.error("Error ejecutando comando de sala", e);
+            }
+            count++;
+        }
+        return count;
+    }
+}
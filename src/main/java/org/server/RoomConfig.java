@@ -14,9 +14,31 @@ public class RoomConfig {
 
     private int[][] world;
 
+    // Opcional: qué ids de tile son sólidos, meta, plataforma, etc. Si falta, se usan los de siempre
+    private Tiles tiles;
+
+    // Opcional: snapshots por segundo que se envían a los jugadores (la simulación sigue a 60 Hz)
+    @SerializedName("snapshot-rate")
+    private int snapshotRate;
+
+    public static class Tiles {
+        int[] solid;
+        int[] winner;
+
+        @SerializedName("platform-origin")
+        int[] platformOrigin;
+
+        @SerializedName("platform-destination")
+        int[] platformDestination;
+
+        int[] key;
+    }
+
     // Getters
     public String getRoomName() { return roomName; }
     public int getUsersToStart() { return usersToStart; }
     public int[][] getWaitingRoom() { return waitingRoom; }
     public int[][] getWorld() { return world; }
+    public Tiles getTiles() { return tiles; }
+    public int getSnapshotRate() { return snapshotRate; }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package org.server;
+
+import org.java_websocket.WebSocket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Destinatarios de una sala, agrupados por cómo hay que enviarles los mensajes.
+ * Es inmutable: se reconstruye al entrar o salir un jugador (copy-on-write), así el
+ * tick recorre listas ya armadas sin buscar usuarios en mapas ni bloquear.
+ */
+final class RoomMembers {
+    static final RoomMembers EMPTY = new RoomMembers(List.of());
+
+    final List<User> users;
+
+    // Todas las conexiones (mensajes que solo existen en JSON: chat, startGame, gameWin...)
+    final List<WebSocket> connections;
+
+    // Mensajes con forma binaria (playerJoined, playerLeft), según el protocolo negociado
+    final List<WebSocket> jsonConnections;
+    final List<WebSocket> binaryConnections;
+
+    // Clientes que reciben el gameUpdate completo clásico
+    final List<User> fullUsers;
+    final List<WebSocket> fullJsonConnections;
+    final List<WebSocket> fullBinaryConnections;
+
+    // Clientes con baseline propio de snapshots
+    final List<User> deltaUsers;
+
+    private RoomMembers(List<User> users) {
+        this.users = Collections.unmodifiableList(users);
+
+        List<WebSocket> all = new ArrayList<>();
+        List<WebSocket> json = new ArrayList<>();
+        List<WebSocket> binary = new ArrayList<>();
+        List<User> full = new ArrayList<>();
+        List<WebSocket> fullJson = new ArrayList<>();
+        List<WebSocket> fullBinary = new ArrayList<>();
+        List<User> delta = new ArrayList<>();
+
+        for (User user : users) {
+            all.add(user.connection);
+            (user.binaryProtocol ? binary : json).add(user.connection);
+            if (user.snapshots != null) {
+                delta.add(user);
+            } else {
+                full.add(user);
+                (user.binaryProtocol ? fullBinary : fullJson).add(user.connection);
+            }
+        }
+
+        this.connections = Collections.unmodifiableList(all);
+        this.jsonConnections = Collections.unmodifiableList(json);
+        this.binaryConnections = Collections.unmodifiableList(binary);
+        this.fullUsers = Collections.unmodifiableList(full);
+        this.fullJsonConnections = Collections.unmodifiableList(fullJson);
+        this.fullBinaryConnections = Collections.unmodifiableList(fullBinary);
+        this.deltaUsers = Collections.unmodifiableList(delta);
+    }
+
+    RoomMembers with(User user) {
+        List<User> updated = new ArrayList<>(users.size() + 1);
+        for (User member : users) {
+            if (!member.id.equals(user.id)) {
+                updated.add(member);
+            }
+        }
+        updated.add(user);
+        return new RoomMembers(updated);
+    }
+
+    RoomMembers without(String userId) {
+        List<User> updated = new ArrayList<>(users.size());
+        for (User member : users) {
+            if (!member.id.equals(userId)) {
+                updated.add(member);
+            }
+        }
+        return updated.size() == users.size() ? this : new RoomMembers(updated);
+    }
+
+    boolean isEmpty() {
+        return users.isEmpty();
+    }
+}
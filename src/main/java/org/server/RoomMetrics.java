@@ -0,0 +1,24 @@
+package org.server;
+
+import org.shared.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de una sala: ticks simulados, cuánto tardó cada uno (simulación + envío, en
+ * microsegundos), snapshots emitidos, envíos salteados a clientes lentos y mensajes/bytes
+ * enviados a sus jugadores
+ */
+final class RoomMetrics {
+    final LongAdder ticks = new LongAdder();
+    final Histogram tickMicros = new Histogram();
+    final LongAdder snapshots = new LongAdder();
+    final LongAdder snapshotsSkipped = new LongAdder();
+    final LongAdder messagesOut = new LongAdder();
+    final LongAdder bytesOut = new LongAdder();
+
+    void recordBroadcast(int bytes, int recipients) {
+        messagesOut.add(recipients);
+        bytesOut.add((long) bytes * recipients);
+    }
+}
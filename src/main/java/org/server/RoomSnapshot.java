@@ -0,0 +1,230 @@
+package org.server;
+
+import org.shared.BinaryProtocol;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Estado completo de una sala al final de un tick, guardado como arreglos primitivos
+ * por campo (estructura de arreglos). Los objetos se reciclan dentro del historial de
+ * la sala, así que capturar un snapshot en estado estable no crea objetos.
+ *
+ * Una vez capturado no cambia hasta que su lugar en el historial se reutiliza, por eso se
+ * comparte entre todos los clientes y sirve como baseline para las actualizaciones delta.
+ * Los mensajes se escriben directo desde estos arreglos (ver GameUpdateEncoder).
+ */
+public class RoomSnapshot {
+    // Todos los campos de cada entidad (keyframe o entidad nueva en un delta)
+    static final int PLAYER_ALL = (1 << 9) - 1;
+    static final int PLATFORM_ALL = (1 << 10) - 1;
+    static final int KEY_ALL = (1 << 6) - 1;
+
+    int seq;
+
+    // Jugadores
+    int playerCount;
+    String[] playerIds = new String[8];
+    String[] usernames = new String[8];
+    String[] directions = new String[8];
+    float[] playerX = new float[8];
+    float[] playerY = new float[8];
+    boolean[] playerVisible = new boolean[8];
+    boolean[] playerHasKey = new boolean[8];
+    // Para la predicción del cliente: velocidad vertical, suelo y último input simulado
+    float[] playerVelocityY = new float[8];
+    boolean[] playerOnGround = new boolean[8];
+    int[] playerInputSeq = new int[8];
+
+    // Plataformas
+    int platformCount;
+    String[] platformIds = new String[4];
+    float[] platformX = new float[4];
+    float[] platformY = new float[4];
+    float[] platformWidth = new float[4];
+    float[] platformHeight = new float[4];
+    int[] platformType = new int[4];
+    int[] platformDirection = new int[4];
+    boolean[] platformMoving = new boolean[4];
+    int[] platformOnTop = new int[4];
+    int[] platformRequired = new int[4];
+
+    // Llave
+    boolean hasKey;
+    float keyX;
+    float keyY;
+    boolean keyCollected;
+    String keyCarrier;
+    float keyFloatOffset;
+    boolean keyOpeningDoor;
+
+    boolean requiresKey;
+    boolean doorOpen;
+
+    /**
+     * Copia el estado de la sala en este objeto. Solo crea arreglos si la sala creció.
+     */
+    void capture(int seq, GameRoom room) {
+        this.seq = seq;
+
+        Player[] players = room.playerSlots;
+        ensurePlayerCapacity(players.length);
+        playerCount = players.length;
+        for (int i = 0; i < players.length; i++) {
+            Player player = players[i];
+            playerIds[i] = player.id;
+            usernames[i] = player.username;
+            directions[i] = player.direction;
+            playerX[i] = player.x;
+            playerY[i] = player.y;
+            playerVisible[i] = player.isVisible;
+            playerHasKey[i] = player.hasKey;
+            playerVelocityY[i] = player.velocityY;
+            playerOnGround[i] = player.isOnGround;
+            playerInputSeq[i] = player.inputSeq;
+        }
+
+        Platform[] platforms = room.platformSlots;
+        ensurePlatformCapacity(platforms.length);
+        platformCount = platforms.length;
+        for (int i = 0; i < platforms.length; i++) {
+            Platform platform = platforms[i];
+            platformIds[i] = platform.id;
+            platformX[i] = platform.x;
+            platformY[i] = platform.y;
+            platformWidth[i] = platform.width;
+            platformHeight[i] = platform.height;
+            platformType[i] = platform.type;
+            platformDirection[i] = platform.direction;
+            platformMoving[i] = platform.isMoving;
+            platformOnTop[i] = platform.playersOnPlatform;
+            platformRequired[i] = platform.requiredPlayers;
+        }
+
+        Key key = room.key;
+        hasKey = key != null;
+        if (hasKey) {
+            keyX = key.x;
+            keyY = key.y;
+            keyCollected = key.isCollected;
+            keyCarrier = key.carriedByPlayerId;
+            keyFloatOffset = key.floatOffset;
+            keyOpeningDoor = key.isOpeningDoor;
+        } else {
+            keyCarrier = null;
+        }
+
+        requiresKey = hasKey;
+        doorOpen = room.doorOpen;
+    }
+
+    private void ensurePlayerCapacity(int count) {
+        if (playerIds.length >= count) return;
+        int capacity = Math.max(count, playerIds.length * 2);
+        playerIds = Arrays.copyOf(playerIds, capacity);
+        usernames = Arrays.copyOf(usernames, capacity);
+        directions = Arrays.copyOf(directions, capacity);
+        playerX = Arrays.copyOf(playerX, capacity);
+        playerY = Arrays.copyOf(playerY, capacity);
+        playerVisible = Arrays.copyOf(playerVisible, capacity);
+        playerHasKey = Arrays.copyOf(playerHasKey, capacity);
+        playerVelocityY = Arrays.copyOf(playerVelocityY, capacity);
+        playerOnGround = Arrays.copyOf(playerOnGround, capacity);
+        playerInputSeq = Arrays.copyOf(playerInputSeq, capacity);
+    }
+
+    private void ensurePlatformCapacity(int count) {
+        if (platformIds.length >= count) return;
+        int capacity = Math.max(count, platformIds.length * 2);
+        platformIds = Arrays.copyOf(platformIds, capacity);
+        platformX = Arrays.copyOf(platformX, capacity);
+        platformY = Arrays.copyOf(platformY, capacity);
+        platformWidth = Arrays.copyOf(platformWidth, capacity);
+        platformHeight = Arrays.copyOf(platformHeight, capacity);
+        platformType = Arrays.copyOf(platformType, capacity);
+        platformDirection = Arrays.copyOf(platformDirection, capacity);
+        platformMoving = Arrays.copyOf(platformMoving, capacity);
+        platformOnTop = Arrays.copyOf(platformOnTop, capacity);
+        platformRequired = Arrays.copyOf(platformRequired, capacity);
+    }
+
+    /**
+     * Campos de un jugador que cambiaron respecto al baseline (todos si b < 0), con los bits
+     * de BinaryProtocol. Los de texto que quedan en null se omiten al escribir.
+     */
+    int playerChanges(RoomSnapshot base, int b, int i) {
+        if (b < 0) {
+            return PLAYER_ALL;
+        }
+        int changed = 0;
+        if (!Objects.equals(base.usernames[b], usernames[i])) changed |= BinaryProtocol.PLAYER_USERNAME;
+        if (!Objects.equals(base.directions[b], directions[i])) changed |= BinaryProtocol.PLAYER_DIRECTION;
+        if (base.playerX[b] != playerX[i]) changed |= BinaryProtocol.PLAYER_X;
+        if (base.playerY[b] != playerY[i]) changed |= BinaryProtocol.PLAYER_Y;
+        if (base.playerVisible[b] != playerVisible[i]) changed |= BinaryProtocol.PLAYER_VISIBLE;
+        if (base.playerHasKey[b] != playerHasKey[i]) changed |= BinaryProtocol.PLAYER_HAS_KEY;
+        if (base.playerVelocityY[b] != playerVelocityY[i]) changed |= BinaryProtocol.PLAYER_VELOCITY_Y;
+        if (base.playerOnGround[b] != playerOnGround[i]) changed |= BinaryProtocol.PLAYER_ON_GROUND;
+        if (base.playerInputSeq[b] != playerInputSeq[i]) changed |= BinaryProtocol.PLAYER_INPUT_SEQ;
+        return changed;
+    }
+
+    /**
+     * Campos de una plataforma que cambiaron (todos si b < 0)
+     */
+    int platformChanges(RoomSnapshot base, int b, int i) {
+        if (b < 0) {
+            return PLATFORM_ALL;
+        }
+        int changed = 0;
+        if (base.platformX[b] != platformX[i]) changed |= BinaryProtocol.PLATFORM_X;
+        if (base.platformY[b] != platformY[i]) changed |= BinaryProtocol.PLATFORM_Y;
+        if (base.platformWidth[b] != platformWidth[i]) changed |= BinaryProtocol.PLATFORM_WIDTH;
+        if (base.platformHeight[b] != platformHeight[i]) changed |= BinaryProtocol.PLATFORM_HEIGHT;
+        if (base.platformType[b] != platformType[i]) changed |= BinaryProtocol.PLATFORM_TYPE;
+        if (base.platformDirection[b] != platformDirection[i]) changed |= BinaryProtocol.PLATFORM_DIRECTION;
+        if (base.platformMoving[b] != platformMoving[i]) changed |= BinaryProtocol.PLATFORM_MOVING;
+        if (base.platformOnTop[b] != platformOnTop[i]) changed |= BinaryProtocol.PLATFORM_ON_TOP;
+        if (base.platformRequired[b] != platformRequired[i]) changed |= BinaryProtocol.PLATFORM_REQUIRED;
+        if (base.playersNeeded(b) != playersNeeded(i)) changed |= BinaryProtocol.PLATFORM_NEEDED;
+        return changed;
+    }
+
+    int playersNeeded(int i) {
+        return Math.max(0, platformRequired[i] - platformOnTop[i]);
+    }
+
+    /**
+     * Campos de la llave que cambiaron (todos si base es null). El portador en null no va
+     * en un keyframe; en un delta se marca como borrado (ver GameUpdateEncoder).
+     */
+    int keyChanges(RoomSnapshot base) {
+        if (base == null) {
+            return keyCarrier != null ? KEY_ALL : KEY_ALL & ~BinaryProtocol.KEY_CARRIER;
+        }
+        int changed = 0;
+        if (base.keyX != keyX) changed |= BinaryProtocol.KEY_X;
+        if (base.keyY != keyY) changed |= BinaryProtocol.KEY_Y;
+        if (base.keyCollected != keyCollected) changed |= BinaryProtocol.KEY_COLLECTED;
+        if (!Objects.equals(base.keyCarrier, keyCarrier)) changed |= BinaryProtocol.KEY_CARRIER;
+        if (base.keyFloatOffset != keyFloatOffset) changed |= BinaryProtocol.KEY_FLOAT_OFFSET;
+        if (base.keyOpeningDoor != keyOpeningDoor) changed |= BinaryProtocol.KEY_OPENING_DOOR;
+        return changed;
+    }
+
+    /**
+     * Índice de una entidad en el baseline. Si nadie entró ni salió, está en la misma
+     * posición y basta comparar la referencia; si no, se busca por id.
+     */
+    static int indexOf(String[] ids, int count, String id, int hint) {
+        if (hint < count && ids[hint] == id) {
+            return hint;
+        }
+        for (int i = 0; i < count; i++) {
+            if (ids[i].equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
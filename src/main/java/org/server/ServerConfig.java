@@ -0,0 +1,40 @@
+package org.server;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Configuración del servidor que viene del entorno: de dónde se cargan los mapas, si se
+ * recargan en caliente y dónde se sirven las métricas. Se resuelve una sola vez al arrancar.
+ */
+final class ServerConfig {
+    // Directorio de los JSON de mapas; los compilados van en su subdirectorio compiled/
+    final Path mapsDir;
+    // MAP_HOT_RELOAD=false desactiva la recarga en caliente de mapsDir (ver MapWatcher)
+    final boolean mapHotReload;
+
+    // Interfaz y puerto del endpoint /metrics; el puerto 0 lo desactiva
+    final String metricsHost;
+    final int metricsPort;
+
+    ServerConfig(Path mapsDir, boolean mapHotReload, String metricsHost, int metricsPort) {
+        this.mapsDir = mapsDir;
+        this.mapHotReload = mapHotReload;
+        this.metricsHost = metricsHost;
+        this.metricsPort = metricsPort;
+    }
+
+    static ServerConfig fromEnv() {
+        return new ServerConfig(
+                Paths.get(GameWebSocketServer.MAPS_DIR),
+                !"false".equalsIgnoreCase(System.getenv("MAP_HOT_RELOAD")),
+                env("METRICS_HOST", "127.0.0.1"),
+                Integer.parseInt(env("METRICS_PORT", "9464"))
+        );
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,243 @@
+package org.server;
+
+import org.shared.Histogram;
+import org.shared.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas del servidor: conexiones, mensajes y bytes de entrada y salida, duración de los
+ * ticks y del procesamiento de mensajes. Las de cada sala viven en GameRoom.metrics y las de
+ * autenticación en AuthPipeline; acá se juntan para exportarlas en formato Prometheus
+ * (MetricsHttpServer) o como respuesta al mensaje admin "stats".
+ *
+ * Todo se registra sin locks (LongAdder e Histogram), desde cualquier hilo.
+ */
+final class ServerMetrics {
+    // Límites de los buckets exportados a Prometheus, en microsegundos
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+            50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 16_667, 25_000, 50_000, 100_000,
+            250_000, 500_000, 1_000_000, 2_500_000
+    };
+
+    final long startedAtMillis = System.currentTimeMillis();
+
+    final LongAdder connectionsOpened = new LongAdder();
+    final LongAdder connectionsClosed = new LongAdder();
+    final LongAdder messagesIn = new LongAdder();
+    final LongAdder bytesIn = new LongAdder();
+    final LongAdder messagesOut = new LongAdder();
+    final LongAdder bytesOut = new LongAdder();
+
+    // Salida a conexiones lentas (ver ConnectionEgress)
+    final LongAdder snapshotsCoalesced = new LongAdder();
+    final LongAdder egressOverflows = new LongAdder();
+
+    // En microsegundos
+    final Histogram tickMicros = new Histogram();
+    final Histogram messageMicros = new Histogram();
+
+    void recordMessageIn(int bytes, long handlingNanos) {
+        messagesIn.increment();
+        bytesIn.add(bytes);
+        messageMicros.record(handlingNanos / 1000);
+    }
+
+    void recordTick(GameRoom room, long durationNanos) {
+        long micros = durationNanos / 1000;
+        tickMicros.record(micros);
+        room.metrics.ticks.increment();
+        room.metrics.tickMicros.record(micros);
+    }
+
+    void recordOut(int bytes, int recipients) {
+        messagesOut.add(recipients);
+        bytesOut.add((long) bytes * recipients);
+    }
+
+    void recordBroadcast(GameRoom room, int bytes, int recipients) {
+        recordOut(bytes, recipients);
+        room.metrics.recordBroadcast(bytes, recipients);
+    }
+
+    /**
+     * Bytes que ocupa el texto en UTF-8, sin codificarlo
+     */
+    static int utf8Length(String text) {
+        int length = text.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c)) {
+                    bytes += 2; // el par completo ocupa 4 bytes
+                    i++;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Todas las métricas en el formato de texto de Prometheus
+     */
+    String toPrometheus(int connections, Collection<GameRoom> rooms, AuthPipeline auth) {
+        StringBuilder out = new StringBuilder(4096);
+
+        gauge(out, "picopark_connections", "Conexiones WebSocket abiertas", connections);
+        counter(out, "picopark_connections_opened_total", "Conexiones aceptadas", connectionsOpened.sum());
+        counter(out, "picopark_connections_closed_total", "Conexiones cerradas", connectionsClosed.sum());
+        counter(out, "picopark_messages_in_total", "Mensajes recibidos de los clientes", messagesIn.sum());
+        counter(out, "picopark_bytes_in_total", "Bytes recibidos de los clientes", bytesIn.sum());
+        counter(out, "picopark_messages_out_total", "Mensajes enviados (uno por destinatario)", messagesOut.sum());
+        counter(out, "picopark_bytes_out_total", "Bytes enviados (por destinatario)", bytesOut.sum());
+        counter(out, "picopark_snapshots_coalesced_total", "Snapshots reemplazados por uno más nuevo sin llegar a enviarse", snapshotsCoalesced.sum());
+        counter(out, "picopark_egress_overflow_disconnects_total", "Conexiones cerradas por acumular demasiados bytes sin enviar", egressOverflows.sum());
+        histogram(out, "picopark_message_handling_seconds", "Tiempo de onMessage por mensaje", null, messageMicros);
+        histogram(out, "picopark_tick_seconds", "Duración de un tick de sala (simulación + envío)", null, tickMicros);
+
+        header(out, "picopark_room_players", "Jugadores en la sala", "gauge");
+        for (GameRoom room : rooms) {
+            sample(out, "picopark_room_players", room, room.playerSlots.length);
+        }
+        header(out, "picopark_room_ticks_total", "Ticks simulados de la sala", "counter");
+        for (GameRoom room : rooms) {
+            sample(out, "picopark_room_ticks_total", room, room.metrics.ticks.sum());
+        }
+        header(out, "picopark_room_snapshots_total", "Snapshots emitidos por la sala", "counter");
+        for (GameRoom room : rooms) {
+            sample(out, "picopark_room_snapshots_total", room, room.metrics.snapshots.sum());
+        }
+        header(out, "picopark_room_snapshots_skipped_total", "Snapshots no enviados a clientes atrasados", "counter");
+        for (GameRoom room : rooms) {
+            sample(out, "picopark_room_snapshots_skipped_total", room, room.metrics.snapshotsSkipped.sum());
+        }
+        header(out, "picopark_room_messages_out_total", "Mensajes enviados a la sala (por destinatario)", "counter");
+        for (GameRoom room : rooms) {
+            sample(out, "picopark_room_messages_out_total", room, room.metrics.messagesOut.sum());
+        }
+        header(out, "picopark_room_bytes_out_total", "Bytes enviados a la sala (por destinatario)", "counter");
+        for (GameRoom room : rooms) {
+            sample(out, "picopark_room_bytes_out_total", room, room.metrics.bytesOut.sum());
+        }
+        header(out, "picopark_room_tick_seconds", "Duración de un tick de la sala", "histogram");
+        for (GameRoom room : rooms) {
+            histogramSamples(out, "picopark_room_tick_seconds", "room=\"" + escape(room.id) + "\"", room.metrics.tickMicros);
+        }
+
+        gauge(out, "picopark_auth_queue_depth", "Auths encolados o en ejecución", auth.queueDepth());
+        counter(out, "picopark_auth_completed_total", "Auths completados", auth.completedCount());
+        counter(out, "picopark_auth_failed_total", "Auths con credenciales inválidas", auth.failedCount());
+        counter(out, "picopark_auth_rejected_total", "Auths rechazados por cola llena", auth.rejectedCount());
+        histogram(out, "picopark_auth_seconds", "Latencia de auth (cola + backend)", null, auth.latencyHistogram());
+
+        counter(out, "picopark_log_dropped_total", "Mensajes de log descartados por buffer lleno", Log.droppedCount());
+        return out.toString();
+    }
+
+    /**
+     * Resumen para el mensaje admin "stats" (tiempos en milisegundos)
+     */
+    Map<String, Object> toStats(int connections, Collection<GameRoom> rooms, AuthPipeline auth) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("uptimeSeconds", (System.currentTimeMillis() - startedAtMillis) / 1000);
+        stats.put("connections", connections);
+        stats.put("messagesIn", messagesIn.sum());
+        stats.put("bytesIn", bytesIn.sum());
+        stats.put("messagesOut", messagesOut.sum());
+        stats.put("bytesOut", bytesOut.sum());
+        stats.put("snapshotsCoalesced", snapshotsCoalesced.sum());
+        stats.put("egressOverflows", egressOverflows.sum());
+        stats.put("tick", latencySummary(tickMicros));
+        stats.put("messageHandling", latencySummary(messageMicros));
+
+        List<Map<String, Object>> roomStats = new ArrayList<>();
+        for (GameRoom room : rooms) {
+            Map<String, Object> roomData = new HashMap<>();
+            roomData.put("id", room.id);
+            roomData.put("players", room.playerSlots.length);
+            roomData.put("ticks", room.metrics.ticks.sum());
+            roomData.put("snapshotRate", room.snapshotRate);
+            roomData.put("snapshots", room.metrics.snapshots.sum());
+            roomData.put("snapshotsSkipped", room.metrics.snapshotsSkipped.sum());
+            roomData.put("messagesOut", room.metrics.messagesOut.sum());
+            roomData.put("bytesOut", room.metrics.bytesOut.sum());
+            roomData.put("tick", latencySummary(room.metrics.tickMicros));
+            roomStats.add(roomData);
+        }
+        stats.put("rooms", roomStats);
+
+        Map<String, Object> authStats = new HashMap<>();
+        authStats.put("queueDepth", auth.queueDepth());
+        authStats.put("completed", auth.completedCount());
+        authStats.put("failed", auth.failedCount());
+        authStats.put("rejected", auth.rejectedCount());
+        authStats.put("latency", latencySummary(auth.latencyHistogram()));
+        stats.put("auth", authStats);
+
+        stats.put("logDropped", Log.droppedCount());
+        return stats;
+    }
+
+    private static Map<String, Object> latencySummary(Histogram histogram) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("count", histogram.count());
+        summary.put("meanMs", histogram.mean() / 1000.0);
+        summary.put("p50Ms", histogram.percentile(0.50) / 1000.0);
+        summary.put("p99Ms", histogram.percentile(0.99) / 1000.0);
+        summary.put("p999Ms", histogram.percentile(0.999) / 1000.0);
+        summary.put("maxMs", histogram.max() / 1000.0);
+        return summary;
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, GameRoom room, long value) {
+        out.append(name).append("{room=\"").append(escape(room.id)).append("\"} ").append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String help, String labels, Histogram histogram) {
+        header(out, name, help, "histogram");
+        histogramSamples(out, name, labels, histogram);
+    }
+
+    // Buckets acumulados, suma y cantidad; los valores en microsegundos se exportan en segundos
+    private static void histogramSamples(StringBuilder out, String name, String labels, Histogram histogram) {
+        String prefix = labels == null ? "" : labels + ",";
+        long count = histogram.count();
+        for (long bound : BUCKET_BOUNDS_MICROS) {
+            out.append(name).append("_bucket{").append(prefix).append("le=\"").append(bound / 1_000_000.0).append("\"} ")
+                    .append(Math.min(count, histogram.countAtOrBelow(bound))).append('\n');
+        }
+        out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(count).append('\n');
+        String suffixLabels = labels == null ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(suffixLabels).append(' ').append(histogram.sum() / 1_000_000.0).append('\n');
+        out.append(name).append("_count").append(suffixLabels).append(' ').append(count).append('\n');
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
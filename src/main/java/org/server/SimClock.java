@@ -0,0 +1,80 @@
+package org.server;
+
+/**
+ * Reloj de simulación de una sala: cuenta ticks de duración fija y de ahí deriva el tiempo
+ * (en milisegundos) que usan plataformas, llave y puerta. El tiempo de juego solo avanza con
+ * step(), así que no depende de cuándo se ejecute cada tick: una pausa de la JVM no desfasa
+ * plataformas y jugadores, y una prueba o una repetición puede simular más rápido que el
+ * tiempo real llamando a step() en un ciclo.
+ *
+ * stepsDue() traduce el tiempo real transcurrido a pasos: si un tick llegó tarde, la sala
+ * simula los pasos que faltan (hasta MAX_CATCH_UP_STEPS) y se descarta el resto.
+ *
+ * El tick 0 es el instante anterior al primer paso; los tiempos de juego empiezan en step().
+ * Solo lo usa el hilo de tick de la sala.
+ */
+final class SimClock {
+    // Pasos máximos por ejecución del tick: más que esto es una pausa larga, no un retraso
+    static final int MAX_CATCH_UP_STEPS = 5;
+
+    final int tickRate;
+    private final long stepNanos;
+
+    private long tick = 0;
+
+    // Tiempo real aún no simulado, y cuándo se midió por última vez (System.nanoTime)
+    private long pendingNanos = 0;
+    private long lastRealNanos = 0;
+
+    SimClock(int tickRate) {
+        this.tickRate = tickRate;
+        this.stepNanos = 1_000_000_000L / tickRate;
+    }
+
+    /**
+     * Avanza un paso fijo
+     */
+    void step() {
+        tick++;
+    }
+
+    /**
+     * Número de pasos ya simulados
+     */
+    long tick() {
+        return tick;
+    }
+
+    /**
+     * Tiempo de juego en milisegundos
+     */
+    long millis() {
+        return tick * 1000 / tickRate;
+    }
+
+    /**
+     * Duración de un paso en milisegundos
+     */
+    float stepMillis() {
+        return 1000f / tickRate;
+    }
+
+    /**
+     * Cuántos pasos hay que simular ahora para alcanzar el tiempo real. La primera llamada
+     * devuelve 1; después, los periodos completos transcurridos desde la anterior.
+     */
+    int stepsDue(long nowNanos) {
+        if (lastRealNanos == 0) {
+            // Medio paso de margen: un tick que llega un poco antes o después no salta ni duplica pasos
+            lastRealNanos = nowNanos;
+            pendingNanos = stepNanos / 2;
+            return 1;
+        }
+        pendingNanos += nowNanos - lastRealNanos;
+        lastRealNanos = nowNanos;
+
+        long steps = pendingNanos / stepNanos;
+        pendingNanos -= steps * stepNanos;
+        return (int) Math.min(steps, MAX_CATCH_UP_STEPS);
+    }
+}
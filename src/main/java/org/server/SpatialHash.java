@@ -0,0 +1,156 @@
+package org.server;
+
+import java.util.Arrays;
+
+/**
+ * Grilla uniforme del tamaño del mapa (celdas de SIZE_TILE) para la fase amplia de colisiones
+ * entre entidades. Cada entidad se guarda en la celda de su esquina superior izquierda; una
+ * consulta agranda la caja con el tamaño de la entidad más grande y devuelve solo las entidades
+ * de esas celdas. El que consulta hace la comprobación exacta como antes.
+ *
+ * Se reconstruye en O(n) en puntos fijos del tick y no crea objetos en estado estable: las
+ * celdas se invalidan con un contador de generación, sin limpiar el arreglo.
+ * Los resultados se apilan para permitir consultas anidadas (por ejemplo, recursivas):
+ * el que consulta recorre [inicio, end()) y luego llama a release(inicio). Si no va a hacer
+ * otra consulta mientras recorre, puede liberar antes: los resultados siguen ahí hasta la próxima.
+ * Solo la usa el hilo de tick de la sala.
+ */
+final class SpatialHash<T> {
+    // Con pocas entidades recorrer todas es más barato que visitar celdas
+    private static final int LINEAR_SCAN_LIMIT = 16;
+
+    private final float inverseCellSize;
+
+    // Entidades insertadas; itemNext encadena las que comparten celda
+    private Object[] items = new Object[16];
+    private int[] itemNext = new int[16];
+    private int itemCount;
+    private float maxWidth;
+    private float maxHeight;
+
+    // Primera entidad de cada celda, válida solo si cellGeneration coincide con generation
+    private int columns;
+    private int rows;
+    private int[] cellHeads = new int[0];
+    private int[] cellGeneration = new int[0];
+    private int generation;
+
+    private int[] results = new int[32];
+    private int resultCount;
+
+    SpatialHash(float cellSize) {
+        this.inverseCellSize = 1f / cellSize;
+    }
+
+    /**
+     * Vacía el índice para un mapa de columns x rows celdas. Las entidades fuera del mapa
+     * quedan en las celdas del borde.
+     */
+    void clear(int columns, int rows) {
+        this.columns = Math.max(1, columns);
+        this.rows = Math.max(1, rows);
+        int cells = this.columns * this.rows;
+        if (cellHeads.length < cells) {
+            cellHeads = new int[cells];
+            cellGeneration = new int[cells];
+            generation = 0;
+        }
+        if (++generation == 0) {
+            Arrays.fill(cellGeneration, 0);
+            generation = 1;
+        }
+
+        Arrays.fill(items, 0, itemCount, null);
+        itemCount = 0;
+        maxWidth = 0;
+        maxHeight = 0;
+        resultCount = 0;
+    }
+
+    void insert(T item, float x, float y, float width, float height) {
+        if (itemCount == items.length) {
+            items = Arrays.copyOf(items, itemCount * 2);
+            itemNext = Arrays.copyOf(itemNext, itemCount * 2);
+        }
+        int index = itemCount++;
+        items[index] = item;
+        maxWidth = Math.max(maxWidth, width);
+        maxHeight = Math.max(maxHeight, height);
+
+        int cell = column(x) + row(y) * columns;
+        itemNext[index] = cellGeneration[cell] == generation ? cellHeads[cell] : -1;
+        cellHeads[cell] = index;
+        cellGeneration[cell] = generation;
+    }
+
+    /**
+     * Entidades que pueden tocar la caja agrandada por margin en cada lado.
+     * Devuelve el inicio de los resultados; el final es end().
+     */
+    int queryAround(float x, float y, float width, float height, float margin) {
+        return query(x - margin, y - margin, x + width + margin, y + height + margin);
+    }
+
+    int query(float minX, float minY, float maxX, float maxY) {
+        int start = resultCount;
+        if (itemCount <= LINEAR_SCAN_LIMIT) {
+            for (int i = 0; i < itemCount; i++) {
+                push(i);
+            }
+            return start;
+        }
+
+        // Una entidad que toca la caja tiene su esquina a lo sumo un tamaño máximo antes del borde
+        int minColumn = column(minX - maxWidth);
+        int maxColumn = column(maxX);
+        int minRow = row(minY - maxHeight);
+        int maxRow = row(maxY);
+        for (int r = minRow; r <= maxRow; r++) {
+            int rowStart = r * columns;
+            for (int c = minColumn; c <= maxColumn; c++) {
+                int cell = rowStart + c;
+                if (cellGeneration[cell] != generation) continue;
+                for (int index = cellHeads[cell]; index >= 0; index = itemNext[index]) {
+                    push(index);
+                }
+            }
+        }
+        return start;
+    }
+
+    int end() {
+        return resultCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int resultIndex) {
+        return (T) items[results[resultIndex]];
+    }
+
+    /**
+     * Descarta los resultados desde start (los de esta consulta y los de las anidadas)
+     */
+    void release(int start) {
+        resultCount = start;
+    }
+
+    private void push(int index) {
+        if (resultCount == results.length) {
+            results = Arrays.copyOf(results, resultCount * 2);
+        }
+        results[resultCount++] = index;
+    }
+
+    private int column(float x) {
+        return clamp((int) (x * inverseCellSize), columns);
+    }
+
+    private int row(float y) {
+        return clamp((int) (y * inverseCellSize), rows);
+    }
+
+    // El truncado hacia cero no importa: todo lo negativo termina en la primera celda
+    private static int clamp(int cell, int count) {
+        return cell < 0 ? 0 : Math.min(cell, count - 1);
+    }
+}
@@ -0,0 +1,186 @@
+package org.server;
+
+import org.shared.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Planificador de ticks por sala.
+ * Reparte las salas entre un pool fijo de hilos (shards) y mantiene una cadencia
+ * independiente para cada una: una sala lenta solo retrasa a las salas de su mismo hilo.
+ * Si un tick se atrasa más de un periodo completo, los ticks perdidos se descartan
+ * (en lugar de ejecutarse en ráfaga como hace Timer.scheduleAtFixedRate) y se reporta;
+ * el tiempo de juego perdido lo recupera la propia sala con los pasos extra de su SimClock.
+ */
+public class TickScheduler {
+    private static final Log LOG = Log.get("Tick");
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long periodNanos;
+    private final Consumer<GameRoom> tickAction;
+    private final ScheduledExecutorService[] workers;
+    private final int[] roomsPerWorker;
+    private final Map<GameRoom, RoomTick> ticks = new ConcurrentHashMap<>();
+
+    public TickScheduler(int tickRate, int workerCount, Consumer<GameRoom> tickAction) {
+        this.periodNanos = TimeUnit.SECONDS.toNanos(1) / tickRate;
+        this.tickAction = tickAction;
+        this.workers = new ScheduledExecutorService[workerCount];
+        this.roomsPerWorker = new int[workerCount];
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tick-worker-" + threadIndex.getAndIncrement());
+                thread.setPriority(Thread.MAX_PRIORITY);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Número de hilos por defecto: TICK_WORKERS o un hilo por núcleo disponible
+     */
+    public static int defaultWorkerCount() {
+        String workersEnv = System.getenv("TICK_WORKERS");
+        if (workersEnv != null) {
+            return Math.max(1, Integer.parseInt(workersEnv));
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Asigna la sala al hilo con menos salas y comienza a simularla
+     */
+    public synchronized void register(GameRoom room) {
+        if (ticks.containsKey(room)) return;
+
+        int worker = 0;
+        for (int i = 1; i < workers.length; i++) {
+            if (roomsPerWorker[i] < roomsPerWorker[worker]) {
+                worker = i;
+            }
+        }
+        roomsPerWorker[worker]++;
+
+        RoomTick tick = new RoomTick(room, worker);
+        ticks.put(room, tick);
+        tick.scheduleNext(System.nanoTime());
+    }
+
+    /**
+     * Detiene la simulación de la sala y libera su lugar en el hilo
+     */
+    public synchronized void unregister(GameRoom room) {
+        RoomTick tick = ticks.remove(room);
+        if (tick == null) return;
+
+        tick.cancel();
+        roomsPerWorker[tick.worker]--;
+    }
+
+    public void shutdown() {
+        for (RoomTick tick : ticks.values()) {
+            tick.cancel();
+        }
+        ticks.clear();
+        for (ScheduledExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Tarea periódica de una sala. Se reprograma a sí misma contra un deadline absoluto
+     * para no acumular deriva, y siempre corre en el mismo hilo.
+     */
+    private final class RoomTick implements Runnable {
+        final GameRoom room;
+        final int worker;
+
+        private long nextDeadline;
+        private volatile boolean cancelled = false;
+        private volatile ScheduledFuture<?> future;
+
+        // Estadísticas acumuladas desde el último reporte
+        private int overruns = 0;
+        private long skippedTicks = 0;
+        private long worstTickNanos = 0;
+        private long lastReport = System.nanoTime();
+
+        RoomTick(GameRoom room, int worker) {
+            this.room = room;
+            this.worker = worker;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+
+            long start = System.nanoTime();
+            try {
+                tickAction.accept(room);
+            } catch (Exception e) {
+                // Una excepción no debe matar la simulación de la sala
+                LOG.error("Error en sala " + room.id + ": " + e.getMessage(), e);
+            }
+            long end = System.nanoTime();
+
+            long duration = end - start;
+            if (duration > periodNanos) {
+                overruns++;
+                worstTickNanos = Math.max(worstTickNanos, duration);
+            }
+
+            // Si vamos atrasados más de un periodo, descartar los ticks perdidos
+            nextDeadline += periodNanos;
+            long lateness = end - nextDeadline;
+            if (lateness > periodNanos) {
+                long missed = lateness / periodNanos;
+                skippedTicks += missed;
+                nextDeadline += missed * periodNanos;
+            }
+
+            report(end);
+            scheduleNext(end);
+        }
+
+        void scheduleNext(long now) {
+            if (cancelled) return;
+            if (nextDeadline == 0) {
+                nextDeadline = now;
+            }
+            future = workers[worker].schedule(this, Math.max(0, nextDeadline - now), TimeUnit.NANOSECONDS);
+        }
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> current = future;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+
+        private void report(long now) {
+            if (now - lastReport < REPORT_INTERVAL_NANOS) return;
+
+            if (overruns > 0 || skippedTicks > 0) {
+                LOG.warn("Sala " + room.id + " excedió el presupuesto de " +
+                        String.format("%.2f", periodNanos / 1_000_000.0) + "ms " + overruns + " vez/veces" +
+                        " (peor: " + String.format("%.2f", worstTickNanos / 1_000_000.0) + "ms)" +
+                        ", ticks descartados: " + skippedTicks);
+            }
+            overruns = 0;
+            skippedTicks = 0;
+            worstTickNanos = 0;
+            lastReport = now;
+        }
+    }
+}
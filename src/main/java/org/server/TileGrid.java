@@ -0,0 +1,116 @@
+package org.server;
+
+import java.util.Arrays;
+
+/**
+ * Propiedades de cada celda de un mapa, precalculadas en un arreglo plano (fila por fila).
+ * Se arma una vez por mapa (ver TileMap); las colisiones y los disparadores solo leen un
+ * byte y comparan bits, sin buscar en sets ni desempaquetar enteros.
+ */
+public class TileGrid {
+    private static final int[] NO_CELLS = new int[0];
+    private static final byte[] NO_FLAGS = new byte[0];
+
+    public static final TileGrid EMPTY = new TileGrid(new int[0][0], TileProperties.DEFAULT);
+
+    public final int width;
+    public final int height;
+    private final byte[] flags;
+    // Celdas cambiadas por TileMap.withTile (ordenadas) y sus propiedades; vacío casi siempre
+    private final int[] overlayCells;
+    private final byte[] overlayFlags;
+
+    TileGrid(int[][] world, TileProperties properties) {
+        this.height = world.length;
+        this.width = world.length > 0 ? world[0].length : 0;
+        this.flags = new byte[width * height];
+        this.overlayCells = NO_CELLS;
+        this.overlayFlags = NO_FLAGS;
+
+        for (int y = 0; y < height; y++) {
+            int[] row = world[y];
+            int rowStart = y * width;
+            for (int x = 0; x < width && x < row.length; x++) {
+                flags[rowStart + x] = (byte) properties.flagsOf(row[x]);
+            }
+        }
+    }
+
+    /**
+     * Desde los ids ya empaquetados fila por fila (ver TileMap)
+     */
+    TileGrid(int width, int height, short[] ids, TileProperties properties) {
+        this.width = width;
+        this.height = height;
+        this.flags = new byte[width * height];
+        this.overlayCells = NO_CELLS;
+        this.overlayFlags = NO_FLAGS;
+
+        for (int cell = 0; cell < flags.length; cell++) {
+            flags[cell] = (byte) properties.flagsOf(ids[cell]);
+        }
+    }
+
+    private TileGrid(TileGrid base, int[] overlayCells, byte[] overlayFlags) {
+        this.width = base.width;
+        this.height = base.height;
+        this.flags = base.flags;
+        this.overlayCells = overlayCells;
+        this.overlayFlags = overlayFlags;
+    }
+
+    /**
+     * Copia con las propiedades de una celda (índice y * width + x) cambiadas; comparte el arreglo base
+     */
+    TileGrid withCell(int cell, int cellFlags) {
+        int k = Arrays.binarySearch(overlayCells, cell);
+        if (k >= 0) {
+            byte[] newFlags = overlayFlags.clone();
+            newFlags[k] = (byte) cellFlags;
+            return new TileGrid(this, overlayCells, newFlags);
+        }
+        int insertAt = -k - 1;
+        int[] cells = new int[overlayCells.length + 1];
+        byte[] newFlags = new byte[overlayFlags.length + 1];
+        System.arraycopy(overlayCells, 0, cells, 0, insertAt);
+        System.arraycopy(overlayFlags, 0, newFlags, 0, insertAt);
+        cells[insertAt] = cell;
+        newFlags[insertAt] = (byte) cellFlags;
+        System.arraycopy(overlayCells, insertAt, cells, insertAt + 1, overlayCells.length - insertAt);
+        System.arraycopy(overlayFlags, insertAt, newFlags, insertAt + 1, overlayFlags.length - insertAt);
+        return new TileGrid(this, cells, newFlags);
+    }
+
+    /**
+     * Indica si la celda (x, y) tiene la propiedad. Fuera del mapa nunca la tiene.
+     */
+    public boolean is(int x, int y, int flag) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        int cell = y * width + x;
+        if (overlayCells.length != 0) {
+            int k = Arrays.binarySearch(overlayCells, cell);
+            if (k >= 0) return (overlayFlags[k] & flag) != 0;
+        }
+        return (flags[cell] & flag) != 0;
+    }
+
+    public boolean isSolid(int x, int y) {
+        return is(x, y, TileProperties.SOLID);
+    }
+
+    /**
+     * Indica si alguna celda del rectángulo [left, right] x [top, bottom] tiene la propiedad
+     */
+    public boolean anyIn(int left, int top, int right, int bottom, int flag) {
+        for (int y = top; y <= bottom; y++) {
+            for (int x = left; x <= right; x++) {
+                if (is(x, y, flag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
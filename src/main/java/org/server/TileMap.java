@@ -0,0 +1,147 @@
+package org.server;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de tiles inmutable: los ids empaquetados en un short[] plano (fila por fila) junto con
+ * su TileGrid de propiedades. Se arma una vez por mapa y lo comparten todas las instancias
+ * que lo usan, así que cargar o reiniciar un nivel solo cambia una referencia.
+ *
+ * Los cambios propios de una instancia (withTile) no copian el mapa: el resultado comparte
+ * los arreglos base y guarda solo las celdas modificadas en un overlay ordenado.
+ */
+final class TileMap {
+    private static final int[] NO_CELLS = new int[0];
+    private static final short[] NO_IDS = new short[0];
+
+    final int width;
+    final int height;
+    final TileProperties properties;
+    final TileGrid grid;
+
+    private final short[] ids;
+    // Celdas modificadas (índice y * width + x, ordenados) y su id nuevo
+    private final int[] overlayCells;
+    private final short[] overlayIds;
+
+    // Filas como int[][] para los mensajes world de los clientes; se arman la primera vez
+    private volatile int[][] rows;
+
+    TileMap(int[][] world, TileProperties properties) {
+        this.height = world.length;
+        this.width = world.length > 0 ? world[0].length : 0;
+        this.properties = properties;
+        this.ids = new short[width * height];
+        this.overlayCells = NO_CELLS;
+        this.overlayIds = NO_IDS;
+
+        for (int y = 0; y < height; y++) {
+            int[] row = world[y];
+            for (int x = 0; x < width && x < row.length; x++) {
+                int id = row[x];
+                if (id < 0 || id > Short.MAX_VALUE) {
+                    throw new IllegalArgumentException("Id de tile fuera de rango en (" + x + "," + y + "): " + id);
+                }
+                ids[y * width + x] = (short) id;
+            }
+        }
+        this.grid = new TileGrid(world, properties);
+    }
+
+    /**
+     * Desde ids ya empaquetados fila por fila (un mapa compilado, ver CompiledMap). El arreglo
+     * pasa a ser del TileMap: no se debe modificar después.
+     */
+    TileMap(int width, int height, short[] ids, TileProperties properties) {
+        if (ids.length != width * height) {
+            throw new IllegalArgumentException("Se esperaban " + (width * height) + " tiles y hay " + ids.length);
+        }
+        for (int cell = 0; cell < ids.length; cell++) {
+            if (ids[cell] < 0) {
+                throw new IllegalArgumentException("Id de tile fuera de rango en (" + (cell % width) + "," + (cell / width) + "): " + ids[cell]);
+            }
+        }
+        this.width = width;
+        this.height = height;
+        this.properties = properties;
+        this.ids = ids;
+        this.overlayCells = NO_CELLS;
+        this.overlayIds = NO_IDS;
+        this.grid = new TileGrid(width, height, ids, properties);
+    }
+
+    private TileMap(TileMap base, int[] overlayCells, short[] overlayIds, TileGrid grid) {
+        this.width = base.width;
+        this.height = base.height;
+        this.properties = base.properties;
+        this.ids = base.ids;
+        this.overlayCells = overlayCells;
+        this.overlayIds = overlayIds;
+        this.grid = grid;
+    }
+
+    /**
+     * Id del tile en (x, y); 0 (vacío) fuera del mapa
+     */
+    int get(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return 0;
+        }
+        int cell = y * width + x;
+        if (overlayCells.length != 0) {
+            int k = Arrays.binarySearch(overlayCells, cell);
+            if (k >= 0) return overlayIds[k];
+        }
+        return ids[cell];
+    }
+
+    /**
+     * Copia de este mapa con la celda (x, y) cambiada; comparte todo lo demás
+     */
+    TileMap withTile(int x, int y, int tileId) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IndexOutOfBoundsException("Celda fuera del mapa: (" + x + "," + y + ")");
+        }
+        if (tileId < 0 || tileId > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Id de tile fuera de rango: " + tileId);
+        }
+
+        int cell = y * width + x;
+        int k = Arrays.binarySearch(overlayCells, cell);
+        int[] cells;
+        short[] newIds;
+        if (k >= 0) {
+            cells = overlayCells;
+            newIds = overlayIds.clone();
+            newIds[k] = (short) tileId;
+        } else {
+            int insertAt = -k - 1;
+            cells = new int[overlayCells.length + 1];
+            newIds = new short[overlayIds.length + 1];
+            System.arraycopy(overlayCells, 0, cells, 0, insertAt);
+            System.arraycopy(overlayIds, 0, newIds, 0, insertAt);
+            cells[insertAt] = cell;
+            newIds[insertAt] = (short) tileId;
+            System.arraycopy(overlayCells, insertAt, cells, insertAt + 1, overlayCells.length - insertAt);
+            System.arraycopy(overlayIds, insertAt, newIds, insertAt + 1, overlayIds.length - insertAt);
+        }
+        return new TileMap(this, cells, newIds, grid.withCell(cell, properties.flagsOf(tileId)));
+    }
+
+    /**
+     * El mapa como filas de ids, en el formato que esperan los clientes. No se debe modificar.
+     */
+    int[][] rows() {
+        int[][] result = rows;
+        if (result == null) {
+            result = new int[height][width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    result[y][x] = get(x, y);
+                }
+            }
+            rows = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+package org.server;
+
+/**
+ * Tabla de propiedades por id de tile, empaquetadas como bits en un arreglo indexado por id.
+ * Sale del bloque "tiles" del JSON del mapa; lo que el mapa no define usa los valores de siempre.
+ */
+public class TileProperties {
+    public static final int SOLID = 1;
+    public static final int WINNER = 1 << 1;
+    public static final int PLATFORM_ORIGIN = 1 << 2;
+    public static final int PLATFORM_DESTINATION = 1 << 3;
+    public static final int KEY = 1 << 4;
+
+    // Valores por defecto (los que antes estaban fijos en GameWebSocketServer)
+    private static final int[] DEFAULT_SOLID = {3, 4, 5}; // 30 y 40 son marcadores (no sólidos), 31-39 son entidades
+    private static final int[] DEFAULT_WINNER = {12, 13, 14};
+    private static final int[] DEFAULT_PLATFORM_ORIGIN = {31, 32, 33, 34, 35, 36, 37, 38, 39};
+    private static final int[] DEFAULT_PLATFORM_DESTINATION = {30};
+    private static final int[] DEFAULT_KEY = {50};
+
+    public static final TileProperties DEFAULT = new TileProperties(null);
+
+    private byte[] flagsById = new byte[0];
+
+    TileProperties(RoomConfig.Tiles tiles) {
+        mark(tiles != null && tiles.solid != null ? tiles.solid : DEFAULT_SOLID, SOLID);
+        mark(tiles != null && tiles.winner != null ? tiles.winner : DEFAULT_WINNER, WINNER);
+        mark(tiles != null && tiles.platformOrigin != null ? tiles.platformOrigin : DEFAULT_PLATFORM_ORIGIN, PLATFORM_ORIGIN);
+        mark(tiles != null && tiles.platformDestination != null ? tiles.platformDestination : DEFAULT_PLATFORM_DESTINATION, PLATFORM_DESTINATION);
+        mark(tiles != null && tiles.key != null ? tiles.key : DEFAULT_KEY, KEY);
+    }
+
+    private void mark(int[] ids, int flag) {
+        for (int id : ids) {
+            if (id < 0) continue;
+            if (id >= flagsById.length) {
+                byte[] grown = new byte[id + 1];
+                System.arraycopy(flagsById, 0, grown, 0, flagsById.length);
+                flagsById = grown;
+            }
+            flagsById[id] |= flag;
+        }
+    }
+
+    /**
+     * Propiedades de un id de tile (0 si el id no tiene ninguna)
+     */
+    public int flagsOf(int tileId) {
+        return tileId >= 0 && tileId < flagsById.length ? flagsById[tileId] : 0;
+    }
+
+    public boolean is(int tileId, int flag) {
+        return (flagsOf(tileId) & flag) != 0;
+    }
+
+    /**
+     * Ids de tile que tienen la propiedad (por ejemplo, los sólidos para la predicción del cliente)
+     */
+    public int[] idsWith(int flag) {
+        int count = 0;
+        for (byte flags : flagsById) {
+            if ((flags & flag) != 0) count++;
+        }
+        int[] ids = new int[count];
+        int next = 0;
+        for (int id = 0; id < flagsById.length; id++) {
+            if ((flagsById[id] & flag) != 0) ids[next++] = id;
+        }
+        return ids;
+    }
+}
@@ -8,6 +8,18 @@ public class User {
     WebSocket connection;
     String currentRoom;
 
+    // Baseline de snapshots; null si el cliente recibe el gameUpdate completo clásico
+    ClientSnapshotState snapshots;
+
+    // Protocolo binario negociado en el auth para los mensajes de tiempo real
+    boolean binaryProtocol;
+
+    // Área de interés; null si el cliente recibe todas las entidades de la sala
+    AreaOfInterest interest;
+
+    // Qué parte de los snapshots de la sala recibe, según cuánto se atrasa su conexión
+    ClientSendRate sendRate = new ClientSendRate();
+
     User(String id, String username, WebSocket connection) {
         this.id = id;
         this.username = username;
@@ -0,0 +1,625 @@
+package org.shared;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Protocolo binario compacto para los mensajes de tiempo real (frames binarios de WebSocket).
+ * Se negocia en el auth con "protocol": "binary"; el resto de mensajes siguen en JSON.
+ *
+ * Cada frame empieza con un byte de tipo. Los campos de las entidades van precedidos por
+ * una máscara de bits que indica cuáles están presentes, así un delta solo ocupa lo que cambió.
+ * El servidor escribe el gameUpdate directo desde sus snapshots con un Writer reutilizado y
+ * las constantes de abajo; los demás mensajes se codifican a partir de los mismos mapas que
+ * usa para el JSON. El cliente decodifica al mismo JsonObject que recibiría por JSON.
+ */
+public final class BinaryProtocol {
+
+    public static final String NAME = "binary";
+
+    // Servidor -> cliente
+    public static final byte GAME_UPDATE = 1;
+    public static final byte PLAYER_JOINED = 2;
+    public static final byte PLAYER_LEFT = 3;
+
+    // Cliente -> servidor
+    public static final byte MOVE = 10;
+    public static final byte JUMP = 11;
+    public static final byte SNAPSHOT_ACK = 12;
+    public static final byte INPUT = 13;
+
+    // Flags del encabezado de gameUpdate
+    public static final int HAS_SEQ = 1;
+    public static final int KEYFRAME = 1 << 1;
+    public static final int HAS_REQUIRES_KEY = 1 << 2;
+    public static final int REQUIRES_KEY = 1 << 3;
+    public static final int HAS_DOOR_OPEN = 1 << 4;
+    public static final int DOOR_OPEN = 1 << 5;
+    public static final int KEY_REMOVED = 1 << 6;
+    public static final int HAS_KEY = 1 << 7;
+
+    // Campos de cada tipo de entidad, en el orden en que se escriben, y su tipo:
+    // b = boolean, f = float, i = entero, d = dirección de jugador, u = id, s = texto
+    private static final String[] PLAYER_FIELDS = {"username", "direction", "x", "y", "isVisible", "hasKey",
+            "velocityY", "isOnGround", "inputSeq"};
+    private static final String PLAYER_KINDS = "sdffbbfbi";
+    private static final String[] PLATFORM_FIELDS = {"x", "y", "width", "height", "type", "direction",
+            "isMoving", "playersOnPlatform", "requiredPlayers", "playersNeeded"};
+    private static final String PLATFORM_KINDS = "ffffiibiii";
+    private static final String[] KEY_FIELDS = {"x", "y", "isCollected", "carriedByPlayerId", "floatOffset", "isOpeningDoor"};
+    private static final String KEY_KINDS = "ffbufb";
+
+    // Bit de cada campo en la máscara de su entidad (su posición en los arreglos de arriba)
+    public static final int PLAYER_USERNAME = 1;
+    public static final int PLAYER_DIRECTION = 1 << 1;
+    public static final int PLAYER_X = 1 << 2;
+    public static final int PLAYER_Y = 1 << 3;
+    public static final int PLAYER_VISIBLE = 1 << 4;
+    public static final int PLAYER_HAS_KEY = 1 << 5;
+    public static final int PLAYER_VELOCITY_Y = 1 << 6;
+    public static final int PLAYER_ON_GROUND = 1 << 7;
+    public static final int PLAYER_INPUT_SEQ = 1 << 8;
+
+    public static final int PLATFORM_X = 1;
+    public static final int PLATFORM_Y = 1 << 1;
+    public static final int PLATFORM_WIDTH = 1 << 2;
+    public static final int PLATFORM_HEIGHT = 1 << 3;
+    public static final int PLATFORM_TYPE = 1 << 4;
+    public static final int PLATFORM_DIRECTION = 1 << 5;
+    public static final int PLATFORM_MOVING = 1 << 6;
+    public static final int PLATFORM_ON_TOP = 1 << 7;
+    public static final int PLATFORM_REQUIRED = 1 << 8;
+    public static final int PLATFORM_NEEDED = 1 << 9;
+
+    public static final int KEY_X = 1;
+    public static final int KEY_Y = 1 << 1;
+    public static final int KEY_COLLECTED = 1 << 2;
+    public static final int KEY_CARRIER = 1 << 3;
+    public static final int KEY_FLOAT_OFFSET = 1 << 4;
+    public static final int KEY_OPENING_DOOR = 1 << 5;
+
+    private static final String[] DIRECTIONS = {"stop", "left", "right"};
+
+    private static final byte STRING_UTF8 = 0;
+    private static final byte STRING_UUID = 1;
+
+    private static final int MAX_MESSAGE_SIZE = 1 << 20;
+
+    private BinaryProtocol() {
+    }
+
+    // ========== CODIFICACIÓN (servidor) ==========
+
+    /**
+     * Codifica un mensaje del servidor. Devuelve null si el tipo no tiene forma binaria
+     * (el gameUpdate no pasa por acá: el servidor lo escribe desde sus snapshots).
+     */
+    public static ByteBuffer encodeServerMessage(String type, Map<String, ?> data) {
+        switch (type) {
+            case "playerJoined":
+                return encodePlayerJoined(data);
+            case "playerLeft":
+                return encodePlayerLeft(data);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Encabezado de un gameUpdate: tipo, flags y, si hay secuencia, seq y baseline (los
+     * keyframes no tienen baseline). Siguen las listas de jugadores, jugadores removidos,
+     * plataformas y plataformas removidas, y los campos de la llave si está HAS_KEY.
+     */
+    public static void writeGameUpdateHeader(Writer out, int flags, int seq, int base) {
+        out.writeByte(GAME_UPDATE);
+        out.writeByte(flags);
+        if ((flags & HAS_SEQ) != 0) {
+            out.writeVarInt(seq);
+            if ((flags & KEYFRAME) == 0) {
+                out.writeVarInt(base);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ByteBuffer encodePlayerJoined(Map<String, ?> data) {
+        Writer out = new Writer();
+        out.writeByte(PLAYER_JOINED);
+        out.writeId((String) data.get("userId"));
+        out.writeString((String) data.get("username"));
+        writeFields(out, (Map<String, Object>) data.get("player"), PLAYER_FIELDS, PLAYER_KINDS);
+        return out.toBuffer();
+    }
+
+    private static ByteBuffer encodePlayerLeft(Map<String, ?> data) {
+        Writer out = new Writer();
+        out.writeByte(PLAYER_LEFT);
+        out.writeId((String) data.get("userId"));
+        out.writeString((String) data.get("username"));
+        return out.toBuffer();
+    }
+
+    /**
+     * Escribe la máscara de campos presentes, la de campos borrados (siempre vacía en estos
+     * mensajes) y sus valores
+     */
+    private static void writeFields(Writer out, Map<String, Object> entity, String[] fields, String kinds) {
+        int present = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (entity.get(fields[i]) != null) {
+                present |= 1 << i;
+            }
+        }
+        out.writeVarInt(present);
+        out.writeVarInt(0);
+
+        for (int i = 0; i < fields.length; i++) {
+            if ((present & (1 << i)) != 0) {
+                writeValue(out, kinds.charAt(i), entity.get(fields[i]));
+            }
+        }
+    }
+
+    private static void writeValue(Writer out, char kind, Object value) {
+        switch (kind) {
+            case 'b':
+                out.writeBoolean((Boolean) value);
+                break;
+            case 'f':
+                out.writeFloat(((Number) value).floatValue());
+                break;
+            case 'i':
+                out.writeInt(((Number) value).intValue());
+                break;
+            case 'd':
+                out.writeDirection((String) value);
+                break;
+            case 'u':
+                out.writeId((String) value);
+                break;
+            default:
+                out.writeString(String.valueOf(value));
+        }
+    }
+
+    // ========== CODIFICACIÓN (cliente) ==========
+
+    public static ByteBuffer encodeMove(String direction) {
+        ByteBuffer buffer = ByteBuffer.allocate(2);
+        buffer.put(MOVE).put((byte) directionCode(direction));
+        buffer.flip();
+        return buffer;
+    }
+
+    public static ByteBuffer encodeJump() {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        buffer.put(JUMP);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Frames de input: la secuencia del último y un byte con los bits de cada frame, del más viejo al más nuevo
+     */
+    public static ByteBuffer encodeInput(int lastSeq, int[] inputs, int count) {
+        Writer out = new Writer();
+        out.writeByte(INPUT);
+        out.writeVarInt(lastSeq);
+        out.writeVarInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeByte(inputs[i]);
+        }
+        return out.toBuffer();
+    }
+
+    public static ByteBuffer encodeSnapshotAck(int seq) {
+        Writer out = new Writer();
+        out.writeByte(SNAPSHOT_ACK);
+        out.writeVarInt(seq);
+        return out.toBuffer();
+    }
+
+    // ========== DECODIFICACIÓN ==========
+
+    /**
+     * Dirección de un frame MOVE ("stop", "left" o "right")
+     */
+    public static String readDirection(ByteBuffer buffer) {
+        return directionName(buffer.get());
+    }
+
+    /**
+     * Bits de los frames de un mensaje INPUT (después de la secuencia, ver encodeInput)
+     */
+    public static int[] readInputs(ByteBuffer buffer) {
+        int count = readCount(buffer);
+        int[] inputs = new int[count];
+        for (int i = 0; i < count; i++) {
+            inputs[i] = buffer.get() & 0xFF;
+        }
+        return inputs;
+    }
+
+    public static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 28) {
+                throw new IllegalArgumentException("VarInt demasiado largo");
+            }
+        }
+    }
+
+    /**
+     * Decodifica un mensaje del servidor a la misma estructura {"type", "data"} que el JSON
+     */
+    public static JsonObject decodeServerMessage(ByteBuffer buffer) {
+        try {
+            byte type = buffer.get();
+            JsonObject message = new JsonObject();
+            JsonObject data;
+            switch (type) {
+                case GAME_UPDATE:
+                    message.addProperty("type", "gameUpdate");
+                    data = decodeGameUpdate(buffer);
+                    break;
+                case PLAYER_JOINED:
+                    message.addProperty("type", "playerJoined");
+                    data = new JsonObject();
+                    String userId = readId(buffer);
+                    data.addProperty("userId", userId);
+                    data.addProperty("username", readString(buffer));
+                    JsonObject player = readFields(buffer, PLAYER_FIELDS, PLAYER_KINDS);
+                    player.addProperty("id", userId);
+                    data.add("player", player);
+                    break;
+                case PLAYER_LEFT:
+                    message.addProperty("type", "playerLeft");
+                    data = new JsonObject();
+                    data.addProperty("userId", readId(buffer));
+                    data.addProperty("username", readString(buffer));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Tipo binario desconocido: " + type);
+            }
+            message.add("data", data);
+            return message;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Mensaje binario truncado", e);
+        }
+    }
+
+    private static JsonObject decodeGameUpdate(ByteBuffer buffer) {
+        JsonObject data = new JsonObject();
+        int flags = buffer.get() & 0xFF;
+
+        if ((flags & HAS_SEQ) != 0) {
+            data.addProperty("seq", readVarInt(buffer));
+            if ((flags & KEYFRAME) != 0) {
+                data.addProperty("keyframe", true);
+            } else {
+                data.addProperty("base", readVarInt(buffer));
+            }
+        }
+        if ((flags & HAS_REQUIRES_KEY) != 0) {
+            data.addProperty("requiresKey", (flags & REQUIRES_KEY) != 0);
+        }
+        if ((flags & HAS_DOOR_OPEN) != 0) {
+            data.addProperty("doorOpen", (flags & DOOR_OPEN) != 0);
+        }
+        if ((flags & KEY_REMOVED) != 0) {
+            data.addProperty("keyRemoved", true);
+        }
+
+        JsonArray players = readEntities(buffer, PLAYER_FIELDS, PLAYER_KINDS);
+        JsonArray removedPlayers = readIds(buffer);
+        JsonArray platforms = readEntities(buffer, PLATFORM_FIELDS, PLATFORM_KINDS);
+        JsonArray removedPlatforms = readIds(buffer);
+
+        // Un gameUpdate completo siempre trae las listas, aunque estén vacías
+        boolean full = (flags & HAS_SEQ) == 0 || (flags & KEYFRAME) != 0;
+        if (full || players.size() > 0) data.add("players", players);
+        if (removedPlayers.size() > 0) data.add("removedPlayers", removedPlayers);
+        if (full || platforms.size() > 0) data.add("platforms", platforms);
+        if (removedPlatforms.size() > 0) data.add("removedPlatforms", removedPlatforms);
+
+        if ((flags & HAS_KEY) != 0) {
+            data.add("key", readFields(buffer, KEY_FIELDS, KEY_KINDS));
+        }
+        return data;
+    }
+
+    private static JsonArray readEntities(ByteBuffer buffer, String[] fields, String kinds) {
+        int count = readCount(buffer);
+        JsonArray entities = new JsonArray(count);
+        for (int i = 0; i < count; i++) {
+            String id = readId(buffer);
+            JsonObject entity = readFields(buffer, fields, kinds);
+            entity.addProperty("id", id);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    private static JsonArray readIds(ByteBuffer buffer) {
+        int count = readCount(buffer);
+        JsonArray ids = new JsonArray(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(readId(buffer));
+        }
+        return ids;
+    }
+
+    private static JsonObject readFields(ByteBuffer buffer, String[] fields, String kinds) {
+        int present = readVarInt(buffer);
+        int cleared = readVarInt(buffer);
+        JsonObject entity = new JsonObject();
+
+        for (int i = 0; i < fields.length; i++) {
+            if ((present & (1 << i)) == 0) continue;
+            String field = fields[i];
+            switch (kinds.charAt(i)) {
+                case 'b':
+                    entity.addProperty(field, buffer.get() != 0);
+                    break;
+                case 'f':
+                    entity.addProperty(field, buffer.getFloat());
+                    break;
+                case 'i':
+                    entity.addProperty(field, unZigZag(readVarInt(buffer)));
+                    break;
+                case 'd':
+                    entity.addProperty(field, directionName(buffer.get()));
+                    break;
+                case 'u':
+                    entity.addProperty(field, readId(buffer));
+                    break;
+                default:
+                    entity.addProperty(field, readString(buffer));
+            }
+        }
+
+        if (cleared != 0) {
+            JsonArray clearedFields = new JsonArray();
+            for (int i = 0; i < fields.length; i++) {
+                if ((cleared & (1 << i)) != 0) {
+                    clearedFields.add(fields[i]);
+                }
+            }
+            entity.add("cleared", clearedFields);
+        }
+        return entity;
+    }
+
+    private static int readCount(ByteBuffer buffer) {
+        int count = readVarInt(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Cantidad inválida: " + count);
+        }
+        return count;
+    }
+
+    private static String readId(ByteBuffer buffer) {
+        byte kind = buffer.get();
+        if (kind == STRING_UUID) {
+            return new UUID(buffer.getLong(), buffer.getLong()).toString();
+        }
+        return readString(buffer);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = readCount(buffer);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // La dirección de jugadores es texto; la de plataformas es numérica (-1, 0, 1) y va como entero
+    private static int directionCode(String direction) {
+        switch (direction) {
+            case "left":
+                return 1;
+            case "right":
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    private static String directionName(byte code) {
+        return code >= 0 && code < DIRECTIONS.length ? DIRECTIONS[code] : "stop";
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Buffer de escritura que crece según haga falta. El servidor reutiliza uno por sala
+     * (reset) y escribe sin crear objetos; copy() devuelve el mensaje en un buffer propio.
+     */
+    public static final class Writer {
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        public void reset() {
+            buffer.clear();
+        }
+
+        public int position() {
+            return buffer.position();
+        }
+
+        public void writeByte(int value) {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        public void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        public void writeFloat(float value) {
+            ensure(4);
+            buffer.putFloat(value);
+        }
+
+        public void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Enteros con signo (campos 'i'): zigzag para que los negativos chicos ocupen poco
+         */
+        public void writeInt(int value) {
+            writeVarInt(zigZag(value));
+        }
+
+        public void writeDirection(String direction) {
+            writeByte(directionCode(direction));
+        }
+
+        /**
+         * Texto en UTF-8, igual que getBytes (los surrogates sueltos quedan como '?'),
+         * pero codificado directo en el buffer
+         */
+        public void writeString(String value) {
+            int length = utf8Length(value);
+            writeVarInt(length);
+            ensure(length);
+            if (length == value.length()) {
+                for (int i = 0; i < length; i++) {
+                    buffer.put((byte) value.charAt(i));
+                }
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xC0 | (c >> 6)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else if (Character.isSurrogate(c)) {
+                    buffer.put((byte) '?');
+                } else {
+                    buffer.put((byte) (0xE0 | (c >> 12)));
+                    buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+        }
+
+        /**
+         * Los ids de jugador son UUID: se escriben como 16 bytes en lugar de 36 caracteres.
+         * Solo la forma canónica (la de UUID.toString), así el cliente recibe el mismo texto.
+         */
+        public void writeId(String id) {
+            if (isCanonicalUuid(id)) {
+                ensure(17);
+                buffer.put(STRING_UUID);
+                buffer.putLong(hex(id, 0, 8) << 32 | hex(id, 9, 13) << 16 | hex(id, 14, 18));
+                buffer.putLong(hex(id, 19, 23) << 48 | hex(id, 24, 36));
+                return;
+            }
+            writeByte(STRING_UTF8);
+            writeString(id);
+        }
+
+        /**
+         * El mensaje escrito desde el último reset, en un buffer propio listo para enviar
+         */
+        public ByteBuffer copy() {
+            ByteBuffer copy = ByteBuffer.allocate(buffer.position());
+            copy.put(buffer.array(), 0, buffer.position());
+            copy.flip();
+            return copy;
+        }
+
+        ByteBuffer toBuffer() {
+            buffer.flip();
+            return buffer;
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() >= bytes) return;
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            if (capacity > MAX_MESSAGE_SIZE) {
+                throw new IllegalStateException("Mensaje binario demasiado grande");
+            }
+            ByteBuffer larger = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+
+        private static int utf8Length(String value) {
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    length++;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    length++;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+
+        private static boolean isCanonicalUuid(String id) {
+            if (id.length() != 36) return false;
+            for (int i = 0; i < 36; i++) {
+                char c = id.charAt(i);
+                boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+                boolean hex = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+                if (dash ? c != '-' : !hex) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long hex(String id, int from, int to) {
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                value = value << 4 | Character.digit(id.charAt(i), 16);
+            }
+            return value;
+        }
+    }
+}
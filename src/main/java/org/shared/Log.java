@@ -0,0 +1,276 @@
+package org.shared;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logging asíncrono por categorías, compartido por servidor y cliente.
+ *
+ * Los hilos que loguean solo dejan el mensaje en un buffer circular sin locks; un hilo de
+ * fondo lo vacía hacia stdout/stderr. Si el buffer se llena el mensaje se descarta (y se
+ * cuenta, ver droppedCount) en vez de bloquear al que loguea; el drenaje lo avisa en la
+ * categoría "Log", a lo sumo una vez cada DROP_REPORT_INTERVAL_MS.
+ *
+ * Configuración por entorno:
+ *   LOG_LEVEL   nivel global (DEBUG, INFO, WARN, ERROR, OFF); por defecto INFO
+ *   LOG_LEVELS  nivel por categoría, por ejemplo "Mensajes=DEBUG,Salto=DEBUG"
+ *   LOG_SAMPLE  muestreo por categoría, por ejemplo "Mensajes=100" (uno de cada 100)
+ *
+ * En los caminos calientes, proteger la construcción del mensaje con isDebugEnabled()
+ * para que no cueste nada cuando está apagado.
+ */
+public final class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final long DRAIN_INTERVAL_NANOS = 1_000_000; // 1 ms
+
+    private static final Level DEFAULT_LEVEL = parseLevel(System.getenv("LOG_LEVEL"), Level.INFO);
+    private static final Map<String, String> CATEGORY_LEVELS = parsePairs(System.getenv("LOG_LEVELS"));
+    private static final Map<String, String> CATEGORY_SAMPLING = parsePairs(System.getenv("LOG_SAMPLE"));
+
+    private static final Map<String, Log> LOGGERS = new ConcurrentHashMap<>();
+    private static final RingBuffer BUFFER = new RingBuffer(BUFFER_SIZE);
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // Aviso de mensajes descartados; antes del hilo de drenaje, que lo usa
+    private static final long DROP_REPORT_INTERVAL_MS = 10_000;
+    private static final Log DROPS = get("Log");
+
+    static {
+        Thread drainer = new Thread(Log::drainLoop, "log-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+    }
+
+    private final String category;
+    private volatile Level level;
+    private final int sampleEvery;
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private Log(String category, int defaultSampleEvery) {
+        this.category = category;
+        this.level = parseLevel(CATEGORY_LEVELS.get(category), DEFAULT_LEVEL);
+        String sampling = CATEGORY_SAMPLING.get(category);
+        this.sampleEvery = Math.max(1, sampling != null ? Integer.parseInt(sampling) : defaultSampleEvery);
+    }
+
+    public static Log get(String category) {
+        return get(category, 1);
+    }
+
+    /**
+     * Logger de una categoría. defaultSampleEvery > 1 deja pasar solo uno de cada N mensajes
+     * DEBUG/INFO (WARN y ERROR siempre pasan); LOG_SAMPLE puede cambiarlo.
+     */
+    public static Log get(String category, int defaultSampleEvery) {
+        return LOGGERS.computeIfAbsent(category, name -> new Log(name, defaultSampleEvery));
+    }
+
+    public boolean isDebugEnabled() {
+        return level == Level.DEBUG;
+    }
+
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel.ordinal() >= level.ordinal();
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public void warn(String message, Throwable error) {
+        log(Level.WARN, message, error);
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    public void error(String message, Throwable error) {
+        log(Level.ERROR, message, error);
+    }
+
+    /**
+     * Mensajes descartados porque el buffer estaba lleno
+     */
+    public static long droppedCount() {
+        return BUFFER.dropped.get();
+    }
+
+    /**
+     * Escribe todo lo pendiente de inmediato (al apagar el proceso o antes de salir)
+     */
+    public static void flush() {
+        drain(true);
+    }
+
+    private void log(Level messageLevel, String message, Throwable error) {
+        if (messageLevel.ordinal() < level.ordinal()) return;
+        if (sampleEvery > 1 && messageLevel.ordinal() < Level.WARN.ordinal()
+                && sampleCounter.getAndIncrement() % sampleEvery != 0) {
+            return;
+        }
+        BUFFER.offer(new Entry(System.currentTimeMillis(), messageLevel, this, message, error));
+    }
+
+    private static final class Entry {
+        final long timestamp;
+        final Level level;
+        final Log logger;
+        final String message;
+        final Throwable error;
+
+        Entry(long timestamp, Level level, Log logger, String message, Throwable error) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.logger = logger;
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Cola circular acotada de varios productores y un consumidor. Los productores reservan
+     * un lugar con CAS y publican la entrada; el consumidor avanza head al vaciarla.
+     */
+    private static final class RingBuffer {
+        private final AtomicReferenceArray<Entry> slots;
+        private final int capacity;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head = 0;
+        final AtomicLong dropped = new AtomicLong();
+
+        RingBuffer(int capacity) {
+            this.capacity = capacity; // potencia de 2
+            this.mask = capacity - 1;
+            this.slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        void offer(Entry entry) {
+            while (true) {
+                long claimed = tail.get();
+                if (claimed - head >= capacity) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                if (tail.compareAndSet(claimed, claimed + 1)) {
+                    slots.set((int) (claimed & mask), entry);
+                    return;
+                }
+            }
+        }
+
+        // Solo el consumidor (con el lock de drain) llama a poll
+        Entry poll() {
+            long current = head;
+            int index = (int) (current & mask);
+            Entry entry = slots.get(index);
+            if (entry == null) {
+                return null; // vacío, o el productor todavía no publicó
+            }
+            slots.set(index, null);
+            head = current + 1;
+            return entry;
+        }
+    }
+
+    private static long reportedDrops = 0;
+    private static long lastDropReport = 0;
+
+    private static void drainLoop() {
+        while (true) {
+            drain(false);
+            LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+        }
+    }
+
+    /**
+     * Escribe lo pendiente; los descartados se avisan si pasó el intervalo o si force (al apagar)
+     */
+    private static synchronized void drain(boolean force) {
+        boolean wroteOut = false;
+        boolean wroteErr = false;
+        Entry entry;
+        while ((entry = BUFFER.poll()) != null) {
+            boolean isError = entry.level.ordinal() >= Level.WARN.ordinal();
+            write(isError ? System.err : System.out, entry);
+            wroteOut |= !isError;
+            wroteErr |= isError;
+        }
+
+        long dropped = BUFFER.dropped.get();
+        long now = System.currentTimeMillis();
+        if (dropped > reportedDrops && (force || now - lastDropReport >= DROP_REPORT_INTERVAL_MS)) {
+            if (DROPS.isEnabled(Level.WARN)) {
+                write(System.err, new Entry(now, Level.WARN, DROPS,
+                        (dropped - reportedDrops) + " mensaje(s) descartados: buffer lleno", null));
+                wroteErr = true;
+            }
+            reportedDrops = dropped;
+            lastDropReport = now;
+        }
+
+        if (wroteOut) System.out.flush();
+        if (wroteErr) System.err.flush();
+    }
+
+    private static void write(PrintStream out, Entry entry) {
+        StringBuilder line = new StringBuilder(32 + entry.message.length());
+        line.append(LocalTime.ofInstant(Instant.ofEpochMilli(entry.timestamp), ZONE))
+                .append(' ').append(entry.level)
+                .append(" [").append(entry.logger.category).append("] ")
+                .append(entry.message);
+        if (entry.logger.sampleEvery > 1 && entry.level.ordinal() < Level.WARN.ordinal()) {
+            line.append(" (1 de cada ").append(entry.logger.sampleEvery).append(')');
+        }
+        out.println(line);
+        if (entry.error != null) {
+            entry.error.printStackTrace(out);
+        }
+    }
+
+    private static Level parseLevel(String value, Level defaultLevel) {
+        if (value == null) return defaultLevel;
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultLevel;
+        }
+    }
+
+    // "A=1,B=2" -> {A: 1, B: 2}
+    private static Map<String, String> parsePairs(String value) {
+        Map<String, String> pairs = new HashMap<>();
+        if (value == null) return pairs;
+        for (String pair : value.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                pairs.put(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim());
+            }
+        }
+        return pairs;
+    }
+}
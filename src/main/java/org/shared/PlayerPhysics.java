@@ -0,0 +1,50 @@
+package org.shared;
+
+/**
+ * Constantes de la física de los jugadores, compartidas entre el servidor (que simula) y el
+ * cliente (que predice su propio movimiento). Si cambian en un lado tienen que cambiar en el
+ * otro, o la predicción se corrige en cada snapshot.
+ *
+ * También define los bits de un frame de input: lo que el jugador tenía presionado durante
+ * un tick de simulación.
+ */
+public final class PlayerPhysics {
+
+    public static final int TICK_RATE = 60;
+    public static final int SIZE_TILE = 48;
+
+    public static final float GRAVITY = 0.5f;
+    public static final float JUMP_FORCE = -10f;
+    public static final float MOVE_SPEED = 4.5f;
+    public static final float MAX_FALL_SPEED = 15f;
+
+    public static final float PLAYER_WIDTH = 32;
+    public static final float PLAYER_HEIGHT = 48;
+
+    // Bits de un frame de input
+    public static final int INPUT_LEFT = 1;
+    public static final int INPUT_RIGHT = 1 << 1;
+    public static final int INPUT_JUMP = 1 << 2;
+
+    // Frames de input que entran en un mensaje (los no confirmados se reenvían)
+    public static final int MAX_INPUT_FRAMES = 32;
+
+    private PlayerPhysics() {
+    }
+
+    /**
+     * Dirección horizontal de un frame: -1 izquierda, 0 parado, 1 derecha
+     */
+    public static int moveDirection(int input) {
+        boolean left = (input & INPUT_LEFT) != 0;
+        boolean right = (input & INPUT_RIGHT) != 0;
+        return left == right ? 0 : (left ? -1 : 1);
+    }
+
+    /**
+     * Nombre de la dirección, como en el mensaje "move"
+     */
+    public static String directionName(int moveDirection) {
+        return moveDirection < 0 ? "left" : (moveDirection > 0 ? "right" : "stop");
+    }
+}
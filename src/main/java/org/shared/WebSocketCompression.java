@@ -0,0 +1,150 @@
+package org.shared;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.ExtensionRequestData;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+
+import java.util.Map;
+
+/**
+ * Configuración de permessage-deflate (RFC 7692) para el servidor y los clientes. Los mensajes
+ * con el mapa completo (roomJoined, startGame) y los gameUpdate en JSON repiten mucho texto y
+ * se comprimen bien; los más chicos que el umbral se envían sin comprimir, porque ahí deflate
+ * cuesta CPU y casi no ahorra bytes.
+ *
+ * La extensión se negocia en el handshake: si el otro lado no la ofrece o no la acepta, la
+ * conexión sigue sin comprimir. Con context takeover (por defecto) cada mensaje se comprime
+ * usando los anteriores como diccionario, lo que ahorra más a cambio de 32 KB de ventana por
+ * conexión y sentido; sin él, cada mensaje empieza de cero.
+ *
+ * La extensión comprime cada frame en el lugar, con el diccionario de su conexión: los frames
+ * de una conexión que la negoció no se pueden compartir con otras (ver isNegotiated).
+ *
+ * Variables de entorno: WS_DEFLATE (true/false), WS_DEFLATE_THRESHOLD (bytes),
+ * WS_DEFLATE_SERVER_NO_CONTEXT_TAKEOVER y WS_DEFLATE_CLIENT_NO_CONTEXT_TAKEOVER.
+ */
+public final class WebSocketCompression {
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    public final boolean enabled;
+    public final int threshold;
+    public final boolean serverNoContextTakeover;
+    public final boolean clientNoContextTakeover;
+
+    public WebSocketCompression(boolean enabled, int threshold, boolean serverNoContextTakeover, boolean clientNoContextTakeover) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        this.clientNoContextTakeover = clientNoContextTakeover;
+    }
+
+    public static WebSocketCompression fromEnv() {
+        String threshold = System.getenv("WS_DEFLATE_THRESHOLD");
+        return new WebSocketCompression(
+                !"false".equalsIgnoreCase(System.getenv("WS_DEFLATE")),
+                threshold != null ? Integer.parseInt(threshold) : DEFAULT_THRESHOLD,
+                "true".equalsIgnoreCase(System.getenv("WS_DEFLATE_SERVER_NO_CONTEXT_TAKEOVER")),
+                "true".equalsIgnoreCase(System.getenv("WS_DEFLATE_CLIENT_NO_CONTEXT_TAKEOVER"))
+        );
+    }
+
+    /**
+     * Draft del servidor con la extensión, o el de siempre si la compresión está deshabilitada
+     */
+    public Draft serverDraft() {
+        return enabled ? new Draft_6455(extension(false)) : new Draft_6455();
+    }
+
+    /**
+     * Draft de un cliente: ofrece la extensión con esta configuración de context takeover
+     */
+    public Draft clientDraft() {
+        return enabled ? new Draft_6455(extension(true)) : new Draft_6455();
+    }
+
+    /**
+     * True si la conexión negoció permessage-deflate en el handshake
+     */
+    public static boolean isNegotiated(WebSocket connection) {
+        Draft draft = connection.getDraft();
+        return draft instanceof Draft_6455 && ((Draft_6455) draft).getExtension() instanceof PerMessageDeflateExtension;
+    }
+
+    private PerMessageDeflateExtension extension(boolean client) {
+        ConfiguredDeflateExtension extension = new ConfiguredDeflateExtension(this, client);
+        extension.setThreshold(threshold);
+        // En Java-WebSocket estos dos flags no dependen del rol: serverNoContextTakeover reinicia
+        // el deflater propio después de cada mensaje y clientNoContextTakeover, el inflater
+        extension.setServerNoContextTakeover(client ? clientNoContextTakeover : serverNoContextTakeover);
+        extension.setClientNoContextTakeover(client ? serverNoContextTakeover : clientNoContextTakeover);
+        return extension;
+    }
+
+    @Override
+    public String toString() {
+        if (!enabled) return "sin compresión";
+        return "permessage-deflate (desde " + threshold + " bytes" +
+                (serverNoContextTakeover ? ", servidor sin contexto" : "") +
+                (clientNoContextTakeover ? ", cliente sin contexto" : "") + ")";
+    }
+
+    /**
+     * Cada conexión usa una copia de la extensión (copyInstance); la de Java-WebSocket no
+     * copia el umbral ni el context takeover, así que la copia se arma de nuevo con la configuración.
+     *
+     * Además el handshake de la de Java-WebSocket no coincide con lo que hace: el cliente siempre
+     * ofrece ambos no_context_takeover pero conserva su contexto, y el servidor siempre responde
+     * server_no_context_takeover aunque conserve el suyo. Acá cada lado ofrece y acepta lo que
+     * realmente hace, y el servidor cumple si el cliente le pide no conservar contexto.
+     */
+    private static final class ConfiguredDeflateExtension extends PerMessageDeflateExtension {
+        private static final String NAME = "permessage-deflate";
+        private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+        private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+
+        private final WebSocketCompression config;
+        private final boolean client;
+
+        ConfiguredDeflateExtension(WebSocketCompression config, boolean client) {
+            this.config = config;
+            this.client = client;
+        }
+
+        @Override
+        public String getProvidedExtensionAsClient() {
+            return NAME + (config.serverNoContextTakeover ? "; " + SERVER_NO_CONTEXT_TAKEOVER : "")
+                    + (config.clientNoContextTakeover ? "; " + CLIENT_NO_CONTEXT_TAKEOVER : "");
+        }
+
+        @Override
+        public boolean acceptProvidedExtensionAsServer(String inputExtension) {
+            for (String offer : inputExtension.split(",")) {
+                ExtensionRequestData data = ExtensionRequestData.parseExtensionRequest(offer);
+                if (!NAME.equalsIgnoreCase(data.getExtensionName())) continue;
+
+                // El inflater se reinicia si el cliente no conserva contexto; el deflater, si lo pide el cliente
+                Map<String, String> parameters = data.getExtensionParameters();
+                setClientNoContextTakeover(parameters.containsKey(CLIENT_NO_CONTEXT_TAKEOVER));
+                if (parameters.containsKey(SERVER_NO_CONTEXT_TAKEOVER)) {
+                    setServerNoContextTakeover(true);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String getProvidedExtensionAsServer() {
+            return NAME + (isServerNoContextTakeover() ? "; " + SERVER_NO_CONTEXT_TAKEOVER : "")
+                    + (isClientNoContextTakeover() ? "; " + CLIENT_NO_CONTEXT_TAKEOVER : "");
+        }
+
+        @Override
+        public IExtension copyInstance() {
+            return config.extension(client);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Baseline de un cliente con deltas: cuándo recibe un delta contra su último ack y cuándo
+ * vuelve al keyframe completo.
+ */
+class ClientSnapshotStateTest {
+    // Más que el historial de la sala: el baseline más viejo ya no está
+    private static final int EVICTING_SNAPSHOTS = 100;
+
+    private GameRoom room;
+    private Player moving;
+    private final ClientSnapshotState state = new ClientSnapshotState();
+
+    @BeforeEach
+    void setUp() {
+        int[][] world = new int[20][50];
+        room = new GameRoom("test", "test", 2, world, world);
+        moving = new Player("uno", "uno");
+        room.addPlayer(moving);
+        room.addPlayer(new Player("dos", "dos"));
+        room.runCommands(); // los jugadores entran a la simulación
+    }
+
+    @Test
+    void firstUpdateIsAKeyframe() {
+        assertNull(state.selectBase(room, room.captureSnapshot()));
+    }
+
+    @Test
+    void acknowledgedSnapshotIsTheBaselineOfTheNextDelta() {
+        RoomSnapshot first = room.captureSnapshot();
+        state.selectBase(room, first);
+        state.acknowledge(first.seq);
+
+        moving.x += 5;
+        RoomSnapshot second = room.captureSnapshot();
+        assertSame(first, state.selectBase(room, second));
+
+        GameUpdateEncoder encoder = new GameUpdateEncoder();
+        encoder.delta(second, first, null, null);
+        JsonObject update = JsonParser.parseString(encoder.json()).getAsJsonObject().getAsJsonObject("data");
+        assertEquals(first.seq, update.get("base").getAsInt());
+        JsonArray players = update.getAsJsonArray("players");
+        assertEquals(1, players.size());
+        assertEquals(Set.of("id", "x"), players.get(0).getAsJsonObject().keySet());
+        assertFalse(update.has("platforms"));
+    }
+
+    @Test
+    void staleAcksAreIgnored() {
+        RoomSnapshot first = room.captureSnapshot();
+        RoomSnapshot second = room.captureSnapshot();
+        state.selectBase(room, second);
+        state.acknowledge(second.seq);
+        state.acknowledge(first.seq);
+
+        assertSame(second, state.selectBase(room, room.captureSnapshot()));
+    }
+
+    @Test
+    void keyframeIsSentEveryInterval() {
+        RoomSnapshot snapshot = room.captureSnapshot();
+        state.selectBase(room, snapshot);
+        for (int i = 1; i < ClientSnapshotState.KEYFRAME_INTERVAL; i++) {
+            state.acknowledge(snapshot.seq);
+            snapshot = room.captureSnapshot();
+            assertNotNull(state.selectBase(room, snapshot), "tick " + i);
+        }
+        state.acknowledge(snapshot.seq);
+        assertNull(state.selectBase(room, room.captureSnapshot()));
+    }
+
+    @Test
+    void missingBaselineFallsBackToAKeyframe() {
+        RoomSnapshot first = room.captureSnapshot();
+        state.selectBase(room, first);
+        state.acknowledge(first.seq);
+        for (int i = 0; i < EVICTING_SNAPSHOTS; i++) {
+            room.captureSnapshot();
+        }
+        assertNull(state.selectBase(room, room.captureSnapshot()));
+    }
+
+    @Test
+    void requestedKeyframeReplacesTheDelta() {
+        RoomSnapshot first = room.captureSnapshot();
+        state.selectBase(room, first);
+        state.acknowledge(first.seq);
+        state.requestKeyframe();
+        assertNull(state.selectBase(room, room.captureSnapshot()));
+    }
+}
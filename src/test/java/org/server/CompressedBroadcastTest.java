@@ -0,0 +1,182 @@
+package org.server;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.shared.WebSocketCompression;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Varios clientes con permessage-deflate (y context takeover) en la misma sala: cada uno tiene
+ * que poder descomprimir todo lo que recibe, tanto los mensajes confiables de la sala como los
+ * gameUpdate de cada tick.
+ */
+class CompressedBroadcastTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    // Umbral bajo: que se compriman también los mensajes chicos
+    private static final WebSocketCompression COMPRESSION = new WebSocketCompression(true, 16, false, false);
+
+    // Copia de maps/: los compilados se escriben acá y no en el repo
+    @TempDir
+    Path mapsDir;
+
+    private GameWebSocketServer server;
+    private final List<TestClient> clients = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (TestClient client : clients) {
+            client.closeBlocking();
+        }
+        if (server != null) {
+            server.stop(1000);
+        }
+    }
+
+    @Test
+    void everyCompressedClientDecodesRoomMessages() throws Exception {
+        copyMaps();
+        int port = freePort();
+        // Sin recarga de mapas ni endpoint de métricas
+        server = new GameWebSocketServer(port, new MemoryAuthBackend(), COMPRESSION,
+                new ServerConfig(mapsDir, false, "127.0.0.1", 0));
+        server.setReuseAddr(true);
+        server.start();
+
+        // facil arranca con 2 jugadores: los dos quedan en la misma instancia
+        TestClient first = connect(port, "uno");
+        TestClient second = connect(port, "dos");
+        first.send(message("joinRoom", "{\"roomId\":\"facil\"}"));
+        JsonObject joined = first.await("roomJoined").getAsJsonObject("data");
+        second.send(message("joinRoom", "{\"roomId\":\"facil\"}"));
+        assertEquals(joined.get("roomId"), second.await("roomJoined").getAsJsonObject("data").get("roomId"));
+        first.await("playerJoined");
+
+        String text = "hola ".repeat(200);
+        first.send(message("chat", "{\"message\":\"" + text + "\"}"));
+        for (TestClient client : clients) {
+            assertEquals(text, client.await("chat").getAsJsonObject("data").get("message").getAsString());
+        }
+
+        // gameUpdate por tick, el mismo mensaje para los dos clientes
+        for (TestClient client : clients) {
+            for (int i = 0; i < 60; i++) {
+                assertNotNull(client.await("gameUpdate").getAsJsonObject("data").get("players"));
+            }
+        }
+        for (TestClient client : clients) {
+            assertTrue(client.isOpen(), client.name + " se desconectó: " + client.closeReason);
+        }
+    }
+
+    private TestClient connect(int port, String name) throws Exception {
+        // El servidor arranca en otro hilo: reintentar hasta que acepte conexiones
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (true) {
+            TestClient client = new TestClient(new URI("ws://localhost:" + port), name);
+            if (client.connectBlocking(1, TimeUnit.SECONDS)) {
+                clients.add(client);
+                client.send(message("auth", "{\"username\":\"" + name + "\",\"password\":\"x\"}"));
+                client.await("authSuccess");
+                return client;
+            }
+            if (System.nanoTime() > deadline) {
+                fail("El servidor no aceptó conexiones en el puerto " + port);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private void copyMaps() throws IOException {
+        try (DirectoryStream<Path> maps = Files.newDirectoryStream(Paths.get(GameWebSocketServer.MAPS_DIR), "*.json")) {
+            for (Path map : maps) {
+                Files.copy(map, mapsDir.resolve(map.getFileName()));
+            }
+        }
+    }
+
+    private static String message(String type, String data) {
+        return "{\"type\":\"" + type + "\",\"data\":" + data + "}";
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Cliente que decodifica cada mensaje de texto al recibirlo; un mensaje mal descomprimido
+     * falla acá (JSON inválido) o cierra la conexión
+     */
+    private static final class TestClient extends WebSocketClient {
+        final String name;
+        final BlockingQueue<JsonObject> received = new LinkedBlockingQueue<>();
+        volatile String closeReason;
+
+        TestClient(URI uri, String name) {
+            super(uri, COMPRESSION.clientDraft());
+            this.name = name;
+        }
+
+        JsonObject await(String type) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (true) {
+                JsonObject message = received.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (message == null) {
+                    fail(name + " no recibió " + type + (closeReason != null ? " (cerrada: " + closeReason + ")" : ""));
+                }
+                if (type.equals(message.get("type").getAsString())) {
+                    return message;
+                }
+            }
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+        }
+
+        @Override
+        public void onMessage(String message) {
+            try {
+                received.add(JsonParser.parseString(message).getAsJsonObject());
+            } catch (RuntimeException e) {
+                closeReason = "mensaje ilegible: " + e.getMessage();
+                close();
+            }
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            if (closeReason == null) {
+                closeReason = code + " " + reason;
+            }
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            closeReason = ex.toString();
+        }
+    }
+}
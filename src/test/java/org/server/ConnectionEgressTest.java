@@ -0,0 +1,137 @@
+package org.server;
+
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.WebSocketListener;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.Framedata;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Salida de una conexión: el snapshot más nuevo reemplaza al pendiente mientras el socket
+ * tiene datos sin escribir, un mensaje confiable sale detrás del snapshot pendiente y una
+ * conexión que no se vacía se da por perdida.
+ */
+class ConnectionEgressTest {
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final FakeConnection connection = new FakeConnection();
+    private final ConnectionEgress egress = new ConnectionEgress(connection, metrics);
+
+    @Test
+    void freeSocketSendsTheSnapshotRightAway() {
+        assertTrue(egress.sendSnapshot(text("uno")));
+        assertEquals(List.of("uno"), connection.sent);
+        assertEquals(0, egress.flush());
+        assertEquals(0, metrics.snapshotsCoalesced.sum());
+    }
+
+    @Test
+    void latestSnapshotWinsWhileTheSocketIsBusy() {
+        connection.buffer(100);
+        assertFalse(egress.sendSnapshot(text("uno")));
+        assertFalse(egress.sendSnapshot(text("dos")));
+        assertEquals(1, metrics.snapshotsCoalesced.sum());
+
+        // Sigue ocupado: no sale nada
+        assertEquals(0, egress.flush());
+
+        connection.outQueue.clear();
+        assertEquals(3, egress.flush());
+        assertEquals(List.of("dos"), connection.sent);
+        assertEquals(0, egress.flush());
+    }
+
+    @Test
+    void reliableMessageGoesOutAfterThePendingSnapshot() {
+        connection.buffer(100);
+        egress.sendSnapshot(new ConnectionEgress.Outgoing(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 })));
+
+        // Aunque el socket siga ocupado: el confiable se encola siempre, detrás del snapshot
+        assertEquals(4, egress.sendReliable(text("chat")));
+        assertEquals(List.of("4 bytes", "chat"), connection.sent);
+        assertEquals(0, egress.flush());
+    }
+
+    @Test
+    void closedConnectionDropsThePendingSnapshot() {
+        connection.buffer(100);
+        egress.sendSnapshot(text("uno"));
+        connection.open = false;
+
+        assertEquals(0, egress.sendReliable(text("chat")));
+        assertTrue(connection.sent.isEmpty());
+    }
+
+    @Test
+    void connectionOverTheLimitIsLostAfterTheGracePeriod() {
+        long start = TimeUnit.SECONDS.toNanos(10);
+        long grace = TimeUnit.MILLISECONDS.toNanos(ConnectionEgress.OVERFLOW_GRACE_MS);
+
+        connection.buffer(ConnectionEgress.MAX_QUEUED_BYTES);
+        assertFalse(egress.checkOverflow(start), "en el límite no cuenta");
+
+        connection.buffer(1);
+        assertFalse(egress.checkOverflow(start));
+        assertFalse(egress.checkOverflow(start + grace));
+        assertTrue(egress.checkOverflow(start + grace + 1));
+
+        // Si se vacía, el plazo vuelve a empezar
+        connection.outQueue.clear();
+        assertFalse(egress.checkOverflow(start + 2 * grace));
+        connection.buffer(ConnectionEgress.MAX_QUEUED_BYTES + 1);
+        assertFalse(egress.checkOverflow(start + 3 * grace));
+        assertFalse(egress.checkOverflow(start + 4 * grace));
+    }
+
+    private static ConnectionEgress.Outgoing text(String message) {
+        return new ConnectionEgress.Outgoing(message);
+    }
+
+    /**
+     * WebSocket sin red: lo encolado se simula con frames en outQueue y lo enviado se guarda
+     */
+    private static final class FakeConnection extends WebSocketImpl {
+        // Texto de cada mensaje enviado; los binarios como "N bytes"
+        final List<String> sent = new ArrayList<>();
+        boolean open = true;
+
+        FakeConnection() {
+            super((WebSocketListener) Proxy.newProxyInstance(WebSocketListener.class.getClassLoader(),
+                    new Class<?>[] { WebSocketListener.class }, (proxy, method, args) -> null), new Draft_6455());
+        }
+
+        void buffer(long bytes) {
+            outQueue.add(ByteBuffer.allocate((int) bytes));
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void sendFrame(Collection<Framedata> frames) {
+            if (!open) {
+                throw new WebsocketNotConnectedException();
+            }
+            Framedata frame = frames.iterator().next();
+            ByteBuffer payload = frame.getPayloadData();
+            sent.add(frame.getOpcode() == Opcode.TEXT
+                    ? StandardCharsets.UTF_8.decode(payload).toString()
+                    : payload.remaining() + " bytes");
+        }
+    }
+}
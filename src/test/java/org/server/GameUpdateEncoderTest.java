@@ -0,0 +1,129 @@
+package org.server;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shared.BinaryProtocol;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * El gameUpdate escrito directo desde el snapshot: el binario decodifica a lo mismo que el
+ * JSON, y en estado estable escribirlo en los buffers del encoder no crea objetos.
+ */
+class GameUpdateEncoderTest {
+    private static final int PLAYERS = 8;
+
+    private GameRoom room;
+    private RoomSnapshot base;
+    private RoomSnapshot current;
+    private final GameUpdateEncoder encoder = new GameUpdateEncoder();
+
+    @BeforeEach
+    void setUp() {
+        int[][] world = new int[20][50];
+        room = new GameRoom("test", "test", PLAYERS, world, world);
+        for (int i = 0; i < PLAYERS; i++) {
+            Player player = new Player(UUID.randomUUID().toString(), i == 0 ? "ñandú \"<&>\"" : "jugador" + i);
+            player.x = 20 + i * 40;
+            room.addPlayer(player);
+        }
+        room.runCommands(); // los jugadores entran a la simulación
+        Platform platform = new Platform("platform_10_5", 240, 480, 32);
+        room.platforms.put(platform.id, platform);
+        room.platformSlots = new Platform[] { platform };
+        room.key = new Key(600, 300);
+        room.key.carriedByPlayerId = room.playerSlots[1].id;
+        base = room.captureSnapshot();
+
+        // Uno de cada dos jugadores se mueve, la plataforma baja y la llave queda en el mapa
+        for (int i = 0; i < PLAYERS; i += 2) {
+            room.playerSlots[i].x += 4.5f;
+            room.playerSlots[i].direction = "right";
+        }
+        platform.y += 2;
+        platform.isMoving = true;
+        room.key.carriedByPlayerId = null;
+        room.key.floatOffset = 1.5f;
+        current = room.captureSnapshot();
+    }
+
+    @Test
+    void binaryDecodesToTheSameGameUpdateAsJson() {
+        encoder.keyframe(current, null, false);
+        assertSameFormats();
+        encoder.keyframe(current, null, true);
+        assertSameFormats();
+        encoder.delta(current, base, null, null);
+        assertSameFormats();
+
+        JsonObject delta = data(encoder.json());
+        assertEquals(PLAYERS / 2, delta.getAsJsonArray("players").size());
+        assertEquals("carriedByPlayerId", delta.getAsJsonObject("key").getAsJsonArray("cleared").get(0).getAsString());
+    }
+
+    @Test
+    void writingAnUpdateDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 20_000; i++) {
+            writeAll(i);
+        }
+
+        // El mínimo de varias rondas: descarta lo que asigna la JVM al compilar en el medio
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 1000; i++) {
+                writeAll(i);
+            }
+            allocated = Math.min(allocated, threads.getCurrentThreadAllocatedBytes() - before);
+        }
+        assertEquals(0, allocated, "bytes asignados en 1000 gameUpdate");
+    }
+
+    private int writeAll(long timestamp) {
+        encoder.keyframe(current, null, false);
+        int length = encoder.writeJson(timestamp) + encoder.writeBinary();
+        encoder.delta(current, base, null, null);
+        return length + encoder.writeJson(timestamp) + encoder.writeBinary();
+    }
+
+    private void assertSameFormats() {
+        JsonObject json = data(encoder.json());
+        JsonObject binary = BinaryProtocol.decodeServerMessage(encoder.binary()).getAsJsonObject("data");
+        assertSameJson(json, binary, "data");
+    }
+
+    private static JsonObject data(String message) {
+        return JsonParser.parseString(message).getAsJsonObject().getAsJsonObject("data");
+    }
+
+    // Los números se comparan como float: el binario los lleva así y el JSON como texto
+    private static void assertSameJson(JsonElement expected, JsonElement actual, String path) {
+        if (expected.isJsonObject()) {
+            assertTrue(actual.isJsonObject(), path);
+            JsonObject actualObject = actual.getAsJsonObject();
+            assertEquals(expected.getAsJsonObject().keySet(), actualObject.keySet(), path);
+            for (Map.Entry<String, JsonElement> field : expected.getAsJsonObject().entrySet()) {
+                assertSameJson(field.getValue(), actualObject.get(field.getKey()), path + "." + field.getKey());
+            }
+        } else if (expected.isJsonArray()) {
+            assertTrue(actual.isJsonArray(), path);
+            assertEquals(expected.getAsJsonArray().size(), actual.getAsJsonArray().size(), path);
+            for (int i = 0; i < expected.getAsJsonArray().size(); i++) {
+                assertSameJson(expected.getAsJsonArray().get(i), actual.getAsJsonArray().get(i), path + "[" + i + "]");
+            }
+        } else if (expected.getAsJsonPrimitive().isNumber()) {
+            assertEquals(expected.getAsFloat(), actual.getAsFloat(), path);
+        } else {
+            assertEquals(expected, actual, path);
+        }
+    }
+}
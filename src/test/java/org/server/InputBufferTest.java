@@ -0,0 +1,67 @@
+package org.server;
+
+import org.junit.jupiter.api.Test;
+import org.shared.PlayerPhysics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Frames de input numerados: reenvíos duplicados, huecos que el cliente ya no tiene, la
+ * secuencia confirmada en los snapshots y el descarte de un cliente adelantado.
+ */
+class InputBufferTest {
+    private static final int LEFT = PlayerPhysics.INPUT_LEFT;
+    private static final int RIGHT = PlayerPhysics.INPUT_RIGHT;
+    private static final int JUMP = PlayerPhysics.INPUT_JUMP;
+
+    private final InputBuffer buffer = new InputBuffer();
+
+    @Test
+    void framesAreAppliedOnePerStepInOrder() {
+        buffer.offer(2, new int[] { LEFT, RIGHT }, 2);
+
+        assertEquals(LEFT, buffer.poll());
+        assertEquals(1, buffer.lastApplied());
+        assertEquals(RIGHT, buffer.poll());
+        assertEquals(2, buffer.lastApplied());
+        assertEquals(-1, buffer.poll());
+        assertEquals(2, buffer.lastApplied());
+    }
+
+    @Test
+    void resentFramesAreQueuedOnce() {
+        buffer.offer(2, new int[] { LEFT, LEFT }, 2);
+        // El cliente reenvía los que no le confirmamos junto con el nuevo
+        buffer.offer(3, new int[] { LEFT, LEFT, RIGHT }, 3);
+
+        assertEquals(LEFT, buffer.poll());
+        assertEquals(LEFT, buffer.poll());
+        assertEquals(RIGHT, buffer.poll());
+        assertEquals(-1, buffer.poll());
+    }
+
+    @Test
+    void lostFramesTheClientNoLongerHasAreSkipped() {
+        buffer.offer(1, new int[] { LEFT }, 1);
+        buffer.offer(10, new int[] { RIGHT }, 1);
+
+        assertEquals(LEFT, buffer.poll());
+        assertEquals(RIGHT, buffer.poll());
+        assertEquals(10, buffer.lastApplied());
+    }
+
+    @Test
+    void clientAheadDropsOldFramesButKeepsTheirJumps() {
+        int[] inputs = new int[InputBuffer.MAX_LAG + 3];
+        inputs[0] = JUMP;
+        buffer.offer(inputs.length, inputs, inputs.length);
+
+        assertEquals(JUMP, buffer.poll());
+        assertEquals(4, buffer.lastApplied());
+        for (int i = 0; i < InputBuffer.MAX_LAG - 1; i++) {
+            assertEquals(0, buffer.poll());
+        }
+        assertEquals(-1, buffer.poll());
+        assertEquals(inputs.length, buffer.lastApplied());
+    }
+}
@@ -0,0 +1,132 @@
+package org.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reparto de jugadores entre instancias de un mapa: cupo de users-to-start (también al
+ * recargar el mapa), arranque al llenarse y liberación de las instancias vacías.
+ */
+class MatchmakerTest {
+    private static final int USERS_TO_START = 2;
+
+    private final List<GameRoom> created = new ArrayList<>();
+    private final List<GameRoom> reclaimed = new ArrayList<>();
+    private final List<GameRoom> full = new ArrayList<>();
+    private Matchmaker matchmaker;
+
+    @BeforeEach
+    void setUp() {
+        matchmaker = new Matchmaker(List.of(template(USERS_TO_START)), created::add, reclaimed::add, full::add);
+    }
+
+    @Test
+    void joinersFillAnInstanceBeforeOpeningAnother() {
+        GameRoom first = join("uno");
+        assertTrue(full.isEmpty());
+        assertSame(first, join("dos"));
+        assertEquals(List.of(first), full);
+
+        GameRoom second = join("tres");
+        assertNotSame(first, second);
+        assertEquals(List.of(first, second), created);
+        assertEquals("facil", second.templateId);
+        assertEquals(3, matchmaker.playerCount("facil"));
+    }
+
+    @Test
+    void emptyInstanceIsReclaimed() {
+        GameRoom room = join("uno");
+        join("dos");
+
+        assertFalse(matchmaker.leave(room, "uno"));
+        assertTrue(matchmaker.leave(room, "dos"));
+        assertEquals(List.of(room), reclaimed);
+        assertEquals(0, matchmaker.playerCount("facil"));
+
+        // El siguiente jugador no cae en la instancia liberada
+        assertNotSame(room, join("tres"));
+    }
+
+    @Test
+    void quotaIsCountedBeforeTheRoomTicks() {
+        GameRoom room = join("uno");
+        join("dos");
+
+        // Los comandos de la sala todavía no corrieron: la simulación no tiene a nadie
+        assertTrue(room.players.isEmpty());
+        assertEquals(List.of(room), full);
+        assertEquals(2, matchmaker.playerCount("facil"));
+
+        room.runCommands();
+        assertEquals(2, room.players.size());
+    }
+
+    @Test
+    void leavingTwiceFreesOnlyOneSlot() {
+        GameRoom room = join("uno");
+        join("dos");
+
+        assertFalse(matchmaker.leave(room, "uno"));
+        assertFalse(matchmaker.leave(room, "uno"));
+        assertEquals(1, matchmaker.playerCount("facil"));
+        assertTrue(reclaimed.isEmpty());
+    }
+
+    @Test
+    void reloadedUsersToStartAppliesInTheWaitingRoom() {
+        GameRoom room = join("uno");
+
+        MapTemplate reloaded = template(3);
+        for (GameRoom instance : matchmaker.replaceTemplate(reloaded)) {
+            assertTrue(instance.reloadTemplate(reloaded));
+        }
+        assertEquals(3, room.needUsers);
+
+        // Con el cupo nuevo entran tres a la misma instancia, y arranca al completarse
+        assertSame(room, join("dos"));
+        assertTrue(full.isEmpty());
+        assertSame(room, join("tres"));
+        assertEquals(List.of(room), full);
+    }
+
+    @Test
+    void reloadedUsersToStartWaitsForTheGameToEnd() {
+        GameRoom room = join("uno");
+        join("dos");
+        room.loadGameWorld();
+
+        MapTemplate reloaded = template(3);
+        assertFalse(room.reloadTemplate(reloaded));
+        assertEquals(USERS_TO_START, room.needUsers);
+
+        room.applyPendingTemplate();
+        assertEquals(3, room.needUsers);
+    }
+
+    @Test
+    void unknownMapIsRejected() {
+        assertNull(matchmaker.join("no-existe", new User("uno", "uno", null), new Player("uno", "uno")));
+        assertTrue(created.isEmpty());
+    }
+
+    private static MapTemplate template(int usersToStart) {
+        TileMap world = new TileMap(new int[20][50], TileProperties.DEFAULT);
+        TileMap waitingRoom = new TileMap(new int[20][50], TileProperties.DEFAULT);
+        return new MapTemplate("facil", "Fácil", usersToStart, world, waitingRoom);
+    }
+
+    private GameRoom join(String id) {
+        return matchmaker.join("facil", new User(id, id, null), new Player(id, id));
+    }
+}
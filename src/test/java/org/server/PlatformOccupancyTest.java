@@ -0,0 +1,64 @@
+package org.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * updatePlatformLogic solo vuelve a contar quién está sobre cada plataforma si algo se movió,
+ * y aun sin movimiento evalúa las plataformas cuando vence su plazo.
+ */
+class PlatformOccupancyTest {
+    private GameRoom room;
+    private Platform platform;
+    private Player player;
+
+    @BeforeEach
+    void setUp() {
+        int[][] world = new int[20][50];
+        world[10][5] = 31; // plataforma que pide un jugador
+        room = new GameRoom("test", "test", 1, world, world);
+        room.initializePlatforms();
+        room.indexPlatforms();
+        platform = room.platformSlots[0];
+
+        player = new Player("uno", "uno");
+        player.x = platform.x;
+        player.y = platform.y - player.height;
+        room.addPlayer(player);
+        room.runCommands();
+    }
+
+    @Test
+    void occupancyIsRecountedOnlyWhenSomethingMoved() {
+        room.updatePlatformLogic();
+        assertEquals(1, platform.playersOnPlatform);
+
+        // Nada se movió: el conteo anterior (aquí alterado a propósito) no se recalcula
+        platform.playersOnPlatform = 0;
+        room.updatePlatformLogic();
+        assertEquals(0, platform.playersOnPlatform);
+
+        player.x += 1;
+        room.updatePlatformLogic();
+        assertEquals(1, platform.playersOnPlatform);
+
+        player.isVisible = false;
+        room.updatePlatformLogic();
+        assertEquals(0, platform.playersOnPlatform);
+    }
+
+    @Test
+    void dueTimerIsEvaluatedWithoutMovement() {
+        platform.setRoute(-1, platform.y - GameWebSocketServer.SIZE_TILE);
+        room.updatePlatformLogic();
+        assertEquals(Platform.State.ARMING, platform.state);
+
+        while (room.clock.millis() < platform.nextEventTime) {
+            room.clock.step();
+            room.updatePlatformLogic();
+        }
+        assertEquals(Platform.State.MOVING, platform.state);
+    }
+}
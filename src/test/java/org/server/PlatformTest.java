@@ -0,0 +1,100 @@
+package org.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Máquina de estados de una plataforma: cuándo se arma, se mueve, se queda y vuelve, y
+ * cuándo hace falta evaluarla.
+ */
+class PlatformTest {
+    private static final float ORIGIN_Y = 480;
+    private static final float DEST_Y = ORIGIN_Y - GameWebSocketServer.SIZE_TILE;
+
+    private Platform platform;
+
+    @BeforeEach
+    void setUp() {
+        platform = new Platform("platform_10_15", 320, ORIGIN_Y, 31); // pide un jugador
+        platform.setRoute(-1, DEST_Y);
+    }
+
+    @Test
+    void runsTheFullCycleWhileOccupied() {
+        platform.update(1, 0);
+        assertEquals(Platform.State.ARMING, platform.state);
+        assertFalse(platform.needsUpdate(1, Platform.PLAYER_DETECTION_DELAY - 1));
+        assertTrue(platform.needsUpdate(1, Platform.PLAYER_DETECTION_DELAY));
+
+        long start = Platform.PLAYER_DETECTION_DELAY;
+        platform.update(1, start);
+        assertEquals(Platform.State.MOVING, platform.state);
+        assertTrue(platform.isMoving);
+
+        assertTrue(platform.updatePosition(start + Platform.MOVE_DURATION / 2));
+        assertTrue(platform.y < ORIGIN_Y && platform.y > DEST_Y);
+        assertTrue(platform.deltaY < 0);
+
+        long arrival = start + Platform.MOVE_DURATION;
+        platform.updatePosition(arrival);
+        assertEquals(Platform.State.ARRIVED, platform.state);
+        assertEquals(DEST_Y, platform.y);
+        assertFalse(platform.isMoving);
+
+        // La evaluación del mismo tick: sigue ocupada, se queda arriba sin plazo
+        assertTrue(platform.needsUpdate(1, arrival));
+        platform.update(1, arrival);
+        assertEquals(Platform.State.ARRIVED, platform.state);
+        assertFalse(platform.needsUpdate(1, arrival + 10_000));
+
+        long leave = arrival + 100;
+        platform.update(0, leave);
+        assertEquals(Platform.State.RETURNING, platform.state);
+        platform.updatePosition(leave + Platform.MOVE_DURATION);
+        assertEquals(Platform.State.IDLE, platform.state);
+        assertEquals(ORIGIN_Y, platform.y);
+    }
+
+    @Test
+    void leavingWhileArmingCancelsTheMove() {
+        platform.update(1, 0);
+        platform.update(0, Platform.PLAYER_DETECTION_DELAY / 2);
+
+        assertEquals(Platform.State.IDLE, platform.state);
+        assertFalse(platform.needsUpdate(0, Platform.PLAYER_DETECTION_DELAY));
+        assertFalse(platform.updatePosition(Platform.PLAYER_DETECTION_DELAY));
+        assertEquals(ORIGIN_Y, platform.y);
+    }
+
+    @Test
+    void movingIgnoresWhoIsOnTop() {
+        platform.update(1, 0);
+        platform.update(1, Platform.PLAYER_DETECTION_DELAY);
+        platform.update(0, Platform.PLAYER_DETECTION_DELAY + 10);
+
+        assertEquals(Platform.State.MOVING, platform.state);
+        assertTrue(platform.isMoving);
+    }
+
+    @Test
+    void platformWithoutRouteNeverArms() {
+        platform.setRoute(0, ORIGIN_Y);
+        platform.update(1, 0);
+
+        assertEquals(Platform.State.IDLE, platform.state);
+        assertFalse(platform.needsUpdate(1, 10_000));
+    }
+
+    @Test
+    void occupancyChangeNeedsAnUpdate() {
+        assertFalse(platform.needsUpdate(0, 0));
+        assertTrue(platform.needsUpdate(1, 0));
+        platform.update(1, 0);
+        assertFalse(platform.needsUpdate(1, 1));
+        assertTrue(platform.needsUpdate(2, 1));
+    }
+}
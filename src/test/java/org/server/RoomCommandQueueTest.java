@@ -0,0 +1,75 @@
+package org.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cola de comandos de una sala: orden, errores aislados y cierre al liberar la instancia.
+ */
+class RoomCommandQueueTest {
+    private final RoomCommandQueue queue = new RoomCommandQueue();
+    private final List<String> ran = new ArrayList<>();
+
+    @Test
+    void commandsRunInOrderOnDrain() {
+        queue.offer(() -> ran.add("uno"));
+        queue.offer(() -> ran.add("dos"));
+        assertTrue(ran.isEmpty());
+
+        assertEquals(2, queue.drain());
+        assertEquals(List.of("uno", "dos"), ran);
+        assertEquals(0, queue.drain());
+    }
+
+    @Test
+    void failingCommandDoesNotStopTheOthers() {
+        queue.offer(() -> {
+            throw new IllegalStateException("prueba");
+        });
+        queue.offer(() -> ran.add("dos"));
+
+        assertEquals(2, queue.drain());
+        assertEquals(List.of("dos"), ran);
+    }
+
+    @Test
+    void closeDropsPendingCommandsAndRejectsNewOnes() {
+        queue.offer(() -> ran.add("uno"));
+        queue.close();
+
+        assertFalse(queue.offer(() -> ran.add("dos")));
+        assertEquals(0, queue.drain());
+        assertTrue(ran.isEmpty());
+    }
+
+    @Test
+    void closeWhileDrainingStopsBeforeTheNextCommand() {
+        queue.offer(() -> {
+            ran.add("uno");
+            queue.close();
+        });
+        queue.offer(() -> ran.add("dos"));
+
+        assertEquals(1, queue.drain());
+        assertEquals(List.of("uno"), ran);
+    }
+
+    @Test
+    void closedRoomEndsItsGeneration() {
+        int[][] world = new int[20][50];
+        GameRoom room = new GameRoom("test", "test", 2, world, world);
+        int generation = room.generation();
+        room.submit(() -> ran.add("uno"));
+
+        room.close();
+        assertTrue(room.generation() != generation, "los eventos programados para la partida ya no corren");
+        assertEquals(0, room.runCommands());
+        assertTrue(ran.isEmpty());
+    }
+}
@@ -0,0 +1,55 @@
+package org.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pasos de simulación a partir del tiempo real: periodos completos, medio paso de margen
+ * y el tope de pasos de recuperación tras una pausa larga.
+ */
+class SimClockTest {
+    private static final int TICK_RATE = 50;
+    private static final long STEP = TimeUnit.SECONDS.toNanos(1) / TICK_RATE;
+    private static final long START = TimeUnit.SECONDS.toNanos(10);
+
+    private final SimClock clock = new SimClock(TICK_RATE);
+
+    @Test
+    void firstCallStepsOnce() {
+        assertEquals(1, clock.stepsDue(START));
+    }
+
+    @Test
+    void stepsFollowElapsedPeriods() {
+        clock.stepsDue(START);
+        assertEquals(1, clock.stepsDue(START + STEP));
+        // Un tick que llega un poco antes no se saltea, uno un poco tarde no se duplica
+        assertEquals(1, clock.stepsDue(START + 2 * STEP - STEP / 4));
+        assertEquals(1, clock.stepsDue(START + 3 * STEP + STEP / 4));
+        assertEquals(2, clock.stepsDue(START + 5 * STEP));
+    }
+
+    @Test
+    void catchUpIsCappedAndTheRestDiscarded() {
+        clock.stepsDue(START);
+        assertEquals(SimClock.MAX_CATCH_UP_STEPS, clock.stepsDue(START + TimeUnit.SECONDS.toNanos(1)));
+        // Después de la pausa vuelve al ritmo normal en lugar de simular la ráfaga pendiente
+        assertEquals(1, clock.stepsDue(START + TimeUnit.SECONDS.toNanos(1) + STEP));
+    }
+
+    @Test
+    void gameTimeOnlyAdvancesWithSteps() {
+        clock.stepsDue(START + TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, clock.millis());
+
+        for (int i = 0; i < 3; i++) {
+            clock.step();
+        }
+        assertEquals(3, clock.tick());
+        assertEquals(60, clock.millis());
+        assertEquals(20f, clock.stepMillis());
+    }
+}
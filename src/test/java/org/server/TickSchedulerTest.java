@@ -0,0 +1,53 @@
+package org.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Un tick que excede su presupuesto no provoca una ráfaga de ticks atrasados: los
+ * perdidos se descartan y la sala sigue a su cadencia normal.
+ */
+class TickSchedulerTest {
+    private static final int TICK_RATE = 50;
+    private static final long SLOW_TICK_MILLIS = 200;
+    private static final long WINDOW_MILLIS = 100;
+
+    @Test
+    void missedTicksAreDroppedInsteadOfBursting() throws InterruptedException {
+        List<Long> ticks = new CopyOnWriteArrayList<>();
+        TickScheduler scheduler = new TickScheduler(TICK_RATE, 1, room -> {
+            if (ticks.isEmpty()) {
+                sleep(SLOW_TICK_MILLIS);
+            }
+            ticks.add(System.nanoTime());
+        });
+        int[][] world = new int[20][50];
+        try {
+            scheduler.register(new GameRoom("test", "test", 2, world, world));
+            Thread.sleep(SLOW_TICK_MILLIS + 2 * WINDOW_MILLIS);
+        } finally {
+            scheduler.shutdown();
+        }
+
+        // En la ventana posterior al tick lento: ~WINDOW/20ms ticks, no los ~10 perdidos de golpe
+        long slowEnd = ticks.get(0);
+        long windowEnd = slowEnd + TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS);
+        long inWindow = ticks.stream().filter(t -> t > slowEnd && t <= windowEnd).count();
+        long expected = WINDOW_MILLIS * TICK_RATE / 1000;
+        assertTrue(inWindow <= expected + 2, "ticks tras el tick lento: " + inWindow);
+        assertTrue(inWindow > 0, "la sala dejó de simularse");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}